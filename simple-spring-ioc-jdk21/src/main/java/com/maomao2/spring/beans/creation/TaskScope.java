@@ -0,0 +1,172 @@
+package com.maomao2.spring.beans.creation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link Scope} bound to a unit of work, e.g. one request handled by a tree of virtual threads: all code running in
+ * {@link #call} or {@link #run}, including the subtasks forked there through a {@code StructuredTaskScope}, shares one
+ * instance per task-scoped bean. The instances are destroyed when the task completes.
+ *
+ * <p>
+ * The current task is bound through a {@link ScopedValue} rather than a {@code ThreadLocal}: the binding is inherited
+ * by forked subtasks without copying a per-thread map, which matters with millions of virtual threads. Creation takes a
+ * {@link ReentrantLock} instead of a monitor, so it doesn't pin the carrier thread.
+ */
+public class TaskScope implements Scope {
+
+  /**
+   * Scope identifier for the task scope: "task".
+   */
+  public static final String SCOPE_TASK = "task";
+
+  private static final Logger logger = Logger.getLogger(TaskScope.class);
+
+  private final ScopedValue<Task> currentTask = ScopedValue.newInstance();
+
+  /**
+   * Run the given operation as a task of this scope, destroying the task-scoped instances it obtained on completion.
+   *
+   * @param operation the operation, which may fork subtasks in a {@code StructuredTaskScope}
+   * @return the result of the operation
+   * @throws Exception if the operation fails
+   */
+  public <R> R call(Callable<R> operation) throws Exception {
+    Task task = new Task();
+    try {
+      return ScopedValue.where(this.currentTask, task).call(operation);
+    } finally {
+      task.close();
+    }
+  }
+
+  /**
+   * Run the given operation as a task of this scope, destroying the task-scoped instances it obtained on completion.
+   *
+   * @param operation the operation, which may fork subtasks in a {@code StructuredTaskScope}
+   */
+  public void run(Runnable operation) {
+    Task task = new Task();
+    try {
+      ScopedValue.where(this.currentTask, task).run(operation);
+    } finally {
+      task.close();
+    }
+  }
+
+  /**
+   * Return whether the current thread runs inside a task of this scope.
+   */
+  public boolean isActive() {
+    return this.currentTask.isBound();
+  }
+
+  @Override
+  public Object get(String name, ObjectFactory<?> objectFactory) {
+    Task task = getCurrentTask();
+    Object scopedObject = task.objects.get(name);
+    if (scopedObject != null) {
+      return scopedObject;
+    }
+    task.lock.lock();
+    try {
+      task.assertOpen();
+      scopedObject = task.objects.get(name);
+      if (scopedObject == null) {
+        scopedObject = objectFactory.getObject();
+        task.objects.put(name, scopedObject);
+      }
+      return scopedObject;
+    } finally {
+      task.lock.unlock();
+    }
+  }
+
+  @Override
+  public Object remove(String name) {
+    Task task = getCurrentTask();
+    task.lock.lock();
+    try {
+      task.destructionCallbacks.remove(name);
+      return task.objects.remove(name);
+    } finally {
+      task.lock.unlock();
+    }
+  }
+
+  @Override
+  public void registerDestructionCallback(String name, Runnable callback) {
+    Task task = getCurrentTask();
+    task.lock.lock();
+    try {
+      task.destructionCallbacks.put(name, callback);
+    } finally {
+      task.lock.unlock();
+    }
+  }
+
+  private Task getCurrentTask() {
+    if (!this.currentTask.isBound()) {
+      throw new IllegalStateException("No task scope active for the current thread");
+    }
+    return this.currentTask.get();
+  }
+
+  @Override
+  public String toString() {
+    return "TaskScope";
+  }
+
+  /**
+   * The instances of one task. Lookups read the concurrent map; instances are created, callbacks registered and the
+   * task closed while holding the lock.
+   */
+  private static final class Task {
+
+    final Map<String, Object> objects = new ConcurrentHashMap<String, Object>(16);
+
+    final Map<String, Runnable> destructionCallbacks = new LinkedHashMap<String, Runnable>(16);
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    boolean closed;
+
+    void assertOpen() {
+      if (this.closed) {
+        throw new IllegalStateException("Task scope has already been closed");
+      }
+    }
+
+    /**
+     * Destroy the instances of this task, in reverse order of registration.
+     */
+    void close() {
+      List<Map.Entry<String, Runnable>> callbacks;
+      this.lock.lock();
+      try {
+        this.closed = true;
+        callbacks = new ArrayList<Map.Entry<String, Runnable>>(this.destructionCallbacks.entrySet());
+        this.destructionCallbacks.clear();
+        this.objects.clear();
+      } finally {
+        this.lock.unlock();
+      }
+      for (int i = callbacks.size() - 1; i >= 0; i--) {
+        try {
+          callbacks.get(i).getValue().run();
+        } catch (Throwable ex) {
+          logger.error("Destruction callback for task-scoped object '" + callbacks.get(i).getKey() +
+              "' threw an exception", ex);
+        }
+      }
+    }
+  }
+
+}
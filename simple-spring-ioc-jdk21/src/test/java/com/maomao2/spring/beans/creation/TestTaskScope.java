@@ -0,0 +1,50 @@
+package com.maomao2.spring.beans.creation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.maomao2.spring.beans.definition.RootBeanDefinition;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class TestTaskScope {
+
+  @Test
+  public void testSubtasksShareInstance() throws Exception {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    TaskScope taskScope = new TaskScope();
+    beanFactory.registerScope(TaskScope.SCOPE_TASK, taskScope);
+    RootBeanDefinition contextBd = new RootBeanDefinition(RequestContext.class.getName());
+    contextBd.setScope(TaskScope.SCOPE_TASK);
+    contextBd.setDestroyMethodName("close");
+    beanFactory.registerBeanDefinition("requestContext", contextBd);
+
+    RequestContext[] forked = taskScope.call(() -> {
+      try (StructuredTaskScope.ShutdownOnFailure scope = new StructuredTaskScope.ShutdownOnFailure()) {
+        StructuredTaskScope.Subtask<Object> first = scope.fork(() -> beanFactory.getBean("requestContext"));
+        StructuredTaskScope.Subtask<Object> second = scope.fork(() -> beanFactory.getBean("requestContext"));
+        scope.join().throwIfFailed();
+        assertSame(beanFactory.getBean("requestContext"), first.get());
+        return new RequestContext[] {(RequestContext) first.get(), (RequestContext) second.get()};
+      }
+    });
+    assertSame(forked[0], forked[1]);
+    assertEquals(1, forked[0].closed.get());
+    assertFalse(taskScope.isActive());
+
+    RequestContext other = taskScope.call(() -> (RequestContext) beanFactory.getBean("requestContext"));
+    assertNotSame(forked[0], other);
+  }
+
+  public static class RequestContext {
+
+    final AtomicInteger closed = new AtomicInteger();
+
+    public void close() {
+      this.closed.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package com.maomao2.spring.beans.creation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.maomao2.spring.beans.definition.RootBeanDefinition;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+public class TestVirtualThreadCreation {
+
+  private static final int THREADS = 10_000;
+
+  private static final int BEANS = 16;
+
+  @Test
+  public void testConcurrentCreationOnVirtualThreads() throws Exception {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    StripedScope stripedScope = new StripedScope(4);
+    beanFactory.registerScope(StripedScope.SCOPE_STRIPED, stripedScope);
+    for (int i = 0; i < BEANS; i++) {
+      RootBeanDefinition serviceBd = new RootBeanDefinition(ParallelService.class.getName());
+      serviceBd.setInitMethodName("init");
+      beanFactory.registerBeanDefinition("service" + i, serviceBd);
+    }
+    RootBeanDefinition bufferBd = new RootBeanDefinition(SlowService.class.getName());
+    bufferBd.setScope(StripedScope.SCOPE_STRIPED);
+    bufferBd.setInitMethodName("init");
+    beanFactory.registerBeanDefinition("buffer", bufferBd);
+    SlowService.created.set(0);
+    ParallelService.initializing = new CountDownLatch(BEANS);
+    ParallelService.serialized = false;
+
+    List<Future<Object>> futures = new ArrayList<Future<Object>>(THREADS);
+    Path dump = Files.createTempFile("virtual-thread-creation", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+      recording.start();
+      try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        for (int i = 0; i < THREADS; i++) {
+          final String name = "service" + (i % BEANS);
+          futures.add(executor.submit(() -> {
+            beanFactory.getBean("buffer");
+            return beanFactory.getBean(name);
+          }));
+        }
+        executor.shutdown();
+        assertTrue("Bean creation did not complete", executor.awaitTermination(30, TimeUnit.SECONDS));
+      }
+      recording.stop();
+      recording.dump(dump);
+      // Creation blocks in a lock rather than a monitor, so neither the sleeping initializers nor the threads waiting
+      // for them pin their carrier threads
+      List<String> pinned = new ArrayList<String>();
+      for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+        pinned.add(describe(event));
+      }
+      assertTrue(pinned.size() + " virtual threads pinned during bean creation, e.g. "
+          + pinned.subList(0, Math.min(3, pinned.size())), pinned.isEmpty());
+    } finally {
+      Files.deleteIfExists(dump);
+    }
+    for (int i = 0; i < THREADS; i++) {
+      assertSame(beanFactory.getBean("service" + (i % BEANS)), futures.get(i).get());
+    }
+    assertEquals(BEANS + stripedScope.getStripes("buffer").size(), SlowService.created.get());
+    assertTrue(stripedScope.getStripes("buffer").size() <= stripedScope.getStripeCount());
+  }
+
+  private static String describe(RecordedEvent event) {
+    if (event.getStackTrace() == null) {
+      return event.getEventType().getName();
+    }
+    List<String> frames = new ArrayList<String>();
+    for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+      if (frames.size() == 8) {
+        break;
+      }
+      frames.add(frame.getMethod().getType().getName() + "." + frame.getMethod().getName());
+    }
+    return frames.toString();
+  }
+
+  public static class SlowService {
+
+    static final AtomicInteger created = new AtomicInteger();
+
+    public void init() throws InterruptedException {
+      Thread.sleep(20);
+      created.incrementAndGet();
+    }
+  }
+
+  /**
+   * Service whose initializers wait for each other, so that they only complete if all services are created in parallel
+   * rather than one after another.
+   */
+  public static class ParallelService extends SlowService {
+
+    static volatile CountDownLatch initializing;
+
+    static volatile boolean serialized;
+
+    @Override
+    public void init() throws InterruptedException {
+      initializing.countDown();
+      if (serialized || !initializing.await(5, TimeUnit.SECONDS)) {
+        // Fail the remaining creations right away rather than letting each of them wait in turn
+        serialized = true;
+        throw new IllegalStateException("Singletons were not created in parallel");
+      }
+      super.init();
+    }
+  }
+}
@@ -4,34 +4,51 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 import org.apache.commons.beanutils.ConvertUtils;
 import org.apache.log4j.Logger;
 
+import com.maomao2.spring.beans.definition.AbstractBeanDefinition;
 import com.maomao2.spring.beans.definition.BeanDefinition;
 import com.maomao2.spring.beans.definition.ConstructorResolver;
 import com.maomao2.spring.beans.definition.PropertyValue;
 import com.maomao2.spring.beans.definition.PropertyValues;
 import com.maomao2.spring.beans.definition.RootBeanDefinition;
+import com.maomao2.spring.beans.definition.RuntimeBeanReference;
 import com.maomao2.spring.beans.parsing.BeanDefinitionValueResolver;
 import com.maomao2.spring.exception.BeanCreationException;
+import com.maomao2.spring.exception.BeanDefinitionStoreException;
+import com.maomao2.spring.exception.BeanIsAbstractException;
+import com.maomao2.spring.exception.BeanIsNotAFactoryException;
 import com.maomao2.spring.exception.BeansException;
 import com.maomao2.spring.exception.CannotLoadBeanClassException;
+import com.maomao2.spring.exception.NoSuchBeanDefinitionException;
 import com.maomao2.spring.util.ClassUtils;
+import com.maomao2.spring.util.PropertySnapshot;
 import com.maomao2.spring.util.ReflectionUtils;
+import com.maomao2.spring.util.ResolvableType;
 
-public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
+public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport implements BeanFactory {
 
     Logger logger = Logger.getLogger(getClass());
     /**
@@ -42,26 +59,59 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
     /**
      * BeanPostProcessors to apply in createBean
      */
-    private final List<BeanPostProcessor> beanPostProcessors = new ArrayList<BeanPostProcessor>();
+    private final List<BeanPostProcessor> beanPostProcessors = new CopyOnWriteArrayList<BeanPostProcessor>();
     /**
      * Map from bean name to merged RootBeanDefinition
      */
     private final Map<String, RootBeanDefinition> mergedBeanDefinitions = new ConcurrentHashMap<String, RootBeanDefinition>(
             256);
     /**
-     * Map between dependent bean names: bean name --> Set of dependent bean names
+     * Cache of injectable properties per bean class, for autowiring
      */
-    private final Map<String, Set<String>> dependentBeanMap = new ConcurrentHashMap<String, Set<String>>(64);
+    private final Map<Class<?>, DependencyDescriptor[]> injectablePropertiesCache =
+            new ConcurrentHashMap<Class<?>, DependencyDescriptor[]>(256);
+    /**
+     * Cache of ObjectProviders per bean name, for provider references
+     */
+    private final Map<String, ObjectProvider<?>> beanProviders = new ConcurrentHashMap<String, ObjectProvider<?>>(64);
+    /**
+     * Map from scope identifier String to corresponding Scope
+     */
+    private final Map<String, Scope> scopes = new ConcurrentHashMap<String, Scope>(8);
 
     /**
-     * Map between depending bean names: bean name --> Set of bean names for the bean's dependencies
+     * Property sources for placeholder resolution, in ascending order of precedence
      */
-    private final Map<String, Set<String>> dependenciesForBeanMap = new ConcurrentHashMap<String, Set<String>>(64);
+    private final List<Properties> propertySources = new CopyOnWriteArrayList<Properties>();
 
     /**
-     * Map from scope identifier String to corresponding Scope
+     * Flattened view of the property sources, built on first use
+     */
+    private volatile PropertySnapshot propertySnapshot;
+
+    /**
+     * Executor to create beans on for {@link #getBeanAsync}
+     */
+    private volatile Executor asyncExecutor = ForkJoinPool.commonPool();
+
+    /**
+     * Futures of the singletons currently being created and initialized asynchronously, keyed by requested bean name
+     */
+    private final Map<String, CompletableFuture<Object>> asyncCreations =
+            new ConcurrentHashMap<String, CompletableFuture<Object>>(16);
+
+    /**
+     * Futures of the singletons whose asynchronous initialization is still running (or has failed), keyed by bean name
      */
-    private final Map<String, Scope> scopes = new LinkedHashMap<String, Scope>(8);
+    private final Map<String, CompletableFuture<Void>> initializationFutures =
+            new ConcurrentHashMap<String, CompletableFuture<Void>>(16);
+
+    /**
+     * Initialization futures of the non-singleton instances created by the current thread for {@link #getBeanAsync},
+     * keyed by bean name
+     */
+    private final ThreadLocal<Map<String, CompletableFuture<Void>>> instanceInitializationFutures =
+            new ThreadLocal<Map<String, CompletableFuture<Void>>>();
 
     /**
      * Return the list of BeanPostProcessors that will get applied to beans created with this factory.
@@ -70,6 +120,74 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
         return this.beanPostProcessors;
     }
 
+    /**
+     * Add a new BeanPostProcessor that will get applied to beans created by this factory. A processor that was already
+     * registered is moved to the end of the list.
+     *
+     * @param beanPostProcessor
+     *            the post-processor to register
+     */
+    public void addBeanPostProcessor(BeanPostProcessor beanPostProcessor) {
+        this.beanPostProcessors.remove(beanPostProcessor);
+        this.beanPostProcessors.add(beanPostProcessor);
+    }
+
+    /**
+     * Register the given scope, backed by the given Scope implementation. Beans whose definition declares that scope
+     * are obtained through it.
+     *
+     * @param scopeName
+     *            the scope identifier
+     * @param scope
+     *            the backing Scope implementation
+     * @throws IllegalArgumentException
+     *             if the scope name is "singleton" or "prototype"
+     */
+    public void registerScope(String scopeName, Scope scope) {
+        if (scopeName == null || scope == null) {
+            throw new IllegalArgumentException("Scope identifier and Scope must not be null");
+        }
+        if (BeanDefinition.SCOPE_SINGLETON.equals(scopeName) || BeanDefinition.SCOPE_PROTOTYPE.equals(scopeName)) {
+            throw new IllegalArgumentException("Cannot replace existing scopes 'singleton' and 'prototype'");
+        }
+        Scope previous = this.scopes.put(scopeName, scope);
+        if (previous != null && previous != scope) {
+            logger.info("Replacing scope '" + scopeName + "' from [" + previous + "] to [" + scope + "]");
+        }
+    }
+
+    /**
+     * Return the Scope implementation for the given scope name, or {@code null} if none is registered.
+     */
+    public Scope getRegisteredScope(String scopeName) {
+        return this.scopes.get(scopeName);
+    }
+
+    /**
+     * Return the names of all currently registered scopes, without the built-in "singleton" and "prototype" scopes.
+     */
+    public String[] getRegisteredScopeNames() {
+        return this.scopes.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Overridden to destroy the registered scopes that implement {@link DisposableBean} as well, e.g. to destroy all
+     * stripes of a {@link StripedScope}.
+     */
+    @Override
+    public void destroySingletons() {
+        super.destroySingletons();
+        for (Map.Entry<String, Scope> entry : this.scopes.entrySet()) {
+            if (entry.getValue() instanceof DisposableBean) {
+                try {
+                    ((DisposableBean) entry.getValue()).destroy();
+                } catch (Throwable ex) {
+                    logger.error("Destruction of scope '" + entry.getKey() + "' threw an exception", ex);
+                }
+            }
+        }
+    }
+
     public void setBeanClassLoader(ClassLoader beanClassLoader) {
         this.beanClassLoader = (beanClassLoader != null ? beanClassLoader : ClassUtils.getDefaultClassLoader());
     }
@@ -78,8 +196,163 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
         return this.beanClassLoader;
     }
 
+    /**
+     * Add a property source for {@code ${...}} placeholder resolution. Later sources override earlier ones; environment
+     * variables and system properties override all of them.
+     *
+     * @param properties
+     *            the properties to add, typically loaded from a property file
+     */
+    public void addPropertySource(Properties properties) {
+        this.propertySources.add(properties);
+        this.propertySnapshot = null;
+    }
+
+    /**
+     * Return the flattened property snapshot to resolve placeholders against. The snapshot is built once from the
+     * registered property sources and reused for all subsequent bean creations.
+     */
+    public PropertySnapshot getPropertySnapshot() {
+        PropertySnapshot snapshot = this.propertySnapshot;
+        if (snapshot == null) {
+            synchronized (this.propertySources) {
+                snapshot = this.propertySnapshot;
+                if (snapshot == null) {
+                    snapshot = PropertySnapshot.create(this.propertySources);
+                    this.propertySnapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
     protected abstract BeanDefinition getBeanDefinition(String beanName) throws BeansException;
 
+    /**
+     * Check if this bean factory contains a bean definition with the given name.
+     *
+     * @param beanName
+     *            the name of the bean to look for
+     * @return if this bean factory contains a bean definition with the given name
+     */
+    public abstract boolean containsBeanDefinition(String beanName);
+
+    /**
+     * Resolve the specified dependency against the beans defined in this factory.
+     *
+     * @param descriptor
+     *            the descriptor for the dependency (field or constructor parameter)
+     * @param requestingBeanName
+     *            the name of the bean which declares the given dependency
+     * @return the resolved object, or {@code null} if none found and the dependency is not required
+     * @throws NoSuchBeanDefinitionException
+     *             if a required dependency has no matching bean, or more than one without a tie-breaker
+     */
+    public abstract Object resolveDependency(DependencyDescriptor descriptor, String requestingBeanName)
+            throws BeansException;
+
+    /**
+     * Return a proxy to inject in place of the given bean if it is a lazy-init singleton that has not been created yet
+     * and the injection point is declared as an interface. The bean is then only created on first use of the proxy,
+     * so eager beans can depend on lazy ones without pulling them into startup.
+     *
+     * @param beanName
+     *            the name of the bean to inject
+     * @param dependencyType
+     *            the declared type of the injection point
+     * @return the lazy-resolution proxy, or {@code null} if the bean should be injected directly
+     */
+    protected Object getLazyResolutionProxyIfNecessary(String beanName, Class<?> dependencyType) {
+        if (!dependencyType.isInterface() || getSingleton(beanName) != null || !containsBeanDefinition(beanName)) {
+            return null;
+        }
+        RootBeanDefinition mbd = getMergedBeanDefinition(beanName);
+        if (!mbd.isLazyInit() || !mbd.isSingleton() || mbd.isAbstract()) {
+            return null;
+        }
+        Class<?> beanClass = determineTargetType(beanName, mbd);
+        if (beanClass == null || !dependencyType.isAssignableFrom(beanClass)) {
+            return null;
+        }
+        ClassLoader classLoader = dependencyType.getClassLoader();
+        return Proxy.newProxyInstance(classLoader != null ? classLoader : getBeanClassLoader(),
+                new Class<?>[] { dependencyType }, new LazyResolutionInvocationHandler(this, beanName));
+    }
+
+    /**
+     * Return a provider for the given bean, allowing for lazy on-demand retrieval of the bean instance. The provider is
+     * cached per bean name, so injecting it is cheap and calling it does not go through value resolution again.
+     *
+     * @param beanName
+     *            the name of the bean
+     * @return the provider handle (never {@code null}, even if the bean is not defined)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ObjectProvider<T> getBeanProvider(String beanName) {
+        ObjectProvider<?> provider = this.beanProviders.get(beanName);
+        if (provider == null) {
+            provider = new BeanObjectProvider<Object>(this, beanName);
+            ObjectProvider<?> existing = this.beanProviders.putIfAbsent(beanName, provider);
+            if (existing != null) {
+                provider = existing;
+            }
+        }
+        return (ObjectProvider<T>) provider;
+    }
+
+    /**
+     * Determine the type of the bean with the given name, without creating it if it does not exist yet.
+     *
+     * @param name
+     *            the name of the bean
+     * @return the type of the bean, or {@code null} if not determinable
+     * @throws NoSuchBeanDefinitionException
+     *             if there is no bean definition with the given name
+     */
+    public Class<?> getType(String name) throws NoSuchBeanDefinitionException {
+        String beanName = transformedBeanName(name);
+        Object beanInstance = getSingleton(beanName);
+        if (beanInstance != null) {
+            if (beanInstance instanceof FactoryBean && !isFactoryDereference(name)) {
+                return getTypeForFactoryBean((FactoryBean<?>) beanInstance);
+            }
+            return beanInstance.getClass();
+        }
+        RootBeanDefinition mbd = getMergedBeanDefinition(beanName);
+        Class<?> beanClass = determineTargetType(beanName, mbd);
+        if (beanClass != null && FactoryBean.class.isAssignableFrom(beanClass) && !isFactoryDereference(name)) {
+            return getTypeForFactoryBean(beanName, mbd);
+        }
+        return beanClass;
+    }
+
+    /**
+     * Determine the type of object the given FactoryBean bean produces. Uses {@code getObjectType()} if the factory
+     * has been created already, and the type argument it declares for {@link FactoryBean} otherwise, so that by-type
+     * lookups never need to instantiate a factory.
+     *
+     * @param beanName
+     *            the name of the FactoryBean bean
+     * @param mbd
+     *            the merged bean definition for the bean
+     * @return the type of the produced object, or {@code null} if not determinable
+     */
+    protected Class<?> getTypeForFactoryBean(String beanName, RootBeanDefinition mbd) {
+        Object beanInstance = getSingleton(beanName);
+        if (beanInstance instanceof FactoryBean) {
+            Class<?> objectType = getTypeForFactoryBean((FactoryBean<?>) beanInstance);
+            if (objectType != null) {
+                return objectType;
+            }
+        }
+        Class<?> beanClass = determineTargetType(beanName, mbd);
+        if (beanClass == null) {
+            return null;
+        }
+        ResolvableType[] generics = ResolvableType.forClass(beanClass).as(FactoryBean.class).getGenerics();
+        return (generics.length == 1 ? generics[0].resolve() : null);
+    }
+
     public Object getBean(String name) throws BeansException {
         return doGetBean(name, null, (Object[]) null);
     }
@@ -88,6 +361,155 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
         return doGetBean(name, requiredType, (Object[]) null);
     }
 
+    /**
+     * Set the executor to create beans on for {@link #getBeanAsync}. Default is the common pool.
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        if (asyncExecutor == null) {
+            throw new IllegalArgumentException("Executor must not be null");
+        }
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    public Executor getAsyncExecutor() {
+        return this.asyncExecutor;
+    }
+
+    /**
+     * Return an instance of the specified bean without blocking the calling thread: the bean and its dependencies are
+     * created on the {@link #setAsyncExecutor async executor}, and the returned future completes once the bean is fully
+     * initialized, including its {@link AsyncInitializingBean asynchronous initialization}; for a prototype or scoped
+     * bean, that of the instance created for this request. Concurrent requests for a singleton that is being created
+     * share one future.
+     *
+     * @param name
+     *            the name of the bean to retrieve
+     * @return a future for the bean, completed exceptionally if the bean could not be created
+     */
+    public CompletableFuture<Object> getBeanAsync(final String name) {
+        CompletableFuture<Object> pending = this.asyncCreations.get(name);
+        if (pending != null) {
+            return pending;
+        }
+        final String beanName = transformedBeanName(name);
+        Object sharedInstance = getSingleton(beanName);
+        if (sharedInstance != null && !(sharedInstance instanceof FactoryBean)) {
+            final Object bean;
+            try {
+                bean = getObjectForBeanInstance(sharedInstance, name, beanName, null);
+            } catch (RuntimeException ex) {
+                return failedFuture(ex);
+            }
+            return getInitializationFuture(beanName).thenApply(ignored -> bean);
+        }
+        boolean singleton;
+        try {
+            singleton = (sharedInstance != null || getMergedBeanDefinition(beanName).isSingleton());
+        } catch (RuntimeException ex) {
+            return failedFuture(ex);
+        }
+        final CompletableFuture<Object> future = new CompletableFuture<Object>();
+        if (singleton) {
+            CompletableFuture<Object> existing = this.asyncCreations.putIfAbsent(name, future);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        try {
+            this.asyncExecutor.execute(() -> {
+                try {
+                    Map<String, CompletableFuture<Void>> previous = this.instanceInitializationFutures.get();
+                    Map<String, CompletableFuture<Void>> created = new HashMap<String, CompletableFuture<Void>>(4);
+                    this.instanceInitializationFutures.set(created);
+                    final Object bean;
+                    try {
+                        bean = getBean(name);
+                    } finally {
+                        if (previous != null) {
+                            this.instanceInitializationFutures.set(previous);
+                        } else {
+                            this.instanceInitializationFutures.remove();
+                        }
+                    }
+                    CompletableFuture<Void> initialized = created.get(beanName);
+                    if (initialized == null) {
+                        initialized = getInitializationFuture(beanName);
+                    }
+                    initialized.whenComplete((ignored, ex) -> {
+                        this.asyncCreations.remove(name, future);
+                        if (ex != null) {
+                            future.completeExceptionally(unwrapCompletionException(ex));
+                        } else {
+                            future.complete(bean);
+                        }
+                    });
+                } catch (Throwable ex) {
+                    this.asyncCreations.remove(name, future);
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            this.asyncCreations.remove(name, future);
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Return an instance of the specified bean without blocking the calling thread, converted to the required type if
+     * necessary.
+     *
+     * @param name
+     *            the name of the bean to retrieve
+     * @param requiredType
+     *            the required type of the bean to retrieve
+     * @return a future for the bean, completed exceptionally if the bean could not be created
+     * @see #getBeanAsync(String)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> getBeanAsync(String name, final Class<T> requiredType) {
+        return getBeanAsync(name).thenApply(bean -> {
+            if (requiredType != null && bean != null && !requiredType.isAssignableFrom(bean.getClass())) {
+                return (T) ConvertUtils.convert(bean, requiredType);
+            }
+            return (T) bean;
+        });
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable ex) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+    private static Throwable unwrapCompletionException(Throwable ex) {
+        return (ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+    }
+
+    /**
+     * Return a future that completes once the asynchronous initialization of the given singleton, and of the beans it
+     * depends on, has completed.
+     *
+     * @param beanName
+     *            the name of the bean
+     * @return the future, already completed if the bean has no asynchronous initialization pending; completed
+     *         exceptionally with a {@link BeanCreationException} if the initialization failed
+     * @see AsyncInitializingBean
+     */
+    public CompletableFuture<Void> getInitializationFuture(String beanName) {
+        CompletableFuture<Void> future = this.initializationFutures.get(beanName);
+        return (future != null ? future : CompletableFuture.<Void>completedFuture(null));
+    }
+
+    /**
+     * Return a future that completes once the asynchronous initialization of all singletons created so far has
+     * completed, e.g. to hold back the end of an application context refresh.
+     */
+    public CompletableFuture<Void> getSingletonsInitializationFuture() {
+        return CompletableFuture.allOf(
+                this.initializationFutures.values().toArray(new CompletableFuture<?>[0]));
+    }
+
     /**
      * Return an instance, which may be shared or independent, of the specified bean.
      *
@@ -116,7 +538,10 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
             bean = getObjectForBeanInstance(sharedInstance, name, beanName, null);
         } else {
             try {
-                final RootBeanDefinition mbd = (RootBeanDefinition) getBeanDefinition(beanName);
+                final RootBeanDefinition mbd = getMergedBeanDefinition(beanName);
+                if (mbd.isAbstract()) {
+                    throw new BeanIsAbstractException(beanName);
+                }
 
                 // TODO
                 // Guarantee initialization of beans that the current bean depends on.
@@ -136,37 +561,28 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
 
                 // isPrototype
                 else if (mbd.isPrototype()) {
-                    // TODO
-                    /*
-                     * // It's a prototype -> create a new instance.
-                     * Object prototypeInstance = createBean(beanName, mbd, args);
-                     * bean = getObjectForBeanInstance(prototypeInstance, name, beanName, mbd);
-                     */
+                    // It's a prototype -> create a new instance.
+                    Object prototypeInstance = createBean(beanName, mbd, args);
+                    bean = getObjectForBeanInstance(prototypeInstance, name, beanName, mbd);
                 }
                 // other scope
                 else {
-                    // TODO
-                    /*
-                     * String scopeName = mbd.getScope();
-                     * final Scope scope = this.scopes.get(scopeName);
-                     * if (scope == null) {
-                     * throw new IllegalStateException("No Scope registered for scope name '" + scopeName + "'");
-                     * }
-                     * try {
-                     * Object scopedInstance = scope.get(beanName, new ObjectFactory<Object>() {
-                     *
-                     * public Object getObject() throws BeansException {
-                     * return createBean(beanName, mbd, args);
-                     * }
-                     * });
-                     * bean = getObjectForBeanInstance(scopedInstance, name, beanName, mbd);
-                     * } catch (IllegalStateException ex) {
-                     * throw new BeanCreationException(beanName,
-                     * "Scope '" + scopeName + "' is not active for the current thread; consider " +
-                     * "defining a scoped proxy for this bean if you intend to refer to it from a singleton",
-                     * ex);
-                     * }
-                     */
+                    String scopeName = mbd.getScope();
+                    final Scope scope = this.scopes.get(scopeName);
+                    if (scope == null) {
+                        throw new IllegalStateException("No Scope registered for scope name '" + scopeName + "'");
+                    }
+                    try {
+                        Object scopedInstance = scope.get(beanName, new ObjectFactory<Object>() {
+                            public Object getObject() throws BeansException {
+                                return createBean(beanName, mbd, args);
+                            }
+                        });
+                        bean = getObjectForBeanInstance(scopedInstance, name, beanName, mbd);
+                    } catch (IllegalStateException ex) {
+                        throw new BeanCreationException(beanName,
+                                "Scope '" + scopeName + "' is not active for the current thread", ex);
+                    }
                 }
             } catch (BeansException ex) {
                 throw ex;
@@ -180,8 +596,96 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
         return (T) bean;
     }
 
-    private String transformedBeanName(String name) {
-        return name;
+    /**
+     * Return a RootBeanDefinition for the given bean, merging a child bean definition with its parent if necessary. The
+     * merged definition is cached, so the merge happens only once per bean.
+     *
+     * @param beanName
+     *            the name of the bean to retrieve the merged definition for
+     * @return a (potentially merged) RootBeanDefinition for the given bean
+     * @throws NoSuchBeanDefinitionException
+     *             if there is no bean with the given name
+     */
+    protected RootBeanDefinition getMergedBeanDefinition(String beanName) throws BeansException {
+        // Quick check on the concurrent map first, with minimal locking.
+        RootBeanDefinition mbd = this.mergedBeanDefinitions.get(beanName);
+        if (mbd != null) {
+            return mbd;
+        }
+        return getMergedBeanDefinition(beanName, getBeanDefinition(beanName));
+    }
+
+    /**
+     * Return a RootBeanDefinition for the given bean definition, merging it with its parent definition (recursively) if
+     * it has one. Definitions without parent are used as-is rather than copied, so they don't take up memory twice.
+     *
+     * @param beanName
+     *            the name of the bean definition
+     * @param bd
+     *            the original bean definition
+     * @return a (potentially merged) RootBeanDefinition for the given bean
+     */
+    protected RootBeanDefinition getMergedBeanDefinition(String beanName, BeanDefinition bd) throws BeansException {
+        synchronized (this.mergedBeanDefinitions) {
+            RootBeanDefinition mbd = this.mergedBeanDefinitions.get(beanName);
+            if (mbd != null) {
+                return mbd;
+            }
+            if (bd.getParentName() == null) {
+                mbd = (bd instanceof RootBeanDefinition ? (RootBeanDefinition) bd : new RootBeanDefinition(bd));
+            } else {
+                String parentBeanName = bd.getParentName();
+                if (beanName.equals(parentBeanName)) {
+                    throw new BeanDefinitionStoreException(
+                            "Bean definition '" + beanName + "' cannot be its own parent");
+                }
+                RootBeanDefinition pbd;
+                try {
+                    pbd = getMergedBeanDefinition(parentBeanName);
+                } catch (NoSuchBeanDefinitionException ex) {
+                    throw new BeanDefinitionStoreException("Could not resolve parent bean definition '" +
+                            parentBeanName + "' for bean '" + beanName + "'", ex);
+                }
+                // Deep copy with overridden values.
+                mbd = new RootBeanDefinition(pbd);
+                mbd.overrideFrom(bd);
+                mbd.setParentName(null);
+            }
+            this.mergedBeanDefinitions.put(beanName, mbd);
+            return mbd;
+        }
+    }
+
+    /**
+     * Remove the merged bean definition for the specified bean, so that it gets recreated on next access.
+     *
+     * @param beanName
+     *            the bean name to clear the merged definition for
+     */
+    protected void clearMergedBeanDefinition(String beanName) {
+        this.mergedBeanDefinitions.remove(beanName);
+    }
+
+    /**
+     * Return the bean name, stripping out the factory dereference prefix if necessary.
+     *
+     * @param name
+     *            the user-specified name
+     * @return the transformed bean name
+     */
+    protected String transformedBeanName(String name) {
+        String beanName = name;
+        while (beanName.startsWith(FACTORY_BEAN_PREFIX)) {
+            beanName = beanName.substring(FACTORY_BEAN_PREFIX.length());
+        }
+        return beanName;
+    }
+
+    /**
+     * Return whether the given name is a factory dereference (beginning with the factory dereference prefix).
+     */
+    protected static boolean isFactoryDereference(String name) {
+        return (name != null && name.startsWith(FACTORY_BEAN_PREFIX));
     }
 
     /**
@@ -200,54 +704,34 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
      */
     protected Object getObjectForBeanInstance(
             Object beanInstance, String name, String beanName, RootBeanDefinition mbd) {
-        return beanInstance;
-    }
+        // Don't let calling code try to dereference the factory if the bean isn't a factory.
+        if (isFactoryDereference(name)) {
+            if (!(beanInstance instanceof FactoryBean)) {
+                throw new BeanIsNotAFactoryException(beanName, beanInstance.getClass());
+            }
+            return beanInstance;
+        }
+        if (!(beanInstance instanceof FactoryBean)) {
+            return beanInstance;
+        }
 
-    private boolean isDependent(String beanName, String dependentBeanName) {
-        String canonicalName = transformedBeanName(beanName);
-        Set<String> dependentBeans = this.dependentBeanMap.get(canonicalName);
-        if (dependentBeans == null) {
-            return false;
+        Object object = null;
+        if (mbd == null) {
+            object = getCachedObjectForFactoryBean(beanName);
         }
-        if (dependentBeans.contains(dependentBeanName)) {
-            return true;
+        if (object == null) {
+            object = getObjectFromFactoryBean((FactoryBean<?>) beanInstance, beanName);
         }
-        return false;
+        return object;
     }
 
     /**
-     * Register a dependent bean for the given bean, to be destroyed before the given bean is destroyed.
-     *
-     * @param beanName
-     *            the name of the bean
-     * @param dependentBeanName
-     *            the name of the dependent bean
-     */
-    public void registerDependentBean(String beanName, String dependentBeanName) {
-        // A quick check for an existing entry upfront, avoiding synchronization...
-        String canonicalName = transformedBeanName(beanName);
-        Set<String> dependentBeans = this.dependentBeanMap.get(canonicalName);
-        if (dependentBeans != null && dependentBeans.contains(dependentBeanName)) {
-            return;
-        }
-
-        // No entry yet -> fully synchronized manipulation of the dependentBeans Set
-        synchronized (this.dependentBeanMap) {
-            dependentBeans = this.dependentBeanMap.get(canonicalName);
-            if (dependentBeans == null) {
-                dependentBeans = new LinkedHashSet<String>(8);
-                this.dependentBeanMap.put(canonicalName, dependentBeans);
-            }
-            dependentBeans.add(dependentBeanName);
-        }
-        synchronized (this.dependenciesForBeanMap) {
-            Set<String> dependenciesForBean = this.dependenciesForBeanMap.get(dependentBeanName);
-            if (dependenciesForBean == null) {
-                dependenciesForBean = new LinkedHashSet<String>(8);
-                this.dependenciesForBeanMap.put(dependentBeanName, dependenciesForBean);
-            }
-            dependenciesForBean.add(canonicalName);
-        }
+     * Applies the {@code postProcessAfterInitialization} callback of all registered BeanPostProcessors, giving them a
+     * chance to post-process the object obtained from FactoryBeans (for example, to auto-proxy them).
+     */
+    @Override
+    protected Object postProcessObjectFromFactoryBean(Object object, String beanName) {
+        return (object != null ? applyBeanPostProcessorsAfterInitialization(object, beanName) : null);
     }
 
     protected Object createBean(String beanName, RootBeanDefinition mbd, Object[] args) throws BeanCreationException {
@@ -381,9 +865,46 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
             }
         }
 
+        // Register bean as disposable.
+        registerDisposableBeanIfNecessary(beanName, bean, mbd);
+
         return exposedObject;
     }
 
+    /**
+     * Add the given bean to the list of disposable beans in this factory, if it is a singleton that implements
+     * {@link DisposableBean} or declares a destroy method. For a bean of a custom scope, the destruction callback is
+     * registered with the scope instead.
+     *
+     * @param beanName
+     *            the name of the bean
+     * @param bean
+     *            the bean instance
+     * @param mbd
+     *            the bean definition for the bean
+     */
+    protected void registerDisposableBeanIfNecessary(String beanName, Object bean, RootBeanDefinition mbd) {
+        if (bean == null || mbd.isPrototype()) {
+            return;
+        }
+        Scope scope = null;
+        if (!mbd.isSingleton()) {
+            scope = this.scopes.get(mbd.getScope());
+            if (scope == null) {
+                return;
+            }
+        }
+        DisposableBeanAdapter adapter = DisposableBeanAdapter.forBean(bean, beanName, mbd);
+        if (adapter == null) {
+            return;
+        }
+        if (scope == null) {
+            registerDisposableBean(beanName, adapter);
+        } else {
+            scope.registerDestructionCallback(beanName, adapter::destroy);
+        }
+    }
+
     /**
      * Populate the bean instance in the given BeanWrapper with the property values from the bean definition.
      *
@@ -395,10 +916,10 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
      *            the bean definition for the bean
      */
     protected void populateBean(Object exposedObject, String beanName, RootBeanDefinition mbd) {
-        PropertyValues pvs = mbd.getPropertyValues();
+        PropertyValues pvs = (mbd.hasPropertyValues() ? mbd.getPropertyValues() : null);
 
         if (exposedObject == null) {
-            if (!pvs.isEmpty()) {
+            if (pvs != null) {
                 throw new BeanCreationException(
                         beanName, "Cannot apply property values to null instance");
             } else {
@@ -408,6 +929,99 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
         }
 
         applyPropertyValues(exposedObject, beanName, pvs, mbd);
+
+        int autowireMode = mbd.getResolvedAutowireMode();
+        if (autowireMode == AbstractBeanDefinition.AUTOWIRE_BY_NAME ||
+                autowireMode == AbstractBeanDefinition.AUTOWIRE_BY_TYPE) {
+            autowireProperties(exposedObject, beanName, pvs, autowireMode);
+        }
+    }
+
+    /**
+     * Fill in the injectable properties of the given bean that have no explicit value with references to other beans in
+     * this factory, matched by property name or by type.
+     *
+     * @param bean
+     *            the bean instance
+     * @param beanName
+     *            the name of the bean
+     * @param pvs
+     *            the explicitly specified property values, which take precedence
+     * @param autowireMode
+     *            {@code AUTOWIRE_BY_NAME} or {@code AUTOWIRE_BY_TYPE}
+     */
+    protected void autowireProperties(Object bean, String beanName, PropertyValues pvs, int autowireMode) {
+        for (DependencyDescriptor descriptor : getInjectableProperties(bean.getClass())) {
+            Field field = descriptor.getField();
+            String propertyName = field.getName();
+            if (pvs != null && pvs.contains(propertyName)) {
+                continue;
+            }
+            Object value = null;
+            if (autowireMode == AbstractBeanDefinition.AUTOWIRE_BY_NAME) {
+                if (!propertyName.equals(beanName) && containsBeanDefinition(propertyName)) {
+                    value = getLazyResolutionProxyIfNecessary(propertyName, field.getType());
+                    if (value == null) {
+                        value = getBean(propertyName);
+                    }
+                    registerDependentBean(propertyName, beanName);
+                }
+            } else {
+                value = resolveDependency(descriptor, beanName);
+            }
+            if (value == null) {
+                continue;
+            }
+            if (!field.getType().isInstance(value)) {
+                throw new BeanCreationException(beanName, "Cannot autowire property '" + propertyName + "' of type [" +
+                        field.getType().getName() + "] with bean of type [" + value.getClass().getName() + "]");
+            }
+            try {
+                ReflectionUtils.makeAccessible(field);
+                field.set(bean, value);
+            } catch (IllegalAccessException ex) {
+                throw new BeanCreationException(beanName, "Could not autowire property '" + propertyName + "'", ex);
+            }
+        }
+    }
+
+    /**
+     * Return the properties of the given class that are eligible for autowiring: all non-static, non-final fields of
+     * the class and its superclasses, except those of simple value types. The result is cached per class.
+     *
+     * @param beanClass
+     *            the bean class to introspect
+     * @return the descriptors of the injectable properties
+     */
+    protected DependencyDescriptor[] getInjectableProperties(Class<?> beanClass) {
+        DependencyDescriptor[] descriptors = this.injectablePropertiesCache.get(beanClass);
+        if (descriptors == null) {
+            List<DependencyDescriptor> result = new ArrayList<DependencyDescriptor>();
+            Class<?> targetClass = beanClass;
+            while (targetClass != null && targetClass != Object.class) {
+                for (Field field : targetClass.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers) && !field.isSynthetic() &&
+                            field.getType() != Object.class && !isSimpleProperty(field.getType())) {
+                        result.add(new DependencyDescriptor(field, beanClass, false));
+                    }
+                }
+                targetClass = targetClass.getSuperclass();
+            }
+            descriptors = result.toArray(new DependencyDescriptor[result.size()]);
+            this.injectablePropertiesCache.put(beanClass, descriptors);
+        }
+        return descriptors;
+    }
+
+    /**
+     * Check if the given type represents a "simple" property, i.e. a value rather than a reference to another bean.
+     */
+    private static boolean isSimpleProperty(Class<?> type) {
+        Class<?> valueType = (type.isArray() ? type.getComponentType() : type);
+        return (ClassUtils.isPrimitiveOrWrapper(valueType) || valueType.isEnum() ||
+                CharSequence.class.isAssignableFrom(valueType) || Number.class.isAssignableFrom(valueType) ||
+                Date.class.isAssignableFrom(valueType) || Class.class == valueType);
     }
 
     /**
@@ -431,13 +1045,22 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
 
             String propertyName = pv.getName();
             Object originalValue = pv.getValue();
-            Object resolvedValue = valueResolver.resolveValueIfNecessary(pv, originalValue);
             Field field = null;
             try {
                 field = bean.getClass().getDeclaredField(propertyName);
 
-                resolvedValue = ConvertUtils.convert(resolvedValue,
-                        bean.getClass().getDeclaredField(propertyName).getType());
+                Object resolvedValue = null;
+                if (originalValue instanceof RuntimeBeanReference) {
+                    String refName = ((RuntimeBeanReference) originalValue).getBeanName();
+                    resolvedValue = getLazyResolutionProxyIfNecessary(refName, field.getType());
+                    if (resolvedValue != null) {
+                        registerDependentBean(refName, beanName);
+                    }
+                }
+                if (resolvedValue == null) {
+                    resolvedValue = valueResolver.resolveValueIfNecessary(pv, originalValue);
+                }
+                resolvedValue = ConvertUtils.convert(resolvedValue, field.getType());
                 field.setAccessible(true);
                 field.set(bean, resolvedValue);
             } catch (NoSuchFieldException e) {
@@ -475,10 +1098,7 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
      */
     protected Object initializeBean(final String beanName, final Object bean, RootBeanDefinition mbd) {
 
-        Object wrappedBean = bean;
-        if (mbd == null) {
-            wrappedBean = applyBeanPostProcessorsBeforeInitialization(wrappedBean, beanName);
-        }
+        Object wrappedBean = applyBeanPostProcessorsBeforeInitialization(bean, beanName);
 
         try {
             invokeInitMethods(beanName, wrappedBean, mbd);
@@ -487,10 +1107,7 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
                     beanName, "Invocation of init method failed", ex);
         }
 
-        if (mbd == null) {
-            wrappedBean = applyBeanPostProcessorsAfterInitialization(wrappedBean, beanName);
-        }
-        return wrappedBean;
+        return applyBeanPostProcessorsAfterInitialization(wrappedBean, beanName);
     }
 
     /**
@@ -509,21 +1126,131 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
      *             if thrown by init methods or by the invocation process
      * @see #invokeCustomInitMethod
      */
-    protected void invokeInitMethods(String beanName, final Object bean, RootBeanDefinition mbd)
+    protected void invokeInitMethods(final String beanName, final Object bean, final RootBeanDefinition mbd)
             throws Throwable {
 
         boolean isInitializingBean = (bean instanceof InitializingBean);
-        if (isInitializingBean && (mbd == null)) {
+        if (isInitializingBean) {
             logger.info("Invoking afterPropertiesSet() on bean with name '" + beanName + "'");
             ((InitializingBean) bean).afterPropertiesSet();
         }
 
+        boolean asyncInitMethod = false;
         if (mbd != null) {
             String initMethodName = mbd.getInitMethodName();
             if (initMethodName != null && !(isInitializingBean && "afterPropertiesSet".equals(initMethodName))) {
-                invokeCustomInitMethod(beanName, bean, mbd);
+                Method initMethod = mbd.resolveInitMethod(bean.getClass());
+                asyncInitMethod = CompletionStage.class.isAssignableFrom(initMethod.getReturnType());
+                if (!asyncInitMethod) {
+                    invokeCustomInitMethod(beanName, bean, mbd);
+                }
             }
         }
+
+        CompletableFuture<Void> dependenciesInitialized = getDependenciesInitializationFuture(beanName);
+        if (dependenciesInitialized == null && !(bean instanceof AsyncInitializingBean) && !asyncInitMethod) {
+            return;
+        }
+        if (dependenciesInitialized == null) {
+            dependenciesInitialized = CompletableFuture.completedFuture(null);
+        }
+        final boolean invokeAsyncInitMethod = asyncInitMethod;
+        CompletableFuture<Void> initialized = dependenciesInitialized.thenCompose(ignored -> {
+            CompletableFuture<Void> stage = CompletableFuture.completedFuture(null);
+            if (bean instanceof AsyncInitializingBean) {
+                stage = stage.thenCompose(previous -> invokeAsyncInitMethod(() -> {
+                    logger.info("Invoking afterPropertiesSetAsync() on bean with name '" + beanName + "'");
+                    return ((AsyncInitializingBean) bean).afterPropertiesSetAsync();
+                }));
+            }
+            if (invokeAsyncInitMethod) {
+                stage = stage.thenCompose(previous -> invokeAsyncInitMethod(
+                        () -> (CompletionStage<?>) invokeCustomInitMethod(beanName, bean, mbd)));
+            }
+            return stage;
+        });
+        registerInitializationFuture(beanName, initialized, mbd);
+    }
+
+    /**
+     * Return a future for the pending asynchronous initialization of the beans the given bean depends on, or
+     * {@code null} if there is none. Asynchronous init methods of the bean are deferred until this future has completed.
+     */
+    protected CompletableFuture<Void> getDependenciesInitializationFuture(String beanName) {
+        if (this.initializationFutures.isEmpty()) {
+            return null;
+        }
+        List<CompletableFuture<Void>> pending = null;
+        for (String dependency : getDependenciesForBean(beanName)) {
+            CompletableFuture<Void> future = this.initializationFutures.get(dependency);
+            if (future != null) {
+                if (pending == null) {
+                    pending = new ArrayList<CompletableFuture<Void>>(4);
+                }
+                pending.add(future);
+            }
+        }
+        if (pending == null) {
+            return null;
+        }
+        return (pending.size() == 1 ? pending.get(0) :
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[pending.size()])));
+    }
+
+    /**
+     * Keep the given initialization future of a singleton until it has completed successfully, so that dependent beans
+     * and {@link #getInitializationFuture} can wait for it. The future of a non-singleton instance is handed to the
+     * {@link #getBeanAsync} request creating it, if any. Failures are kept and reported as {@link
+     * BeanCreationException}.
+     */
+    private void registerInitializationFuture(final String beanName, CompletableFuture<Void> initialized,
+            RootBeanDefinition mbd) {
+        boolean singleton = (mbd != null && mbd.isSingleton());
+        if (singleton && initialized.isDone() && !initialized.isCompletedExceptionally()) {
+            return;
+        }
+        final CompletableFuture<Void> future = new CompletableFuture<Void>();
+        if (singleton) {
+            this.initializationFutures.put(beanName, future);
+        } else {
+            Map<String, CompletableFuture<Void>> created = this.instanceInitializationFutures.get();
+            if (created != null) {
+                created.put(beanName, future);
+            }
+        }
+        initialized.whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                Throwable cause = unwrapCompletionException(ex);
+                if (!singleton) {
+                    logger.error("Asynchronous initialization of bean '" + beanName + "' failed", cause);
+                }
+                future.completeExceptionally(cause instanceof BeanCreationException ? cause :
+                        new BeanCreationException(beanName, "Asynchronous initialization failed", cause));
+            } else {
+                this.initializationFutures.remove(beanName, future);
+                future.complete(null);
+            }
+        });
+    }
+
+    private static CompletableFuture<Void> invokeAsyncInitMethod(AsyncInitMethod initMethod) {
+        try {
+            CompletionStage<?> stage = initMethod.invoke();
+            if (stage == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return stage.toCompletableFuture().thenApply(result -> (Void) null);
+        } catch (Throwable ex) {
+            return failedFuture(ex);
+        }
+    }
+
+    /**
+     * An init method returning a stage, that may throw anything the reflective invocation throws.
+     */
+    private interface AsyncInitMethod {
+
+        CompletionStage<?> invoke() throws Throwable;
     }
 
     /**
@@ -531,16 +1258,14 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
      * <p>
      * Can be overridden in subclasses for custom resolution of init methods with arguments.
      *
+     * @return the value returned by the init method, e.g. the {@link CompletionStage} of an asynchronous init method
      * @see #invokeInitMethods
      */
-    protected void invokeCustomInitMethod(String beanName, final Object bean, RootBeanDefinition mbd)
+    protected Object invokeCustomInitMethod(String beanName, final Object bean, RootBeanDefinition mbd)
             throws Throwable {
 
         String initMethodName = mbd.getInitMethodName();
-        final Method initMethod = bean.getClass().getMethod(initMethodName, null);
-        if (initMethod == null) {
-            return;
-        }
+        final Method initMethod = mbd.resolveInitMethod(bean.getClass());
 
         logger.info("Invoking init method  '" + initMethodName + "' on bean with name '" + beanName + "'");
 
@@ -552,10 +1277,9 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
                 }
             });
             try {
-                AccessController.doPrivileged(new PrivilegedExceptionAction<Object>() {
+                return AccessController.doPrivileged(new PrivilegedExceptionAction<Object>() {
                     public Object run() throws Exception {
-                        initMethod.invoke(bean);
-                        return null;
+                        return initMethod.invoke(bean);
                     }
                 }, null);
             } catch (PrivilegedActionException pae) {
@@ -565,7 +1289,7 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
         } else {
             try {
                 ReflectionUtils.makeAccessible(initMethod);
-                initMethod.invoke(bean);
+                return initMethod.invoke(bean);
             } catch (InvocationTargetException ex) {
                 throw ex.getTargetException();
             }
@@ -600,6 +1324,11 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
      * @see #autowireConstructor
      */
     protected Object createBeanInstance(String beanName, RootBeanDefinition mbd, Object[] args) {
+        Supplier<?> instanceSupplier = mbd.getInstanceSupplier();
+        if (instanceSupplier != null) {
+            return obtainFromSupplier(instanceSupplier, beanName);
+        }
+
         // Make sure bean class is actually resolved at this point.
         Class<?> beanClass = resolveBeanClass(mbd, beanName);
 
@@ -608,10 +1337,9 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
                     "Bean class isn't public, and non-public access not allowed: " + beanClass.getName());
         }
 
-        // TODO
-        // if (mbd.getFactoryMethodName() != null) {
-        // return instantiateUsingFactoryMethod(beanName, mbd, args);
-        // }else
+        if (mbd.getFactoryMethodName() != null) {
+            return instantiateUsingFactoryMethod(beanName, mbd, args);
+        }
 
         if (mbd.getResolvedAutowireMode() == RootBeanDefinition.AUTOWIRE_CONSTRUCTOR ||
                 mbd.hasConstructorArgumentValues()) {
@@ -622,6 +1350,30 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
         }
     }
 
+    /**
+     * Obtain a bean instance from the given supplier, without any reflective instantiation.
+     *
+     * @param instanceSupplier
+     *            the configured supplier
+     * @param beanName
+     *            the corresponding bean name
+     * @return the supplied bean instance
+     */
+    protected Object obtainFromSupplier(Supplier<?> instanceSupplier, String beanName) {
+        Object instance;
+        try {
+            instance = instanceSupplier.get();
+        } catch (BeansException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            throw new BeanCreationException(beanName, "Instance supplier threw exception", ex);
+        }
+        if (instance == null) {
+            throw new BeanCreationException(beanName, "Instance supplier returned null");
+        }
+        return instance;
+    }
+
     private Object instantiateBeanUsingNoArgs(String beanName, RootBeanDefinition mbd) {
         return this.constructorResolver.instantiateBeanUsingNoArgs(beanName, mbd);
     }
@@ -675,6 +1427,9 @@ public abstract class AbstractBeanFactory extends DefaultSingletonBeanRegistry {
      * @return the type for the bean if determinable, or {@code null} otherwise
      */
     protected Class<?> determineTargetType(String beanName, RootBeanDefinition mbd, Class<?>... typesToMatch) {
+        if (mbd.getFactoryMethodName() != null) {
+            return this.constructorResolver.getTypeForFactoryMethod(beanName, mbd);
+        }
         Class<?> targetType = resolveBeanClass(mbd, beanName, typesToMatch);
         return targetType;
     }
@@ -0,0 +1,27 @@
+package com.maomao2.spring.beans.creation;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Interface to be implemented by beans whose initialization is I/O bound, e.g. warming a cache or opening connections.
+ * The BeanFactory invokes {@link #afterPropertiesSetAsync} once the asynchronous initialization of all beans this bean
+ * depends on has completed, without blocking the creating thread; an application context only finishes its refresh
+ * once the returned stage has completed.
+ * <p>
+ * A custom init method declared to return a {@link CompletionStage} is treated the same way.
+ *
+ * @see InitializingBean
+ * @see AbstractBeanFactory#getInitializationFuture
+ */
+public interface AsyncInitializingBean {
+
+  /**
+   * Invoked by the BeanFactory after it has set all bean properties, and after {@link
+   * InitializingBean#afterPropertiesSet} if implemented as well.
+   *
+   * @return a stage that completes once the bean is ready for use, or {@code null} if it is ready already
+   * @throws Exception if initialization cannot be started
+   */
+  CompletionStage<?> afterPropertiesSetAsync() throws Exception;
+
+}
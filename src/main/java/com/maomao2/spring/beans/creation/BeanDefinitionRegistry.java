@@ -1,5 +1,8 @@
 package com.maomao2.spring.beans.creation;
 
+import java.util.Collection;
+import java.util.Map;
+
 import com.maomao2.spring.beans.definition.BeanDefinition;
 import com.maomao2.spring.beans.definition.RootBeanDefinition;
 import com.maomao2.spring.exception.BeanDefinitionStoreException;
@@ -17,6 +20,22 @@ public interface BeanDefinitionRegistry {
    */
   void registerBeanDefinition(String beanName, BeanDefinition beanDefinition) throws BeanDefinitionStoreException;
 
+  /**
+   * Register all given bean definitions with this registry, in the iteration order of the given map.
+   * <p>
+   * The default implementation registers them one by one; registries should override this to register the whole batch
+   * at once.
+   *
+   * @param beanDefinitions the bean definitions to register, keyed by bean name
+   * @throws BeanDefinitionStoreException if any of the BeanDefinitions is invalid
+   */
+  default void registerBeanDefinitions(Map<String, ? extends BeanDefinition> beanDefinitions)
+      throws BeanDefinitionStoreException {
+    for (Map.Entry<String, ? extends BeanDefinition> entry : beanDefinitions.entrySet()) {
+      registerBeanDefinition(entry.getKey(), entry.getValue());
+    }
+  }
+
   /**
    * Remove the BeanDefinition for the given name.
    *
@@ -25,6 +44,23 @@ public interface BeanDefinitionRegistry {
    */
   void removeBeanDefinition(String beanName) throws NoSuchBeanDefinitionException;
 
+  /**
+   * Remove the BeanDefinitions for all given names, skipping names that are not registered.
+   *
+   * @param beanNames the names of the bean instances to remove
+   */
+  default void removeBeanDefinitions(Collection<String> beanNames) {
+    for (String beanName : beanNames) {
+      if (containsBeanDefinition(beanName)) {
+        try {
+          removeBeanDefinition(beanName);
+        } catch (NoSuchBeanDefinitionException ex) {
+          // Removed concurrently in the meantime - fine.
+        }
+      }
+    }
+  }
+
   /**
    * Return the BeanDefinition for the given bean name.
    *
@@ -4,6 +4,13 @@ import com.maomao2.spring.exception.BeansException;
 
 public interface BeanFactory {
 
+  /**
+   * Used to dereference a {@link FactoryBean} instance and distinguish it from beans <i>created</i> by the FactoryBean.
+   * For example, if the bean named {@code myJndiObject} is a FactoryBean, getting {@code &myJndiObject} will return
+   * the factory, not the instance returned by the factory.
+   */
+  String FACTORY_BEAN_PREFIX = "&";
+
   <T> T getBean(String name, Class<T> requiredType) throws BeansException;
 
   <T> T getBean(Class<T> requiredType) throws BeansException;
@@ -0,0 +1,47 @@
+package com.maomao2.spring.beans.creation;
+
+/**
+ * {@link ObjectProvider} for a named bean. Obtains the bean straight from the factory on every call, without going
+ * through property value resolution; an existing singleton is taken from the singleton cache, and for a FactoryBean
+ * its (cached) product is returned rather than the factory itself.
+ *
+ * @param <T> the bean type
+ */
+class BeanObjectProvider<T> implements ObjectProvider<T> {
+
+  private final AbstractBeanFactory beanFactory;
+
+  private final String beanName;
+
+  /**
+   * The bean name without factory dereference prefix, as used by the singleton cache
+   */
+  private final String canonicalName;
+
+  BeanObjectProvider(AbstractBeanFactory beanFactory, String beanName) {
+    this.beanFactory = beanFactory;
+    this.beanName = beanName;
+    this.canonicalName = beanFactory.transformedBeanName(beanName);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T getObject() {
+    Object sharedInstance = this.beanFactory.getSingleton(this.canonicalName);
+    if (sharedInstance != null) {
+      return (T) this.beanFactory.getObjectForBeanInstance(sharedInstance, this.beanName, this.canonicalName, null);
+    }
+    return (T) this.beanFactory.getBean(this.beanName);
+  }
+
+  @Override
+  public T getIfAvailable() {
+    return (this.beanFactory.containsBeanDefinition(this.canonicalName) ? getObject() : null);
+  }
+
+  @Override
+  public String toString() {
+    return "ObjectProvider for bean '" + this.beanName + "'";
+  }
+
+}
@@ -0,0 +1,67 @@
+package com.maomao2.spring.beans.creation;
+
+/**
+ * Captures the destruction callback that the bean factory registers while a scope creates an instance, for scopes that
+ * keep the callback with the instance rather than by bean name. Nested creations on the same thread, e.g. of a
+ * dependency in the same scope, each capture their own callback.
+ */
+final class CreationCallbacks {
+
+  /**
+   * Callback holder of the instance being created by the current thread, if any
+   */
+  private final ThreadLocal<Runnable[]> current = new ThreadLocal<Runnable[]>();
+
+  /**
+   * Obtain a new instance from the given factory, capturing the destruction callback registered meanwhile.
+   *
+   * @param objectFactory the factory to create the instance with
+   * @return the instance along with its destruction callback, if any
+   */
+  Created create(ObjectFactory<?> objectFactory) {
+    Runnable[] previous = this.current.get();
+    Runnable[] holder = new Runnable[1];
+    this.current.set(holder);
+    try {
+      Object object = objectFactory.getObject();
+      return new Created(object, holder[0]);
+    } finally {
+      if (previous != null) {
+        this.current.set(previous);
+      } else {
+        this.current.remove();
+      }
+    }
+  }
+
+  /**
+   * Attach the given destruction callback to the instance that is being created by the current thread.
+   *
+   * @param name the name of the bean
+   * @param callback the destruction callback
+   * @throws IllegalStateException if the current thread is not creating an instance
+   */
+  void register(String name, Runnable callback) {
+    Runnable[] holder = this.current.get();
+    if (holder == null) {
+      throw new IllegalStateException("Destruction callbacks can only be registered while creating '" + name + "'");
+    }
+    holder[0] = callback;
+  }
+
+  /**
+   * A newly created instance and its destruction callback.
+   */
+  static final class Created {
+
+    final Object object;
+
+    final Runnable destructionCallback;
+
+    Created(Object object, Runnable destructionCallback) {
+      this.object = object;
+      this.destructionCallback = destructionCallback;
+    }
+  }
+
+}
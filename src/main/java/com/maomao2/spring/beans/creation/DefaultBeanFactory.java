@@ -1,17 +1,30 @@
 package com.maomao2.spring.beans.creation;
 
+import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
+import com.maomao2.spring.beans.definition.AbstractBeanDefinition;
 import com.maomao2.spring.beans.definition.BeanDefinition;
+import com.maomao2.spring.beans.definition.RootBeanDefinition;
 import com.maomao2.spring.beans.parsing.XmlBeanDefinitionReader;
 import com.maomao2.spring.exception.BeanDefinitionStoreException;
 import com.maomao2.spring.exception.BeansException;
+import com.maomao2.spring.exception.CannotLoadBeanClassException;
 import com.maomao2.spring.exception.NoSuchBeanDefinitionException;
+import com.maomao2.spring.exception.NoUniqueBeanDefinitionException;
+import com.maomao2.spring.util.ResolvableType;
 import com.maomao2.spring.util.StringUtils;
 
 public class DefaultBeanFactory extends AbstractBeanFactory implements ConfigureBeanFactory, BeanDefinitionRegistry {
@@ -24,9 +37,35 @@ public class DefaultBeanFactory extends AbstractBeanFactory implements Configure
   private final Map<String, BeanDefinition> beanDefinitionMap = new ConcurrentHashMap<String, BeanDefinition>(256);
 
   /**
-   * List of bean definition names, in registration order
+   * Bean definition names in registration order, guarded by the beanDefinitionMap lock
    */
-  private volatile List<String> beanDefinitionNames = new ArrayList<String>(256);
+  private final Set<String> beanDefinitionNames = new LinkedHashSet<String>(256);
+
+  /**
+   * Names of the child bean definitions of each parent name, as immutable sets replaced under the beanDefinitionMap
+   * lock; read without locking
+   */
+  private final Map<String, Set<String>> childBeanDefinitionNames = new ConcurrentHashMap<String, Set<String>>(16);
+
+  /**
+   * Incremented under the beanDefinitionMap lock after every change to the registered bean definitions
+   */
+  private final AtomicLong registryVersion = new AtomicLong();
+
+  /**
+   * Whether bean definition metadata may be cached for all beans
+   */
+  private volatile boolean configurationFrozen = false;
+
+  /**
+   * Cached array of bean definition names, valid as long as its version matches registryVersion
+   */
+  private volatile NamesSnapshot beanDefinitionNamesSnapshot;
+
+  /**
+   * By-type lookups and resolved autowire candidates, valid as long as its version matches registryVersion
+   */
+  private volatile CandidateIndex candidateIndex;
 
 
   @Override
@@ -36,28 +75,139 @@ public class DefaultBeanFactory extends AbstractBeanFactory implements Configure
 
   @Override
   public <T> T getBean(Class<T> requiredType) throws BeansException {
-    return super.getBean(null, requiredType);
+    List<String> candidateNames = Arrays.asList(getBeanNamesForType(requiredType));
+    if (candidateNames.isEmpty()) {
+      throw new NoSuchBeanDefinitionException(requiredType, "expected single matching bean but found none");
+    }
+    String beanName = (candidateNames.size() == 1 ? candidateNames.get(0) :
+        determinePrimaryCandidate(candidateNames, requiredType));
+    if (beanName == null) {
+      throw new NoUniqueBeanDefinitionException(requiredType, candidateNames);
+    }
+    return super.getBean(beanName, requiredType);
   }
 
+  /**
+   * Register the given bean definition. The definition map, the registration order and the parent index are updated
+   * together under a short registry lock; no user code runs while it is held.
+   */
   @Override
   public void registerBeanDefinition(String beanName, BeanDefinition beanDefinition)
       throws BeanDefinitionStoreException {
-    BeanDefinition oldBeanDefinition = this.beanDefinitionMap.get(beanName);
+    BeanDefinition oldBeanDefinition;
+    synchronized (this.beanDefinitionMap) {
+      oldBeanDefinition = this.beanDefinitionMap.put(beanName, beanDefinition);
+      if (oldBeanDefinition == null) {
+        this.beanDefinitionNames.add(beanName);
+      }
+      updateChildIndex(beanName, oldBeanDefinition, beanDefinition);
+      this.registryVersion.incrementAndGet();
+    }
     if (oldBeanDefinition != null) {
       if (!oldBeanDefinition.equals(beanDefinition)) {
         this.logger.error("Overriding bean definition for bean '" + beanName +
             "' with a different definition: replacing [" + oldBeanDefinition +
             "] with [" + beanDefinition + "]");
       }
+      resetBeanDefinition(beanName);
     }
+  }
 
-    this.beanDefinitionMap.put(beanName, beanDefinition);
-    this.beanDefinitionNames.add(beanName);
+  /**
+   * Register all given bean definitions at once: the registry lock is taken a single time, the definition map is filled
+   * with a single putAll and the bean definition names snapshot is invalidated once for the whole batch.
+   */
+  @Override
+  public void registerBeanDefinitions(Map<String, ? extends BeanDefinition> beanDefinitions)
+      throws BeanDefinitionStoreException {
+    List<String> overriddenNames = null;
+    synchronized (this.beanDefinitionMap) {
+      for (Map.Entry<String, ? extends BeanDefinition> entry : beanDefinitions.entrySet()) {
+        BeanDefinition oldBeanDefinition = this.beanDefinitionMap.get(entry.getKey());
+        if (oldBeanDefinition != null) {
+          if (overriddenNames == null) {
+            overriddenNames = new ArrayList<String>();
+          }
+          overriddenNames.add(entry.getKey());
+        }
+        updateChildIndex(entry.getKey(), oldBeanDefinition, entry.getValue());
+      }
+      this.beanDefinitionMap.putAll(beanDefinitions);
+      this.beanDefinitionNames.addAll(beanDefinitions.keySet());
+      this.registryVersion.incrementAndGet();
+    }
+    if (overriddenNames != null) {
+      for (String beanName : overriddenNames) {
+        this.logger.error("Overriding bean definition for bean '" + beanName + "' in batch registration");
+        resetBeanDefinition(beanName);
+      }
+    }
   }
 
+  /**
+   * Remove the given bean definition, destroying its singleton (and the singletons depending on it) and dropping all
+   * caches held for it.
+   */
   @Override
   public void removeBeanDefinition(String beanName) throws NoSuchBeanDefinitionException {
-    this.beanDefinitionMap.remove(beanName);
+    synchronized (this.beanDefinitionMap) {
+      BeanDefinition removed = this.beanDefinitionMap.remove(beanName);
+      if (removed == null) {
+        throw new NoSuchBeanDefinitionException(beanName);
+      }
+      this.beanDefinitionNames.remove(beanName);
+      updateChildIndex(beanName, removed, null);
+      this.registryVersion.incrementAndGet();
+    }
+    resetBeanDefinition(beanName);
+  }
+
+  /**
+   * Move the given bean from the children of its old parent to those of its new parent. Must be called with the
+   * beanDefinitionMap lock held.
+   */
+  private void updateChildIndex(String beanName, BeanDefinition oldBeanDefinition, BeanDefinition newBeanDefinition) {
+    String oldParentName = (oldBeanDefinition != null ? oldBeanDefinition.getParentName() : null);
+    String newParentName = (newBeanDefinition != null ? newBeanDefinition.getParentName() : null);
+    if (oldParentName != null && !oldParentName.equals(newParentName)) {
+      Set<String> children = new LinkedHashSet<String>(this.childBeanDefinitionNames.get(oldParentName));
+      children.remove(beanName);
+      if (children.isEmpty()) {
+        this.childBeanDefinitionNames.remove(oldParentName);
+      } else {
+        this.childBeanDefinitionNames.put(oldParentName, Collections.unmodifiableSet(children));
+      }
+    }
+    if (newParentName != null && !newParentName.equals(oldParentName)) {
+      Set<String> existing = this.childBeanDefinitionNames.get(newParentName);
+      Set<String> children = (existing != null ? new LinkedHashSet<String>(existing) : new LinkedHashSet<String>(4));
+      children.add(beanName);
+      this.childBeanDefinitionNames.put(newParentName, Collections.unmodifiableSet(children));
+    }
+  }
+
+  /**
+   * Reset all bean definition caches for the given bean, including the caches of beans that are derived from it, and
+   * destroy its singleton if already created.
+   *
+   * @param beanName the name of the bean to reset
+   */
+  protected void resetBeanDefinition(String beanName) {
+    // Remove the merged bean definition for the given bean, if already created.
+    clearMergedBeanDefinition(beanName);
+
+    // Remove corresponding bean from singleton cache, if any, together with its dependents and dependency edges.
+    destroySingleton(beanName);
+
+    // Reset all bean definitions that have the given bean as parent (recursively).
+    Set<String> children = this.childBeanDefinitionNames.get(beanName);
+    if (children != null) {
+      for (String childName : children) {
+        if (!beanName.equals(childName)) {
+          resetBeanDefinition(childName);
+        }
+      }
+    }
   }
 
   public boolean containsBeanDefinition(String beanName) {
@@ -65,8 +215,375 @@ public class DefaultBeanFactory extends AbstractBeanFactory implements Configure
   }
 
   public String[] getBeanDefinitionNames() {
+    NamesSnapshot snapshot = this.beanDefinitionNamesSnapshot;
+    if (snapshot == null || snapshot.version != this.registryVersion.get()) {
+      synchronized (this.beanDefinitionMap) {
+        snapshot = new NamesSnapshot(this.registryVersion.get(),
+            this.beanDefinitionNames.toArray(new String[this.beanDefinitionNames.size()]));
+      }
+      this.beanDefinitionNamesSnapshot = snapshot;
+    }
+    return snapshot.names.clone();
+  }
+
+  /**
+   * Freeze all bean definitions, signalling that the registered bean definitions will not be modified or post-processed
+   * any further. Compacts each definition.
+   *
+   * @see AbstractBeanDefinition#freeze()
+   */
+  public void freezeConfiguration() {
+    this.configurationFrozen = true;
+    for (BeanDefinition bd : this.beanDefinitionMap.values()) {
+      if (bd instanceof AbstractBeanDefinition) {
+        ((AbstractBeanDefinition) bd).freeze();
+      }
+    }
+  }
+
+  /**
+   * Return whether the bean definitions have been frozen.
+   */
+  public boolean isConfigurationFrozen() {
+    return this.configurationFrozen;
+  }
+
+  /**
+   * Create all non-abstract singletons that are not marked lazy-init, in registration order. Lazy-init singletons they
+   * depend on through an interface are injected as lazy-resolution proxies and are not created here.
+   *
+   * @throws BeansException if one of the singletons could not be created
+   */
+  public void preInstantiateSingletons() throws BeansException {
+    for (String beanName : getBeanDefinitionNames()) {
+      RootBeanDefinition mbd = getMergedBeanDefinition(beanName);
+      if (!mbd.isAbstract() && mbd.isSingleton() && !mbd.isLazyInit()) {
+        getBean(beanName);
+      }
+    }
+  }
+
+  /**
+   * Return the names of the non-abstract beans whose class matches the given type (including subclasses), in
+   * registration order. The result is cached until the next change to the registered bean definitions.
+   *
+   * @param type the class or interface to match
+   * @return the names of the matching beans, or an empty array if none
+   */
+  public String[] getBeanNamesForType(Class<?> type) {
+    CandidateIndex index = getCandidateIndex();
+    String[] beanNames = index.beanNamesByType.get(type);
+    if (beanNames == null) {
+      beanNames = doGetBeanNamesForType(type);
+      index.beanNamesByType.put(type, beanNames);
+    }
+    return beanNames;
+  }
+
+  /**
+   * Return the names of the non-abstract beans that match the given generic type, e.g. only the {@code
+   * Repository<Order>} implementations among all {@code Repository} beans. The result is cached until the next change
+   * to the registered bean definitions.
+   *
+   * @param type the generically typed class or interface to match
+   * @return the names of the matching beans, or an empty array if none
+   */
+  public String[] getBeanNamesForType(ResolvableType type) {
+    if (!type.hasGenerics()) {
+      return getBeanNamesForType(type.resolve());
+    }
+    CandidateIndex index = getCandidateIndex();
+    String[] beanNames = index.beanNamesByGenericType.get(type);
+    if (beanNames == null) {
+      List<String> result = new ArrayList<String>();
+      for (String beanName : getBeanNamesForType(type.resolve())) {
+        try {
+          // Bean types have been determined by the raw type lookup already
+          Class<?> beanClass = getType(beanName);
+          if (type.isAssignableFrom(ResolvableType.forClass(beanClass))) {
+            result.add(beanName);
+          }
+        } catch (NoSuchBeanDefinitionException ex) {
+          // Removed concurrently in the meantime - skip it.
+        }
+      }
+      beanNames = StringUtils.toStringArray(result);
+      index.beanNamesByGenericType.put(type, beanNames);
+    }
+    return beanNames;
+  }
+
+  private String[] doGetBeanNamesForType(Class<?> type) {
+    List<String> result = new ArrayList<String>();
+    for (String beanName : getBeanDefinitionNames()) {
+      try {
+        RootBeanDefinition mbd = getMergedBeanDefinition(beanName);
+        if (!mbd.isAbstract()) {
+          Class<?> beanClass = determineTargetType(beanName, mbd);
+          if (beanClass != null && FactoryBean.class.isAssignableFrom(beanClass)) {
+            // Match the object the factory produces; the factory itself only under its '&' name
+            Class<?> objectType = getTypeForFactoryBean(beanName, mbd);
+            if (objectType != null && type.isAssignableFrom(objectType)) {
+              result.add(beanName);
+            } else if (type.isAssignableFrom(beanClass)) {
+              result.add(FACTORY_BEAN_PREFIX + beanName);
+            }
+          } else if (beanClass != null && type.isAssignableFrom(beanClass)) {
+            result.add(beanName);
+          }
+        }
+      } catch (NoSuchBeanDefinitionException ex) {
+        // Removed concurrently in the meantime - skip it.
+      } catch (CannotLoadBeanClassException ex) {
+        this.logger.error("Ignoring bean class loading failure for bean '" + beanName + "'", ex);
+      }
+    }
+    return StringUtils.toStringArray(result);
+  }
+
+  /**
+   * Resolve the given dependency to a single bean: candidates are the autowire candidates of the required type, and
+   * ties are broken by the {@code primary} flag, then by {@link Qualifier} and finally by matching the bean name
+   * against the field or parameter name. The resolved bean name is cached per injection point.
+   */
+  @Override
+  public Object resolveDependency(DependencyDescriptor descriptor, String requestingBeanName) throws BeansException {
+    Object multipleBeans = resolveMultipleBeans(descriptor, requestingBeanName);
+    if (multipleBeans != null) {
+      return multipleBeans;
+    }
+    CandidateIndex index = getCandidateIndex();
+    Object candidate = index.resolvedCandidates.get(descriptor);
+    if (candidate == null) {
+      List<String> candidateNames = findAutowireCandidates(descriptor);
+      boolean selfReference = candidateNames.remove(requestingBeanName);
+      String candidateName = determineAutowireCandidate(candidateNames, descriptor);
+      candidate = (candidateName != null ? candidateName : NULL_OBJECT);
+      // The outcome depends on the requesting bean only if it excluded itself
+      if (!selfReference) {
+        index.resolvedCandidates.put(descriptor, candidate);
+      }
+    }
+    if (candidate == NULL_OBJECT) {
+      if (descriptor.isRequired()) {
+        throw new NoSuchBeanDefinitionException(descriptor.getDependencyType(),
+            "expected at least 1 bean which qualifies as autowire candidate for " + descriptor);
+      }
+      return null;
+    }
+    String candidateName = (String) candidate;
+    Object bean = getLazyResolutionProxyIfNecessary(candidateName, descriptor.getDependencyType());
+    if (bean == null) {
+      bean = getBean(candidateName);
+    }
+    if (requestingBeanName != null) {
+      registerDependentBean(transformedBeanName(candidateName), requestingBeanName);
+    }
+    return bean;
+  }
+
+  /**
+   * Resolve an array, {@code Collection}, {@code List}, {@code Set} or {@code Map<String, ?>} dependency to all autowire
+   * candidates of its element type, in registration order.
+   *
+   * @return the matching beans, or {@code null} if the dependency is not of a multiple-bean type or nothing matches
+   */
+  private Object resolveMultipleBeans(DependencyDescriptor descriptor, String requestingBeanName) {
+    Class<?> type = descriptor.getDependencyType();
+    Class<?> elementType = null;
+    if (type.isArray()) {
+      elementType = type.getComponentType();
+    } else if (Collection.class.isAssignableFrom(type) && type.isInterface()) {
+      ResolvableType[] generics = descriptor.getResolvableType().as(Collection.class).getGenerics();
+      elementType = (generics.length == 1 ? generics[0].resolve() : null);
+    } else if (Map.class == type) {
+      ResolvableType[] generics = descriptor.getResolvableType().as(Map.class).getGenerics();
+      if (generics.length == 2 && String.class == generics[0].resolve()) {
+        elementType = generics[1].resolve();
+      }
+    }
+    if (elementType == null) {
+      return null;
+    }
+    MatchingBeans matchingBeans = getMatchingBeans(elementType, true, requestingBeanName);
+    if (matchingBeans.beans.isEmpty()) {
+      return null;
+    }
+    if (requestingBeanName != null) {
+      for (String candidateName : matchingBeans.beans.keySet()) {
+        registerDependentBean(transformedBeanName(candidateName), requestingBeanName);
+      }
+    }
+    if (type.isArray()) {
+      Object[] result = (Object[]) Array.newInstance(elementType, matchingBeans.beanList.size());
+      return matchingBeans.beanList.toArray(result);
+    } else if (Map.class == type) {
+      return matchingBeans.beans;
+    } else if (Set.class.isAssignableFrom(type)) {
+      return Collections.unmodifiableSet(new LinkedHashSet<Object>(matchingBeans.beanList));
+    }
+    return matchingBeans.beanList;
+  }
 
-    return StringUtils.toStringArray(this.beanDefinitionNames);
+  /**
+   * Return the beans matching the given type (including subclasses and the objects created by FactoryBeans), keyed by
+   * bean name in registration order. The returned map is unmodifiable.
+   *
+   * @param type the class or interface to match
+   * @return the matching beans, or an empty map if none
+   * @throws BeansException if one of the beans could not be created
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Map<String, T> getBeansOfType(Class<T> type) throws BeansException {
+    return (Map<String, T>) getMatchingBeans(type, false, null).beans;
+  }
+
+  /**
+   * Obtain the beans matching the given type. If all of them are singletons (and no FactoryBean among them creates a
+   * new object per call), the result is cached until one of the singletons is destroyed or the registered bean
+   * definitions change, so repeated lookups hand out the same map and list without creating a new collection.
+   *
+   * @param autowireCandidatesOnly whether to skip beans that are not autowire candidates
+   * @param requestingBeanName the bean to exclude from the result, or {@code null} if none
+   */
+  private MatchingBeans getMatchingBeans(Class<?> type, boolean autowireCandidatesOnly, String requestingBeanName) {
+    CandidateIndex index = getCandidateIndex();
+    Map<Class<?>, MatchingBeans> cache = (autowireCandidatesOnly ? index.autowireCandidatesByType : index.beansOfType);
+    MatchingBeans matchingBeans = cache.get(type);
+    if (matchingBeans != null &&
+        (requestingBeanName == null || !matchingBeans.beans.containsKey(requestingBeanName))) {
+      return matchingBeans;
+    }
+    String[] candidateNames = getBeanNamesForType(type);
+    Map<String, Object> beans = new LinkedHashMap<String, Object>((int) (candidateNames.length / 0.75f) + 1);
+    boolean cacheable = true;
+    for (String candidateName : candidateNames) {
+      if (candidateName.equals(requestingBeanName)) {
+        // The outcome depends on the requesting bean now
+        cacheable = false;
+        continue;
+      }
+      if (autowireCandidatesOnly) {
+        BeanDefinition bd = this.beanDefinitionMap.get(transformedBeanName(candidateName));
+        if (bd == null || !bd.isAutowireCandidate()) {
+          continue;
+        }
+      }
+      beans.put(candidateName, getBean(candidateName));
+      cacheable = cacheable && isSingletonObject(candidateName);
+    }
+    matchingBeans = new MatchingBeans(beans);
+    if (cacheable) {
+      cache.put(type, matchingBeans);
+    }
+    return matchingBeans;
+  }
+
+  /**
+   * Determine whether the given name refers to a singleton, i.e. whether getBean would keep returning the same object.
+   */
+  private boolean isSingletonObject(String name) {
+    String beanName = transformedBeanName(name);
+    if (!getMergedBeanDefinition(beanName).isSingleton()) {
+      return false;
+    }
+    if (isFactoryDereference(name)) {
+      return true;
+    }
+    Object beanInstance = getSingleton(beanName);
+    return (!(beanInstance instanceof FactoryBean) || ((FactoryBean<?>) beanInstance).isSingleton());
+  }
+
+  /**
+   * Overridden to drop the cached matching beans as well.
+   */
+  @Override
+  public void destroySingleton(String beanName) {
+    super.destroySingleton(beanName);
+    clearMatchingBeans();
+  }
+
+  /**
+   * Overridden to drop the cached matching beans as well.
+   */
+  @Override
+  public void destroySingletons() {
+    super.destroySingletons();
+    clearMatchingBeans();
+  }
+
+  private void clearMatchingBeans() {
+    CandidateIndex index = this.candidateIndex;
+    if (index != null) {
+      index.beansOfType.clear();
+      index.autowireCandidatesByType.clear();
+    }
+  }
+
+  /**
+   * Find the autowire candidates for the given dependency, narrowed down to matching qualifiers if the dependency
+   * declares one.
+   */
+  private List<String> findAutowireCandidates(DependencyDescriptor descriptor) {
+    String qualifier = descriptor.getQualifier();
+    List<String> candidateNames = new ArrayList<String>();
+    for (String beanName : getBeanNamesForType(descriptor.getResolvableType())) {
+      BeanDefinition bd = this.beanDefinitionMap.get(transformedBeanName(beanName));
+      if (bd != null && bd.isAutowireCandidate() && (qualifier == null || qualifier.equals(beanName) ||
+          (bd instanceof AbstractBeanDefinition && qualifier.equals(((AbstractBeanDefinition) bd).getQualifier())))) {
+        candidateNames.add(beanName);
+      }
+    }
+    return candidateNames;
+  }
+
+  private String determineAutowireCandidate(List<String> candidateNames, DependencyDescriptor descriptor) {
+    if (candidateNames.isEmpty()) {
+      return null;
+    }
+    if (candidateNames.size() == 1) {
+      return candidateNames.get(0);
+    }
+    String primaryCandidate = determinePrimaryCandidate(candidateNames, descriptor.getDependencyType());
+    if (primaryCandidate != null) {
+      return primaryCandidate;
+    }
+    // Fall back to matching the bean name against the field or parameter name
+    String dependencyName = descriptor.getDependencyName();
+    if (dependencyName != null && candidateNames.contains(dependencyName)) {
+      return dependencyName;
+    }
+    throw new NoUniqueBeanDefinitionException(descriptor.getDependencyType(), candidateNames);
+  }
+
+  /**
+   * Determine the primary candidate among the given candidates, if any.
+   *
+   * @return the name of the primary candidate, or {@code null} if none is marked as primary
+   * @throws NoUniqueBeanDefinitionException if more than one candidate is marked as primary
+   */
+  private String determinePrimaryCandidate(List<String> candidateNames, Class<?> requiredType) {
+    String primaryBeanName = null;
+    for (String candidateName : candidateNames) {
+      BeanDefinition bd = this.beanDefinitionMap.get(transformedBeanName(candidateName));
+      if (bd != null && bd.isPrimary()) {
+        if (primaryBeanName != null) {
+          throw new NoUniqueBeanDefinitionException(requiredType, candidateNames);
+        }
+        primaryBeanName = candidateName;
+      }
+    }
+    return primaryBeanName;
+  }
+
+  private CandidateIndex getCandidateIndex() {
+    long version = this.registryVersion.get();
+    CandidateIndex index = this.candidateIndex;
+    if (index == null || index.version != version) {
+      index = new CandidateIndex(version);
+      this.candidateIndex = index;
+    }
+    return index;
   }
 
   public int getBeanDefinitionCount() {
@@ -84,4 +601,63 @@ public class DefaultBeanFactory extends AbstractBeanFactory implements Configure
     }
     return bd;
   }
+
+  /**
+   * By-type bean name lookups and resolved autowire candidates as of a given registry version.
+   */
+  private static final class CandidateIndex {
+
+    final long version;
+
+    final Map<Class<?>, String[]> beanNamesByType = new ConcurrentHashMap<Class<?>, String[]>(64);
+
+    final Map<ResolvableType, String[]> beanNamesByGenericType = new ConcurrentHashMap<ResolvableType, String[]>(16);
+
+    /**
+     * Resolved bean name per injection point, or NULL_OBJECT if there is no candidate
+     */
+    final Map<DependencyDescriptor, Object> resolvedCandidates = new ConcurrentHashMap<DependencyDescriptor, Object>(64);
+
+    /**
+     * Matching beans per type, for {@link #getBeansOfType} and for multiple-bean dependencies respectively
+     */
+    final Map<Class<?>, MatchingBeans> beansOfType = new ConcurrentHashMap<Class<?>, MatchingBeans>(16);
+
+    final Map<Class<?>, MatchingBeans> autowireCandidatesByType = new ConcurrentHashMap<Class<?>, MatchingBeans>(16);
+
+    CandidateIndex(long version) {
+      this.version = version;
+    }
+  }
+
+  /**
+   * The beans matching a type, both keyed by bean name and as a precomputed list, in registration order.
+   */
+  private static final class MatchingBeans {
+
+    final Map<String, Object> beans;
+
+    final List<Object> beanList;
+
+    MatchingBeans(Map<String, Object> beans) {
+      this.beans = Collections.unmodifiableMap(beans);
+      this.beanList = Collections.unmodifiableList(Arrays.asList(beans.values().toArray()));
+    }
+  }
+
+  /**
+   * Bean definition names as of a given registry version. Names are built from the registration order at or after that
+   * version, so a snapshot is never older than its version claims.
+   */
+  private static final class NamesSnapshot {
+
+    final long version;
+
+    final String[] names;
+
+    NamesSnapshot(long version, String[] names) {
+      this.version = version;
+      this.names = names;
+    }
+  }
 }
@@ -1,9 +1,19 @@
 package com.maomao2.spring.beans.creation;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
 
 import com.maomao2.spring.exception.BeanCreationException;
 import com.maomao2.spring.exception.BeansException;
@@ -11,6 +21,8 @@ import com.maomao2.spring.util.Assert;
 
 public class DefaultSingletonBeanRegistry implements SingletonBeanRegistry {
 
+  private static final Logger logger = Logger.getLogger(DefaultSingletonBeanRegistry.class);
+
   protected static final Object NULL_OBJECT = new Object();
 
   /**
@@ -23,8 +35,41 @@ public class DefaultSingletonBeanRegistry implements SingletonBeanRegistry {
    */
   private final Set<String> registeredSingletons = new LinkedHashSet<String>(256);
 
+  /**
+   * Disposable bean instances: bean name --> disposable instance
+   */
+  private final Map<String, DisposableBean> disposableBeans = new LinkedHashMap<String, DisposableBean>();
+
+  /**
+   * Map between dependent bean names: bean name --> Set of dependent bean names
+   */
+  private final Map<String, Set<String>> dependentBeanMap = new ConcurrentHashMap<String, Set<String>>(64);
+
+  /**
+   * Map between depending bean names: bean name --> Set of bean names for the bean's dependencies
+   */
+  private final Map<String, Set<String>> dependenciesForBeanMap = new ConcurrentHashMap<String, Set<String>>(64);
+
+  /**
+   * Lock guarding mutation of the singleton caches. Only held for the cache updates themselves, never while user code
+   * runs.
+   */
+  private final Lock singletonLock = new ReentrantLock();
+
+  /**
+   * Creation locks per bean name, so that singletons are created in parallel and only requests for the same bean wait
+   * for each other. Not monitors, so a virtual thread blocking in an init method doesn't pin its carrier thread.
+   */
+  private final ConcurrentMap<String, CreationLock> creationLocks = new ConcurrentHashMap<String, CreationLock>(256);
+
+  /**
+   * The bean each thread is currently waiting to create, to detect threads waiting for each other in a cycle
+   */
+  private final ConcurrentMap<Thread, String> awaitedCreations = new ConcurrentHashMap<Thread, String>(16);
+
   public void registerSingleton(String beanName, Object singletonObject) {
-    synchronized (this.singletonObjects) {
+    this.singletonLock.lock();
+    try {
       Object oldObject = this.singletonObjects.get(beanName);
       if (oldObject != null) {
         throw new IllegalStateException("Could not register object [" + singletonObject +
@@ -32,6 +77,8 @@ public class DefaultSingletonBeanRegistry implements SingletonBeanRegistry {
       }
       this.singletonObjects.put(beanName, (singletonObject != null ? singletonObject : NULL_OBJECT));
       this.registeredSingletons.add(beanName);
+    } finally {
+      this.singletonLock.unlock();
     }
 
   }
@@ -52,8 +99,13 @@ public class DefaultSingletonBeanRegistry implements SingletonBeanRegistry {
    */
   public Object getSingleton(String beanName, ObjectFactory<?> singletonFactory) {
     Assert.notNull(beanName, "'beanName' must not be null");
-    synchronized (this.singletonObjects) {
-      Object singletonObject = this.singletonObjects.get(beanName);
+    Object singletonObject = this.singletonObjects.get(beanName);
+    if (singletonObject != null) {
+      return (singletonObject != NULL_OBJECT ? singletonObject : null);
+    }
+    Lock creationLock = lockCreation(beanName);
+    try {
+      singletonObject = this.singletonObjects.get(beanName);
       if (singletonObject == null) {
         boolean newSingleton = false;
         try {
@@ -77,7 +129,71 @@ public class DefaultSingletonBeanRegistry implements SingletonBeanRegistry {
         }
       }
       return (singletonObject != NULL_OBJECT ? singletonObject : null);
+    } finally {
+      creationLock.unlock();
+    }
+  }
+
+  /**
+   * Acquire the creation lock of the given bean, for subclasses that create further shared objects for that bean, such
+   * as the object of a FactoryBean. The caller must unlock the returned lock.
+   * <p>
+   * Creations of different beans only wait for each other along their dependencies. If threads end up waiting for each
+   * other in a cycle, which takes a circular dependency, the waiting creation fails instead of blocking forever.
+   *
+   * @param beanName the name of the bean
+   * @return the acquired lock
+   * @throws BeanCreationException if waiting would deadlock, or the thread is interrupted while waiting
+   */
+  protected final Lock lockCreation(String beanName) {
+    CreationLock lock = this.creationLocks.get(beanName);
+    if (lock == null) {
+      lock = this.creationLocks.computeIfAbsent(beanName, name -> new CreationLock());
+    }
+    if (lock.tryLock()) {
+      return lock;
     }
+    Thread currentThread = Thread.currentThread();
+    this.awaitedCreations.put(currentThread, beanName);
+    try {
+      while (!lock.tryLock(50, TimeUnit.MILLISECONDS)) {
+        if (isWaitingInCycle(currentThread, lock)) {
+          throw new BeanCreationException(beanName,
+              "Bean is being created by another thread that is waiting for this thread: circular dependency?");
+        }
+      }
+      return lock;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new BeanCreationException(beanName, "Interrupted while waiting for the bean to be created", ex);
+    } finally {
+      this.awaitedCreations.remove(currentThread);
+    }
+  }
+
+  /**
+   * Follow the owners of the creation locks that threads are waiting for, starting from the given lock, and return
+   * whether the chain leads back to the given thread.
+   */
+  private boolean isWaitingInCycle(Thread currentThread, CreationLock lock) {
+    Thread owner = lock.getOwner();
+    for (int i = 0; owner != null && i <= this.awaitedCreations.size(); i++) {
+      if (owner == currentThread) {
+        return true;
+      }
+      String awaited = this.awaitedCreations.get(owner);
+      CreationLock awaitedLock = (awaited != null ? this.creationLocks.get(awaited) : null);
+      owner = (awaitedLock != null ? awaitedLock.getOwner() : null);
+    }
+    return false;
+  }
+
+  /**
+   * Return the lock guarding mutation of the singleton caches, for subclasses that keep further caches which must be
+   * updated together with the singleton cache.
+   */
+  protected final Lock getSingletonLock() {
+    return this.singletonLock;
   }
 
   /**
@@ -89,9 +205,202 @@ public class DefaultSingletonBeanRegistry implements SingletonBeanRegistry {
    * @param singletonObject the singleton object
    */
   protected void addSingleton(String beanName, Object singletonObject) {
-    synchronized (this.singletonObjects) {
+    this.singletonLock.lock();
+    try {
       this.singletonObjects.put(beanName, (singletonObject != null ? singletonObject : NULL_OBJECT));
       this.registeredSingletons.add(beanName);
+    } finally {
+      this.singletonLock.unlock();
+    }
+  }
+
+  /**
+   * Remove the bean with the given name from the singleton cache of this factory.
+   *
+   * @param beanName the name of the bean
+   */
+  protected void removeSingleton(String beanName) {
+    this.singletonLock.lock();
+    try {
+      this.singletonObjects.remove(beanName);
+      this.registeredSingletons.remove(beanName);
+    } finally {
+      this.singletonLock.unlock();
+    }
+  }
+
+  /**
+   * Add the given bean to the list of disposable beans in this registry, to be destroyed together with its singleton.
+   *
+   * @param beanName the name of the bean
+   * @param bean the bean instance
+   */
+  public void registerDisposableBean(String beanName, DisposableBean bean) {
+    synchronized (this.disposableBeans) {
+      this.disposableBeans.put(beanName, bean);
+    }
+  }
+
+  /**
+   * Register a dependent bean for the given bean, to be destroyed before the given bean is destroyed.
+   *
+   * @param beanName the name of the bean
+   * @param dependentBeanName the name of the dependent bean
+   */
+  public void registerDependentBean(String beanName, String dependentBeanName) {
+    // A quick check for an existing entry upfront, avoiding synchronization...
+    Set<String> dependentBeans = this.dependentBeanMap.get(beanName);
+    if (dependentBeans != null && dependentBeans.contains(dependentBeanName)) {
+      return;
+    }
+
+    // No entry yet -> atomically replace the set with a copy containing the new name
+    addToSet(this.dependentBeanMap, beanName, dependentBeanName);
+    addToSet(this.dependenciesForBeanMap, dependentBeanName, beanName);
+  }
+
+  /**
+   * The sets in the dependency maps are immutable snapshots, replaced atomically per key: readers never lock, and no
+   * lock is held while user code runs.
+   */
+  private static void addToSet(Map<String, Set<String>> map, String key, final String value) {
+    map.compute(key, (name, existing) -> {
+      if (existing != null && existing.contains(value)) {
+        return existing;
+      }
+      Set<String> copy = (existing != null ? new LinkedHashSet<String>(existing) : new LinkedHashSet<String>(8));
+      copy.add(value);
+      return Collections.unmodifiableSet(copy);
+    });
+  }
+
+  private static void removeFromSet(Map<String, Set<String>> map, String key, final String value) {
+    map.computeIfPresent(key, (name, existing) -> {
+      if (!existing.contains(value)) {
+        return existing;
+      }
+      Set<String> copy = new LinkedHashSet<String>(existing);
+      copy.remove(value);
+      return (copy.isEmpty() ? null : Collections.unmodifiableSet(copy));
+    });
+  }
+
+  /**
+   * Determine whether the specified dependent bean has been registered as dependent on the given bean.
+   *
+   * @param beanName the name of the bean to check
+   * @param dependentBeanName the name of the dependent bean
+   */
+  protected boolean isDependent(String beanName, String dependentBeanName) {
+    Set<String> dependentBeans = this.dependentBeanMap.get(beanName);
+    return (dependentBeans != null && dependentBeans.contains(dependentBeanName));
+  }
+
+  /**
+   * Return the names of all beans which depend on the specified bean, if any.
+   *
+   * @param beanName the name of the bean
+   * @return the array of dependent bean names, or an empty array if none
+   */
+  public String[] getDependentBeans(String beanName) {
+    Set<String> dependentBeans = this.dependentBeanMap.get(beanName);
+    return (dependentBeans != null ? dependentBeans.toArray(new String[dependentBeans.size()]) : new String[0]);
+  }
+
+  /**
+   * Return the names of all beans which the specified bean depends on, if any.
+   *
+   * @param beanName the name of the bean
+   * @return the array of names of beans which the bean depends on, or an empty array if none
+   */
+  public String[] getDependenciesForBean(String beanName) {
+    Set<String> dependenciesForBean = this.dependenciesForBeanMap.get(beanName);
+    return (dependenciesForBean != null ? dependenciesForBean.toArray(new String[dependenciesForBean.size()]) :
+        new String[0]);
+  }
+
+  /**
+   * Destroy all singletons in this registry, in reverse order of registration.
+   */
+  public void destroySingletons() {
+    List<String> disposableBeanNames;
+    synchronized (this.disposableBeans) {
+      disposableBeanNames = new ArrayList<String>(this.disposableBeans.keySet());
+    }
+    for (int i = disposableBeanNames.size() - 1; i >= 0; i--) {
+      destroySingleton(disposableBeanNames.get(i));
+    }
+
+    this.dependentBeanMap.clear();
+    this.dependenciesForBeanMap.clear();
+    this.singletonLock.lock();
+    try {
+      this.singletonObjects.clear();
+      this.registeredSingletons.clear();
+    } finally {
+      this.singletonLock.unlock();
+    }
+    this.creationLocks.clear();
+  }
+
+  /**
+   * Destroy the given bean: remove it from the singleton cache, destroy the beans depending on it first, invoke its
+   * destruction callbacks and finally drop all of its dependency edges.
+   *
+   * @param beanName the name of the bean
+   */
+  public void destroySingleton(String beanName) {
+    removeSingleton(beanName);
+
+    DisposableBean disposableBean;
+    synchronized (this.disposableBeans) {
+      disposableBean = this.disposableBeans.remove(beanName);
+    }
+    destroyBean(beanName, disposableBean);
+  }
+
+  /**
+   * Destroy the given bean. Must destroy beans that depend on the given bean before the bean itself. Should not throw
+   * any exceptions.
+   *
+   * @param beanName the name of the bean
+   * @param bean the bean instance to destroy, or {@code null} if it has nothing to destroy
+   */
+  protected void destroyBean(String beanName, DisposableBean bean) {
+    // Trigger destruction of dependent beans first...
+    Set<String> dependencies = this.dependentBeanMap.remove(beanName);
+    if (dependencies != null) {
+      for (String dependentBeanName : dependencies) {
+        destroySingleton(dependentBeanName);
+      }
+    }
+
+    // Actually destroy the bean now...
+    if (bean != null) {
+      try {
+        bean.destroy();
+      } catch (Throwable ex) {
+        logger.error("Destroy method on bean with name '" + beanName + "' threw an exception", ex);
+      }
+    }
+
+    // Remove destroyed bean from other beans' dependencies.
+    Set<String> dependenciesForBean = this.dependenciesForBeanMap.remove(beanName);
+    if (dependenciesForBean != null) {
+      for (String dependency : dependenciesForBean) {
+        removeFromSet(this.dependentBeanMap, dependency, beanName);
+      }
+    }
+  }
+
+  /**
+   * Reentrant lock exposing its owner, for deadlock detection.
+   */
+  private static final class CreationLock extends ReentrantLock {
+
+    @Override
+    protected Thread getOwner() {
+      return super.getOwner();
     }
   }
 
@@ -0,0 +1,159 @@
+package com.maomao2.spring.beans.creation;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Parameter;
+
+import com.maomao2.spring.util.ResolvableType;
+
+/**
+ * Descriptor for a specific dependency that is about to be injected: either a field or a constructor parameter.
+ * <p>
+ * Descriptors of the same injection point are equal, so they serve as key for caching the resolved candidate.
+ */
+public class DependencyDescriptor {
+
+  private final Field field;
+
+  /**
+   * The bean class the field is injected into, which may bind type variables of the field's declaring class
+   */
+  private final Class<?> containingClass;
+
+  private final Constructor<?> constructor;
+
+  private final int parameterIndex;
+
+  private final Class<?> dependencyType;
+
+  private final String dependencyName;
+
+  private final String qualifier;
+
+  private final boolean required;
+
+  private volatile ResolvableType resolvableType;
+
+  /**
+   * Create a new descriptor for a field.
+   *
+   * @param field the field to wrap
+   * @param required whether the dependency is required
+   */
+  public DependencyDescriptor(Field field, boolean required) {
+    this(field, field.getDeclaringClass(), required);
+  }
+
+  /**
+   * Create a new descriptor for a field injected into the given bean class.
+   *
+   * @param field the field to wrap
+   * @param containingClass the bean class that declares or inherits the field
+   * @param required whether the dependency is required
+   */
+  public DependencyDescriptor(Field field, Class<?> containingClass, boolean required) {
+    this.field = field;
+    this.containingClass = containingClass;
+    this.constructor = null;
+    this.parameterIndex = -1;
+    this.dependencyType = field.getType();
+    this.dependencyName = field.getName();
+    Qualifier qualifier = field.getAnnotation(Qualifier.class);
+    this.qualifier = (qualifier != null ? qualifier.value() : null);
+    this.required = required;
+  }
+
+  /**
+   * Create a new descriptor for a constructor parameter.
+   *
+   * @param constructor the constructor declaring the parameter
+   * @param parameterIndex the index of the parameter
+   * @param required whether the dependency is required
+   */
+  public DependencyDescriptor(Constructor<?> constructor, int parameterIndex, boolean required) {
+    Parameter parameter = constructor.getParameters()[parameterIndex];
+    this.field = null;
+    this.containingClass = constructor.getDeclaringClass();
+    this.constructor = constructor;
+    this.parameterIndex = parameterIndex;
+    this.dependencyType = parameter.getType();
+    this.dependencyName = (parameter.isNamePresent() ? parameter.getName() : null);
+    Qualifier qualifier = parameter.getAnnotation(Qualifier.class);
+    this.qualifier = (qualifier != null ? qualifier.value() : null);
+    this.required = required;
+  }
+
+  /**
+   * Return the wrapped field, or {@code null} for a constructor parameter.
+   */
+  public Field getField() {
+    return this.field;
+  }
+
+  /**
+   * Return the declared type of the wrapped field or parameter.
+   */
+  public Class<?> getDependencyType() {
+    return this.dependencyType;
+  }
+
+  /**
+   * Return the generic type of the wrapped field or parameter, resolved on first access and memoized.
+   */
+  public ResolvableType getResolvableType() {
+    ResolvableType type = this.resolvableType;
+    if (type == null) {
+      type = (this.field != null ? ResolvableType.forField(this.field, this.containingClass) :
+          ResolvableType.forConstructorParameter(this.constructor, this.parameterIndex));
+      this.resolvableType = type;
+    }
+    return type;
+  }
+
+  /**
+   * Return the name of the wrapped field or parameter, if available.
+   */
+  public String getDependencyName() {
+    return this.dependencyName;
+  }
+
+  /**
+   * Return the {@link Qualifier} value of the wrapped field or parameter, if any.
+   */
+  public String getQualifier() {
+    return this.qualifier;
+  }
+
+  /**
+   * Return whether this dependency is required.
+   */
+  public boolean isRequired() {
+    return this.required;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof DependencyDescriptor)) {
+      return false;
+    }
+    DependencyDescriptor otherDesc = (DependencyDescriptor) other;
+    return (this.required == otherDesc.required && this.parameterIndex == otherDesc.parameterIndex &&
+        this.containingClass == otherDesc.containingClass &&
+        (this.field != null ? this.field.equals(otherDesc.field) : this.constructor.equals(otherDesc.constructor)));
+  }
+
+  @Override
+  public int hashCode() {
+    return (this.field != null ? this.field.hashCode() : this.constructor.hashCode() * 31 + this.parameterIndex);
+  }
+
+  @Override
+  public String toString() {
+    return (this.field != null ? "field '" + this.field.getName() + "'" :
+        "parameter " + this.parameterIndex + " of constructor " + this.constructor);
+  }
+
+}
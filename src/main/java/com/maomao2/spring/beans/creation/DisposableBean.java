@@ -0,0 +1,23 @@
+package com.maomao2.spring.beans.creation;
+
+/**
+ * Interface to be implemented by beans that want to release resources on destruction. A BeanFactory will invoke the
+ * destroy method on individual destruction of a scoped bean, or when the bean definition of a singleton is removed.
+ * <p>
+ * An alternative to implementing DisposableBean is specifying a custom destroy-method, for example in an XML bean
+ * definition.
+ *
+ * @see InitializingBean
+ * @see com.maomao2.spring.beans.definition.AbstractBeanDefinition#getDestroyMethodName
+ */
+public interface DisposableBean {
+
+  /**
+   * Invoked by the containing BeanFactory on destruction of a bean.
+   *
+   * @throws Exception in case of shutdown errors. Exceptions will get logged but not rethrown to allow other beans to
+   * release their resources as well.
+   */
+  void destroy() throws Exception;
+
+}
@@ -0,0 +1,87 @@
+package com.maomao2.spring.beans.creation;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.log4j.Logger;
+
+import com.maomao2.spring.beans.definition.RootBeanDefinition;
+import com.maomao2.spring.util.ClassUtils;
+import com.maomao2.spring.util.ReflectionUtils;
+
+/**
+ * Adapter that implements the {@link DisposableBean} interface performing the destruction steps for a given bean
+ * instance: the {@code DisposableBean} callback itself as well as a custom destroy method specified in the bean
+ * definition.
+ */
+class DisposableBeanAdapter implements DisposableBean {
+
+  private static final Logger logger = Logger.getLogger(DisposableBeanAdapter.class);
+
+  private final Object bean;
+
+  private final String beanName;
+
+  private final boolean invokeDisposableBean;
+
+  private final Method destroyMethod;
+
+  private DisposableBeanAdapter(Object bean, String beanName, boolean invokeDisposableBean, Method destroyMethod) {
+    this.bean = bean;
+    this.beanName = beanName;
+    this.invokeDisposableBean = invokeDisposableBean;
+    this.destroyMethod = destroyMethod;
+  }
+
+  /**
+   * Create a DisposableBeanAdapter for the given bean, or return {@code null} if the bean has nothing to destroy.
+   *
+   * @param bean the bean instance (never {@code null})
+   * @param beanName the name of the bean
+   * @param mbd the merged bean definition
+   */
+  static DisposableBeanAdapter forBean(Object bean, String beanName, RootBeanDefinition mbd) {
+    boolean invokeDisposableBean = (bean instanceof DisposableBean);
+    Method destroyMethod = null;
+    String destroyMethodName = mbd.getDestroyMethodName();
+    if (destroyMethodName != null && !(invokeDisposableBean && "destroy".equals(destroyMethodName))) {
+      destroyMethod = ClassUtils.getMethodIfAvailable(bean.getClass(), destroyMethodName);
+      if (destroyMethod == null) {
+        logger.error("Couldn't find a destroy method named '" + destroyMethodName + "' on bean with name '" +
+            beanName + "'");
+      }
+    }
+    if (!invokeDisposableBean && destroyMethod == null) {
+      return null;
+    }
+    return new DisposableBeanAdapter(bean, beanName, invokeDisposableBean, destroyMethod);
+  }
+
+  @Override
+  public void destroy() {
+    if (this.invokeDisposableBean) {
+      logger.info("Invoking destroy() on bean with name '" + this.beanName + "'");
+      try {
+        ((DisposableBean) this.bean).destroy();
+      } catch (Throwable ex) {
+        logger.error("Invocation of destroy method failed on bean with name '" + this.beanName + "'", ex);
+      }
+    }
+
+    if (this.destroyMethod != null) {
+      logger.info("Invoking destroy method '" + this.destroyMethod.getName() + "' on bean with name '" +
+          this.beanName + "'");
+      try {
+        ReflectionUtils.makeAccessible(this.destroyMethod);
+        this.destroyMethod.invoke(this.bean);
+      } catch (InvocationTargetException ex) {
+        logger.error("Invocation of destroy method '" + this.destroyMethod.getName() +
+            "' failed on bean with name '" + this.beanName + "'", ex.getTargetException());
+      } catch (Throwable ex) {
+        logger.error("Couldn't invoke destroy method '" + this.destroyMethod.getName() +
+            "' on bean with name '" + this.beanName + "'", ex);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,35 @@
+package com.maomao2.spring.beans.creation;
+
+/**
+ * Interface to be implemented by beans that are themselves factories for individual objects. Such a bean is not exposed
+ * as a bean instance itself: looking up its name returns the object it produces, while {@code &name} returns the
+ * factory.
+ *
+ * @param <T> the bean type
+ * @see BeanFactory#FACTORY_BEAN_PREFIX
+ */
+public interface FactoryBean<T> {
+
+  /**
+   * Return an instance (possibly shared or independent) of the object managed by this factory.
+   *
+   * @return an instance of the bean (can be {@code null})
+   * @throws Exception in case of creation errors
+   */
+  T getObject() throws Exception;
+
+  /**
+   * Return the type of object that this FactoryBean creates, or {@code null} if not known in advance. Used for by-type
+   * lookups once the factory has been created; before that, the type argument declared for {@code T} is used.
+   */
+  Class<?> getObjectType();
+
+  /**
+   * Is the object managed by this factory a singleton? If so, the object returned by {@link #getObject()} is cached by
+   * the owning bean factory and {@code getObject()} is only called once.
+   */
+  default boolean isSingleton() {
+    return true;
+  }
+
+}
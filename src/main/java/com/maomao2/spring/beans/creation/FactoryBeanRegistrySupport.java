@@ -0,0 +1,141 @@
+package com.maomao2.spring.beans.creation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.log4j.Logger;
+
+import com.maomao2.spring.exception.BeanCreationException;
+import com.maomao2.spring.exception.BeansException;
+
+/**
+ * Support base class for singleton registries which need to handle {@link FactoryBean} instances.
+ * <p>
+ * Objects created by singleton FactoryBeans are kept in a dedicated concurrent cache next to the singleton cache, so
+ * repeated lookups of such a bean are a single map read and {@code getObject()} is only called once.
+ */
+public abstract class FactoryBeanRegistrySupport extends DefaultSingletonBeanRegistry {
+
+  private static final Logger logger = Logger.getLogger(FactoryBeanRegistrySupport.class);
+
+  /**
+   * Cache of singleton objects created by FactoryBeans: FactoryBean name --> object
+   */
+  private final Map<String, Object> factoryBeanObjectCache = new ConcurrentHashMap<String, Object>(16);
+
+  /**
+   * Determine the type for the given FactoryBean.
+   *
+   * @param factoryBean the FactoryBean instance to check
+   * @return the FactoryBean's object type, or {@code null} if the type cannot be determined yet
+   */
+  protected Class<?> getTypeForFactoryBean(FactoryBean<?> factoryBean) {
+    try {
+      return factoryBean.getObjectType();
+    } catch (Throwable ex) {
+      // Thrown from the FactoryBean's getObjectType implementation.
+      logger.warn("FactoryBean threw exception from getObjectType, despite the contract saying " +
+          "that it should return null if the type of its object cannot be determined yet", ex);
+      return null;
+    }
+  }
+
+  /**
+   * Obtain an object to expose from the given FactoryBean, if available in cached form.
+   *
+   * @param beanName the name of the bean
+   * @return the object obtained from the FactoryBean, or {@code null} if not available
+   */
+  protected Object getCachedObjectForFactoryBean(String beanName) {
+    Object object = this.factoryBeanObjectCache.get(beanName);
+    return (object != NULL_OBJECT ? object : null);
+  }
+
+  /**
+   * Obtain an object to expose from the given FactoryBean. The object of a singleton FactoryBean that is itself a
+   * registered singleton is created and post-processed once, under the creation lock of the FactoryBean, and cached
+   * afterwards.
+   *
+   * @param factory the FactoryBean instance
+   * @param beanName the name of the bean
+   * @return the object obtained from the FactoryBean
+   * @throws BeanCreationException if FactoryBean object creation failed
+   */
+  protected Object getObjectFromFactoryBean(FactoryBean<?> factory, String beanName) {
+    if (factory.isSingleton() && getSingleton(beanName) != null) {
+      Object object = this.factoryBeanObjectCache.get(beanName);
+      if (object == null) {
+        Lock creationLock = lockCreation(beanName);
+        try {
+          object = this.factoryBeanObjectCache.get(beanName);
+          if (object == null) {
+            object = postProcessObjectFromFactoryBean(doGetObjectFromFactoryBean(factory, beanName), beanName);
+            getSingletonLock().lock();
+            try {
+              // Only cache the object if the FactoryBean hasn't been removed meanwhile
+              if (getSingleton(beanName) == factory) {
+                this.factoryBeanObjectCache.put(beanName, (object != null ? object : NULL_OBJECT));
+              }
+            } finally {
+              getSingletonLock().unlock();
+            }
+          }
+        } finally {
+          creationLock.unlock();
+        }
+      }
+      return (object != NULL_OBJECT ? object : null);
+    }
+    return postProcessObjectFromFactoryBean(doGetObjectFromFactoryBean(factory, beanName), beanName);
+  }
+
+  private Object doGetObjectFromFactoryBean(FactoryBean<?> factory, String beanName) {
+    try {
+      return factory.getObject();
+    } catch (BeansException ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new BeanCreationException(beanName, "FactoryBean threw exception on object creation", ex);
+    }
+  }
+
+  /**
+   * Post-process the given object that has been obtained from the FactoryBean. The resulting object will get exposed
+   * for bean references.
+   * <p>
+   * The default implementation simply returns the given object as-is. Subclasses may override this, for example, to
+   * apply post-processors.
+   *
+   * @param object the object obtained from the FactoryBean.
+   * @param beanName the name of the bean
+   * @return the object to expose
+   */
+  protected Object postProcessObjectFromFactoryBean(Object object, String beanName) {
+    return object;
+  }
+
+  /**
+   * Overridden to clear the FactoryBean object cache as well.
+   */
+  @Override
+  protected void removeSingleton(String beanName) {
+    getSingletonLock().lock();
+    try {
+      super.removeSingleton(beanName);
+      this.factoryBeanObjectCache.remove(beanName);
+    } finally {
+      getSingletonLock().unlock();
+    }
+  }
+
+  /**
+   * Overridden to clear the FactoryBean object cache as well.
+   */
+  @Override
+  public void destroySingletons() {
+    super.destroySingletons();
+    this.factoryBeanObjectCache.clear();
+  }
+
+}
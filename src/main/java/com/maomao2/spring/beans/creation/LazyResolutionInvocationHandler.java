@@ -0,0 +1,85 @@
+package com.maomao2.spring.beans.creation;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.maomao2.spring.util.ReflectionUtils;
+
+/**
+ * InvocationHandler behind the proxies injected in place of lazy-init singletons. The target bean is obtained from the
+ * factory on the first method call; every call is then dispatched through a method handle bound to the target, created
+ * once per method.
+ * <p>
+ * {@code equals} and {@code hashCode} are based on proxy identity and never trigger creation of the target.
+ *
+ * @see AbstractBeanFactory#getLazyResolutionProxyIfNecessary
+ */
+class LazyResolutionInvocationHandler implements InvocationHandler {
+
+  private final BeanFactory beanFactory;
+
+  private final String beanName;
+
+  private volatile Object target;
+
+  /**
+   * Handles of type {@code (Object[] args)Object}, bound to the target, keyed by interface method
+   */
+  private final Map<Method, MethodHandle> boundHandles = new ConcurrentHashMap<Method, MethodHandle>(8);
+
+  LazyResolutionInvocationHandler(BeanFactory beanFactory, String beanName) {
+    this.beanFactory = beanFactory;
+    this.beanName = beanName;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (ReflectionUtils.isEqualsMethod(method)) {
+      return (proxy == args[0]);
+    }
+    if (ReflectionUtils.isHashCodeMethod(method)) {
+      return System.identityHashCode(proxy);
+    }
+    if (ReflectionUtils.isToStringMethod(method) && this.target == null) {
+      return "Lazy resolution proxy for bean '" + this.beanName + "'";
+    }
+    MethodHandle handle = this.boundHandles.get(method);
+    if (handle == null) {
+      // Resolve the target outside of the map update, since creating it may call back into this proxy
+      final Object target = getTarget();
+      handle = this.boundHandles.computeIfAbsent(method, m -> bind(m, target));
+    }
+    return (Object) handle.invokeExact(args);
+  }
+
+  private MethodHandle bind(Method method, Object target) {
+    // Proxied interfaces may be non-public, e.g. package-private service interfaces
+    ReflectionUtils.makeAccessible(method);
+    MethodHandle handle;
+    try {
+      handle = MethodHandles.lookup().unreflect(method);
+    } catch (IllegalAccessException ex) {
+      throw new IllegalStateException("Cannot access method '" + method.getName() + "' of bean '" + this.beanName +
+          "'", ex);
+    }
+    int nrOfArgs = method.getParameterCount();
+    return handle.asType(MethodType.genericMethodType(nrOfArgs + 1)).bindTo(target)
+        .asSpreader(Object[].class, nrOfArgs);
+  }
+
+  private Object getTarget() {
+    Object target = this.target;
+    if (target == null) {
+      // Singleton creation is synchronized by the factory, so racing callers see the same instance
+      target = this.beanFactory.getBean(this.beanName);
+      this.target = target;
+    }
+    return target;
+  }
+
+}
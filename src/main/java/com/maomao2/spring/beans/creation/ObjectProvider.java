@@ -0,0 +1,32 @@
+package com.maomao2.spring.beans.creation;
+
+import java.util.function.Supplier;
+
+import com.maomao2.spring.exception.BeansException;
+
+/**
+ * A variant of {@link ObjectFactory} for injection points that want to obtain a bean on demand, e.g. a singleton pulling
+ * a fresh prototype per use, or an optional dependency. Injected for {@code provider-ref} properties; may be declared
+ * as {@code ObjectProvider<T>} or plain {@code Supplier<T>}.
+ *
+ * @param <T> the object type
+ * @see AbstractBeanFactory#getBeanProvider
+ */
+public interface ObjectProvider<T> extends ObjectFactory<T>, Supplier<T> {
+
+  /**
+   * Return an instance of the object managed by this provider, or {@code null} if the target bean is not defined.
+   *
+   * @throws BeansException in case of creation errors
+   */
+  T getIfAvailable() throws BeansException;
+
+  /**
+   * Delegates to {@link #getObject()}.
+   */
+  @Override
+  default T get() {
+    return getObject();
+  }
+
+}
@@ -0,0 +1,439 @@
+package com.maomao2.spring.beans.creation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link Scope} that hands out instances from a bounded pool per bean, for prototypes that are costly to build, e.g.
+ * parsers with large lookup tables. Obtaining a pooled bean borrows an idle instance, or creates a new one if the pool
+ * is empty; the caller hands it back through {@link #release}.
+ *
+ * <p>
+ * Borrowing and releasing don't take a lock. The pool keeps at most {@code maxSize} idle instances per bean; instances
+ * released to a full pool are destroyed. Idle instances are reused most-recently-released first, so the least recently
+ * used ones age out: {@link #evictIdle()} destroys those idle for longer than the {@link #setMaxIdleTime max idle time},
+ * and borrowing skips them as well. An optional {@link #setValidator validator} is applied on borrow.
+ * <p>
+ * Borrowed instances are tracked until they are released, so that a release of an instance that wasn't borrowed from
+ * the pool, or was released already, is ignored. An instance that is never released stays referenced by the pool until
+ * its lease is {@link #setMaxLeaseTime abandoned} or the scope is destroyed, which destroys the outstanding instances
+ * along with the idle ones.
+ */
+public class PooledScope implements Scope, DisposableBean {
+
+  /**
+   * Scope identifier for the pooled scope: "pooled".
+   */
+  public static final String SCOPE_POOLED = "pooled";
+
+  /**
+   * Default maximum number of idle instances kept per bean.
+   */
+  public static final int DEFAULT_MAX_SIZE = 8;
+
+  private static final Logger logger = Logger.getLogger(PooledScope.class);
+
+  private final int maxSize;
+
+  private volatile long maxIdleNanos = 0;
+
+  private volatile long maxLeaseNanos = 0;
+
+  private volatile Predicate<Object> validator;
+
+  private final ConcurrentMap<String, Pool> pools = new ConcurrentHashMap<String, Pool>(16);
+
+  private final CreationCallbacks creationCallbacks = new CreationCallbacks();
+
+  /**
+   * Create a PooledScope keeping up to {@link #DEFAULT_MAX_SIZE} idle instances per bean.
+   */
+  public PooledScope() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Create a PooledScope keeping up to the given number of idle instances per bean.
+   *
+   * @param maxSize the maximum number of idle instances per bean
+   */
+  public PooledScope(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Max pool size must be positive: " + maxSize);
+    }
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Set the time after which an idle instance is evicted. Default is 0, i.e. idle instances are kept.
+   */
+  public void setMaxIdleTime(long maxIdleTime, TimeUnit unit) {
+    this.maxIdleNanos = unit.toNanos(maxIdleTime);
+  }
+
+  /**
+   * Set the time after which {@link #evictIdle()} stops tracking a borrowed instance that hasn't been released, so that
+   * the pool no longer keeps it reachable. The instance is not destroyed, as it may still be in use; releasing it later
+   * is ignored. Default is 0, i.e. borrowed instances are tracked until they are released.
+   */
+  public void setMaxLeaseTime(long maxLeaseTime, TimeUnit unit) {
+    this.maxLeaseNanos = unit.toNanos(maxLeaseTime);
+  }
+
+  /**
+   * Set a check applied to an idle instance before it is handed out again; instances that fail it are destroyed.
+   */
+  public void setValidator(Predicate<Object> validator) {
+    this.validator = validator;
+  }
+
+  @Override
+  public Object get(String name, ObjectFactory<?> objectFactory) {
+    Pool pool = getPool(name);
+    Predicate<Object> validator = this.validator;
+    PooledObject pooled;
+    while ((pooled = pool.idle.pollFirst()) != null) {
+      pool.idleCount.decrementAndGet();
+      if (isExpired(pooled.since, System.nanoTime(), this.maxIdleNanos) ||
+          (validator != null && !validator.test(pooled.object))) {
+        destroy(name, pool, pooled.object, pooled.destructionCallback);
+        continue;
+      }
+      return borrow(pool, pooled.object, pooled.destructionCallback);
+    }
+    return create(pool, objectFactory);
+  }
+
+  /**
+   * Hand the given instance back to the pool of the given bean. The instance is destroyed if the pool is full. An
+   * instance that isn't currently borrowed from that pool, e.g. one released twice, is ignored.
+   *
+   * @param name the name of the bean
+   * @param scopedObject an instance obtained from this scope for that bean
+   * @throws IllegalArgumentException if no instance of that bean has been requested from this scope
+   */
+  public void release(String name, Object scopedObject) {
+    Pool pool = this.pools.get(name);
+    if (pool == null) {
+      throw new IllegalArgumentException("No pooled object named '" + name + "'");
+    }
+    PooledObject lease = pool.leases.remove(new IdentityKey(scopedObject));
+    if (lease == null) {
+      logger.warn("Ignoring release of an object that isn't borrowed from the pool of bean '" + name + "'");
+      return;
+    }
+    pool.returned.increment();
+    if (pool.idleCount.incrementAndGet() > this.maxSize) {
+      pool.idleCount.decrementAndGet();
+      destroy(name, pool, scopedObject, lease.destructionCallback);
+      return;
+    }
+    pool.idle.offerFirst(new PooledObject(scopedObject, lease.destructionCallback, System.nanoTime()));
+  }
+
+  /**
+   * Remove the pool of the given bean, without destroying its instances.
+   *
+   * @return an idle instance of the removed pool, or {@code null} if none
+   */
+  @Override
+  public Object remove(String name) {
+    Pool pool = this.pools.remove(name);
+    PooledObject pooled = (pool != null ? pool.idle.peekFirst() : null);
+    return (pooled != null ? pooled.object : null);
+  }
+
+  /**
+   * Register the destruction callback for the instance that is being created by the current thread.
+   *
+   * @throws IllegalStateException if the current thread is not creating an instance in this scope
+   */
+  @Override
+  public void registerDestructionCallback(String name, Runnable callback) {
+    this.creationCallbacks.register(name, callback);
+  }
+
+  /**
+   * Destroy the idle instances that have exceeded the max idle time, and stop tracking the borrowed instances that have
+   * exceeded the max lease time, in all pools.
+   *
+   * @return the number of evicted idle instances
+   */
+  public int evictIdle() {
+    long maxIdleNanos = this.maxIdleNanos;
+    long maxLeaseNanos = this.maxLeaseNanos;
+    int evicted = 0;
+    long now = System.nanoTime();
+    for (Map.Entry<String, Pool> entry : this.pools.entrySet()) {
+      Pool pool = entry.getValue();
+      // Least recently released instances sit at the tail
+      Iterator<PooledObject> it = pool.idle.descendingIterator();
+      while (maxIdleNanos > 0 && it.hasNext()) {
+        PooledObject pooled = it.next();
+        if (!isExpired(pooled.since, now, maxIdleNanos)) {
+          break;
+        }
+        if (pool.idle.removeLastOccurrence(pooled)) {
+          pool.idleCount.decrementAndGet();
+          pool.evicted.increment();
+          destroy(entry.getKey(), pool, pooled.object, pooled.destructionCallback);
+          evicted++;
+        }
+      }
+      if (maxLeaseNanos > 0) {
+        for (Map.Entry<IdentityKey, PooledObject> lease : pool.leases.entrySet()) {
+          if (isExpired(lease.getValue().since, now, maxLeaseNanos) &&
+              pool.leases.remove(lease.getKey(), lease.getValue())) {
+            pool.abandoned.increment();
+          }
+        }
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * Return the usage counters of the pool of the given bean.
+   *
+   * @param name the name of the bean
+   * @return the metrics, or {@code null} if no instance of that bean has been requested yet
+   */
+  public PoolMetrics getMetrics(String name) {
+    Pool pool = this.pools.get(name);
+    if (pool == null) {
+      return null;
+    }
+    return new PoolMetrics(pool.created.sum(), pool.borrowed.sum(), pool.returned.sum(), pool.evicted.sum(),
+        pool.abandoned.sum(), pool.destroyed.sum(), pool.idleCount.get(), pool.leases.size());
+  }
+
+  /**
+   * Destroy all idle and all borrowed instances of all pools.
+   */
+  @Override
+  public void destroy() {
+    for (String name : new ArrayList<String>(this.pools.keySet())) {
+      Pool pool = this.pools.remove(name);
+      if (pool != null) {
+        PooledObject pooled;
+        while ((pooled = pool.idle.pollFirst()) != null) {
+          pool.idleCount.decrementAndGet();
+          destroy(name, pool, pooled.object, pooled.destructionCallback);
+        }
+        for (IdentityKey key : new ArrayList<IdentityKey>(pool.leases.keySet())) {
+          PooledObject lease = pool.leases.remove(key);
+          if (lease != null) {
+            destroy(name, pool, lease.object, lease.destructionCallback);
+          }
+        }
+      }
+    }
+  }
+
+  private Pool getPool(String name) {
+    Pool pool = this.pools.get(name);
+    if (pool == null) {
+      pool = this.pools.computeIfAbsent(name, key -> new Pool());
+    }
+    return pool;
+  }
+
+  private Object create(Pool pool, ObjectFactory<?> objectFactory) {
+    CreationCallbacks.Created created = this.creationCallbacks.create(objectFactory);
+    pool.created.increment();
+    return borrow(pool, created.object, created.destructionCallback);
+  }
+
+  private Object borrow(Pool pool, Object scopedObject, Runnable destructionCallback) {
+    PooledObject lease = new PooledObject(scopedObject, destructionCallback, System.nanoTime());
+    pool.leases.put(new IdentityKey(scopedObject), lease);
+    pool.borrowed.increment();
+    return scopedObject;
+  }
+
+  private static boolean isExpired(long since, long now, long maxNanos) {
+    return (maxNanos > 0 && now - since > maxNanos);
+  }
+
+  private void destroy(String name, Pool pool, Object scopedObject, Runnable callback) {
+    pool.destroyed.increment();
+    if (callback != null) {
+      try {
+        callback.run();
+      } catch (Throwable ex) {
+        logger.error("Destruction callback for pooled object of bean '" + name + "' threw an exception", ex);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "PooledScope with max size " + this.maxSize;
+  }
+
+  /**
+   * Snapshot of the usage counters of a pool.
+   */
+  public static final class PoolMetrics {
+
+    private final long created;
+
+    private final long borrowed;
+
+    private final long returned;
+
+    private final long evicted;
+
+    private final long abandoned;
+
+    private final long destroyed;
+
+    private final int idle;
+
+    private final int active;
+
+    PoolMetrics(long created, long borrowed, long returned, long evicted, long abandoned, long destroyed, int idle,
+        int active) {
+      this.created = created;
+      this.borrowed = borrowed;
+      this.returned = returned;
+      this.evicted = evicted;
+      this.abandoned = abandoned;
+      this.destroyed = destroyed;
+      this.idle = idle;
+      this.active = active;
+    }
+
+    /**
+     * Return the number of instances created through the bean factory.
+     */
+    public long getCreated() {
+      return this.created;
+    }
+
+    /**
+     * Return the number of instances handed out, whether reused or newly created.
+     */
+    public long getBorrowed() {
+      return this.borrowed;
+    }
+
+    public long getReturned() {
+      return this.returned;
+    }
+
+    /**
+     * Return the number of idle instances destroyed by {@link PooledScope#evictIdle()}.
+     */
+    public long getEvicted() {
+      return this.evicted;
+    }
+
+    /**
+     * Return the number of borrowed instances no longer tracked because they exceeded the max lease time.
+     */
+    public long getAbandoned() {
+      return this.abandoned;
+    }
+
+    /**
+     * Return the number of destroyed instances, whether evicted, invalid on borrow or released to a full pool.
+     */
+    public long getDestroyed() {
+      return this.destroyed;
+    }
+
+    public int getIdle() {
+      return this.idle;
+    }
+
+    /**
+     * Return the number of borrowed instances that haven't been released yet.
+     */
+    public int getActive() {
+      return this.active;
+    }
+
+    @Override
+    public String toString() {
+      return "created=" + this.created + ", borrowed=" + this.borrowed + ", returned=" + this.returned +
+          ", evicted=" + this.evicted + ", abandoned=" + this.abandoned + ", destroyed=" + this.destroyed +
+          ", idle=" + this.idle + ", active=" + this.active;
+    }
+  }
+
+  private static final class Pool {
+
+    final ConcurrentLinkedDeque<PooledObject> idle = new ConcurrentLinkedDeque<PooledObject>();
+
+    final AtomicInteger idleCount = new AtomicInteger();
+
+    final LongAdder created = new LongAdder();
+
+    final LongAdder borrowed = new LongAdder();
+
+    final LongAdder returned = new LongAdder();
+
+    final LongAdder evicted = new LongAdder();
+
+    final LongAdder abandoned = new LongAdder();
+
+    final LongAdder destroyed = new LongAdder();
+
+    /**
+     * Borrowed instances by identity, with the time they were borrowed at
+     */
+    final ConcurrentMap<IdentityKey, PooledObject> leases = new ConcurrentHashMap<IdentityKey, PooledObject>(16);
+  }
+
+  /**
+   * An instance with its destruction callback, and the time it was released (when idle) or borrowed (when leased)
+   */
+  private static final class PooledObject {
+
+    final Object object;
+
+    final Runnable destructionCallback;
+
+    final long since;
+
+    PooledObject(Object object, Runnable destructionCallback, long since) {
+      this.object = object;
+      this.destructionCallback = destructionCallback;
+      this.since = since;
+    }
+  }
+
+  /**
+   * Map key comparing instances by identity, so that beans with their own equals are tracked one by one
+   */
+  private static final class IdentityKey {
+
+    private final Object object;
+
+    IdentityKey(Object object) {
+      this.object = object;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return (this == other || (other instanceof IdentityKey && this.object == ((IdentityKey) other).object));
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this.object);
+    }
+  }
+
+}
@@ -0,0 +1,22 @@
+package com.maomao2.spring.beans.creation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field or constructor parameter as to be autowired with the bean whose {@code <qualifier value="..."/>} (or
+ * bean name) matches the given value, when more than one bean of the required type exists.
+ *
+ * @see com.maomao2.spring.beans.definition.AbstractBeanDefinition#setQualifier
+ */
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Qualifier {
+
+  String value();
+
+}
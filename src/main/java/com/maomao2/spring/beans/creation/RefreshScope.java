@@ -0,0 +1,278 @@
+package com.maomao2.spring.beans.creation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link Scope} whose instances can be rebuilt at runtime: {@link #refresh} creates a new instance in the background
+ * and swaps it in atomically once it is fully initialized (read-copy-update); the previous instance is destroyed after
+ * a grace period, so callers still using it can finish.
+ *
+ * <p>
+ * Obtaining a refreshable bean that exists is a single volatile read, and never blocks on a refresh in progress.
+ * Callers that keep an {@link ObjectProvider} rather than the instance itself always get the current instance.
+ */
+public class RefreshScope implements Scope, DisposableBean {
+
+  /**
+   * Scope identifier for the refresh scope: "refresh".
+   */
+  public static final String SCOPE_REFRESH = "refresh";
+
+  /**
+   * Default grace period before a replaced instance is destroyed: ten seconds.
+   */
+  public static final long DEFAULT_GRACE_PERIOD_MILLIS = 10 * 1000;
+
+  private static final Logger logger = Logger.getLogger(RefreshScope.class);
+
+  private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<String, Slot>(16);
+
+  private final CreationCallbacks creationCallbacks = new CreationCallbacks();
+
+  private volatile Executor refreshExecutor = ForkJoinPool.commonPool();
+
+  private volatile long gracePeriodMillis = DEFAULT_GRACE_PERIOD_MILLIS;
+
+  private ScheduledExecutorService destructionScheduler;
+
+  /**
+   * Set the executor to build refreshed instances on. Default is the common pool.
+   */
+  public void setRefreshExecutor(Executor refreshExecutor) {
+    this.refreshExecutor = refreshExecutor;
+  }
+
+  /**
+   * Set how long a replaced instance is kept before it is destroyed. 0 destroys it right after the swap.
+   */
+  public void setGracePeriod(long gracePeriod, TimeUnit unit) {
+    this.gracePeriodMillis = unit.toMillis(gracePeriod);
+  }
+
+  @Override
+  public Object get(String name, ObjectFactory<?> objectFactory) {
+    Slot slot = this.slots.get(name);
+    if (slot == null) {
+      slot = this.slots.computeIfAbsent(name, key -> new Slot());
+    }
+    Instance current = slot.current;
+    if (current != null) {
+      return current.object;
+    }
+    slot.lock.lock();
+    try {
+      current = slot.current;
+      if (current == null) {
+        slot.objectFactory = objectFactory;
+        current = create(objectFactory);
+        slot.current = current;
+      }
+      return current.object;
+    } finally {
+      slot.lock.unlock();
+    }
+  }
+
+  /**
+   * Build a new instance of the given bean in the background and swap it in once it is fully initialized. Concurrent
+   * requests to refresh the same bean share the refresh in progress.
+   *
+   * @param name the name of the bean
+   * @return a future for the new instance; completed with {@code null} if the bean has not been created yet, since
+   * the next request creates a fresh instance anyway
+   */
+  public CompletableFuture<Object> refresh(final String name) {
+    final Slot slot = this.slots.get(name);
+    if (slot == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    slot.lock.lock();
+    try {
+      if (slot.current == null) {
+        return CompletableFuture.completedFuture(null);
+      }
+      if (slot.refreshing != null) {
+        return slot.refreshing;
+      }
+      final ObjectFactory<?> objectFactory = slot.objectFactory;
+      final CompletableFuture<Object> refreshing = new CompletableFuture<Object>();
+      slot.refreshing = refreshing;
+      try {
+        this.refreshExecutor.execute(() -> {
+          try {
+            Instance instance = create(objectFactory);
+            Instance previous;
+            slot.lock.lock();
+            try {
+              previous = slot.current;
+              slot.current = instance;
+              slot.refreshing = null;
+            } finally {
+              slot.lock.unlock();
+            }
+            destroyAfterGracePeriod(name, previous);
+            refreshing.complete(instance.object);
+          } catch (Throwable ex) {
+            slot.lock.lock();
+            try {
+              slot.refreshing = null;
+            } finally {
+              slot.lock.unlock();
+            }
+            logger.error("Refresh of bean '" + name + "' failed, keeping the current instance", ex);
+            refreshing.completeExceptionally(ex);
+          }
+        });
+      } catch (RuntimeException ex) {
+        slot.refreshing = null;
+        throw ex;
+      }
+      return refreshing;
+    } finally {
+      slot.lock.unlock();
+    }
+  }
+
+  /**
+   * Refresh all beans created in this scope.
+   *
+   * @return a future that completes once all refreshes have completed
+   */
+  public CompletableFuture<Void> refreshAll() {
+    List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+    for (String name : this.slots.keySet()) {
+      futures.add(refresh(name));
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+  }
+
+  /**
+   * Remove the instance of the given bean, without destroying it.
+   */
+  @Override
+  public Object remove(String name) {
+    Slot slot = this.slots.remove(name);
+    Instance current = (slot != null ? slot.current : null);
+    return (current != null ? current.object : null);
+  }
+
+  /**
+   * Register the destruction callback for the instance that is being created by the current thread.
+   *
+   * @throws IllegalStateException if the current thread is not creating an instance in this scope
+   */
+  @Override
+  public void registerDestructionCallback(String name, Runnable callback) {
+    this.creationCallbacks.register(name, callback);
+  }
+
+  /**
+   * Destroy all current instances, as well as the replaced instances still in their grace period.
+   */
+  @Override
+  public void destroy() {
+    List<Runnable> pending = null;
+    synchronized (this) {
+      if (this.destructionScheduler != null) {
+        pending = this.destructionScheduler.shutdownNow();
+        this.destructionScheduler = null;
+      }
+    }
+    if (pending != null) {
+      for (Runnable task : pending) {
+        task.run();
+      }
+    }
+    for (String name : new ArrayList<String>(this.slots.keySet())) {
+      Slot slot = this.slots.remove(name);
+      if (slot != null && slot.current != null) {
+        slot.current.destroy(name);
+      }
+    }
+  }
+
+  private Instance create(ObjectFactory<?> objectFactory) {
+    CreationCallbacks.Created created = this.creationCallbacks.create(objectFactory);
+    return new Instance(created.object, created.destructionCallback);
+  }
+
+  private void destroyAfterGracePeriod(final String name, final Instance instance) {
+    if (instance == null || instance.destructionCallback == null) {
+      return;
+    }
+    long gracePeriodMillis = this.gracePeriodMillis;
+    if (gracePeriodMillis <= 0) {
+      instance.destroy(name);
+      return;
+    }
+    getDestructionScheduler().schedule(() -> instance.destroy(name), gracePeriodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized ScheduledExecutorService getDestructionScheduler() {
+    if (this.destructionScheduler == null) {
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "refresh-scope-destruction");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.setRemoveOnCancelPolicy(true);
+      this.destructionScheduler = scheduler;
+    }
+    return this.destructionScheduler;
+  }
+
+  @Override
+  public String toString() {
+    return "RefreshScope";
+  }
+
+  /**
+   * The current instance of one bean, the factory to rebuild it with and the refresh in progress, if any. The current
+   * instance is read without locking; it is replaced, and the refresh state changed, while holding the lock.
+   */
+  private static final class Slot {
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    volatile Instance current;
+
+    ObjectFactory<?> objectFactory;
+
+    CompletableFuture<Object> refreshing;
+  }
+
+  private static final class Instance {
+
+    final Object object;
+
+    final Runnable destructionCallback;
+
+    Instance(Object object, Runnable destructionCallback) {
+      this.object = object;
+      this.destructionCallback = destructionCallback;
+    }
+
+    void destroy(String name) {
+      if (this.destructionCallback != null) {
+        try {
+          this.destructionCallback.run();
+        } catch (Throwable ex) {
+          logger.error("Destruction callback for refresh-scoped object '" + name + "' threw an exception", ex);
+        }
+      }
+    }
+  }
+
+}
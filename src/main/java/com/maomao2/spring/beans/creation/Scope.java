@@ -83,4 +83,18 @@ public interface Scope {
    */
   Object remove(String name);
 
+  /**
+   * Register a callback to be executed on destruction of the specified object in the scope (or at destruction of the
+   * entire scope, if the scope does not destroy individual objects but rather only terminates in its entirety).
+   * <p>
+   * The destruction callback is registered by the bean factory for scoped beans that implement {@link DisposableBean}
+   * or declare a destroy method. An implementation should not execute a callback for an object that was explicitly
+   * {@link #remove removed}.
+   *
+   * @param name the name of the object to execute the destruction callback for
+   * @param callback the destruction callback to be executed
+   * @throws IllegalStateException if the underlying scope is not currently active
+   */
+  void registerDestructionCallback(String name, Runnable callback);
+
 }
@@ -0,0 +1,249 @@
+package com.maomao2.spring.beans.creation;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link Scope} that holds one instance per bean through a {@link SoftReference}, for cache-like beans such as large
+ * lookup tables and precomputed indexes. Under memory pressure the garbage collector may reclaim an instance, least
+ * recently requested first; the next request then transparently creates it again.
+ *
+ * <p>
+ * The soft reference points to a holder of the instance and its destruction callback, since the callback refers to the
+ * instance itself. Callers that hold on to an instance don't keep it cached, and a reclaimed instance is not destroyed.
+ * {@link #getMetrics} reports how often the instances of a bean have been created, reclaimed and rebuilt. Lookups don't
+ * take a lock; creating an instance locks its bean only.
+ */
+public class SoftScope implements Scope, DisposableBean {
+
+  /**
+   * Scope identifier for the soft scope: "soft".
+   */
+  public static final String SCOPE_SOFT = "soft";
+
+  private static final Logger logger = Logger.getLogger(SoftScope.class);
+
+  private final ConcurrentMap<String, SoftEntry> entries = new ConcurrentHashMap<String, SoftEntry>(16);
+
+  private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<String, Counters>(16);
+
+  private final ReferenceQueue<Holder> reclaimedQueue = new ReferenceQueue<Holder>();
+
+  private final CreationCallbacks creationCallbacks = new CreationCallbacks();
+
+  @Override
+  public Object get(String name, ObjectFactory<?> objectFactory) {
+    expungeReclaimedEntries();
+    SoftEntry entry = this.entries.get(name);
+    Holder holder = (entry != null ? entry.get() : null);
+    if (holder != null) {
+      return holder.object;
+    }
+    Counters counters = getCounters(name);
+    counters.creationLock.lock();
+    try {
+      entry = this.entries.get(name);
+      holder = (entry != null ? entry.get() : null);
+      if (holder != null) {
+        return holder.object;
+      }
+      holder = create(objectFactory);
+      this.entries.put(name, new SoftEntry(name, holder, this.reclaimedQueue));
+      counters.created.increment();
+      // A cleared entry still in the map, or one expunged since the last creation, means a rebuild
+      if (entry != null || counters.reclaimedSinceCreation.getAndSet(false)) {
+        counters.rebuilt.increment();
+      }
+      return holder.object;
+    } finally {
+      counters.creationLock.unlock();
+    }
+  }
+
+  /**
+   * Remove the instance of the given bean, without destroying it.
+   */
+  @Override
+  public Object remove(String name) {
+    SoftEntry entry = this.entries.remove(name);
+    Holder holder = (entry != null ? entry.get() : null);
+    return (holder != null ? holder.object : null);
+  }
+
+  /**
+   * Register the destruction callback for the instance that is being created by the current thread.
+   *
+   * @throws IllegalStateException if the current thread is not creating an instance in this scope
+   */
+  @Override
+  public void registerDestructionCallback(String name, Runnable callback) {
+    this.creationCallbacks.register(name, callback);
+  }
+
+  /**
+   * Return the counters of the given bean.
+   *
+   * @param name the name of the bean
+   * @return the metrics, or {@code null} if the bean has not been requested yet
+   */
+  public Metrics getMetrics(String name) {
+    expungeReclaimedEntries();
+    Counters counters = this.counters.get(name);
+    if (counters == null) {
+      return null;
+    }
+    return new Metrics(counters.created.sum(), counters.reclaimed.sum(), counters.rebuilt.sum());
+  }
+
+  /**
+   * Destroy all instances that have not been reclaimed.
+   */
+  @Override
+  public void destroy() {
+    for (String name : new ArrayList<String>(this.entries.keySet())) {
+      SoftEntry entry = this.entries.remove(name);
+      Holder holder = (entry != null ? entry.get() : null);
+      if (holder != null && holder.destructionCallback != null) {
+        try {
+          holder.destructionCallback.run();
+        } catch (Throwable ex) {
+          logger.error("Destruction callback for soft-scoped object '" + name + "' threw an exception", ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Clear and enqueue the reference to the instance of the given bean, as the garbage collector does when it reclaims
+   * the instance. For tests.
+   */
+  void reclaim(String name) {
+    SoftEntry entry = this.entries.get(name);
+    if (entry != null) {
+      entry.clear();
+      entry.enqueue();
+    }
+  }
+
+  private Holder create(ObjectFactory<?> objectFactory) {
+    CreationCallbacks.Created created = this.creationCallbacks.create(objectFactory);
+    return new Holder(created.object, created.destructionCallback);
+  }
+
+  private Counters getCounters(String name) {
+    Counters counters = this.counters.get(name);
+    if (counters == null) {
+      counters = this.counters.computeIfAbsent(name, key -> new Counters());
+    }
+    return counters;
+  }
+
+  /**
+   * Count and drop the entries whose instances have been reclaimed by the garbage collector.
+   */
+  private void expungeReclaimedEntries() {
+    Reference<? extends Holder> reference;
+    while ((reference = this.reclaimedQueue.poll()) != null) {
+      SoftEntry entry = (SoftEntry) reference;
+      Counters counters = getCounters(entry.name);
+      counters.reclaimed.increment();
+      if (this.entries.remove(entry.name, entry)) {
+        counters.reclaimedSinceCreation.set(true);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SoftScope";
+  }
+
+  /**
+   * Snapshot of the counters of a soft-scoped bean.
+   */
+  public static final class Metrics {
+
+    private final long created;
+
+    private final long reclaimed;
+
+    private final long rebuilt;
+
+    Metrics(long created, long reclaimed, long rebuilt) {
+      this.created = created;
+      this.reclaimed = reclaimed;
+      this.rebuilt = rebuilt;
+    }
+
+    public long getCreated() {
+      return this.created;
+    }
+
+    /**
+     * Return the number of instances reclaimed by the garbage collector.
+     */
+    public long getReclaimed() {
+      return this.reclaimed;
+    }
+
+    /**
+     * Return the number of instances created again after a reclaimed one.
+     */
+    public long getRebuilt() {
+      return this.rebuilt;
+    }
+
+    @Override
+    public String toString() {
+      return "created=" + this.created + ", reclaimed=" + this.reclaimed + ", rebuilt=" + this.rebuilt;
+    }
+  }
+
+  /**
+   * Counters of one bean, along with the lock its instances are created under
+   */
+  private static final class Counters {
+
+    final ReentrantLock creationLock = new ReentrantLock();
+
+    final LongAdder created = new LongAdder();
+
+    final LongAdder reclaimed = new LongAdder();
+
+    final LongAdder rebuilt = new LongAdder();
+
+    final AtomicBoolean reclaimedSinceCreation = new AtomicBoolean();
+  }
+
+  private static final class Holder {
+
+    final Object object;
+
+    final Runnable destructionCallback;
+
+    Holder(Object object, Runnable destructionCallback) {
+      this.object = object;
+      this.destructionCallback = destructionCallback;
+    }
+  }
+
+  private static final class SoftEntry extends SoftReference<Holder> {
+
+    final String name;
+
+    SoftEntry(String name, Holder holder, ReferenceQueue<Holder> queue) {
+      super(holder, queue);
+      this.name = name;
+    }
+  }
+
+}
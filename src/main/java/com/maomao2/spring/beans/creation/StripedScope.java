@@ -0,0 +1,207 @@
+package com.maomao2.spring.beans.creation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link Scope} that keeps a fixed number of instances ("stripes") per bean, by default one per available processor.
+ * Each thread is handed the instance of the stripe its thread id hashes to, the way {@code LongAdder} spreads updates
+ * over its cells, so mutable helpers such as counters, buffers and encoders can be shared by many threads without a
+ * single contended instance and without one instance per thread. Stripe instances must tolerate concurrent use by the
+ * threads sharing a stripe.
+ *
+ * <p>
+ * {@link #getStripes} returns all instances of a bean for aggregation; {@link #destroy(String)} and {@link #destroy()}
+ * run the destruction callbacks of all stripes. The bean factory destroys the scope together with its singletons.
+ */
+public class StripedScope implements Scope, DisposableBean {
+
+  /**
+   * Scope identifier for the striped scope: "striped".
+   */
+  public static final String SCOPE_STRIPED = "striped";
+
+  private static final Logger logger = Logger.getLogger(StripedScope.class);
+
+  private final int mask;
+
+  private final ConcurrentMap<String, Stripes> stripesByName = new ConcurrentHashMap<String, Stripes>(16);
+
+  /**
+   * Create a StripedScope with one stripe per available processor.
+   */
+  public StripedScope() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Create a StripedScope with the given number of stripes, rounded up to the next power of two.
+   *
+   * @param stripeCount the minimum number of instances to keep per bean
+   */
+  public StripedScope(int stripeCount) {
+    if (stripeCount < 1) {
+      throw new IllegalArgumentException("Stripe count must be positive: " + stripeCount);
+    }
+    this.mask = (stripeCount == 1 ? 0 : Integer.highestOneBit(stripeCount - 1) * 2 - 1);
+  }
+
+  /**
+   * Return the number of stripes kept per bean.
+   */
+  public int getStripeCount() {
+    return this.mask + 1;
+  }
+
+  @Override
+  public Object get(String name, ObjectFactory<?> objectFactory) {
+    Stripes stripes = this.stripesByName.get(name);
+    if (stripes == null) {
+      stripes = this.stripesByName.computeIfAbsent(name, key -> new Stripes(this.mask + 1));
+    }
+    int index = stripeIndex();
+    Object scopedObject = stripes.objects.get(index);
+    if (scopedObject == null) {
+      stripes.lock.lock();
+      try {
+        scopedObject = stripes.objects.get(index);
+        if (scopedObject == null) {
+          scopedObject = objectFactory.getObject();
+          stripes.objects.set(index, scopedObject);
+        }
+      } finally {
+        stripes.lock.unlock();
+      }
+    }
+    return scopedObject;
+  }
+
+  /**
+   * Remove all stripes of the given bean, without running their destruction callbacks.
+   *
+   * @return the instance of the current thread's stripe, or {@code null} if none
+   */
+  @Override
+  public Object remove(String name) {
+    Stripes stripes = this.stripesByName.remove(name);
+    return (stripes != null ? stripes.objects.get(stripeIndex()) : null);
+  }
+
+  @Override
+  public void registerDestructionCallback(String name, Runnable callback) {
+    Stripes stripes = this.stripesByName.get(name);
+    if (stripes == null) {
+      throw new IllegalStateException("No striped object named '" + name + "'");
+    }
+    stripes.lock.lock();
+    try {
+      stripes.destructionCallbacks[stripeIndex()] = callback;
+    } finally {
+      stripes.lock.unlock();
+    }
+  }
+
+  /**
+   * Return the instances created so far for the given bean, in stripe order.
+   *
+   * @param name the name of the bean
+   * @return the instances, or an empty list if none
+   */
+  @SuppressWarnings("unchecked")
+  public <T> List<T> getStripes(String name) {
+    Stripes stripes = this.stripesByName.get(name);
+    if (stripes == null) {
+      return new ArrayList<T>(0);
+    }
+    List<T> result = new ArrayList<T>(stripes.objects.length());
+    for (int i = 0; i < stripes.objects.length(); i++) {
+      Object stripe = stripes.objects.get(i);
+      if (stripe != null) {
+        result.add((T) stripe);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Destroy all stripes of the given bean.
+   *
+   * @param name the name of the bean
+   */
+  public void destroy(String name) {
+    Stripes stripes = this.stripesByName.remove(name);
+    if (stripes != null) {
+      stripes.destroy(name);
+    }
+  }
+
+  /**
+   * Destroy all stripes of all beans in this scope.
+   */
+  @Override
+  public void destroy() {
+    for (String name : new ArrayList<String>(this.stripesByName.keySet())) {
+      destroy(name);
+    }
+  }
+
+  /**
+   * Map the current thread to a stripe; a thread always uses the same stripe.
+   */
+  private int stripeIndex() {
+    long id = Thread.currentThread().getId();
+    int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & this.mask;
+  }
+
+  @Override
+  public String toString() {
+    return "StripedScope with " + getStripeCount() + " stripes";
+  }
+
+  /**
+   * The instances of one bean and their destruction callbacks, indexed by stripe. Instances are created and callbacks
+   * registered while holding the lock.
+   */
+  private static final class Stripes {
+
+    final AtomicReferenceArray<Object> objects;
+
+    final Runnable[] destructionCallbacks;
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    Stripes(int stripeCount) {
+      this.objects = new AtomicReferenceArray<Object>(stripeCount);
+      this.destructionCallbacks = new Runnable[stripeCount];
+    }
+
+    void destroy(String name) {
+      for (int i = 0; i < this.destructionCallbacks.length; i++) {
+        Runnable callback;
+        this.lock.lock();
+        try {
+          callback = this.destructionCallbacks[i];
+          this.destructionCallbacks[i] = null;
+          this.objects.set(i, null);
+        } finally {
+          this.lock.unlock();
+        }
+        if (callback != null) {
+          try {
+            callback.run();
+          } catch (Throwable ex) {
+            logger.error("Destruction callback for stripe " + i + " of bean '" + name + "' threw an exception", ex);
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,197 @@
+package com.maomao2.spring.beans.creation;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A thread-backed {@link Scope}: every thread gets its own instance of a thread-scoped bean, so non-thread-safe helpers
+ * such as formatters and parsers are neither shared under a lock nor created per call.
+ *
+ * <p>
+ * Each bean name is assigned a slot number once; a thread's objects live in a slot table held in a {@link ThreadLocal},
+ * so a lookup is an array access. Pooled threads outlive the work they run: call {@link #clear()} at the end of each
+ * unit of work (or run it through {@link #decorate}) to invoke the destruction callbacks and release the thread's
+ * objects.
+ */
+public class ThreadScope implements Scope {
+
+  /**
+   * Scope identifier for the thread scope: "thread".
+   */
+  public static final String SCOPE_THREAD = "thread";
+
+  private static final Logger logger = Logger.getLogger(ThreadScope.class);
+
+  /**
+   * Slot number per bean name, shared by all threads
+   */
+  private final Map<String, Integer> slots = new ConcurrentHashMap<String, Integer>(16);
+
+  private final AtomicInteger slotCounter = new AtomicInteger();
+
+  private final ThreadLocal<SlotTable> slotTables = new ThreadLocal<SlotTable>();
+
+  @Override
+  public Object get(String name, ObjectFactory<?> objectFactory) {
+    int slot = getSlot(name);
+    SlotTable table = this.slotTables.get();
+    if (table == null) {
+      table = new SlotTable(this.slotCounter.get());
+      this.slotTables.set(table);
+    }
+    Object scopedObject = table.get(slot);
+    if (scopedObject == null) {
+      scopedObject = objectFactory.getObject();
+      table.put(slot, scopedObject);
+    }
+    return scopedObject;
+  }
+
+  @Override
+  public Object remove(String name) {
+    SlotTable table = this.slotTables.get();
+    Integer slot = this.slots.get(name);
+    return (table != null && slot != null ? table.remove(slot) : null);
+  }
+
+  @Override
+  public void registerDestructionCallback(String name, Runnable callback) {
+    SlotTable table = this.slotTables.get();
+    if (table == null) {
+      throw new IllegalStateException("No thread-scoped object named '" + name + "' in the current thread");
+    }
+    table.registerDestructionCallback(getSlot(name), callback);
+  }
+
+  /**
+   * Destroy all objects of the current thread, in reverse order of creation, and release its slot table.
+   */
+  public void clear() {
+    SlotTable table = this.slotTables.get();
+    if (table != null) {
+      this.slotTables.remove();
+      table.destroy();
+    }
+  }
+
+  /**
+   * Wrap the given task so that the objects it obtains from this scope are destroyed once it completes, e.g. for tasks
+   * submitted to a thread pool.
+   *
+   * @param task the task to run
+   * @return the decorated task
+   */
+  public Runnable decorate(final Runnable task) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          task.run();
+        } finally {
+          clear();
+        }
+      }
+    };
+  }
+
+  private int getSlot(String name) {
+    Integer slot = this.slots.get(name);
+    if (slot == null) {
+      slot = this.slots.computeIfAbsent(name, key -> this.slotCounter.getAndIncrement());
+    }
+    return slot;
+  }
+
+  @Override
+  public String toString() {
+    return "ThreadScope";
+  }
+
+  /**
+   * The objects of one thread, indexed by slot, together with their destruction callbacks and the slots in order of
+   * creation. Only ever accessed by its own thread.
+   */
+  private static final class SlotTable {
+
+    private Object[] objects;
+
+    private Runnable[] destructionCallbacks;
+
+    private int[] creationOrder;
+
+    private int count;
+
+    SlotTable(int initialCapacity) {
+      int capacity = Math.max(initialCapacity, 8);
+      this.objects = new Object[capacity];
+      this.destructionCallbacks = new Runnable[capacity];
+      this.creationOrder = new int[capacity];
+    }
+
+    Object get(int slot) {
+      return (slot < this.objects.length ? this.objects[slot] : null);
+    }
+
+    void put(int slot, Object object) {
+      ensureCapacity(slot);
+      if (this.objects[slot] == null) {
+        if (this.count == this.creationOrder.length) {
+          this.creationOrder = Arrays.copyOf(this.creationOrder, this.count * 2);
+        }
+        this.creationOrder[this.count++] = slot;
+      }
+      this.objects[slot] = object;
+    }
+
+    Object remove(int slot) {
+      Object object = get(slot);
+      if (object != null) {
+        this.objects[slot] = null;
+        this.destructionCallbacks[slot] = null;
+        for (int i = 0; i < this.count; i++) {
+          if (this.creationOrder[i] == slot) {
+            System.arraycopy(this.creationOrder, i + 1, this.creationOrder, i, this.count - i - 1);
+            this.count--;
+            break;
+          }
+        }
+      }
+      return object;
+    }
+
+    void registerDestructionCallback(int slot, Runnable callback) {
+      ensureCapacity(slot);
+      this.destructionCallbacks[slot] = callback;
+    }
+
+    void destroy() {
+      for (int i = this.count - 1; i >= 0; i--) {
+        int slot = this.creationOrder[i];
+        Runnable callback = this.destructionCallbacks[slot];
+        this.objects[slot] = null;
+        this.destructionCallbacks[slot] = null;
+        if (callback != null) {
+          try {
+            callback.run();
+          } catch (Throwable ex) {
+            logger.error("Destruction callback for thread-scoped object in slot " + slot + " threw an exception", ex);
+          }
+        }
+      }
+      this.count = 0;
+    }
+
+    private void ensureCapacity(int slot) {
+      if (slot >= this.objects.length) {
+        int capacity = Math.max(slot + 1, this.objects.length * 2);
+        this.objects = Arrays.copyOf(this.objects, capacity);
+        this.destructionCallbacks = Arrays.copyOf(this.destructionCallbacks, capacity);
+      }
+    }
+  }
+
+}
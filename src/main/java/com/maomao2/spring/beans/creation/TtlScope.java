@@ -0,0 +1,377 @@
+package com.maomao2.spring.beans.creation;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link Scope} that caches an instance per bean, and optionally per key, for a limited time: once expired, the next
+ * request creates a fresh instance. Suits rotating credentials and snapshot-style configuration objects that should be
+ * rebuilt periodically without refreshing the context.
+ *
+ * <p>
+ * The key for the current request comes from the {@link #setKeyResolver key resolver}, e.g. the current tenant; without
+ * one there is a single instance per bean. The cache holds at most {@code maxSize} instances and evicts the least
+ * recently used one when full. Expired and evicted instances are destroyed asynchronously on the configured executor.
+ * Lookups don't take a lock; creating an instance locks its cache key only, so instances for other beans and keys are
+ * created concurrently.
+ */
+public class TtlScope implements Scope, DisposableBean {
+
+  /**
+   * Scope identifier for the ttl scope: "ttl".
+   */
+  public static final String SCOPE_TTL = "ttl";
+
+  /**
+   * Default time to live: one minute.
+   */
+  public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 60 * 1000;
+
+  /**
+   * Default maximum number of cached instances.
+   */
+  public static final int DEFAULT_MAX_SIZE = 1024;
+
+  private static final Logger logger = Logger.getLogger(TtlScope.class);
+
+  private final long timeToLiveNanos;
+
+  private final int maxSize;
+
+  private final Map<String, Long> timeToLiveByName = new ConcurrentHashMap<String, Long>(16);
+
+  private final ConcurrentMap<CacheKey, Slot> slots = new ConcurrentHashMap<CacheKey, Slot>(64);
+
+  private final CreationCallbacks creationCallbacks = new CreationCallbacks();
+
+  private volatile Supplier<?> keyResolver;
+
+  private volatile Executor destructionExecutor = ForkJoinPool.commonPool();
+
+  private volatile LongSupplier clock = System::nanoTime;
+
+  /**
+   * Create a TtlScope with the default time to live and max size.
+   */
+  public TtlScope() {
+    this(DEFAULT_TIME_TO_LIVE_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Create a TtlScope.
+   *
+   * @param timeToLive how long an instance is handed out after its creation
+   * @param unit the unit of the time to live
+   * @param maxSize the maximum number of cached instances
+   */
+  public TtlScope(long timeToLive, TimeUnit unit, int maxSize) {
+    if (timeToLive <= 0 || maxSize < 1) {
+      throw new IllegalArgumentException("Time to live and max size must be positive");
+    }
+    this.timeToLiveNanos = unit.toNanos(timeToLive);
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Override the time to live for the given bean.
+   */
+  public void setTimeToLive(String name, long timeToLive, TimeUnit unit) {
+    this.timeToLiveByName.put(name, unit.toNanos(timeToLive));
+  }
+
+  /**
+   * Set the source of the key an instance is cached under, in addition to the bean name; e.g. the current tenant.
+   * A {@code null} key is allowed.
+   */
+  public void setKeyResolver(Supplier<?> keyResolver) {
+    this.keyResolver = keyResolver;
+  }
+
+  /**
+   * Set the executor to run destruction callbacks of expired and evicted instances on. Default is the common pool.
+   */
+  public void setDestructionExecutor(Executor destructionExecutor) {
+    this.destructionExecutor = destructionExecutor;
+  }
+
+  /**
+   * Set the source of the current time, in nanoseconds, that expiry and recency are measured with. Default is {@link
+   * System#nanoTime()}.
+   */
+  public void setClock(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  @Override
+  public Object get(String name, ObjectFactory<?> objectFactory) {
+    CacheKey key = createKey(name);
+    while (true) {
+      long now = this.clock.getAsLong();
+      Slot slot = this.slots.get(key);
+      if (slot == null) {
+        slot = this.slots.computeIfAbsent(key, k -> new Slot());
+      }
+      Entry entry = slot.entry;
+      if (entry != null && !entry.isExpired(now)) {
+        entry.lastAccess = now;
+        return entry.object;
+      }
+      slot.lock.lock();
+      try {
+        if (this.slots.get(key) != slot) {
+          // Evicted or removed while waiting for the lock
+          continue;
+        }
+        entry = slot.entry;
+        if (entry != null && !entry.isExpired(now)) {
+          return entry.object;
+        }
+        Entry newEntry;
+        try {
+          newEntry = create(name, objectFactory);
+        } catch (RuntimeException ex) {
+          if (slot.entry == null) {
+            this.slots.remove(key, slot);
+          }
+          throw ex;
+        }
+        slot.entry = newEntry;
+        if (entry != null) {
+          destroyAsync(key, entry);
+        }
+        if (this.slots.size() > this.maxSize) {
+          evictLeastRecentlyUsed(key);
+        }
+        return newEntry.object;
+      } finally {
+        slot.lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Remove the cached instances of the given bean for all keys, without destroying them.
+   *
+   * @return the instance cached for the current key, or {@code null} if none
+   */
+  @Override
+  public Object remove(String name) {
+    CacheKey currentKey = createKey(name);
+    Object removed = null;
+    for (CacheKey key : new ArrayList<CacheKey>(this.slots.keySet())) {
+      if (key.name.equals(name)) {
+        Slot slot = this.slots.remove(key);
+        Entry entry = (slot != null ? slot.entry : null);
+        if (entry != null && key.equals(currentKey)) {
+          removed = entry.object;
+        }
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Register the destruction callback for the instance that is being created by the current thread.
+   *
+   * @throws IllegalStateException if the current thread is not creating an instance in this scope
+   */
+  @Override
+  public void registerDestructionCallback(String name, Runnable callback) {
+    this.creationCallbacks.register(name, callback);
+  }
+
+  /**
+   * Remove all expired instances and destroy them asynchronously. Expired instances are replaced on access anyway; this
+   * releases the ones that are no longer requested. Instances that are being replaced right now are left alone.
+   *
+   * @return the number of expired instances
+   */
+  public int evictExpired() {
+    long now = this.clock.getAsLong();
+    int expired = 0;
+    for (Map.Entry<CacheKey, Slot> mapEntry : this.slots.entrySet()) {
+      Entry entry = mapEntry.getValue().entry;
+      if (entry != null && entry.isExpired(now) && evict(mapEntry.getKey(), mapEntry.getValue())) {
+        expired++;
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * Destroy all cached instances, on the calling thread.
+   */
+  @Override
+  public void destroy() {
+    for (CacheKey key : new ArrayList<CacheKey>(this.slots.keySet())) {
+      Slot slot = this.slots.remove(key);
+      if (slot != null && slot.entry != null) {
+        slot.entry.destroy(key);
+      }
+    }
+  }
+
+  private CacheKey createKey(String name) {
+    Supplier<?> keyResolver = this.keyResolver;
+    return new CacheKey(name, (keyResolver != null ? keyResolver.get() : null));
+  }
+
+  private Entry create(String name, ObjectFactory<?> objectFactory) {
+    CreationCallbacks.Created created = this.creationCallbacks.create(objectFactory);
+    Long timeToLive = this.timeToLiveByName.get(name);
+    long now = this.clock.getAsLong();
+    return new Entry(created.object, created.destructionCallback, now,
+        now + (timeToLive != null ? timeToLive : this.timeToLiveNanos));
+  }
+
+  /**
+   * Evict the least recently used instance other than the given one. Only called when an instance is created, so the
+   * scan doesn't slow down lookups.
+   */
+  private void evictLeastRecentlyUsed(CacheKey keep) {
+    CacheKey eldestKey = null;
+    Slot eldestSlot = null;
+    long eldestAccess = 0;
+    for (Map.Entry<CacheKey, Slot> mapEntry : this.slots.entrySet()) {
+      Entry entry = mapEntry.getValue().entry;
+      if (entry != null && !mapEntry.getKey().equals(keep) &&
+          (eldestSlot == null || entry.lastAccess - eldestAccess < 0)) {
+        eldestKey = mapEntry.getKey();
+        eldestSlot = mapEntry.getValue();
+        eldestAccess = entry.lastAccess;
+      }
+    }
+    if (eldestSlot != null) {
+      evict(eldestKey, eldestSlot);
+    }
+  }
+
+  /**
+   * Remove the given slot and destroy its instance asynchronously, unless another thread is creating an instance for
+   * it.
+   *
+   * @return whether the slot was evicted
+   */
+  private boolean evict(CacheKey key, Slot slot) {
+    if (!slot.lock.tryLock()) {
+      return false;
+    }
+    try {
+      if (!this.slots.remove(key, slot)) {
+        return false;
+      }
+    } finally {
+      slot.lock.unlock();
+    }
+    if (slot.entry != null) {
+      destroyAsync(key, slot.entry);
+    }
+    return true;
+  }
+
+  private void destroyAsync(final CacheKey key, final Entry entry) {
+    if (entry.destructionCallback == null) {
+      return;
+    }
+    try {
+      this.destructionExecutor.execute(() -> entry.destroy(key));
+    } catch (Throwable ex) {
+      logger.error("Could not schedule destruction of " + key + ", destroying it now", ex);
+      entry.destroy(key);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "TtlScope with time to live " + TimeUnit.NANOSECONDS.toMillis(this.timeToLiveNanos) + "ms";
+  }
+
+  private static final class CacheKey {
+
+    final String name;
+
+    final Object key;
+
+    CacheKey(String name, Object key) {
+      this.name = name;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey otherKey = (CacheKey) other;
+      return (this.name.equals(otherKey.name) &&
+          (this.key == null ? otherKey.key == null : this.key.equals(otherKey.key)));
+    }
+
+    @Override
+    public int hashCode() {
+      return this.name.hashCode() * 31 + (this.key != null ? this.key.hashCode() : 0);
+    }
+
+    @Override
+    public String toString() {
+      return "ttl-scoped object '" + this.name + "'" + (this.key != null ? " for key [" + this.key + "]" : "");
+    }
+  }
+
+  /**
+   * The cached instance for one key. A new instance is created while holding the lock; a thread that finds its slot
+   * no longer mapped after locking it starts over with a new slot.
+   */
+  private static final class Slot {
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    volatile Entry entry;
+  }
+
+  private static final class Entry {
+
+    final Object object;
+
+    final Runnable destructionCallback;
+
+    final long expiresAt;
+
+    volatile long lastAccess;
+
+    Entry(Object object, Runnable destructionCallback, long createdAt, long expiresAt) {
+      this.object = object;
+      this.destructionCallback = destructionCallback;
+      this.lastAccess = createdAt;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired(long now) {
+      return (now - this.expiresAt >= 0);
+    }
+
+    void destroy(CacheKey key) {
+      if (this.destructionCallback != null) {
+        try {
+          this.destructionCallback.run();
+        } catch (Throwable ex) {
+          logger.error("Destruction callback for " + key + " threw an exception", ex);
+        }
+      }
+    }
+  }
+
+}
@@ -1,7 +1,10 @@
 package com.maomao2.spring.beans.definition;
 
+import java.util.function.Supplier;
+
 import com.maomao2.spring.beans.creation.ConfigureBeanFactory;
 import com.maomao2.spring.util.ClassUtils;
+import com.maomao2.spring.util.StringUtils;
 
 public abstract class AbstractBeanDefinition implements BeanDefinition {
 
@@ -68,39 +71,59 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    */
   public static final int DEPENDENCY_CHECK_ALL = 3;
 
-  private volatile Object beanClass;
+  /**
+   * Read-only holders shared by all frozen definitions without constructor arguments or properties
+   */
+  private static final ConstructorArgumentValues FROZEN_EMPTY_CONSTRUCTOR_ARGUMENTS =
+      new ConstructorArgumentValues().freeze();
 
-  private String scope = SCOPE_DEFAULT;
+  private static final MutablePropertyValues FROZEN_EMPTY_PROPERTY_VALUES = new MutablePropertyValues().freeze();
 
-  private boolean lazyInit = false;
+  /*
+   * Layout of the packed flags field: boolean settings in the low bits, followed by the autowire mode and the
+   * dependency check code. Keeping them in a single int saves several words per definition in large registries.
+   */
+  private static final int LAZY_INIT_FLAG = 1;
 
-  private int autowireMode = AUTOWIRE_NO;
+  private static final int AUTOWIRE_CANDIDATE_FLAG = 1 << 1;
 
-  private int dependencyCheck = DEPENDENCY_CHECK_NONE;
+  private static final int ENFORCE_INIT_METHOD_FLAG = 1 << 2;
 
-  private String[] dependsOn;
+  private static final int ABSTRACT_FLAG = 1 << 3;
 
-  private boolean autowireCandidate = true;
+  private static final int PRIMARY_FLAG = 1 << 4;
 
-  private ConstructorArgumentValues constructorArgumentValues;
+  private static final int AUTOWIRE_MODE_SHIFT = 8;
 
-  private MutablePropertyValues propertyValues;
+  private static final int DEPENDENCY_CHECK_SHIFT = 12;
 
-  private String factoryBeanName;
+  private static final int FOUR_BIT_MASK = 0xF;
 
-  private String factoryMethodName;
+  private volatile Object beanClass;
 
-  private String initMethodName;
+  private String scope = SCOPE_DEFAULT;
 
-  private String destroyMethodName;
+  private int flags = AUTOWIRE_CANDIDATE_FLAG | ENFORCE_INIT_METHOD_FLAG;
 
-  private boolean enforceInitMethod = true;
+  /**
+   * Created on first access, so definitions without constructor arguments don't carry an empty holder
+   */
+  private ConstructorArgumentValues constructorArgumentValues;
+
+  /**
+   * Created on first access, so definitions without properties don't carry an empty holder
+   */
+  private MutablePropertyValues propertyValues;
+
+  /**
+   * Settings most definitions leave unset; created when the first of them is set
+   */
+  private Extras extras;
 
   /**
    * Create a new AbstractBeanDefinition with default settings.
    */
   protected AbstractBeanDefinition() {
-    this(null, null);
   }
 
   /**
@@ -109,10 +132,12 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    * @param original the original bean definition to copy from
    */
   protected AbstractBeanDefinition(BeanDefinition original) {
+    setParentName(original.getParentName());
     setBeanClassName(original.getBeanClassName());
     setFactoryBeanName(original.getFactoryBeanName());
     setFactoryMethodName(original.getFactoryMethodName());
     setScope(original.getScope());
+    setAbstract(original.isAbstract());
     setLazyInit(original.isLazyInit());
 
     if (original instanceof AbstractBeanDefinition) {
@@ -124,9 +149,21 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
       setDependencyCheck(originalAbd.getDependencyCheck());
       setDependsOn(originalAbd.getDependsOn());
       setAutowireCandidate(originalAbd.isAutowireCandidate());
+      setPrimary(originalAbd.isPrimary());
+      setQualifier(originalAbd.getQualifier());
+      setInstanceSupplier(originalAbd.getInstanceSupplier());
       setInitMethodName(originalAbd.getInitMethodName());
       setEnforceInitMethod(originalAbd.isEnforceInitMethod());
       setDestroyMethodName(originalAbd.getDestroyMethodName());
+      if (originalAbd.hasConstructorArgumentValues()) {
+        setConstructorArgumentValues(new ConstructorArgumentValues(originalAbd.getConstructorArgumentValues()));
+      }
+      if (originalAbd.hasPropertyValues()) {
+        setPropertyValues(new MutablePropertyValues(originalAbd.getPropertyValues()));
+      }
+    } else {
+      setConstructorArgumentValues(new ConstructorArgumentValues(original.getConstructorArgumentValues()));
+      setPropertyValues(new MutablePropertyValues(original.getPropertyValues()));
     }
   }
 
@@ -138,6 +175,82 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
     setPropertyValues(pvs);
   }
 
+  /**
+   * Override settings in this bean definition (presumably a copied parent from a parent-child inheritance relationship)
+   * from the given bean definition (presumably the child).
+   * <ul>
+   * <li>Will override beanClass if specified in the given bean definition.
+   * <li>Will always take {@code abstract}, {@code scope}, {@code lazyInit}, {@code autowireMode}, {@code
+   * dependencyCheck}, and {@code dependsOn} from the given bean definition.
+   * <li>Will add {@code constructorArgumentValues} and {@code propertyValues} from the given bean definition to
+   * existing ones.
+   * <li>Will override {@code factoryBeanName}, {@code factoryMethodName}, {@code initMethodName}, and {@code
+   * destroyMethodName} if specified in the given bean definition.
+   * </ul>
+   */
+  public void overrideFrom(BeanDefinition other) {
+    if (StringUtils.hasLength(other.getBeanClassName())) {
+      setBeanClassName(other.getBeanClassName());
+    }
+    if (StringUtils.hasLength(other.getScope())) {
+      setScope(other.getScope());
+    }
+    setAbstract(other.isAbstract());
+    setLazyInit(other.isLazyInit());
+    if (other.getFactoryBeanName() != null) {
+      setFactoryBeanName(other.getFactoryBeanName());
+    }
+    if (other.getFactoryMethodName() != null) {
+      setFactoryMethodName(other.getFactoryMethodName());
+    }
+
+    if (other instanceof AbstractBeanDefinition) {
+      AbstractBeanDefinition otherAbd = (AbstractBeanDefinition) other;
+      if (otherAbd.hasBeanClass()) {
+        setBeanClass(otherAbd.getBeanClass());
+      }
+      if (otherAbd.hasConstructorArgumentValues()) {
+        getConstructorArgumentValues().addArgumentValues(otherAbd.getConstructorArgumentValues());
+      }
+      if (otherAbd.hasPropertyValues()) {
+        getPropertyValues().addPropertyValues(otherAbd.getPropertyValues());
+      }
+      setAutowireMode(otherAbd.getAutowireMode());
+      setDependencyCheck(otherAbd.getDependencyCheck());
+      setDependsOn(otherAbd.getDependsOn());
+      setAutowireCandidate(otherAbd.isAutowireCandidate());
+      setPrimary(otherAbd.isPrimary());
+      if (otherAbd.getQualifier() != null) {
+        setQualifier(otherAbd.getQualifier());
+      }
+      if (otherAbd.getInstanceSupplier() != null) {
+        setInstanceSupplier(otherAbd.getInstanceSupplier());
+      }
+      if (otherAbd.getInitMethodName() != null) {
+        setInitMethodName(otherAbd.getInitMethodName());
+        setEnforceInitMethod(otherAbd.isEnforceInitMethod());
+      }
+      if (otherAbd.getDestroyMethodName() != null) {
+        setDestroyMethodName(otherAbd.getDestroyMethodName());
+      }
+    } else {
+      getConstructorArgumentValues().addArgumentValues(other.getConstructorArgumentValues());
+      getPropertyValues().addPropertyValues(other.getPropertyValues());
+    }
+  }
+
+  @Override
+  public void setParentName(String parentName) {
+    if (parentName != null || this.extras != null) {
+      extras().parentName = parentName;
+    }
+  }
+
+  @Override
+  public String getParentName() {
+    return (this.extras != null ? this.extras.parentName : null);
+  }
+
   /**
    * Return whether this definition specifies a bean class.
    */
@@ -248,6 +361,26 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
     return SCOPE_PROTOTYPE.equals(scope);
   }
 
+  /**
+   * Set if this bean is "abstract", i.e. not meant to be instantiated itself but rather just serving as parent for
+   * concrete child bean definitions.
+   * <p>
+   * Default is "false". Specify true to tell the bean factory to not try to instantiate that particular bean in any
+   * case.
+   */
+  public void setAbstract(boolean abstractFlag) {
+    setFlag(ABSTRACT_FLAG, abstractFlag);
+  }
+
+  /**
+   * Return whether this bean is "abstract", i.e. not meant to be instantiated itself but rather just serving as parent
+   * for concrete child bean definitions.
+   */
+  @Override
+  public boolean isAbstract() {
+    return (this.flags & ABSTRACT_FLAG) != 0;
+  }
+
   /**
    * Set whether this bean should be lazily initialized.
    * <p>
@@ -256,7 +389,7 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    */
   @Override
   public void setLazyInit(boolean lazyInit) {
-    this.lazyInit = lazyInit;
+    setFlag(LAZY_INIT_FLAG, lazyInit);
   }
 
   /**
@@ -265,7 +398,7 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    */
   @Override
   public boolean isLazyInit() {
-    return this.lazyInit;
+    return (this.flags & LAZY_INIT_FLAG) != 0;
   }
 
   /**
@@ -280,14 +413,15 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    * @see #AUTOWIRE_AUTODETECT
    */
   public void setAutowireMode(int autowireMode) {
-    this.autowireMode = autowireMode;
+    this.flags = (this.flags & ~(FOUR_BIT_MASK << AUTOWIRE_MODE_SHIFT)) |
+        ((autowireMode & FOUR_BIT_MASK) << AUTOWIRE_MODE_SHIFT);
   }
 
   /**
    * Return the autowire mode as specified in the bean definition.
    */
   public int getAutowireMode() {
-    return this.autowireMode;
+    return (this.flags >>> AUTOWIRE_MODE_SHIFT) & FOUR_BIT_MASK;
   }
 
   /**
@@ -300,14 +434,15 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    * @see #DEPENDENCY_CHECK_ALL
    */
   public void setDependencyCheck(int dependencyCheck) {
-    this.dependencyCheck = dependencyCheck;
+    this.flags = (this.flags & ~(FOUR_BIT_MASK << DEPENDENCY_CHECK_SHIFT)) |
+        ((dependencyCheck & FOUR_BIT_MASK) << DEPENDENCY_CHECK_SHIFT);
   }
 
   /**
    * Return the dependency check code.
    */
   public int getDependencyCheck() {
-    return this.dependencyCheck;
+    return (this.flags >>> DEPENDENCY_CHECK_SHIFT) & FOUR_BIT_MASK;
   }
 
   /**
@@ -319,7 +454,9 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    */
   @Override
   public void setDependsOn(String... dependsOn) {
-    this.dependsOn = dependsOn;
+    if (dependsOn != null || this.extras != null) {
+      extras().dependsOn = (dependsOn != null ? dependsOn.clone() : null);
+    }
   }
 
   /**
@@ -327,7 +464,7 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    */
   @Override
   public String[] getDependsOn() {
-    return this.dependsOn;
+    return (this.extras != null ? this.extras.dependsOn : null);
   }
 
   /**
@@ -335,7 +472,7 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    */
   @Override
   public void setAutowireCandidate(boolean autowireCandidate) {
-    this.autowireCandidate = autowireCandidate;
+    setFlag(AUTOWIRE_CANDIDATE_FLAG, autowireCandidate);
   }
 
   /**
@@ -343,22 +480,77 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    */
   @Override
   public boolean isAutowireCandidate() {
-    return this.autowireCandidate;
+    return (this.flags & AUTOWIRE_CANDIDATE_FLAG) != 0;
+  }
+
+  /**
+   * Set whether this bean is a primary autowire candidate. If this value is true for exactly one bean among multiple
+   * matching candidates, it will serve as a tie-breaker.
+   */
+  @Override
+  public void setPrimary(boolean primary) {
+    setFlag(PRIMARY_FLAG, primary);
+  }
+
+  /**
+   * Return whether this bean is a primary autowire candidate.
+   */
+  @Override
+  public boolean isPrimary() {
+    return (this.flags & PRIMARY_FLAG) != 0;
+  }
+
+  /**
+   * Set the qualifier value of this bean, used to pick it among multiple autowire candidates for an injection point
+   * annotated with a matching {@link com.maomao2.spring.beans.creation.Qualifier}.
+   */
+  public void setQualifier(String qualifier) {
+    if (qualifier != null || this.extras != null) {
+      extras().qualifier = qualifier;
+    }
+  }
+
+  /**
+   * Return the qualifier value of this bean, if any.
+   */
+  public String getQualifier() {
+    return (this.extras != null ? this.extras.qualifier : null);
+  }
+
+  /**
+   * Specify a callback for creating an instance of the bean, as an alternative to reflective instantiation through a
+   * constructor. Bean post-processors and init callbacks are still applied to the supplied instance.
+   */
+  public void setInstanceSupplier(Supplier<?> instanceSupplier) {
+    if (instanceSupplier != null || this.extras != null) {
+      extras().instanceSupplier = instanceSupplier;
+    }
+  }
+
+  /**
+   * Return the callback for creating an instance of the bean, if any.
+   */
+  public Supplier<?> getInstanceSupplier() {
+    return (this.extras != null ? this.extras.instanceSupplier : null);
   }
 
   /**
    * Specify constructor argument values for this bean.
    */
   public void setConstructorArgumentValues(ConstructorArgumentValues constructorArgumentValues) {
-    this.constructorArgumentValues = (constructorArgumentValues != null ? constructorArgumentValues
-        : new ConstructorArgumentValues());
+    this.constructorArgumentValues = constructorArgumentValues;
   }
 
   /**
-   * Return constructor argument values for this bean (never {@code null}).
+   * Return constructor argument values for this bean (never {@code null}). The holder is created on first access; use
+   * {@link #hasConstructorArgumentValues()} to check for arguments without creating it. Once the definition has been
+   * {@link #freeze() frozen}, the holder is read-only.
    */
   @Override
   public ConstructorArgumentValues getConstructorArgumentValues() {
+    if (this.constructorArgumentValues == null) {
+      this.constructorArgumentValues = new ConstructorArgumentValues();
+    }
     return this.constructorArgumentValues;
   }
 
@@ -366,56 +558,74 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    * Return if there are constructor argument values defined for this bean.
    */
   public boolean hasConstructorArgumentValues() {
-    return !this.constructorArgumentValues.isEmpty();
+    return (this.constructorArgumentValues != null && !this.constructorArgumentValues.isEmpty());
   }
 
   /**
    * Specify property values for this bean, if any.
    */
   public void setPropertyValues(MutablePropertyValues propertyValues) {
-    this.propertyValues = (propertyValues != null ? propertyValues : new MutablePropertyValues());
+    this.propertyValues = propertyValues;
   }
 
   /**
-   * Return property values for this bean (never {@code null}).
+   * Return property values for this bean (never {@code null}). The holder is created on first access; use {@link
+   * #hasPropertyValues()} to check for properties without creating it. Once the definition has been {@link #freeze()
+   * frozen}, the holder is read-only.
    */
   @Override
   public MutablePropertyValues getPropertyValues() {
+    if (this.propertyValues == null) {
+      this.propertyValues = new MutablePropertyValues();
+    }
     return this.propertyValues;
   }
 
+  /**
+   * Return if there are property values defined for this bean.
+   */
+  public boolean hasPropertyValues() {
+    return (this.propertyValues != null && !this.propertyValues.isEmpty());
+  }
+
   @Override
   public void setFactoryBeanName(String factoryBeanName) {
-    this.factoryBeanName = factoryBeanName;
+    if (factoryBeanName != null || this.extras != null) {
+      extras().factoryBeanName = factoryBeanName;
+    }
   }
 
   @Override
   public String getFactoryBeanName() {
-    return this.factoryBeanName;
+    return (this.extras != null ? this.extras.factoryBeanName : null);
   }
 
   @Override
   public void setFactoryMethodName(String factoryMethodName) {
-    this.factoryMethodName = factoryMethodName;
+    if (factoryMethodName != null || this.extras != null) {
+      extras().factoryMethodName = factoryMethodName;
+    }
   }
 
   @Override
   public String getFactoryMethodName() {
-    return this.factoryMethodName;
+    return (this.extras != null ? this.extras.factoryMethodName : null);
   }
 
   /**
    * Set the name of the initializer method. The default is {@code null} in which case there is no initializer method.
    */
   public void setInitMethodName(String initMethodName) {
-    this.initMethodName = initMethodName;
+    if (initMethodName != null || this.extras != null) {
+      extras().initMethodName = initMethodName;
+    }
   }
 
   /**
    * Return the name of the initializer method.
    */
   public String getInitMethodName() {
-    return this.initMethodName;
+    return (this.extras != null ? this.extras.initMethodName : null);
   }
 
   /**
@@ -424,7 +634,7 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    * @see #setInitMethodName
    */
   public void setEnforceInitMethod(boolean enforceInitMethod) {
-    this.enforceInitMethod = enforceInitMethod;
+    setFlag(ENFORCE_INIT_METHOD_FLAG, enforceInitMethod);
   }
 
   /**
@@ -433,21 +643,23 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    * @see #getInitMethodName()
    */
   public boolean isEnforceInitMethod() {
-    return this.enforceInitMethod;
+    return (this.flags & ENFORCE_INIT_METHOD_FLAG) != 0;
   }
 
   /**
    * Set the name of the destroy method. The default is {@code null} in which case there is no destroy method.
    */
   public void setDestroyMethodName(String destroyMethodName) {
-    this.destroyMethodName = destroyMethodName;
+    if (destroyMethodName != null || this.extras != null) {
+      extras().destroyMethodName = destroyMethodName;
+    }
   }
 
   /**
    * Return the name of the destroy method.
    */
   public String getDestroyMethodName() {
-    return this.destroyMethodName;
+    return (this.extras != null ? this.extras.destroyMethodName : null);
   }
 
   /**
@@ -459,6 +671,59 @@ public abstract class AbstractBeanDefinition implements BeanDefinition {
    */
   public int getResolvedAutowireMode() {
 
-    return this.autowireMode;
+    return getAutowireMode();
+  }
+
+  /**
+   * Compact this bean definition once it is not going to be modified anymore: empty constructor argument and property
+   * holders are replaced by shared read-only ones, and the remaining ones are packed to their exact size and made
+   * read-only. Since the getters never allocate afterwards, a frozen definition can be read concurrently; holders can
+   * still be replaced through the setters.
+   */
+  public void freeze() {
+    if (this.constructorArgumentValues == null || this.constructorArgumentValues.isEmpty()) {
+      this.constructorArgumentValues = FROZEN_EMPTY_CONSTRUCTOR_ARGUMENTS;
+    } else {
+      this.constructorArgumentValues.freeze();
+    }
+    if (this.propertyValues == null || this.propertyValues.isEmpty()) {
+      this.propertyValues = FROZEN_EMPTY_PROPERTY_VALUES;
+    } else {
+      this.propertyValues.freeze();
+    }
+  }
+
+  private void setFlag(int flag, boolean value) {
+    if (value) {
+      this.flags |= flag;
+    } else {
+      this.flags &= ~flag;
+    }
+  }
+
+  private Extras extras() {
+    if (this.extras == null) {
+      this.extras = new Extras();
+    }
+    return this.extras;
+  }
+
+  private static final class Extras {
+
+    String parentName;
+
+    String[] dependsOn;
+
+    String factoryBeanName;
+
+    String factoryMethodName;
+
+    String initMethodName;
+
+    String destroyMethodName;
+
+    String qualifier;
+
+    Supplier<?> instanceSupplier;
   }
 }
@@ -22,6 +22,16 @@ public interface BeanDefinition {
    */
   String SCOPE_PROTOTYPE = ConfigureBeanFactory.SCOPE_PROTOTYPE;
 
+  /**
+   * Return the name of the parent definition of this bean definition, if any.
+   */
+  String getParentName();
+
+  /**
+   * Set the name of the parent definition of this bean definition, if any.
+   */
+  void setParentName(String parentName);
+
   /**
    * Return the current bean class name of this bean definition.
    * <p>
@@ -112,6 +122,19 @@ public interface BeanDefinition {
    */
   void setAutowireCandidate(boolean autowireCandidate);
 
+  /**
+   * Return whether this bean is a primary autowire candidate.
+   */
+  boolean isPrimary();
+
+  /**
+   * Set whether this bean is a primary autowire candidate.
+   * <p>
+   * If this value is {@code true} for exactly one bean among multiple matching candidates, it will serve as a
+   * tie-breaker.
+   */
+  void setPrimary(boolean primary);
+
   /**
    * Return the constructor argument values for this bean.
    * <p>
@@ -144,4 +167,10 @@ public interface BeanDefinition {
    */
   boolean isPrototype();
 
+  /**
+   * Return whether this bean is "abstract", that is, not meant to be instantiated itself but rather just serving as
+   * parent for concrete child bean definitions.
+   */
+  boolean isAbstract();
+
 }
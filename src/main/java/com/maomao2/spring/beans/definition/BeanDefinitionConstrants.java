@@ -82,6 +82,8 @@ public final class BeanDefinitionConstrants {
 
   public static final String REF_ATTRIBUTE = "ref";
 
+  public static final String PROVIDER_REF_ATTRIBUTE = "provider-ref";
+
   public static final String VALUE_ATTRIBUTE = "value";
 
   public static final String LOOKUP_METHOD_ELEMENT = "lookup-method";
@@ -148,5 +150,15 @@ public final class BeanDefinitionConstrants {
 
   public static final String DEFAULT_DESTROY_METHOD_ATTRIBUTE = "default-destroy-method";
 
+  public static final String PROPERTY_PLACEHOLDER_ELEMENT = "property-placeholder";
+
+  public static final String LOCATION_ATTRIBUTE = "location";
+
+  public static final String PROFILE_ATTRIBUTE = "profile";
+
+  public static final String CLASS_PRESENT_ATTRIBUTE = "if-class-present";
+
+  public static final String PROPERTY_CONDITION_ATTRIBUTE = "if-property";
+
 
 }
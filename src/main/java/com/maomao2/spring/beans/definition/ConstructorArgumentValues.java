@@ -1,8 +1,9 @@
 package com.maomao2.spring.beans.definition;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -11,9 +12,17 @@ import com.maomao2.spring.util.ClassUtils;
 
 public class ConstructorArgumentValues {
 
-    private final Map<Integer, ValueHolder> indexedArgumentValues = new LinkedHashMap<Integer, ValueHolder>(0);
+    /**
+     * Indexed argument values; shared empty map until the first value gets added
+     */
+    private Map<Integer, ValueHolder> indexedArgumentValues = Collections.emptyMap();
+
+    /**
+     * Generic argument values; shared empty list until the first value gets added
+     */
+    private List<ValueHolder> genericArgumentValues = Collections.emptyList();
 
-    private final List<ValueHolder> genericArgumentValues = new LinkedList<ValueHolder>();
+    private boolean frozen;
 
     /**
      * Create a new empty ConstructorArgumentValues object.
@@ -21,6 +30,36 @@ public class ConstructorArgumentValues {
     public ConstructorArgumentValues() {
     }
 
+    /**
+     * Deep copy constructor.
+     *
+     * @param original
+     *            the ConstructorArgumentValues to copy
+     */
+    public ConstructorArgumentValues(ConstructorArgumentValues original) {
+        addArgumentValues(original);
+    }
+
+    /**
+     * Copy all given argument values into this object, using separate holder instances to keep the values independent
+     * from the original object.
+     *
+     * @param other
+     *            the ConstructorArgumentValues to copy from
+     */
+    public void addArgumentValues(ConstructorArgumentValues other) {
+        if (other != null) {
+            for (Map.Entry<Integer, ValueHolder> entry : other.indexedArgumentValues.entrySet()) {
+                addOrMergeIndexedArgumentValue(entry.getKey(), entry.getValue().copy());
+            }
+            for (ValueHolder valueHolder : other.genericArgumentValues) {
+                if (!this.genericArgumentValues.contains(valueHolder)) {
+                    addOrMergeGenericArgumentValue(valueHolder.copy());
+                }
+            }
+        }
+    }
+
     /**
      * Add an argument value for the given index in the constructor argument list.
      *
@@ -58,6 +97,10 @@ public class ConstructorArgumentValues {
      *            the argument value in the form of a ValueHolder
      */
     private void addOrMergeIndexedArgumentValue(Integer key, ValueHolder newValue) {
+        assertNotFrozen();
+        if (this.indexedArgumentValues.isEmpty()) {
+            this.indexedArgumentValues = new LinkedHashMap<Integer, ValueHolder>(4);
+        }
         this.indexedArgumentValues.put(key, newValue);
     }
 
@@ -142,7 +185,7 @@ public class ConstructorArgumentValues {
      *            the argument value
      */
     public void addGenericArgumentValue(Object value) {
-        this.genericArgumentValues.add(new ValueHolder(value));
+        addOrMergeGenericArgumentValue(new ValueHolder(value));
     }
 
     /**
@@ -156,7 +199,7 @@ public class ConstructorArgumentValues {
      *            the type of the constructor argument
      */
     public void addGenericArgumentValue(Object value, String type) {
-        this.genericArgumentValues.add(new ValueHolder(value, type));
+        addOrMergeGenericArgumentValue(new ValueHolder(value, type));
     }
 
     /**
@@ -187,9 +230,11 @@ public class ConstructorArgumentValues {
      *            the argument value in the form of a ValueHolder
      */
     private void addOrMergeGenericArgumentValue(ValueHolder newValue) {
-
+        assertNotFrozen();
+        if (this.genericArgumentValues.isEmpty()) {
+            this.genericArgumentValues = new ArrayList<ValueHolder>(4);
+        }
         this.genericArgumentValues.add(newValue);
-
     }
 
     /**
@@ -334,6 +379,54 @@ public class ConstructorArgumentValues {
         return (this.indexedArgumentValues.isEmpty() && this.genericArgumentValues.isEmpty());
     }
 
+    /**
+     * Trim the internal storage to the number of argument values actually held, e.g. once the owning bean definition
+     * gets frozen.
+     */
+    public void trimToSize() {
+        if (this.genericArgumentValues instanceof ArrayList) {
+            ((ArrayList<ValueHolder>) this.genericArgumentValues).trimToSize();
+        }
+    }
+
+    /**
+     * Make these argument values read-only, packing them into collections of their exact size. Frozen values can be
+     * read concurrently; adding values throws an {@link IllegalStateException}.
+     *
+     * @return this instance
+     */
+    public ConstructorArgumentValues freeze() {
+        if (!this.frozen) {
+            if (this.indexedArgumentValues.size() == 1) {
+                Map.Entry<Integer, ValueHolder> entry = this.indexedArgumentValues.entrySet().iterator().next();
+                this.indexedArgumentValues = Collections.singletonMap(entry.getKey(), entry.getValue());
+            } else if (!this.indexedArgumentValues.isEmpty()) {
+                this.indexedArgumentValues = Collections.unmodifiableMap(this.indexedArgumentValues);
+            }
+            if (this.genericArgumentValues.size() == 1) {
+                this.genericArgumentValues = Collections.singletonList(this.genericArgumentValues.get(0));
+            } else if (!this.genericArgumentValues.isEmpty()) {
+                this.genericArgumentValues = Collections.unmodifiableList(Arrays.asList(
+                        this.genericArgumentValues.toArray(new ValueHolder[this.genericArgumentValues.size()])));
+            }
+            this.frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Return whether these argument values have been frozen.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    private void assertNotFrozen() {
+        if (this.frozen) {
+            throw new IllegalStateException("Constructor arguments of a frozen bean definition cannot be modified");
+        }
+    }
+
     /**
      * Holder for a constructor argument value, with an optional type attribute indicating the target type of the actual
      * constructor argument.
@@ -429,6 +522,13 @@ public class ConstructorArgumentValues {
             return this.name;
         }
 
+        /**
+         * Create a copy of this ValueHolder: that is, an independent ValueHolder instance with the same contents.
+         */
+        public ValueHolder copy() {
+            return new ValueHolder(this.value, this.type, this.name);
+        }
+
     }
 
 }
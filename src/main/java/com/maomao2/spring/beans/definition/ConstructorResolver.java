@@ -1,20 +1,31 @@
 package com.maomao2.spring.beans.definition;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.beanutils.ConvertUtils;
 
 import com.maomao2.spring.beans.creation.AbstractBeanFactory;
+import com.maomao2.spring.beans.creation.DependencyDescriptor;
 import com.maomao2.spring.beans.definition.ConstructorArgumentValues.ValueHolder;
 import com.maomao2.spring.beans.parsing.BeanDefinitionValueResolver;
 import com.maomao2.spring.exception.BeanCreationException;
 import com.maomao2.spring.exception.BeanInstantiationException;
+import com.maomao2.spring.exception.NoSuchBeanDefinitionException;
+import com.maomao2.spring.exception.NoUniqueBeanDefinitionException;
 import com.maomao2.spring.util.MethodInvoker;
 import com.maomao2.spring.util.ReflectionUtils;
 
@@ -32,9 +43,13 @@ public class ConstructorResolver {
     public Object autowireConstructor(String beanName, RootBeanDefinition mbd, Object[] explicitArgs) {
         Constructor<?> constructorToUse = null;
         Object[] argsToUse = null;
-        ConstructorArgumentValues cargs = mbd.getConstructorArgumentValues();
+        boolean autowiring = (mbd.getResolvedAutowireMode() == RootBeanDefinition.AUTOWIRE_CONSTRUCTOR);
         ConstructorArgumentValues resolvedValues = new ConstructorArgumentValues();
-        int minNrOfArgs = resolveConstructorArguments(beanName, mbd, cargs, resolvedValues);
+        int minNrOfArgs = 0;
+        if (mbd.hasConstructorArgumentValues()) {
+            minNrOfArgs = resolveConstructorArguments(beanName, mbd, mbd.getConstructorArgumentValues(),
+                    resolvedValues);
+        }
 
         // Take specified constructors, if any.
         Constructor<?>[] candidates = null;
@@ -45,6 +60,14 @@ public class ConstructorResolver {
             throw new BeanCreationException("Resolution of declared constructors on bean Class [" + beanClass.getName()
                     + "] from ClassLoader [" + beanClass.getClassLoader() + "] failed", ex);
         }
+        if (autowiring) {
+            // Prefer the greediest constructor whose dependencies can all be satisfied.
+            Arrays.sort(candidates, new Comparator<Constructor<?>>() {
+                public int compare(Constructor<?> c1, Constructor<?> c2) {
+                    return c2.getParameterTypes().length - c1.getParameterTypes().length;
+                }
+            });
+        }
 
         int minTypeDiffWeight = Integer.MAX_VALUE;
 
@@ -58,20 +81,25 @@ public class ConstructorResolver {
 
             String[] paramNames = getParameterNames(candidate);
             ArgumentsHolder argsHolder;
-            argsHolder = createArgumentArray(beanName, mbd, resolvedValues, paramTypes, paramNames, candidate);
+            argsHolder = createArgumentArray(beanName, mbd, resolvedValues, paramTypes, paramNames, candidate,
+                    autowiring);
+            if (argsHolder == null) {
+                // Unsatisfied autowired dependency - try the next constructor.
+                continue;
+            }
 
             int typeDiffWeight = argsHolder.getTypeDifferenceWeight(paramTypes);
             // Choose this constructor if it represents the closest match.
             if (typeDiffWeight < minTypeDiffWeight) {
                 constructorToUse = candidate;
                 argsToUse = argsHolder.arguments;
-
+                minTypeDiffWeight = typeDiffWeight;
             }
+        }
 
-            if (constructorToUse == null) {
-                throw new BeanCreationException("无法找到符合条件的构造函数"
-                        + "(hint: specify index/type/name arguments for simple parameters to avoid type ambiguities)");
-            }
+        if (constructorToUse == null) {
+            throw new BeanCreationException(beanName, "无法找到符合条件的构造函数"
+                    + "(hint: specify index/type/name arguments for simple parameters to avoid type ambiguities)");
         }
 
         try {
@@ -86,8 +114,8 @@ public class ConstructorResolver {
         }
     }
 
-    public String[] getParameterNames(Constructor<?> ctor) {
-        Parameter[] parameters = ctor.getParameters();
+    public String[] getParameterNames(Executable executable) {
+        Parameter[] parameters = executable.getParameters();
         String[] parameterNames = new String[parameters.length];
         for (int i = 0; i < parameters.length; i++) {
             Parameter param = parameters[i];
@@ -99,9 +127,16 @@ public class ConstructorResolver {
         return parameterNames;
     }
 
+    /**
+     * Create an array of arguments to invoke the given constructor with, given the resolved constructor argument
+     * values. When autowiring, parameters without an explicit value are resolved against the bean factory; the
+     * candidate is only needed in that case.
+     *
+     * @return the arguments, or {@code null} if an autowired parameter could not be satisfied
+     */
     private ArgumentsHolder createArgumentArray(String beanName, RootBeanDefinition mbd,
             ConstructorArgumentValues resolvedValues, Class<?>[] paramTypes, String[] paramNames,
-            Constructor<?> candidate) {
+            Constructor<?> candidate, boolean autowiring) {
 
         ArgumentsHolder args = new ArgumentsHolder(paramTypes.length);
         Set<ConstructorArgumentValues.ValueHolder> usedValueHolders = new HashSet<ValueHolder>(paramTypes.length);
@@ -129,6 +164,18 @@ public class ConstructorResolver {
 
                 args.resolveNecessary = true;
                 args.rawArguments[paramIndex] = originalValue;
+            } else if (autowiring) {
+                try {
+                    Object autowiredArgument = this.beanFactory.resolveDependency(
+                            new DependencyDescriptor(candidate, paramIndex, true), beanName);
+                    args.arguments[paramIndex] = autowiredArgument;
+                    args.rawArguments[paramIndex] = autowiredArgument;
+                } catch (NoUniqueBeanDefinitionException ex) {
+                    throw new BeanCreationException(beanName, "Ambiguous dependency for parameter " + paramIndex +
+                            " of constructor " + candidate, ex);
+                } catch (NoSuchBeanDefinitionException ex) {
+                    return null;
+                }
             }
         }
 
@@ -224,35 +271,282 @@ public class ConstructorResolver {
 
     }
 
+    /**
+     * Instantiate the bean using a named factory method: a static method on the bean class, or an instance method on
+     * the bean referenced by {@code factory-bean}.
+     * <p>
+     * Overloads are resolved on the first instantiation only. The chosen method is cached in the bean definition as a
+     * MethodHandle, so later instantiations (e.g. of a prototype) neither scan the factory class nor go through
+     * reflective invocation. Explicit arguments always trigger a fresh resolution.
+     *
+     * @param beanName
+     *            the name of the bean
+     * @param mbd
+     *            the merged bean definition for the bean
+     * @param explicitArgs
+     *            argument values passed in programmatically via the getBean method, or {@code null} if none
+     * @return the new instance
+     */
     public Object instantiateUsingFactoryMethod(
             final String beanName, final RootBeanDefinition mbd, final Object[] explicitArgs) {
-        try {
-            Object beanInstance;
-            Method factoryMethodToUse = null;
-            Object factoryBean = null;
-            Object[] argsToUse = null;
-            beanInstance = this.instantiate(
-                    mbd, beanName, this.beanFactory, factoryBean, factoryMethodToUse, argsToUse);
-            return beanInstance;
-        } catch (Throwable ex) {
-            throw new BeanCreationException(beanName,
-                    "Bean instantiation via factory method failed", ex);
+        Object factoryBean;
+        Class<?> factoryClass;
+        boolean isStatic;
+        String factoryBeanName = mbd.getFactoryBeanName();
+        if (factoryBeanName != null) {
+            if (factoryBeanName.equals(beanName)) {
+                throw new BeanCreationException(beanName,
+                        "factory-bean reference points back to the same bean definition");
+            }
+            factoryBean = this.beanFactory.getBean(factoryBeanName);
+            this.beanFactory.registerDependentBean(factoryBeanName, beanName);
+            factoryClass = factoryBean.getClass();
+            isStatic = false;
+        } else {
+            if (!mbd.hasBeanClass()) {
+                throw new BeanCreationException(beanName,
+                        "bean definition declares neither a bean class nor a factory-bean reference");
+            }
+            factoryBean = null;
+            factoryClass = mbd.getBeanClass();
+            isStatic = true;
+        }
+
+        ResolvedFactoryMethod factoryMethodToUse = null;
+        Object[] argsToUse = null;
+        if (explicitArgs == null) {
+            factoryMethodToUse = mbd.resolvedFactoryMethod;
+            if (factoryMethodToUse != null && factoryMethodToUse.factoryClass == factoryClass) {
+                argsToUse = resolvePreparedArguments(beanName, mbd, factoryMethodToUse.method);
+            } else {
+                factoryMethodToUse = null;
+            }
         }
+
+        if (factoryMethodToUse == null) {
+            ConstructorArgumentValues resolvedValues = null;
+            int nrOfArgs;
+            if (explicitArgs != null) {
+                nrOfArgs = explicitArgs.length;
+            } else {
+                resolvedValues = new ConstructorArgumentValues();
+                if (mbd.hasConstructorArgumentValues()) {
+                    resolveConstructorArguments(beanName, mbd, mbd.getConstructorArgumentValues(), resolvedValues);
+                }
+                nrOfArgs = resolvedValues.getArgumentCount();
+            }
+
+            Method methodToUse = null;
+            int minTypeDiffWeight = Integer.MAX_VALUE;
+            for (Method candidate : factoryClass.getMethods()) {
+                if (!isFactoryMethodCandidate(candidate, mbd, isStatic) || candidate.getParameterCount() != nrOfArgs) {
+                    continue;
+                }
+                Class<?>[] paramTypes = candidate.getParameterTypes();
+                Object[] args;
+                int typeDiffWeight;
+                if (explicitArgs != null) {
+                    args = explicitArgs;
+                    typeDiffWeight = MethodInvoker.getTypeDifferenceWeight(paramTypes, args);
+                } else {
+                    ArgumentsHolder argsHolder = createArgumentArray(beanName, mbd, resolvedValues, paramTypes,
+                            getParameterNames(candidate), null, false);
+                    args = argsHolder.arguments;
+                    typeDiffWeight = argsHolder.getTypeDifferenceWeight(paramTypes);
+                }
+                // Choose this factory method if it represents the closest match.
+                if (typeDiffWeight < minTypeDiffWeight) {
+                    methodToUse = candidate;
+                    argsToUse = args;
+                    minTypeDiffWeight = typeDiffWeight;
+                }
+            }
+
+            if (methodToUse == null) {
+                throw new BeanCreationException(beanName, "No matching factory method found: " +
+                        (isStatic ? "static " : "") + "factory method '" + mbd.getFactoryMethodName() + "' with " +
+                        nrOfArgs + " argument(s) on class [" + factoryClass.getName() + "]");
+            }
+            factoryMethodToUse = ResolvedFactoryMethod.forMethod(factoryClass, methodToUse);
+            if (explicitArgs == null) {
+                mbd.resolvedFactoryMethod = factoryMethodToUse;
+            }
+        }
+
+        return factoryMethodToUse.invoke(beanName, factoryBean, argsToUse);
     }
 
-    private Object instantiate(RootBeanDefinition mbd, String beanName, AbstractBeanFactory abstractBeanFactory,
-            Object factoryBean, Method factoryMethod, Object[] args) {
-        try {
-            return factoryMethod.invoke(factoryBean, args);
-        } catch (IllegalArgumentException ex) {
-            throw new BeanInstantiationException(factoryMethod,
-                    "Illegal arguments to factory method '" + factoryMethod.getName() + "'; ", ex);
-        } catch (IllegalAccessException ex) {
-            throw new BeanInstantiationException(factoryMethod,
-                    "Cannot access factory method '" + factoryMethod.getName() + "'; is it public?", ex);
-        } catch (InvocationTargetException ex) {
-            String msg = "Factory method '" + factoryMethod.getName() + "' threw exception";
-            throw new BeanInstantiationException(factoryMethod, msg, ex.getTargetException());
+    /**
+     * Resolve the constructor argument values of the given bean definition for the already determined factory method.
+     */
+    private Object[] resolvePreparedArguments(String beanName, RootBeanDefinition mbd, Method factoryMethod) {
+        Class<?>[] paramTypes = factoryMethod.getParameterTypes();
+        if (paramTypes.length == 0) {
+            return new Object[0];
+        }
+        ConstructorArgumentValues resolvedValues = new ConstructorArgumentValues();
+        resolveConstructorArguments(beanName, mbd, mbd.getConstructorArgumentValues(), resolvedValues);
+        return createArgumentArray(beanName, mbd, resolvedValues, paramTypes, getParameterNames(factoryMethod), null,
+                false).arguments;
+    }
+
+    private static boolean isFactoryMethodCandidate(Method candidate, RootBeanDefinition mbd, boolean isStatic) {
+        return (Modifier.isStatic(candidate.getModifiers()) == isStatic &&
+                candidate.getName().equals(mbd.getFactoryMethodName()) && candidate.getReturnType() != void.class);
+    }
+
+    /**
+     * Determine the type of the object the factory method of the given bean definition will return, without
+     * instantiating anything. If the method is overloaded with different return types and has not been resolved yet,
+     * the type cannot be determined.
+     *
+     * @param beanName
+     *            the name of the bean
+     * @param mbd
+     *            the merged bean definition for the bean
+     * @return the return type of the factory method, or {@code null} if not determinable
+     */
+    public Class<?> getTypeForFactoryMethod(String beanName, RootBeanDefinition mbd) {
+        ResolvedFactoryMethod resolved = mbd.resolvedFactoryMethod;
+        if (resolved != null) {
+            return resolved.method.getReturnType();
+        }
+        Class<?> returnType = mbd.factoryMethodReturnType;
+        if (returnType != null) {
+            return returnType;
+        }
+
+        Class<?> factoryClass;
+        boolean isStatic;
+        if (mbd.getFactoryBeanName() != null) {
+            factoryClass = this.beanFactory.getType(mbd.getFactoryBeanName());
+            isStatic = false;
+        } else {
+            try {
+                factoryClass = (mbd.hasBeanClass() ? mbd.getBeanClass() :
+                        mbd.resolveBeanClass(this.beanFactory.getBeanClassLoader()));
+            } catch (ClassNotFoundException ex) {
+                return null;
+            }
+            isStatic = true;
+        }
+        if (factoryClass == null) {
+            return null;
+        }
+        for (Method candidate : factoryClass.getMethods()) {
+            if (isFactoryMethodCandidate(candidate, mbd, isStatic)) {
+                if (returnType == null) {
+                    returnType = candidate.getReturnType();
+                } else if (returnType != candidate.getReturnType()) {
+                    // Ambiguous overloads: only known once resolved against actual arguments
+                    return null;
+                }
+            }
+        }
+        mbd.factoryMethodReturnType = returnType;
+        return returnType;
+    }
+
+    /**
+     * A factory method resolved for a bean definition, together with the MethodHandle to invoke it through.
+     */
+    static final class ResolvedFactoryMethod {
+
+        /**
+         * Numeric primitive types in the order they widen to each other
+         */
+        private static final List<Class<?>> PRIMITIVE_WIDENING_ORDER = Arrays.<Class<?>>asList(
+                byte.class, short.class, int.class, long.class, float.class, double.class);
+
+        final Class<?> factoryClass;
+
+        final Method method;
+
+        /**
+         * Handle of type {@code (Object factoryBean, Object[] args)Object}; the factory bean is ignored for static
+         * methods
+         */
+        private final MethodHandle handle;
+
+        private ResolvedFactoryMethod(Class<?> factoryClass, Method method, MethodHandle handle) {
+            this.factoryClass = factoryClass;
+            this.method = method;
+            this.handle = handle;
+        }
+
+        static ResolvedFactoryMethod forMethod(Class<?> factoryClass, Method method) {
+            ReflectionUtils.makeAccessible(method);
+            MethodHandle handle;
+            try {
+                handle = MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException ex) {
+                throw new BeanInstantiationException(method,
+                        "Cannot access factory method '" + method.getName() + "'; is it public?", ex);
+            }
+            int nrOfArgs = method.getParameterCount();
+            if (Modifier.isStatic(method.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle.asType(MethodType.genericMethodType(nrOfArgs)), 0,
+                        Object.class);
+            } else {
+                handle = handle.asType(MethodType.genericMethodType(nrOfArgs + 1));
+            }
+            return new ResolvedFactoryMethod(factoryClass, method, handle.asSpreader(Object[].class, nrOfArgs));
+        }
+
+        /**
+         * Invoke the factory method. The arguments are checked upfront, so that a ClassCastException can only come from
+         * the factory method itself.
+         *
+         * @throws BeanCreationException if the arguments don't match the method, or the method threw an exception
+         */
+        Object invoke(String beanName, Object factoryBean, Object[] args) {
+            checkArguments(beanName, factoryBean, args);
+            try {
+                return (Object) this.handle.invokeExact(factoryBean, args);
+            } catch (Error err) {
+                throw err;
+            } catch (Throwable ex) {
+                throw new BeanCreationException(beanName,
+                        "Factory method '" + this.method.getName() + "' threw exception", ex);
+            }
+        }
+
+        private void checkArguments(String beanName, Object factoryBean, Object[] args) {
+            boolean receiverMatches = (Modifier.isStatic(this.method.getModifiers()) ||
+                    this.method.getDeclaringClass().isInstance(factoryBean));
+            Class<?>[] paramTypes = this.method.getParameterTypes();
+            boolean argumentsMatch = receiverMatches && args.length == paramTypes.length;
+            for (int i = 0; argumentsMatch && i < paramTypes.length; i++) {
+                argumentsMatch = isAssignableArgument(paramTypes[i], args[i]);
+            }
+            if (!argumentsMatch) {
+                throw new BeanCreationException(beanName, "Illegal arguments to factory method '" +
+                        this.method.getName() + "': expected " + Arrays.toString(paramTypes) + ", got " +
+                        Arrays.toString(args) + (receiverMatches ? "" : " on " + factoryBean));
+            }
+        }
+
+        /**
+         * Determine whether the given argument can be passed for a parameter of the given type, with the unboxing and
+         * widening conversions that the method handle applies.
+         */
+        private static boolean isAssignableArgument(Class<?> paramType, Object arg) {
+            if (!paramType.isPrimitive()) {
+                return (arg == null || paramType.isInstance(arg));
+            }
+            if (arg == null) {
+                return false;
+            }
+            Class<?> argType = MethodType.methodType(arg.getClass()).unwrap().returnType();
+            if (argType == paramType) {
+                return true;
+            }
+            if (!argType.isPrimitive() || argType == boolean.class || paramType == boolean.class ||
+                    paramType == char.class) {
+                return false;
+            }
+            int argRank = PRIMITIVE_WIDENING_ORDER.indexOf(argType == char.class ? int.class : argType);
+            return (argRank >= 0 && PRIMITIVE_WIDENING_ORDER.indexOf(paramType) >= argRank);
         }
     }
 
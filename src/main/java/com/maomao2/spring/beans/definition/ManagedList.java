@@ -0,0 +1,18 @@
+package com.maomao2.spring.beans.definition;
+
+import java.util.ArrayList;
+
+/**
+ * Tag collection class used to hold managed List elements, which may include runtime bean references (to be resolved
+ * into bean objects).
+ *
+ * @param <E> the element type
+ */
+@SuppressWarnings("serial")
+public class ManagedList<E> extends ArrayList<E> {
+
+  public ManagedList(int initialCapacity) {
+    super(initialCapacity);
+  }
+
+}
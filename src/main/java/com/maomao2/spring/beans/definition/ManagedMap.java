@@ -0,0 +1,19 @@
+package com.maomao2.spring.beans.definition;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Tag collection class used to hold managed Map values, which may include runtime bean references (to be resolved into
+ * bean objects). Keeps the declaration order.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+@SuppressWarnings("serial")
+public class ManagedMap<K, V> extends LinkedHashMap<K, V> {
+
+  public ManagedMap(int initialCapacity) {
+    super(initialCapacity);
+  }
+
+}
@@ -0,0 +1,12 @@
+package com.maomao2.spring.beans.definition;
+
+import java.util.Properties;
+
+/**
+ * Tag class which represents a managed Properties instance, whose keys and values are {@link TypedStringValue}s that
+ * may contain placeholders and expressions.
+ */
+@SuppressWarnings("serial")
+public class ManagedProperties extends Properties {
+
+}
@@ -0,0 +1,18 @@
+package com.maomao2.spring.beans.definition;
+
+import java.util.LinkedHashSet;
+
+/**
+ * Tag collection class used to hold managed Set values, which may include runtime bean references (to be resolved into
+ * bean objects). Keeps the declaration order.
+ *
+ * @param <E> the element type
+ */
+@SuppressWarnings("serial")
+public class ManagedSet<E> extends LinkedHashSet<E> {
+
+  public ManagedSet(int initialCapacity) {
+    super(initialCapacity);
+  }
+
+}
@@ -1,15 +1,21 @@
 package com.maomao2.spring.beans.definition;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public class MutablePropertyValues implements PropertyValues {
 
-  private final List<PropertyValue> propertyValueList;
+  private static final PropertyValue[] EMPTY_PROPERTY_VALUES = new PropertyValue[0];
 
-  private Set<String> processedProperties;
+  /**
+   * Shared empty list until the first property value gets added
+   */
+  private List<PropertyValue> propertyValueList;
+
+  private boolean frozen;
 
   /**
    * Creates a new empty MutablePropertyValues object.
@@ -19,12 +25,12 @@ public class MutablePropertyValues implements PropertyValues {
    * @see #add(String, Object)
    */
   public MutablePropertyValues() {
-    this.propertyValueList = new ArrayList<PropertyValue>(0);
+    this.propertyValueList = Collections.emptyList();
   }
 
   /**
-   * Deep copy constructor. Guarantees PropertyValue references are independent, although it can't deep copy objects
-   * currently referenced by individual PropertyValue objects.
+   * Copy constructor. PropertyValue objects are immutable, so they are shared with the original rather than copied;
+   * the copy can be modified without affecting the original.
    *
    * @param original the PropertyValues to copy
    * @see #addPropertyValues(PropertyValues)
@@ -32,14 +38,12 @@ public class MutablePropertyValues implements PropertyValues {
   public MutablePropertyValues(PropertyValues original) {
     // We can optimize this because it's all new:
     // There is no replacement of existing property values.
-    if (original != null) {
+    if (original != null && !original.isEmpty()) {
       PropertyValue[] pvs = original.getPropertyValues();
       this.propertyValueList = new ArrayList<PropertyValue>(pvs.length);
-      for (PropertyValue pv : pvs) {
-        this.propertyValueList.add(new PropertyValue(pv));
-      }
+      Collections.addAll(this.propertyValueList, pvs);
     } else {
-      this.propertyValueList = new ArrayList<PropertyValue>(0);
+      this.propertyValueList = Collections.emptyList();
     }
   }
 
@@ -51,6 +55,10 @@ public class MutablePropertyValues implements PropertyValues {
    * use.
    */
   public List<PropertyValue> getPropertyValueList() {
+    if (this.frozen) {
+      return this.propertyValueList;
+    }
+    ensureModifiable();
     return this.propertyValueList;
   }
 
@@ -61,6 +69,21 @@ public class MutablePropertyValues implements PropertyValues {
     return this.propertyValueList.size();
   }
 
+  /**
+   * Copy all given PropertyValues into this object, replacing existing values for the same properties.
+   *
+   * @param other the PropertyValues to copy
+   * @return this in order to allow for adding multiple property values in a chain
+   */
+  public MutablePropertyValues addPropertyValues(PropertyValues other) {
+    if (other != null) {
+      for (PropertyValue pv : other.getPropertyValues()) {
+        addPropertyValue(pv);
+      }
+    }
+    return this;
+  }
+
   /**
    * Add all property values from the given Map.
    *
@@ -81,6 +104,7 @@ public class MutablePropertyValues implements PropertyValues {
    * Modify a PropertyValue object held in this object. Indexed from 0.
    */
   public void setPropertyValueAt(PropertyValue pv, int i) {
+    assertNotFrozen();
     this.propertyValueList.set(i, pv);
   }
 
@@ -90,6 +114,7 @@ public class MutablePropertyValues implements PropertyValues {
    * @param pv the PropertyValue to remove
    */
   public void removePropertyValue(PropertyValue pv) {
+    assertNotFrozen();
     this.propertyValueList.remove(pv);
   }
 
@@ -100,10 +125,14 @@ public class MutablePropertyValues implements PropertyValues {
    * @see #removePropertyValue(PropertyValue)
    */
   public void removePropertyValue(String propertyName) {
+    assertNotFrozen();
     this.propertyValueList.remove(getPropertyValue(propertyName));
   }
 
   public PropertyValue[] getPropertyValues() {
+    if (this.propertyValueList.isEmpty()) {
+      return EMPTY_PROPERTY_VALUES;
+    }
     return this.propertyValueList.toArray(new PropertyValue[this.propertyValueList.size()]);
   }
 
@@ -131,8 +160,7 @@ public class MutablePropertyValues implements PropertyValues {
   }
 
   public boolean contains(String propertyName) {
-    return (getPropertyValue(propertyName) != null ||
-        (this.processedProperties != null && this.processedProperties.contains(propertyName)));
+    return (getPropertyValue(propertyName) != null);
   }
 
   public boolean isEmpty() {
@@ -147,6 +175,7 @@ public class MutablePropertyValues implements PropertyValues {
    * @return this in order to allow for adding multiple property values in a chain
    */
   public MutablePropertyValues addPropertyValue(PropertyValue pv) {
+    assertNotFrozen();
     for (int i = 0; i < this.propertyValueList.size(); i++) {
       PropertyValue currentPv = this.propertyValueList.get(i);
       if (currentPv.getName().equals(pv.getName())) {
@@ -154,7 +183,57 @@ public class MutablePropertyValues implements PropertyValues {
         return this;
       }
     }
+    ensureModifiable();
     this.propertyValueList.add(pv);
     return this;
   }
+
+  /**
+   * Trim the internal storage to the number of property values actually held, e.g. once the owning bean definition
+   * gets frozen.
+   */
+  public void trimToSize() {
+    if (this.propertyValueList instanceof ArrayList) {
+      ((ArrayList<PropertyValue>) this.propertyValueList).trimToSize();
+    }
+  }
+
+  /**
+   * Make these property values read-only, packing them into an array-backed list of their exact size. Frozen values
+   * can be read concurrently; any modification throws an {@link IllegalStateException}.
+   *
+   * @return this instance
+   */
+  public MutablePropertyValues freeze() {
+    if (!this.frozen) {
+      if (this.propertyValueList.isEmpty()) {
+        this.propertyValueList = Collections.emptyList();
+      } else if (this.propertyValueList.size() == 1) {
+        this.propertyValueList = Collections.singletonList(this.propertyValueList.get(0));
+      } else {
+        this.propertyValueList = Collections.unmodifiableList(Arrays.asList(getPropertyValues()));
+      }
+      this.frozen = true;
+    }
+    return this;
+  }
+
+  /**
+   * Return whether these property values have been frozen.
+   */
+  public boolean isFrozen() {
+    return this.frozen;
+  }
+
+  private void assertNotFrozen() {
+    if (this.frozen) {
+      throw new IllegalStateException("Property values of a frozen bean definition cannot be modified");
+    }
+  }
+
+  private void ensureModifiable() {
+    if (!(this.propertyValueList instanceof ArrayList)) {
+      this.propertyValueList = new ArrayList<PropertyValue>(4);
+    }
+  }
 }
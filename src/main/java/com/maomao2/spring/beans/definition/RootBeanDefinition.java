@@ -1,17 +1,88 @@
 package com.maomao2.spring.beans.definition;
 
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
 public class RootBeanDefinition extends AbstractBeanDefinition {
 
+  /**
+   * Package-visible field for caching the resolved factory method, set on first instantiation
+   */
+  volatile ConstructorResolver.ResolvedFactoryMethod resolvedFactoryMethod;
+
+  /**
+   * Package-visible field for caching the return type of the factory method, for type matching
+   */
+  volatile Class<?> factoryMethodReturnType;
+
+  /**
+   * Cached init method, set on first initialization, along with the bean class it was resolved against
+   */
+  private volatile ResolvedInitMethod resolvedInitMethod;
+
   public RootBeanDefinition(String beanClassName) {
     setBeanClassName(beanClassName);
   }
 
+  /**
+   * Create a new RootBeanDefinition for a child of the given parent definition.
+   *
+   * @param parentName the name of the parent bean
+   * @param beanClassName the name of the class to instantiate, or {@code null} to inherit it from the parent
+   */
+  public RootBeanDefinition(String parentName, String beanClassName) {
+    setParentName(parentName);
+    setBeanClassName(beanClassName);
+  }
+
+  /**
+   * Create a new RootBeanDefinition for a bean instantiated by the given supplier, e.g. {@code Pad::new}, rather than
+   * through reflection.
+   *
+   * @param beanClass the type of the bean, used for type matching
+   * @param instanceSupplier the callback that creates the bean instance
+   */
+  public <T> RootBeanDefinition(Class<T> beanClass, Supplier<? extends T> instanceSupplier) {
+    setBeanClass(beanClass);
+    setInstanceSupplier(instanceSupplier);
+  }
+
   /**
    * Create a new RootBeanDefinition as deep copy of the given bean definition.
    *
    * @param original the original bean definition to copy from
    */
-  public RootBeanDefinition(RootBeanDefinition original) {
+  public RootBeanDefinition(BeanDefinition original) {
     super(original);
   }
+
+  /**
+   * Return the public no-arg method of the given bean class named by {@link #getInitMethodName()}. The method is
+   * resolved once and reused for further instances of the same class.
+   *
+   * @param beanClass the class of the bean instance to initialize
+   * @return the init method
+   * @throws NoSuchMethodException if the bean class has no such method
+   */
+  public Method resolveInitMethod(Class<?> beanClass) throws NoSuchMethodException {
+    String initMethodName = getInitMethodName();
+    ResolvedInitMethod resolved = this.resolvedInitMethod;
+    if (resolved == null || resolved.beanClass != beanClass || !resolved.method.getName().equals(initMethodName)) {
+      resolved = new ResolvedInitMethod(beanClass, beanClass.getMethod(initMethodName));
+      this.resolvedInitMethod = resolved;
+    }
+    return resolved.method;
+  }
+
+  private static final class ResolvedInitMethod {
+
+    final Class<?> beanClass;
+
+    final Method method;
+
+    ResolvedInitMethod(Class<?> beanClass, Method method) {
+      this.beanClass = beanClass;
+      this.method = method;
+    }
+  }
 }
@@ -0,0 +1,32 @@
+package com.maomao2.spring.beans.definition;
+
+/**
+ * Immutable placeholder class used for a property value object when it's a reference to a provider of another bean in
+ * the factory, as declared by a {@code provider-ref} attribute. Resolved to an
+ * {@link com.maomao2.spring.beans.creation.ObjectProvider} for the target bean rather than to the bean itself.
+ *
+ * @see RuntimeBeanReference
+ */
+public class RuntimeBeanProviderReference {
+
+  private final String beanName;
+
+  /**
+   * Create a new RuntimeBeanProviderReference to the given bean name.
+   *
+   * @param beanName name of the target bean
+   */
+  public RuntimeBeanProviderReference(String beanName) {
+    this.beanName = beanName;
+  }
+
+  public String getBeanName() {
+    return this.beanName;
+  }
+
+  @Override
+  public String toString() {
+    return "<provider:" + this.beanName + ">";
+  }
+
+}
@@ -16,8 +16,11 @@
 
 package com.maomao2.spring.beans.definition;
 
+import com.maomao2.spring.expression.Expression;
+import com.maomao2.spring.expression.ExpressionParser;
 import com.maomao2.spring.util.Assert;
 import com.maomao2.spring.util.ClassUtils;
+import com.maomao2.spring.util.PlaceholderTemplate;
 
 /**
  * Holder for a typed String value. Can be added to bean definitions in order to explicitly specify a target type for a
@@ -40,6 +43,10 @@ public class TypedStringValue {
 
   private String specifiedTypeName;
 
+  private volatile PlaceholderTemplate placeholderTemplate;
+
+  private volatile Expression expression;
+
   /**
    * Create a new {@link TypedStringValue} for the given String value.
    *
@@ -80,6 +87,8 @@ public class TypedStringValue {
    */
   public void setValue(String value) {
     this.value = value;
+    this.placeholderTemplate = null;
+    this.expression = null;
   }
 
   /**
@@ -89,6 +98,35 @@ public class TypedStringValue {
     return this.value;
   }
 
+  /**
+   * Return the String value compiled into a placeholder template. The value is only scanned once; the compiled
+   * template is cached until the value gets changed.
+   */
+  public PlaceholderTemplate getPlaceholderTemplate() {
+    PlaceholderTemplate template = this.placeholderTemplate;
+    if (template == null) {
+      template = PlaceholderTemplate.compile(this.value);
+      this.placeholderTemplate = template;
+    }
+    return template;
+  }
+
+  /**
+   * Return the given (placeholder-resolved) value compiled into an expression. The compiled expression is cached, and
+   * reused as long as the value to compile stays the same.
+   *
+   * @param expressionString the text to compile, usually the value with all placeholders resolved
+   * @param parser the parser to compile the text with if there's no cached expression for it
+   */
+  public Expression getExpression(String expressionString, ExpressionParser parser) {
+    Expression expression = this.expression;
+    if (expression == null || !expression.getExpressionString().equals(expressionString)) {
+      expression = parser.parseExpression(expressionString);
+      this.expression = expression;
+    }
+    return expression;
+  }
+
   /**
    * Set the type to convert to.
    * <p>
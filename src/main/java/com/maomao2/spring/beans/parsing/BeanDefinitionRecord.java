@@ -0,0 +1,55 @@
+package com.maomao2.spring.beans.parsing;
+
+import java.util.Map;
+
+/**
+ * A lightweight description of a single bean, as consumed by the {@link StreamingBeanDefinitionReader}.
+ * <p>
+ * Implementations are typically thin views on whatever the application already holds (a database row, a tenant
+ * configuration object), so that no intermediate objects need to be built just to register a bean definition.
+ */
+public interface BeanDefinitionRecord {
+
+  /**
+   * Return the name to register the bean definition under.
+   */
+  String getBeanName();
+
+  /**
+   * Return the name of the bean class, or {@code null} if inherited from the parent definition.
+   */
+  String getBeanClassName();
+
+  /**
+   * Return the name of the parent bean definition, if any.
+   */
+  default String getParentName() {
+    return null;
+  }
+
+  /**
+   * Return the scope of the bean, or {@code null} for the default (singleton) scope.
+   */
+  default String getScope() {
+    return null;
+  }
+
+  /**
+   * Return whether the bean should be lazily initialized.
+   */
+  default boolean isLazyInit() {
+    return false;
+  }
+
+  /**
+   * Return the property values of the bean, keyed by property name, or {@code null} if none.
+   * <p>
+   * String values are treated like a {@code value} attribute in XML, so they may contain {@code ${...}} placeholders
+   * and {@code #{...}} expressions. Other values, e.g. a {@link com.maomao2.spring.beans.definition.RuntimeBeanReference},
+   * are used as-is.
+   */
+  default Map<String, ?> getPropertyValues() {
+    return null;
+  }
+
+}
@@ -16,14 +16,30 @@
 
 package com.maomao2.spring.beans.parsing;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
 import org.apache.commons.beanutils.ConvertUtils;
 
 import com.maomao2.spring.beans.creation.AbstractBeanFactory;
 import com.maomao2.spring.beans.definition.BeanDefinition;
+import com.maomao2.spring.beans.definition.ManagedList;
+import com.maomao2.spring.beans.definition.ManagedMap;
+import com.maomao2.spring.beans.definition.ManagedProperties;
+import com.maomao2.spring.beans.definition.ManagedSet;
+import com.maomao2.spring.beans.definition.RuntimeBeanProviderReference;
 import com.maomao2.spring.beans.definition.RuntimeBeanReference;
 import com.maomao2.spring.beans.definition.TypedStringValue;
 import com.maomao2.spring.exception.BeanCreationException;
 import com.maomao2.spring.exception.BeansException;
+import com.maomao2.spring.expression.Expression;
+import com.maomao2.spring.expression.ExpressionParser;
+import com.maomao2.spring.util.PlaceholderTemplate;
 
 /**
  * Helper class for use in bean factory implementations, resolving values contained in bean definition objects into the
@@ -43,6 +59,8 @@ public class BeanDefinitionValueResolver {
 
   private final BeanDefinition beanDefinition;
 
+  private ExpressionParser expressionParser;
+
   /**
    * Create a BeanDefinitionValueResolver for the given BeanFactory and BeanDefinition.
    *
@@ -84,11 +102,41 @@ public class BeanDefinitionValueResolver {
       RuntimeBeanReference ref = (RuntimeBeanReference) value;
       return resolveReference(argName, ref);
 
+    } else if (value instanceof RuntimeBeanProviderReference) {
+      // Only hand out the provider: the target bean is obtained when the provider is called.
+      return this.beanFactory.getBeanProvider(((RuntimeBeanProviderReference) value).getBeanName());
+
+    } else if (value instanceof ManagedList) {
+      // May need to resolve contained runtime references.
+      return resolveManagedList(argName, (List<?>) value);
+
+    } else if (value instanceof ManagedSet) {
+      // May need to resolve contained runtime references.
+      return resolveManagedSet(argName, (Set<?>) value);
+
+    } else if (value instanceof ManagedMap) {
+      // May need to resolve contained runtime references.
+      return resolveManagedMap(argName, (Map<?, ?>) value);
+
+    } else if (value instanceof ManagedProperties) {
+      Properties original = (Properties) value;
+      Properties copy = new Properties();
+      for (Map.Entry<Object, Object> propEntry : original.entrySet()) {
+        Object propKey = resolveValueIfNecessary(argName, propEntry.getKey());
+        Object propValue = resolveValueIfNecessary(argName, propEntry.getValue());
+        if (propKey == null || propValue == null) {
+          throw new BeanCreationException(
+              this.beanName, "Error converting Properties key/value pair for " + argName + ": resolved to null");
+        }
+        copy.put(propKey, propValue);
+      }
+      return copy;
+
     } else if (value instanceof TypedStringValue) {
       // Convert value to target type here.
       TypedStringValue typedStringValue = (TypedStringValue) value;
-      Object valueObject = evaluate(typedStringValue);
       try {
+        Object valueObject = evaluate(typedStringValue);
         Class<?> resolvedTargetType = resolveTargetType(typedStringValue);
         if (resolvedTargetType != null) {
           return ConvertUtils.convert(valueObject, resolvedTargetType);
@@ -110,8 +158,28 @@ public class BeanDefinitionValueResolver {
     return value;
   }
 
+  /**
+   * Evaluate the given value, resolving {@code ${...}} placeholders against the factory's property snapshot first and
+   * evaluating {@code #{...}} expressions then. Both the placeholder template and the compiled expression are cached
+   * on the TypedStringValue itself.
+   */
   private Object evaluate(TypedStringValue typedStringValue) {
-    return typedStringValue.getValue();
+    String value = typedStringValue.getValue();
+    if (value == null) {
+      // A distinguished null value, e.g. from a <null/> element.
+      return null;
+    }
+    PlaceholderTemplate template = typedStringValue.getPlaceholderTemplate();
+    if (template.hasPlaceholders()) {
+      value = template.resolve(this.beanFactory.getPropertySnapshot());
+    }
+    if (!Expression.containsExpression(value)) {
+      return value;
+    }
+    if (this.expressionParser == null) {
+      this.expressionParser = new ExpressionParser(this.beanFactory.getBeanClassLoader());
+    }
+    return typedStringValue.getExpression(value, this.expressionParser).getValue(this.beanFactory);
   }
 
   /**
@@ -129,6 +197,44 @@ public class BeanDefinitionValueResolver {
     return value.resolveTargetType(this.beanFactory.getBeanClassLoader());
   }
 
+  /**
+   * For each element in the managed list, resolve reference if necessary. The target list is sized up front.
+   */
+  private List<?> resolveManagedList(Object argName, List<?> ml) {
+    List<Object> resolved = new ArrayList<Object>(ml.size());
+    for (int i = 0; i < ml.size(); i++) {
+      resolved.add(resolveValueIfNecessary(new KeyedArgName(argName, i), ml.get(i)));
+    }
+    return resolved;
+  }
+
+  /**
+   * For each element in the managed set, resolve reference if necessary. Keeps the declaration order.
+   */
+  private Set<?> resolveManagedSet(Object argName, Set<?> ms) {
+    Set<Object> resolved = new LinkedHashSet<Object>((int) (ms.size() / 0.75f) + 1);
+    int i = 0;
+    for (Object m : ms) {
+      resolved.add(resolveValueIfNecessary(new KeyedArgName(argName, i), m));
+      i++;
+    }
+    return resolved;
+  }
+
+  /**
+   * For each element in the managed map, resolve reference if necessary. Keeps the declaration order.
+   */
+  private Map<?, ?> resolveManagedMap(Object argName, Map<?, ?> mm) {
+    Map<Object, Object> resolved = new LinkedHashMap<Object, Object>((int) (mm.size() / 0.75f) + 1);
+    for (Map.Entry<?, ?> entry : mm.entrySet()) {
+      Object resolvedKey = resolveValueIfNecessary(argName, entry.getKey());
+      Object resolvedValue = resolveValueIfNecessary(
+          new KeyedArgName(argName, entry.getKey()), entry.getValue());
+      resolved.put(resolvedKey, resolvedValue);
+    }
+    return resolved;
+  }
+
   /**
    * Resolve a reference to another bean in the factory.
    */
@@ -147,4 +253,24 @@ public class BeanDefinitionValueResolver {
     }
   }
 
+  /**
+   * Holder class used for delayed toString building.
+   */
+  private static class KeyedArgName {
+
+    private final Object argName;
+
+    private final Object key;
+
+    public KeyedArgName(Object argName, Object key) {
+      this.argName = argName;
+      this.key = key;
+    }
+
+    @Override
+    public String toString() {
+      return this.argName + " with key [" + this.key + "]";
+    }
+  }
+
 }
@@ -0,0 +1,24 @@
+package com.maomao2.spring.beans.parsing;
+
+import org.w3c.dom.Element;
+
+/**
+ * A condition that must be satisfied for a {@code <bean>} or {@code <beans>} element to be registered.
+ * <p>
+ * Conditions are evaluated by the {@link XmlBeanDefinitionReader} while parsing, so elements that don't match never
+ * become bean definitions at all.
+ *
+ * @see XmlBeanDefinitionReader#addCondition
+ */
+public interface Condition {
+
+  /**
+   * Determine if the given element should be registered.
+   *
+   * @param reader the reader parsing the element, giving access to the registry and bean class loader
+   * @param element the {@code <bean>} or {@code <beans>} element being parsed
+   * @return {@code true} if the element should be registered, {@code false} to skip it
+   */
+  boolean matches(BeanDefinitiontReader reader, Element element);
+
+}
@@ -0,0 +1,180 @@
+package com.maomao2.spring.beans.parsing;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.apache.log4j.Logger;
+
+import com.maomao2.spring.beans.creation.BeanDefinitionRegistry;
+import com.maomao2.spring.beans.definition.AbstractBeanDefinition;
+import com.maomao2.spring.beans.definition.BeanDefinition;
+import com.maomao2.spring.beans.definition.MutablePropertyValues;
+import com.maomao2.spring.beans.definition.PropertyValue;
+import com.maomao2.spring.beans.definition.TypedStringValue;
+import com.maomao2.spring.util.StringInterner;
+import com.maomao2.spring.util.StringUtils;
+
+/**
+ * Bean definition reader for programmatically generated definitions, e.g. thousands of per-tenant beans created at
+ * startup.
+ * <p>
+ * Consumes {@link BeanDefinitionRecord}s one at a time and turns each directly into a bean definition, without going
+ * through DOM nodes or {@link com.maomao2.spring.beans.creation.BeanDefinitionHolder}s. Definitions are handed to the
+ * registry in batches through {@link BeanDefinitionRegistry#registerBeanDefinitions}, so the registry only needs to
+ * grow and lock once per batch rather than once per bean.
+ * <p>
+ * Since it reads records rather than resources, this reader does not implement the location-based {@link
+ * BeanDefinitiontReader} interface.
+ */
+public class StreamingBeanDefinitionReader {
+
+  /**
+   * Default number of bean definitions to register at once
+   */
+  public static final int DEFAULT_BATCH_SIZE = 1024;
+
+  Logger logger = Logger.getLogger(getClass());
+
+  private final BeanDefinitionRegistry registry;
+
+  private ClassLoader beanClassLoader;
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  /**
+   * Pool for class names, scopes, property names and literal values repeated across the records loaded by this reader
+   */
+  private final StringInterner interner = new StringInterner(16384);
+
+  public StreamingBeanDefinitionReader(BeanDefinitionRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Return the registry to register the bean definitions with.
+   */
+  public BeanDefinitionRegistry getRegistry() {
+    return this.registry;
+  }
+
+  /**
+   * Set the ClassLoader to use for bean classes.
+   */
+  public void setBeanClassLoader(ClassLoader beanClassLoader) {
+    this.beanClassLoader = beanClassLoader;
+  }
+
+  public ClassLoader getBeanClassLoader() {
+    return this.beanClassLoader;
+  }
+
+  /**
+   * Set the number of bean definitions to register with the registry at once. Default is {@value
+   * #DEFAULT_BATCH_SIZE}.
+   */
+  public void setBatchSize(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1");
+    }
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Load bean definitions from the given stream of records, closing the stream once it has been consumed.
+   *
+   * @param records the records to register
+   * @return the number of bean definitions registered
+   */
+  public int loadBeanDefinitions(Stream<? extends BeanDefinitionRecord> records) {
+    try (Stream<? extends BeanDefinitionRecord> stream = records) {
+      return loadBeanDefinitions(stream.iterator());
+    }
+  }
+
+  /**
+   * Load bean definitions from the given records.
+   *
+   * @param records the records to register
+   * @return the number of bean definitions registered
+   */
+  public int loadBeanDefinitions(Iterable<? extends BeanDefinitionRecord> records) {
+    return loadBeanDefinitions(records.iterator());
+  }
+
+  /**
+   * Load bean definitions from the given records, registering them in batches.
+   *
+   * @param records the records to register
+   * @return the number of bean definitions registered
+   */
+  public int loadBeanDefinitions(Iterator<? extends BeanDefinitionRecord> records) {
+    int count = 0;
+    Map<String, BeanDefinition> batch = new LinkedHashMap<String, BeanDefinition>(
+        (int) (this.batchSize / 0.75f) + 1);
+    while (records.hasNext()) {
+      BeanDefinitionRecord record = records.next();
+      String beanName = record.getBeanName();
+      if (!StringUtils.hasText(beanName)) {
+        this.logger.error("Bean name must not be empty for bean definition record [" + record + "]");
+        continue;
+      }
+      BeanDefinition beanDefinition = createBeanDefinition(record);
+      BeanDefinition oldBeanDefinition = batch.put(beanName, beanDefinition);
+      if (oldBeanDefinition != null && !oldBeanDefinition.equals(beanDefinition)) {
+        this.logger.error("Overriding bean definition for bean '" + beanName +
+            "' with a different definition: replacing [" + oldBeanDefinition +
+            "] with [" + beanDefinition + "]");
+      }
+      if (batch.size() >= this.batchSize) {
+        count += flush(batch);
+      }
+    }
+    count += flush(batch);
+    return count;
+  }
+
+  private int flush(Map<String, BeanDefinition> batch) {
+    int size = batch.size();
+    if (size > 0) {
+      this.registry.registerBeanDefinitions(batch);
+      batch.clear();
+    }
+    return size;
+  }
+
+  /**
+   * Create a bean definition for the given record.
+   *
+   * @param record the record to create the bean definition for
+   * @return the bean definition
+   */
+  protected BeanDefinition createBeanDefinition(BeanDefinitionRecord record) {
+    AbstractBeanDefinition bd;
+    try {
+      bd = XmlBeanDefinitionReader.createBeanDefinition(
+          this.interner.intern(record.getParentName()), this.interner.intern(record.getBeanClassName()));
+    } catch (ClassNotFoundException ex) {
+      throw new IllegalStateException("Bean class [" + record.getBeanClassName() + "] not found", ex);
+    }
+    if (record.getScope() != null) {
+      bd.setScope(this.interner.intern(record.getScope()));
+    }
+    bd.setLazyInit(record.isLazyInit());
+
+    Map<String, ?> propertyValues = record.getPropertyValues();
+    if (propertyValues != null && !propertyValues.isEmpty()) {
+      MutablePropertyValues pvs = bd.getPropertyValues();
+      for (Map.Entry<String, ?> entry : propertyValues.entrySet()) {
+        Object value = entry.getValue();
+        if (value instanceof String) {
+          value = new TypedStringValue(this.interner.intern((String) value));
+        }
+        pvs.addPropertyValue(new PropertyValue(this.interner.intern(entry.getKey()), value));
+      }
+    }
+    return bd;
+  }
+
+}
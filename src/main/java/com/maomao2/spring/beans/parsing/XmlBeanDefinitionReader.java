@@ -1,7 +1,18 @@
 package com.maomao2.spring.beans.parsing;
 
 import com.maomao2.spring.util.ClassUtils;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -13,20 +24,37 @@ import org.w3c.dom.EntityReference;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import com.maomao2.spring.beans.creation.AbstractBeanFactory;
 import com.maomao2.spring.beans.creation.BeanDefinitionHolder;
 import com.maomao2.spring.beans.creation.BeanDefinitionRegistry;
 import com.maomao2.spring.beans.definition.AbstractBeanDefinition;
 import com.maomao2.spring.beans.definition.BeanDefinition;
 import com.maomao2.spring.beans.definition.BeanDefinitionConstrants;
 import com.maomao2.spring.beans.definition.ConstructorArgumentValues;
+import com.maomao2.spring.beans.definition.ManagedList;
+import com.maomao2.spring.beans.definition.ManagedMap;
+import com.maomao2.spring.beans.definition.ManagedProperties;
+import com.maomao2.spring.beans.definition.ManagedSet;
 import com.maomao2.spring.beans.definition.PropertyValue;
 import com.maomao2.spring.beans.definition.RootBeanDefinition;
+import com.maomao2.spring.beans.definition.RuntimeBeanProviderReference;
 import com.maomao2.spring.beans.definition.RuntimeBeanReference;
 import com.maomao2.spring.beans.definition.TypedStringValue;
+import com.maomao2.spring.util.StringInterner;
 import com.maomao2.spring.util.StringUtils;
 
 public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
 
+  /**
+   * Name of the property to set to specify active profiles, as comma-separated list
+   */
+  public static final String ACTIVE_PROFILES_PROPERTY_NAME = "spring.profiles.active";
+
+  /**
+   * Profile that is active if no other profile has been specified
+   */
+  public static final String DEFAULT_PROFILE = "default";
+
   Logger logger = Logger.getLogger(getClass());
 
   private final BeanDefinitionRegistry registry;
@@ -39,6 +67,23 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
    */
   private final Set<String> usedNames = new HashSet<String>();
 
+  private final List<Condition> conditions = new ArrayList<Condition>(2);
+
+  /**
+   * Pool for class names, scopes, method names, property names, refs and literal values repeated across the
+   * definitions loaded by this reader
+   */
+  private final StringInterner interner = new StringInterner(16384);
+
+  /**
+   * Explicitly set active profiles, {@code null} to resolve them from the ACTIVE_PROFILES_PROPERTY_NAME property
+   */
+  private Set<String> activeProfiles;
+
+  private String resolvedProfilesValue;
+
+  private Set<String> resolvedProfiles;
+
   public XmlBeanDefinitionReader(BeanDefinitionRegistry registry) {
     this.registry = registry;
   }
@@ -55,6 +100,46 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
     this.beanClassLoader = beanClassLoader;
   }
 
+  /**
+   * Specify the profiles to activate, overriding the {@value #ACTIVE_PROFILES_PROPERTY_NAME} property.
+   */
+  public void setActiveProfiles(String... profiles) {
+    this.activeProfiles = new LinkedHashSet<String>(Arrays.asList(profiles));
+  }
+
+  /**
+   * Return the active profiles: either the ones set explicitly, or the ones specified through the {@value
+   * #ACTIVE_PROFILES_PROPERTY_NAME} property, or the {@value #DEFAULT_PROFILE} profile if none was specified.
+   */
+  public Set<String> getActiveProfiles() {
+    if (this.activeProfiles != null) {
+      return this.activeProfiles;
+    }
+    String value = getProperty(ACTIVE_PROFILES_PROPERTY_NAME);
+    if (value == null) {
+      value = "";
+    }
+    // The property may change when property files get loaded, so only reuse the profiles resolved for the same value
+    if (this.resolvedProfiles == null || !value.equals(this.resolvedProfilesValue)) {
+      Set<String> profiles = new LinkedHashSet<String>(Arrays.asList(
+          StringUtils.tokenizeToStringArray(value, BeanDefinitionConstrants.MULTI_VALUE_ATTRIBUTE_DELIMITERS)));
+      if (profiles.isEmpty()) {
+        profiles.add(DEFAULT_PROFILE);
+      }
+      this.resolvedProfiles = Collections.unmodifiableSet(profiles);
+      this.resolvedProfilesValue = value;
+    }
+    return this.resolvedProfiles;
+  }
+
+  /**
+   * Add a custom condition to evaluate for each {@code <bean>} and {@code <beans>} element, in addition to the
+   * built-in profile, class-present and property conditions.
+   */
+  public void addCondition(Condition condition) {
+    this.conditions.add(condition);
+  }
+
   @Override
   public ClassLoader getBeanClassLoader() {
     return this.beanClassLoader;
@@ -81,6 +166,10 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
 
   private void registerBeanDefinitions(Document doc) {
     Element root = doc.getDocumentElement();
+    if (!isConditionSatisfied(root)) {
+      logger.info("Skipping bean definitions: conditions of root element not satisfied");
+      return;
+    }
     doRegisterBeanDefinitions(root);
   }
 
@@ -99,10 +188,142 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
   private void parseDefaultElement(Element ele) {
     //解析xml文件的四种基本标签中的import、alias和beans标签的，bean标签。
     if (nodeNameEquals(ele, BeanDefinitionConstrants.BEAN_ELEMENT)) {
-      processBeanDefinition(ele);
+      if (isConditionSatisfied(ele)) {
+        processBeanDefinition(ele);
+      }
     } else if (nodeNameEquals(ele, BeanDefinitionConstrants.NESTED_BEANS_ELEMENT)) {
       // recurse
-      doRegisterBeanDefinitions(ele);
+      if (isConditionSatisfied(ele)) {
+        doRegisterBeanDefinitions(ele);
+      }
+    } else if (nodeNameEquals(ele, BeanDefinitionConstrants.PROPERTY_PLACEHOLDER_ELEMENT)) {
+      processPropertyPlaceholder(ele);
+    }
+  }
+
+  /**
+   * Evaluate the profile, class-present, property and custom conditions of the given bean or beans element. Elements
+   * that don't satisfy all of them are skipped before any bean definition gets created.
+   */
+  protected boolean isConditionSatisfied(Element ele) {
+    if (ele.hasAttribute(BeanDefinitionConstrants.PROFILE_ATTRIBUTE) &&
+        !acceptsProfiles(ele.getAttribute(BeanDefinitionConstrants.PROFILE_ATTRIBUTE))) {
+      return false;
+    }
+    if (ele.hasAttribute(BeanDefinitionConstrants.CLASS_PRESENT_ATTRIBUTE)) {
+      String[] classNames = StringUtils.tokenizeToStringArray(
+          ele.getAttribute(BeanDefinitionConstrants.CLASS_PRESENT_ATTRIBUTE),
+          BeanDefinitionConstrants.MULTI_VALUE_ATTRIBUTE_DELIMITERS);
+      for (String className : classNames) {
+        if (!ClassUtils.isPresent(className, this.beanClassLoader)) {
+          return false;
+        }
+      }
+    }
+    if (ele.hasAttribute(BeanDefinitionConstrants.PROPERTY_CONDITION_ATTRIBUTE) &&
+        !matchesProperty(ele.getAttribute(BeanDefinitionConstrants.PROPERTY_CONDITION_ATTRIBUTE))) {
+      return false;
+    }
+    for (Condition condition : this.conditions) {
+      if (!condition.matches(this, ele)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return whether the given profile expression matches the active profiles. The expression is a list of profile
+   * names, any of which has to be active; a name prefixed with '!' matches if that profile is not active.
+   */
+  private boolean acceptsProfiles(String profileExpression) {
+    Set<String> profiles = getActiveProfiles();
+    String[] specifiedProfiles = StringUtils.tokenizeToStringArray(profileExpression,
+        BeanDefinitionConstrants.MULTI_VALUE_ATTRIBUTE_DELIMITERS);
+    for (String profile : specifiedProfiles) {
+      if (profile.charAt(0) == '!') {
+        if (!profiles.contains(profile.substring(1))) {
+          return true;
+        }
+      } else if (profiles.contains(profile)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return whether the given property condition matches: {@code name} requires the property to be present and not
+   * "false", {@code name=value} requires it to have the given value.
+   */
+  private boolean matchesProperty(String condition) {
+    int separatorIndex = condition.indexOf('=');
+    if (separatorIndex == -1) {
+      String value = getProperty(condition.trim());
+      return (value != null && !BeanDefinitionConstrants.FALSE_VALUE.equalsIgnoreCase(value));
+    }
+    String value = getProperty(condition.substring(0, separatorIndex).trim());
+    return condition.substring(separatorIndex + 1).trim().equals(value);
+  }
+
+  private String getProperty(String key) {
+    if (this.registry instanceof AbstractBeanFactory) {
+      return ((AbstractBeanFactory) this.registry).getPropertySnapshot().getProperty(key);
+    }
+    return System.getProperty(key);
+  }
+
+  /**
+   * Load the property files referenced by a property-placeholder element and register them with the bean factory, so
+   * that {@code ${...}} placeholders in bean definition values can be resolved against them.
+   */
+  private void processPropertyPlaceholder(Element ele) {
+    String location = ele.getAttribute(BeanDefinitionConstrants.LOCATION_ATTRIBUTE);
+    if (!StringUtils.hasText(location)) {
+      logger.error("Tag 'property-placeholder' must have a 'location' attribute");
+      return;
+    }
+    if (!(this.registry instanceof AbstractBeanFactory)) {
+      logger.error("Bean definition registry does not support property placeholders");
+      return;
+    }
+    String[] locations = StringUtils.tokenizeToStringArray(location,
+        BeanDefinitionConstrants.MULTI_VALUE_ATTRIBUTE_DELIMITERS);
+    for (String propertyLocation : locations) {
+      Properties properties = loadProperties(propertyLocation);
+      if (properties != null) {
+        ((AbstractBeanFactory) this.registry).addPropertySource(properties);
+      }
+    }
+  }
+
+  private Properties loadProperties(String location) {
+    InputStream is = null;
+    try {
+      try {
+        is = new FileInputStream(location);
+      } catch (IOException ex) {
+        ClassLoader cl = (this.beanClassLoader != null ? this.beanClassLoader : ClassUtils.getDefaultClassLoader());
+        is = (cl != null ? cl.getResourceAsStream(location) : null);
+      }
+      if (is == null) {
+        logger.error("Could not find property file [" + location + "]");
+        return null;
+      }
+      Properties properties = new Properties();
+      properties.load(is);
+      return properties;
+    } catch (IOException ex) {
+      logger.error("Could not load property file [" + location + "]", ex);
+      return null;
+    } finally {
+      if (is != null) {
+        try {
+          is.close();
+        } catch (IOException ex) {
+          // ignore
+        }
+      }
     }
   }
 
@@ -156,15 +377,20 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
 
     String className = null;
     if (ele.hasAttribute(BeanDefinitionConstrants.CLASS_ATTRIBUTE)) {
-      className = ele.getAttribute(BeanDefinitionConstrants.CLASS_ATTRIBUTE).trim();
+      className = this.interner.intern(ele.getAttribute(BeanDefinitionConstrants.CLASS_ATTRIBUTE).trim());
+    }
+    String parent = null;
+    if (ele.hasAttribute(BeanDefinitionConstrants.PARENT_ATTRIBUTE)) {
+      parent = this.interner.intern(ele.getAttribute(BeanDefinitionConstrants.PARENT_ATTRIBUTE));
     }
 
     try {
-      AbstractBeanDefinition bd = createBeanDefinition(className);
+      AbstractBeanDefinition bd = createBeanDefinition(parent, className);
 
       parseBeanDefinitionAttributes(ele, beanName, bd);
       parseConstructorArgElements(ele, bd);
       parsePropertyElements(ele, bd);
+      parseQualifierElements(ele, bd);
       return bd;
     } catch (ClassNotFoundException ex) {
       logger.error("Bean class [" + className + "] not found");
@@ -187,7 +413,12 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
       AbstractBeanDefinition bd) {
 
     if (ele.hasAttribute(BeanDefinitionConstrants.SCOPE_ATTRIBUTE)) {
-      bd.setScope(ele.getAttribute(BeanDefinitionConstrants.SCOPE_ATTRIBUTE));
+      bd.setScope(this.interner.intern(ele.getAttribute(BeanDefinitionConstrants.SCOPE_ATTRIBUTE)));
+    }
+
+    if (ele.hasAttribute(BeanDefinitionConstrants.ABSTRACT_ATTRIBUTE)) {
+      bd.setAbstract(BeanDefinitionConstrants.TRUE_VALUE.equals(
+          ele.getAttribute(BeanDefinitionConstrants.ABSTRACT_ATTRIBUTE)));
     }
 
     String lazyInit = ele.getAttribute(BeanDefinitionConstrants.LAZY_INIT_ATTRIBUTE);
@@ -196,23 +427,34 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
     String autowire = ele.getAttribute(BeanDefinitionConstrants.AUTOWIRE_ATTRIBUTE);
     bd.setAutowireMode(getAutowireMode(autowire));
 
+    if (ele.hasAttribute(BeanDefinitionConstrants.AUTOWIRE_CANDIDATE_ATTRIBUTE)) {
+      bd.setAutowireCandidate(BeanDefinitionConstrants.TRUE_VALUE.equals(
+          ele.getAttribute(BeanDefinitionConstrants.AUTOWIRE_CANDIDATE_ATTRIBUTE)));
+    }
+
+    if (ele.hasAttribute(BeanDefinitionConstrants.PRIMARY_ATTRIBUTE)) {
+      bd.setPrimary(BeanDefinitionConstrants.TRUE_VALUE.equals(
+          ele.getAttribute(BeanDefinitionConstrants.PRIMARY_ATTRIBUTE)));
+    }
+
     if (ele.hasAttribute(BeanDefinitionConstrants.INIT_METHOD_ATTRIBUTE)) {
       String initMethodName = ele.getAttribute(BeanDefinitionConstrants.INIT_METHOD_ATTRIBUTE);
       if (!"".equals(initMethodName)) {
-        bd.setInitMethodName(initMethodName);
+        bd.setInitMethodName(this.interner.intern(initMethodName));
       }
     }
 
     if (ele.hasAttribute(BeanDefinitionConstrants.DESTROY_METHOD_ATTRIBUTE)) {
       String destroyMethodName = ele.getAttribute(BeanDefinitionConstrants.DESTROY_METHOD_ATTRIBUTE);
-      bd.setDestroyMethodName(destroyMethodName);
+      bd.setDestroyMethodName(this.interner.intern(destroyMethodName));
     }
 
     if (ele.hasAttribute(BeanDefinitionConstrants.FACTORY_METHOD_ATTRIBUTE)) {
-      bd.setFactoryMethodName(ele.getAttribute(BeanDefinitionConstrants.FACTORY_METHOD_ATTRIBUTE));
+      bd.setFactoryMethodName(
+          this.interner.intern(ele.getAttribute(BeanDefinitionConstrants.FACTORY_METHOD_ATTRIBUTE)));
     }
     if (ele.hasAttribute(BeanDefinitionConstrants.FACTORY_BEAN_ATTRIBUTE)) {
-      bd.setFactoryBeanName(ele.getAttribute(BeanDefinitionConstrants.FACTORY_BEAN_ATTRIBUTE));
+      bd.setFactoryBeanName(this.interner.intern(ele.getAttribute(BeanDefinitionConstrants.FACTORY_BEAN_ATTRIBUTE)));
     }
 
     return bd;
@@ -234,6 +476,24 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
     return autowire;
   }
 
+  /**
+   * Parse the qualifier sub-element of the given bean element, e.g. {@code <qualifier value="main"/>}.
+   */
+  public void parseQualifierElements(Element beanEle, AbstractBeanDefinition bd) {
+    NodeList nl = beanEle.getChildNodes();
+    for (int i = 0; i < nl.getLength(); i++) {
+      Node node = nl.item(i);
+      if (node instanceof Element && nodeNameEquals(node, BeanDefinitionConstrants.QUALIFIER_ELEMENT)) {
+        String value = ((Element) node).getAttribute(BeanDefinitionConstrants.VALUE_ATTRIBUTE);
+        if (!StringUtils.hasLength(value)) {
+          logger.error("Tag 'qualifier' must have a 'value' attribute");
+          continue;
+        }
+        bd.setQualifier(this.interner.intern(value));
+      }
+    }
+  }
+
   /**
    * Parse constructor-arg sub-elements of the given bean element.
    */
@@ -263,10 +523,10 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
     ConstructorArgumentValues.ValueHolder valueHolder = new ConstructorArgumentValues.ValueHolder(
         value);
     if (StringUtils.hasLength(typeAttr)) {
-      valueHolder.setType(typeAttr);
+      valueHolder.setType(this.interner.intern(typeAttr));
     }
     if (StringUtils.hasLength(nameAttr)) {
-      valueHolder.setName(nameAttr);
+      valueHolder.setName(this.interner.intern(nameAttr));
     }
 
     if (StringUtils.hasLength(indexAttr)) {
@@ -306,7 +566,8 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
 
     Object val = parsePropertyValue(ele, bd, propertyName);
 
-    PropertyValue pv = new PropertyValue(propertyName, val);
+    // Property names repeat across definitions of the same class: share a single String instance.
+    PropertyValue pv = new PropertyValue(this.interner.intern(propertyName), val);
 
     bd.getPropertyValues().addPropertyValue(pv);
 
@@ -337,11 +598,13 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
     }
 
     boolean hasRefAttribute = ele.hasAttribute(BeanDefinitionConstrants.REF_ATTRIBUTE);
+    boolean hasProviderRefAttribute = ele.hasAttribute(BeanDefinitionConstrants.PROVIDER_REF_ATTRIBUTE);
     boolean hasValueAttribute = ele.hasAttribute(BeanDefinitionConstrants.VALUE_ATTRIBUTE);
-    if ((hasRefAttribute && hasValueAttribute) ||
-        ((hasRefAttribute || hasValueAttribute) && subElement != null)) {
-      logger.error(elementName +
-          " is only allowed to contain either 'ref' attribute OR 'value' attribute OR sub-element");
+    int specified = (hasRefAttribute ? 1 : 0) + (hasProviderRefAttribute ? 1 : 0) + (hasValueAttribute ? 1 : 0) +
+        (subElement != null ? 1 : 0);
+    if (specified > 1) {
+      logger.error(elementName + " is only allowed to contain either 'ref' attribute OR 'provider-ref' attribute " +
+          "OR 'value' attribute OR sub-element");
     }
 
     if (hasRefAttribute) {
@@ -349,10 +612,17 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
       if (!StringUtils.hasText(refName)) {
         logger.error(elementName + " contains empty 'ref' attribute");
       }
-      RuntimeBeanReference ref = new RuntimeBeanReference(refName);
+      RuntimeBeanReference ref = new RuntimeBeanReference(this.interner.intern(refName));
       return ref;
+    } else if (hasProviderRefAttribute) {
+      String refName = ele.getAttribute(BeanDefinitionConstrants.PROVIDER_REF_ATTRIBUTE);
+      if (!StringUtils.hasText(refName)) {
+        logger.error(elementName + " contains empty 'provider-ref' attribute");
+      }
+      return new RuntimeBeanProviderReference(this.interner.intern(refName));
     } else if (hasValueAttribute) {
-      TypedStringValue valueHolder = new TypedStringValue(ele.getAttribute(BeanDefinitionConstrants.VALUE_ATTRIBUTE));
+      TypedStringValue valueHolder = new TypedStringValue(
+          this.interner.intern(ele.getAttribute(BeanDefinitionConstrants.VALUE_ATTRIBUTE)));
       return valueHolder;
     } else if (subElement != null) {
       return parsePropertySubElement(subElement, bd);
@@ -393,47 +663,32 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
 //        nestedBd = decorateBeanDefinitionIfRequired(ele, nestedBd, bd);
 //      }
 //      return nestedBd;
-//    } else if (nodeNameEquals(ele, BeanDefinitionConstrants.REF_ELEMENT)) {
-//      // A generic reference to any name of any bean.
-//      String refName = ele.getAttribute(BeanDefinitionConstrants.BEAN_REF_ATTRIBUTE);
-//      boolean toParent = false;
-//      if (!StringUtils.hasLength(refName)) {
-//        // A reference to the id of another bean in a parent context.
-//        refName = ele.getAttribute(BeanDefinitionConstrants.PARENT_REF_ATTRIBUTE);
-//        toParent = true;
-//        if (!StringUtils.hasLength(refName)) {
-//          error("'bean' or 'parent' is required for <ref> element", ele);
-//          return null;
-//        }
-//      }
-//      if (!StringUtils.hasText(refName)) {
-//        error("<ref> element contains empty target attribute", ele);
-//        return null;
-//      }
-//      RuntimeBeanReference ref = new RuntimeBeanReference(refName, toParent);
-//      ref.setSource(extractSource(ele));
-//      return ref;
 //    } else if (nodeNameEquals(ele, BeanDefinitionConstrants.IDREF_ELEMENT)) {
 //      return parseIdRefElement(ele);
 //    } else
-    if (nodeNameEquals(ele, BeanDefinitionConstrants.VALUE_ELEMENT)) {
+    if (nodeNameEquals(ele, BeanDefinitionConstrants.REF_ELEMENT)) {
+      // A generic reference to any name of any bean.
+      String refName = ele.getAttribute(BeanDefinitionConstrants.BEAN_REF_ATTRIBUTE);
+      if (!StringUtils.hasText(refName)) {
+        logger.error("<ref> element must specify a non-empty 'bean' attribute");
+        return null;
+      }
+      return new RuntimeBeanReference(this.interner.intern(refName));
+    } else if (nodeNameEquals(ele, BeanDefinitionConstrants.VALUE_ELEMENT)) {
       return parseValueElement(ele, defaultValueType);
-//    } else if (nodeNameEquals(ele, NULL_ELEMENT)) {
-//      // It's a distinguished null value. Let's wrap it in a TypedStringValue
-//      // object in order to preserve the source location.
-//      TypedStringValue nullHolder = new TypedStringValue(null);
-//      nullHolder.setSource(extractSource(ele));
-//      return nullHolder;
+    } else if (nodeNameEquals(ele, BeanDefinitionConstrants.NULL_ELEMENT)) {
+      // It's a distinguished null value.
+      return new TypedStringValue(null);
 //    } else if (nodeNameEquals(ele, ARRAY_ELEMENT)) {
 //      return parseArrayElement(ele, bd);
-//    } else if (nodeNameEquals(ele, LIST_ELEMENT)) {
-//      return parseListElement(ele, bd);
-//    } else if (nodeNameEquals(ele, SET_ELEMENT)) {
-//      return parseSetElement(ele, bd);
-//    } else if (nodeNameEquals(ele, MAP_ELEMENT)) {
-//      return parseMapElement(ele, bd);
-//    } else if (nodeNameEquals(ele, PROPS_ELEMENT)) {
-//      return parsePropsElement(ele);
+    } else if (nodeNameEquals(ele, BeanDefinitionConstrants.LIST_ELEMENT)) {
+      return parseListElement(ele, bd);
+    } else if (nodeNameEquals(ele, BeanDefinitionConstrants.SET_ELEMENT)) {
+      return parseSetElement(ele, bd);
+    } else if (nodeNameEquals(ele, BeanDefinitionConstrants.MAP_ELEMENT)) {
+      return parseMapElement(ele, bd);
+    } else if (nodeNameEquals(ele, BeanDefinitionConstrants.PROPS_ELEMENT)) {
+      return parsePropsElement(ele);
     } else {
       logger.error("Unknown property sub-element: [" + ele.getNodeName() + "]");
       return null;
@@ -510,6 +765,7 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
       throws ClassNotFoundException {
 
     ClassLoader classLoader = this.getBeanClassLoader();
+    value = this.interner.intern(value);
     TypedStringValue typedValue;
     if (!StringUtils.hasText(targetTypeName)) {
       typedValue = new TypedStringValue(value);
@@ -536,216 +792,200 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
 //    return target;
 //  }
 //
-//  /**
-//   * Parse a list element.
-//   */
-//  public List<Object> parseListElement(Element collectionEle, BeanDefinition bd) {
-//    String defaultElementType = collectionEle.getAttribute(VALUE_TYPE_ATTRIBUTE);
-//    NodeList nl = collectionEle.getChildNodes();
-//    ManagedList<Object> target = new ManagedList<>(nl.getLength());
-//    target.setSource(extractSource(collectionEle));
-//    target.setElementTypeName(defaultElementType);
-//    target.setMergeEnabled(parseMergeAttribute(collectionEle));
-//    parseCollectionElements(nl, target, bd, defaultElementType);
-//    return target;
-//  }
-//
-//  /**
-//   * Parse a set element.
-//   */
-//  public Set<Object> parseSetElement(Element collectionEle, BeanDefinition bd) {
-//    String defaultElementType = collectionEle.getAttribute(VALUE_TYPE_ATTRIBUTE);
-//    NodeList nl = collectionEle.getChildNodes();
-//    ManagedSet<Object> target = new ManagedSet<>(nl.getLength());
-//    target.setSource(extractSource(collectionEle));
-//    target.setElementTypeName(defaultElementType);
-//    target.setMergeEnabled(parseMergeAttribute(collectionEle));
-//    parseCollectionElements(nl, target, bd, defaultElementType);
-//    return target;
-//  }
-//
-//  protected void parseCollectionElements(
-//      NodeList elementNodes, Collection<Object> target, BeanDefinition bd, String defaultElementType) {
-//
-//    for (int i = 0; i < elementNodes.getLength(); i++) {
-//      Node node = elementNodes.item(i);
-//      if (node instanceof Element && !nodeNameEquals(node, DESCRIPTION_ELEMENT)) {
-//        target.add(parsePropertySubElement((Element) node, bd, defaultElementType));
-//      }
-//    }
-//  }
-//
-//  /**
-//   * Parse a map element.
-//   */
-//  public Map<Object, Object> parseMapElement(Element mapEle, BeanDefinition bd) {
-//    String defaultKeyType = mapEle.getAttribute(KEY_TYPE_ATTRIBUTE);
-//    String defaultValueType = mapEle.getAttribute(VALUE_TYPE_ATTRIBUTE);
-//
-//    List<Element> entryEles = DomUtils.getChildElementsByTagName(mapEle, ENTRY_ELEMENT);
-//    ManagedMap<Object, Object> map = new ManagedMap<>(entryEles.size());
-//    map.setSource(extractSource(mapEle));
-//    map.setKeyTypeName(defaultKeyType);
-//    map.setValueTypeName(defaultValueType);
-//    map.setMergeEnabled(parseMergeAttribute(mapEle));
-//
-//    for (Element entryEle : entryEles) {
-//      // Should only have one value child element: ref, value, list, etc.
-//      // Optionally, there might be a key child element.
-//      NodeList entrySubNodes = entryEle.getChildNodes();
-//      Element keyEle = null;
-//      Element valueEle = null;
-//      for (int j = 0; j < entrySubNodes.getLength(); j++) {
-//        Node node = entrySubNodes.item(j);
-//        if (node instanceof Element) {
-//          Element candidateEle = (Element) node;
-//          if (nodeNameEquals(candidateEle, KEY_ELEMENT)) {
-//            if (keyEle != null) {
-//              error("<entry> element is only allowed to contain one <key> sub-element", entryEle);
-//            } else {
-//              keyEle = candidateEle;
-//            }
-//          } else {
-//            // Child element is what we're looking for.
-//            if (nodeNameEquals(candidateEle, DESCRIPTION_ELEMENT)) {
-//              // the element is a <description> -> ignore it
-//            } else if (valueEle != null) {
-//              error("<entry> element must not contain more than one value sub-element", entryEle);
-//            } else {
-//              valueEle = candidateEle;
-//            }
-//          }
-//        }
-//      }
-//
-//      // Extract key from attribute or sub-element.
-//      Object key = null;
-//      boolean hasKeyAttribute = entryEle.hasAttribute(KEY_ATTRIBUTE);
-//      boolean hasKeyRefAttribute = entryEle.hasAttribute(KEY_REF_ATTRIBUTE);
-//      if ((hasKeyAttribute && hasKeyRefAttribute) ||
-//          ((hasKeyAttribute || hasKeyRefAttribute)) && keyEle != null) {
-//        error("<entry> element is only allowed to contain either " +
-//            "a 'key' attribute OR a 'key-ref' attribute OR a <key> sub-element", entryEle);
-//      }
-//      if (hasKeyAttribute) {
-//        key = buildTypedStringValueForMap(entryEle.getAttribute(KEY_ATTRIBUTE), defaultKeyType, entryEle);
-//      } else if (hasKeyRefAttribute) {
-//        String refName = entryEle.getAttribute(KEY_REF_ATTRIBUTE);
-//        if (!StringUtils.hasText(refName)) {
-//          error("<entry> element contains empty 'key-ref' attribute", entryEle);
-//        }
-//        RuntimeBeanReference ref = new RuntimeBeanReference(refName);
-//        ref.setSource(extractSource(entryEle));
-//        key = ref;
-//      } else if (keyEle != null) {
-//        key = parseKeyElement(keyEle, bd, defaultKeyType);
-//      } else {
-//        error("<entry> element must specify a key", entryEle);
-//      }
-//
-//      // Extract value from attribute or sub-element.
-//      Object value = null;
-//      boolean hasValueAttribute = entryEle.hasAttribute(VALUE_ATTRIBUTE);
-//      boolean hasValueRefAttribute = entryEle.hasAttribute(VALUE_REF_ATTRIBUTE);
-//      boolean hasValueTypeAttribute = entryEle.hasAttribute(VALUE_TYPE_ATTRIBUTE);
-//      if ((hasValueAttribute && hasValueRefAttribute) ||
-//          ((hasValueAttribute || hasValueRefAttribute)) && valueEle != null) {
-//        error("<entry> element is only allowed to contain either " +
-//            "'value' attribute OR 'value-ref' attribute OR <value> sub-element", entryEle);
-//      }
-//      if ((hasValueTypeAttribute && hasValueRefAttribute) ||
-//          (hasValueTypeAttribute && !hasValueAttribute) ||
-//          (hasValueTypeAttribute && valueEle != null)) {
-//        error("<entry> element is only allowed to contain a 'value-type' " +
-//            "attribute when it has a 'value' attribute", entryEle);
-//      }
-//      if (hasValueAttribute) {
-//        String valueType = entryEle.getAttribute(VALUE_TYPE_ATTRIBUTE);
-//        if (!StringUtils.hasText(valueType)) {
-//          valueType = defaultValueType;
-//        }
-//        value = buildTypedStringValueForMap(entryEle.getAttribute(VALUE_ATTRIBUTE), valueType, entryEle);
-//      } else if (hasValueRefAttribute) {
-//        String refName = entryEle.getAttribute(VALUE_REF_ATTRIBUTE);
-//        if (!StringUtils.hasText(refName)) {
-//          error("<entry> element contains empty 'value-ref' attribute", entryEle);
-//        }
-//        RuntimeBeanReference ref = new RuntimeBeanReference(refName);
-//        ref.setSource(extractSource(entryEle));
-//        value = ref;
-//      } else if (valueEle != null) {
-//        value = parsePropertySubElement(valueEle, bd, defaultValueType);
-//      } else {
-//        error("<entry> element must specify a value", entryEle);
-//      }
-//
-//      // Add final key and value to the Map.
-//      map.put(key, value);
-//    }
-//
-//    return map;
-//  }
-//
-//  /**
-//   * Build a typed String value Object for the given raw value.
-//   *
-//   * @see org.springframework.beans.factory.config.TypedStringValue
-//   */
-//  protected final Object buildTypedStringValueForMap(String value, String defaultTypeName, Element entryEle) {
-//    try {
-//      TypedStringValue typedValue = buildTypedStringValue(value, defaultTypeName);
-//      typedValue.setSource(extractSource(entryEle));
-//      return typedValue;
-//    } catch (ClassNotFoundException ex) {
-//      error("Type class [" + defaultTypeName + "] not found for Map key/value type", entryEle, ex);
-//      return value;
-//    }
-//  }
-//
-//  /**
-//   * Parse a key sub-element of a map element.
-//   */
-//  protected Object parseKeyElement(Element keyEle, BeanDefinition bd, String defaultKeyTypeName) {
-//    NodeList nl = keyEle.getChildNodes();
-//    Element subElement = null;
-//    for (int i = 0; i < nl.getLength(); i++) {
-//      Node node = nl.item(i);
-//      if (node instanceof Element) {
-//        // Child element is what we're looking for.
-//        if (subElement != null) {
-//          error("<key> element must not contain more than one value sub-element", keyEle);
-//        } else {
-//          subElement = (Element) node;
-//        }
-//      }
-//    }
-//    return parsePropertySubElement(subElement, bd, defaultKeyTypeName);
-//  }
-//
-//  /**
-//   * Parse a props element.
-//   */
-//  public Properties parsePropsElement(Element propsEle) {
-//    ManagedProperties props = new ManagedProperties();
-//    props.setSource(extractSource(propsEle));
-//    props.setMergeEnabled(parseMergeAttribute(propsEle));
-//
-//    List<Element> propEles = DomUtils.getChildElementsByTagName(propsEle, PROP_ELEMENT);
-//    for (Element propEle : propEles) {
-//      String key = propEle.getAttribute(KEY_ATTRIBUTE);
-//      // Trim the text value to avoid unwanted whitespace
-//      // caused by typical XML formatting.
-//      String value = DomUtils.getTextValue(propEle).trim();
-//      TypedStringValue keyHolder = new TypedStringValue(key);
-//      keyHolder.setSource(extractSource(propEle));
-//      TypedStringValue valueHolder = new TypedStringValue(value);
-//      valueHolder.setSource(extractSource(propEle));
-//      props.put(keyHolder, valueHolder);
-//    }
-//
-//    return props;
-//  }
-//
+  /**
+   * Parse a list element.
+   */
+  public List<Object> parseListElement(Element collectionEle, BeanDefinition bd) {
+    String defaultElementType = collectionEle.getAttribute(BeanDefinitionConstrants.VALUE_TYPE_ATTRIBUTE);
+    NodeList nl = collectionEle.getChildNodes();
+    ManagedList<Object> target = new ManagedList<Object>(nl.getLength());
+    parseCollectionElements(nl, target, bd, defaultElementType);
+    return target;
+  }
+
+  /**
+   * Parse a set element.
+   */
+  public Set<Object> parseSetElement(Element collectionEle, BeanDefinition bd) {
+    String defaultElementType = collectionEle.getAttribute(BeanDefinitionConstrants.VALUE_TYPE_ATTRIBUTE);
+    NodeList nl = collectionEle.getChildNodes();
+    ManagedSet<Object> target = new ManagedSet<Object>(nl.getLength());
+    parseCollectionElements(nl, target, bd, defaultElementType);
+    return target;
+  }
+
+  protected void parseCollectionElements(
+      NodeList elementNodes, Collection<Object> target, BeanDefinition bd, String defaultElementType) {
+
+    for (int i = 0; i < elementNodes.getLength(); i++) {
+      Node node = elementNodes.item(i);
+      if (node instanceof Element && !nodeNameEquals(node, BeanDefinitionConstrants.DESCRIPTION_ELEMENT)) {
+        target.add(parsePropertySubElement((Element) node, bd, defaultElementType));
+      }
+    }
+  }
+
+  /**
+   * Parse a map element.
+   */
+  public Map<Object, Object> parseMapElement(Element mapEle, BeanDefinition bd) {
+    String defaultKeyType = mapEle.getAttribute(BeanDefinitionConstrants.KEY_TYPE_ATTRIBUTE);
+    String defaultValueType = mapEle.getAttribute(BeanDefinitionConstrants.VALUE_TYPE_ATTRIBUTE);
+
+    List<Element> entryEles = getChildElementsByTagName(mapEle, BeanDefinitionConstrants.ENTRY_ELEMENT);
+    ManagedMap<Object, Object> map = new ManagedMap<Object, Object>(entryEles.size());
+
+    for (Element entryEle : entryEles) {
+      // Should only have one value child element: ref, value, list, etc.
+      // Optionally, there might be a key child element.
+      NodeList entrySubNodes = entryEle.getChildNodes();
+      Element keyEle = null;
+      Element valueEle = null;
+      for (int j = 0; j < entrySubNodes.getLength(); j++) {
+        Node node = entrySubNodes.item(j);
+        if (node instanceof Element) {
+          Element candidateEle = (Element) node;
+          if (nodeNameEquals(candidateEle, BeanDefinitionConstrants.KEY_ELEMENT)) {
+            if (keyEle != null) {
+              logger.error("<entry> element is only allowed to contain one <key> sub-element");
+            } else {
+              keyEle = candidateEle;
+            }
+          } else if (!nodeNameEquals(candidateEle, BeanDefinitionConstrants.DESCRIPTION_ELEMENT)) {
+            // Child element is what we're looking for.
+            if (valueEle != null) {
+              logger.error("<entry> element must not contain more than one value sub-element");
+            } else {
+              valueEle = candidateEle;
+            }
+          }
+        }
+      }
+
+      // Extract key from attribute or sub-element.
+      Object key = null;
+      boolean hasKeyAttribute = entryEle.hasAttribute(BeanDefinitionConstrants.KEY_ATTRIBUTE);
+      boolean hasKeyRefAttribute = entryEle.hasAttribute(BeanDefinitionConstrants.KEY_REF_ATTRIBUTE);
+      if ((hasKeyAttribute && hasKeyRefAttribute) || ((hasKeyAttribute || hasKeyRefAttribute) && keyEle != null)) {
+        logger.error("<entry> element is only allowed to contain either " +
+            "a 'key' attribute OR a 'key-ref' attribute OR a <key> sub-element");
+      }
+      if (hasKeyAttribute) {
+        key = buildTypedStringValueForMap(entryEle.getAttribute(BeanDefinitionConstrants.KEY_ATTRIBUTE),
+            defaultKeyType);
+      } else if (hasKeyRefAttribute) {
+        String refName = entryEle.getAttribute(BeanDefinitionConstrants.KEY_REF_ATTRIBUTE);
+        if (!StringUtils.hasText(refName)) {
+          logger.error("<entry> element contains empty 'key-ref' attribute");
+        }
+        key = new RuntimeBeanReference(this.interner.intern(refName));
+      } else if (keyEle != null) {
+        key = parseKeyElement(keyEle, bd, defaultKeyType);
+      } else {
+        logger.error("<entry> element must specify a key");
+      }
+
+      // Extract value from attribute or sub-element.
+      Object value = null;
+      boolean hasValueAttribute = entryEle.hasAttribute(BeanDefinitionConstrants.VALUE_ATTRIBUTE);
+      boolean hasValueRefAttribute = entryEle.hasAttribute(BeanDefinitionConstrants.VALUE_REF_ATTRIBUTE);
+      if ((hasValueAttribute && hasValueRefAttribute) ||
+          ((hasValueAttribute || hasValueRefAttribute) && valueEle != null)) {
+        logger.error("<entry> element is only allowed to contain either " +
+            "'value' attribute OR 'value-ref' attribute OR <value> sub-element");
+      }
+      if (hasValueAttribute) {
+        String valueType = entryEle.getAttribute(BeanDefinitionConstrants.VALUE_TYPE_ATTRIBUTE);
+        if (!StringUtils.hasText(valueType)) {
+          valueType = defaultValueType;
+        }
+        value = buildTypedStringValueForMap(entryEle.getAttribute(BeanDefinitionConstrants.VALUE_ATTRIBUTE),
+            valueType);
+      } else if (hasValueRefAttribute) {
+        String refName = entryEle.getAttribute(BeanDefinitionConstrants.VALUE_REF_ATTRIBUTE);
+        if (!StringUtils.hasText(refName)) {
+          logger.error("<entry> element contains empty 'value-ref' attribute");
+        }
+        value = new RuntimeBeanReference(this.interner.intern(refName));
+      } else if (valueEle != null) {
+        value = parsePropertySubElement(valueEle, bd, defaultValueType);
+      } else {
+        logger.error("<entry> element must specify a value");
+      }
+
+      // Add final key and value to the Map.
+      map.put(key, value);
+    }
+
+    return map;
+  }
+
+  /**
+   * Build a typed String value Object for the given raw value.
+   */
+  protected final Object buildTypedStringValueForMap(String value, String defaultTypeName) {
+    try {
+      return buildTypedStringValue(value, defaultTypeName);
+    } catch (ClassNotFoundException ex) {
+      logger.error("Type class [" + defaultTypeName + "] not found for Map key/value type", ex);
+      return value;
+    }
+  }
+
+  /**
+   * Parse a key sub-element of a map element.
+   */
+  protected Object parseKeyElement(Element keyEle, BeanDefinition bd, String defaultKeyTypeName) {
+    NodeList nl = keyEle.getChildNodes();
+    Element subElement = null;
+    for (int i = 0; i < nl.getLength(); i++) {
+      Node node = nl.item(i);
+      if (node instanceof Element) {
+        // Child element is what we're looking for.
+        if (subElement != null) {
+          logger.error("<key> element must not contain more than one value sub-element");
+        } else {
+          subElement = (Element) node;
+        }
+      }
+    }
+    if (subElement == null) {
+      logger.error("<key> element must contain a value sub-element");
+      return null;
+    }
+    return parsePropertySubElement(subElement, bd, defaultKeyTypeName);
+  }
+
+  /**
+   * Parse a props element.
+   */
+  public Properties parsePropsElement(Element propsEle) {
+    ManagedProperties props = new ManagedProperties();
+    for (Element propEle : getChildElementsByTagName(propsEle, BeanDefinitionConstrants.PROP_ELEMENT)) {
+      String key = propEle.getAttribute(BeanDefinitionConstrants.KEY_ATTRIBUTE);
+      // Trim the text value to avoid unwanted whitespace
+      // caused by typical XML formatting.
+      String value = getTextValue(propEle).trim();
+      props.put(new TypedStringValue(this.interner.intern(key)), new TypedStringValue(this.interner.intern(value)));
+    }
+    return props;
+  }
+
+  /**
+   * Retrieve all child elements of the given DOM element that match the given element name.
+   */
+  private List<Element> getChildElementsByTagName(Element ele, String childEleName) {
+    NodeList nl = ele.getChildNodes();
+    List<Element> childEles = new ArrayList<Element>(nl.getLength());
+    for (int i = 0; i < nl.getLength(); i++) {
+      Node node = nl.item(i);
+      if (node instanceof Element && nodeNameEquals(node, childEleName)) {
+        childEles.add((Element) node);
+      }
+    }
+    return childEles;
+  }
+
 //  /**
 //   * Parse the merge attribute of a collection element, if any.
 //   */
@@ -759,16 +999,17 @@ public class XmlBeanDefinitionReader implements BeanDefinitiontReader {
 //
 
   /**
-   * Create a new GenericBeanDefinition for the given class name *
+   * Create a new GenericBeanDefinition for the given parent name and class name *
    *
+   * @param parentName the name of the parent bean, if any
    * @param className the name of the bean class
    * @return the bean definition
    * @throws ClassNotFoundException if the bean class could not be loaded
    */
   public static AbstractBeanDefinition createBeanDefinition(
-      String className) throws ClassNotFoundException {
+      String parentName, String className) throws ClassNotFoundException {
 
-    RootBeanDefinition bd = new RootBeanDefinition(className);
+    RootBeanDefinition bd = new RootBeanDefinition(parentName, className);
 
     return bd;
   }
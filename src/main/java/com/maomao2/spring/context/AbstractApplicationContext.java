@@ -1,9 +1,17 @@
 package com.maomao2.spring.context;
 
 import com.maomao2.spring.beans.creation.DefaultBeanFactory;
+import com.maomao2.spring.beans.creation.PooledScope;
+import com.maomao2.spring.beans.creation.RefreshScope;
+import com.maomao2.spring.beans.creation.SoftScope;
+import com.maomao2.spring.beans.creation.StripedScope;
+import com.maomao2.spring.beans.creation.ThreadScope;
+import com.maomao2.spring.beans.creation.TtlScope;
 import com.maomao2.spring.exception.ApplicationContextException;
 import com.maomao2.spring.exception.BeansException;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public abstract class AbstractApplicationContext implements ApplicationContext {
 
@@ -55,8 +63,11 @@ public abstract class AbstractApplicationContext implements ApplicationContext {
     // Tell the subclass to refresh the internal bean factory.
     DefaultBeanFactory beanFactory = obtainFreshBeanFactory();
 
+    // All definitions are loaded: compact them for the lifetime of the context.
+    beanFactory.freezeConfiguration();
+
     // Prepare the bean factory for use in this context.
-    // prepareBeanFactory(beanFactory);
+    prepareBeanFactory(beanFactory);
     //
     // try {
     // // Allows post-processing of the bean factory in context subclasses.
@@ -80,14 +91,55 @@ public abstract class AbstractApplicationContext implements ApplicationContext {
     // // Check for listener beans and register them.
     // registerListeners();
     //
-    // // Instantiate all remaining (non-lazy-init) singletons.
-    // finishBeanFactoryInitialization(beanFactory);
-    //
+    // Instantiate all remaining (non-lazy-init) singletons.
+    finishBeanFactoryInitialization(beanFactory);
+
     // // Last step: publish corresponding event.
     // finishRefresh();
 
   }
 
+  /**
+   * Configure the factory's standard context characteristics: registers the {@link ThreadScope} as "thread" scope,
+   * the {@link StripedScope} as "striped" scope, the {@link PooledScope} as "pooled" scope, the {@link TtlScope} as
+   * "ttl" scope, the {@link SoftScope} as "soft" scope and the {@link RefreshScope} as "refresh" scope.
+   */
+  protected void prepareBeanFactory(DefaultBeanFactory beanFactory) {
+    beanFactory.registerScope(ThreadScope.SCOPE_THREAD, new ThreadScope());
+    beanFactory.registerScope(StripedScope.SCOPE_STRIPED, new StripedScope());
+    beanFactory.registerScope(PooledScope.SCOPE_POOLED, new PooledScope());
+    beanFactory.registerScope(TtlScope.SCOPE_TTL, new TtlScope());
+    beanFactory.registerScope(SoftScope.SCOPE_SOFT, new SoftScope());
+    beanFactory.registerScope(RefreshScope.SCOPE_REFRESH, new RefreshScope());
+  }
+
+  /**
+   * Finish the initialization of this context's bean factory, creating all remaining non-lazy-init singletons and
+   * waiting for their asynchronous initialization to complete.
+   *
+   * @throws BeansException if a singleton could not be created or initialized
+   */
+  protected void finishBeanFactoryInitialization(DefaultBeanFactory beanFactory) {
+    beanFactory.preInstantiateSingletons();
+    try {
+      beanFactory.getSingletonsInitializationFuture().join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof BeansException) {
+        throw (BeansException) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Close this application context, destroying all singletons in its bean factory.
+   */
+  public void close() {
+    if (this.beanFactory != null) {
+      this.beanFactory.destroySingletons();
+    }
+  }
+
   protected DefaultBeanFactory obtainFreshBeanFactory() {
     refreshBeanFactory();
     return beanFactory;
@@ -104,6 +156,9 @@ public abstract class AbstractApplicationContext implements ApplicationContext {
    * @throws IllegalStateException if already initialized and multiple refresh attempts are not supported
    */
   protected void refreshBeanFactory() throws BeansException, IllegalStateException {
+    if (this.beanFactory != null) {
+      this.beanFactory.destroySingletons();
+    }
     DefaultBeanFactory beanFactory = new DefaultBeanFactory();
     this.beanFactory = beanFactory;
     loadBeanDefinitions(beanFactory);
@@ -134,4 +189,14 @@ public abstract class AbstractApplicationContext implements ApplicationContext {
   public Object getBean(String name) throws BeansException {
     return beanFactory.getBean(name);
   }
+
+  @Override
+  public CompletableFuture<Object> getBeanAsync(String name) {
+    return beanFactory.getBeanAsync(name);
+  }
+
+  @Override
+  public <T> CompletableFuture<T> getBeanAsync(String name, Class<T> requiredType) {
+    return beanFactory.getBeanAsync(name, requiredType);
+  }
 }
@@ -1,7 +1,20 @@
 package com.maomao2.spring.context;
 
 import com.maomao2.spring.beans.creation.ConfigureBeanFactory;
+import java.util.concurrent.CompletableFuture;
 
 public interface ApplicationContext extends ConfigureBeanFactory {
 
+  /**
+   * Return an instance of the specified bean without blocking the calling thread. The future completes once the bean
+   * and its dependencies are fully initialized; concurrent requests for the same singleton share one future.
+   */
+  CompletableFuture<Object> getBeanAsync(String name);
+
+  /**
+   * Return an instance of the specified bean without blocking the calling thread, converted to the required type if
+   * necessary.
+   */
+  <T> CompletableFuture<T> getBeanAsync(String name, Class<T> requiredType);
+
 }
@@ -0,0 +1,20 @@
+package com.maomao2.spring.exception;
+
+/**
+ * Exception thrown when a bean instance has been requested for a bean definition which has been marked as abstract.
+ *
+ * @see com.maomao2.spring.beans.definition.AbstractBeanDefinition#setAbstract
+ */
+@SuppressWarnings("serial")
+public class BeanIsAbstractException extends BeanCreationException {
+
+  /**
+   * Create a new BeanIsAbstractException.
+   *
+   * @param beanName the name of the bean requested
+   */
+  public BeanIsAbstractException(String beanName) {
+    super(beanName, "Bean definition is abstract");
+  }
+
+}
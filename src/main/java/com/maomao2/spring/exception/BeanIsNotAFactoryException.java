@@ -0,0 +1,22 @@
+package com.maomao2.spring.exception;
+
+/**
+ * Exception thrown when a bean is not a factory, but a user tries to get at the factory for the given bean name with
+ * the {@code &} dereference prefix.
+ *
+ * @see com.maomao2.spring.beans.creation.FactoryBean
+ */
+@SuppressWarnings("serial")
+public class BeanIsNotAFactoryException extends BeanCreationException {
+
+  /**
+   * Create a new BeanIsNotAFactoryException.
+   *
+   * @param name the name of the bean requested
+   * @param actualType the actual type returned, which did not match the expected type
+   */
+  public BeanIsNotAFactoryException(String name, Class<?> actualType) {
+    super(name, "Bean of type [" + actualType.getName() + "] is not a FactoryBean");
+  }
+
+}
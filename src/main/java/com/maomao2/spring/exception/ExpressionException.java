@@ -0,0 +1,41 @@
+package com.maomao2.spring.exception;
+
+/**
+ * Exception thrown when a {@code #{...}} bean definition expression cannot be parsed or evaluated.
+ */
+@SuppressWarnings("serial")
+public class ExpressionException extends BeansException {
+
+  private final String expressionString;
+
+  /**
+   * Create a new ExpressionException.
+   *
+   * @param expressionString the expression that failed
+   * @param msg the detail message
+   */
+  public ExpressionException(String expressionString, String msg) {
+    super(msg + " in expression \"" + expressionString + "\"");
+    this.expressionString = expressionString;
+  }
+
+  /**
+   * Create a new ExpressionException.
+   *
+   * @param expressionString the expression that failed
+   * @param msg the detail message
+   * @param cause the root cause
+   */
+  public ExpressionException(String expressionString, String msg, Throwable cause) {
+    super(msg + " in expression \"" + expressionString + "\"", cause);
+    this.expressionString = expressionString;
+  }
+
+  /**
+   * Return the expression that failed.
+   */
+  public String getExpressionString() {
+    return this.expressionString;
+  }
+
+}
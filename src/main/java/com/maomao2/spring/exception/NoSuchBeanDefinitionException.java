@@ -11,11 +11,31 @@ public class NoSuchBeanDefinitionException extends RuntimeException {
 
   private String beanName;
 
+  private Class<?> beanType;
+
   public NoSuchBeanDefinitionException(String name) {
     super("No bean named '" + name + "' available");
     this.setBeanName(name);
   }
 
+  /**
+   * Create a new NoSuchBeanDefinitionException.
+   *
+   * @param type required type of the missing bean
+   * @param message detailed message describing the problem
+   */
+  public NoSuchBeanDefinitionException(Class<?> type, String message) {
+    super("No qualifying bean of type '" + type.getName() + "' available: " + message);
+    this.beanType = type;
+  }
+
+  /**
+   * Return the required type of the missing bean, if it was a lookup <em>by type</em> that failed.
+   */
+  public Class<?> getBeanType() {
+    return this.beanType;
+  }
+
   public String getBeanName() {
     return beanName;
   }
@@ -0,0 +1,43 @@
+package com.maomao2.spring.exception;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Exception thrown when a bean factory is asked for a bean instance for which multiple matching candidates have been
+ * found when only one matching bean was expected.
+ */
+@SuppressWarnings("serial")
+public class NoUniqueBeanDefinitionException extends NoSuchBeanDefinitionException {
+
+  private final Collection<String> beanNamesFound;
+
+  /**
+   * Create a new NoUniqueBeanDefinitionException.
+   *
+   * @param type required type of the non-unique bean
+   * @param beanNamesFound the names of all matching beans
+   */
+  public NoUniqueBeanDefinitionException(Class<?> type, Collection<String> beanNamesFound) {
+    super(type, "expected single matching bean but found " + beanNamesFound.size() + ": " + beanNamesFound);
+    this.beanNamesFound = beanNamesFound;
+  }
+
+  /**
+   * Create a new NoUniqueBeanDefinitionException.
+   *
+   * @param type required type of the non-unique bean
+   * @param beanNamesFound the names of all matching beans
+   */
+  public NoUniqueBeanDefinitionException(Class<?> type, String... beanNamesFound) {
+    this(type, Arrays.asList(beanNamesFound));
+  }
+
+  /**
+   * Return the names of all beans found when only one matching bean was expected.
+   */
+  public Collection<String> getBeanNamesFound() {
+    return this.beanNamesFound;
+  }
+
+}
@@ -0,0 +1,68 @@
+package com.maomao2.spring.expression;
+
+import java.lang.invoke.MethodHandle;
+
+import com.maomao2.spring.beans.creation.BeanFactory;
+import com.maomao2.spring.exception.BeansException;
+import com.maomao2.spring.exception.ExpressionException;
+
+/**
+ * A compiled {@code #{...}} expression, evaluated against a {@link BeanFactory}.
+ * <p>
+ * The expression text is parsed only once, into a tree of method handles of type {@code (BeanFactory)Object}.
+ * Evaluating the expression invokes that tree; there is no interpretation step per evaluation.
+ *
+ * @see ExpressionParser
+ */
+public final class Expression {
+
+  public static final String EXPRESSION_PREFIX = "#{";
+
+  public static final String EXPRESSION_SUFFIX = "}";
+
+  private final String expressionString;
+
+  private final MethodHandle handle;
+
+  Expression(String expressionString, MethodHandle handle) {
+    this.expressionString = expressionString;
+    this.handle = handle;
+  }
+
+  /**
+   * Return the original text this expression was compiled from.
+   */
+  public String getExpressionString() {
+    return this.expressionString;
+  }
+
+  /**
+   * Evaluate this expression.
+   *
+   * @param beanFactory the bean factory to resolve bean references against
+   * @return the result of the evaluation
+   * @throws ExpressionException if the evaluation failed
+   */
+  public Object getValue(BeanFactory beanFactory) throws BeansException {
+    try {
+      return (Object) this.handle.invokeExact(beanFactory);
+    } catch (BeansException ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new ExpressionException(this.expressionString, "Evaluation failed: " + ex, ex);
+    }
+  }
+
+  /**
+   * Return whether the given text contains a {@code #{...}} expression.
+   */
+  public static boolean containsExpression(String text) {
+    return (text != null && text.contains(EXPRESSION_PREFIX));
+  }
+
+  @Override
+  public String toString() {
+    return this.expressionString;
+  }
+
+}
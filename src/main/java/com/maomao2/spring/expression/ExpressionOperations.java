@@ -0,0 +1,293 @@
+package com.maomao2.spring.expression;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import com.maomao2.spring.beans.creation.BeanFactory;
+import com.maomao2.spring.util.ClassUtils;
+
+/**
+ * Operators of the expression language, exposed as method handles for the {@link ExpressionParser} to compose.
+ * <p>
+ * Binary operators are of type {@code (Object,Object)Object}, unary operators of type {@code (Object)Object}.
+ * Arithmetic follows Java's binary numeric promotion: double if either operand is floating point, long if either is
+ * a long, int otherwise.
+ */
+final class ExpressionOperations {
+
+  static final MethodHandle GET_BEAN;
+
+  static final MethodHandle ADD;
+
+  static final MethodHandle SUBTRACT;
+
+  static final MethodHandle MULTIPLY;
+
+  static final MethodHandle DIVIDE;
+
+  static final MethodHandle MODULUS;
+
+  static final MethodHandle NEGATE;
+
+  static final MethodHandle NOT;
+
+  static final MethodHandle EQUAL;
+
+  static final MethodHandle NOT_EQUAL;
+
+  static final MethodHandle LESS_THAN;
+
+  static final MethodHandle LESS_OR_EQUAL;
+
+  static final MethodHandle GREATER_THAN;
+
+  static final MethodHandle GREATER_OR_EQUAL;
+
+  static final MethodHandle CONCAT;
+
+  static final MethodHandle TO_BOOLEAN;
+
+  static final MethodHandle COERCE;
+
+  static {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    MethodType unary = MethodType.methodType(Object.class, Object.class);
+    MethodType binary = MethodType.methodType(Object.class, Object.class, Object.class);
+    try {
+      GET_BEAN = lookup.findStatic(ExpressionOperations.class, "getBean",
+          MethodType.methodType(Object.class, String.class, BeanFactory.class));
+      ADD = lookup.findStatic(ExpressionOperations.class, "add", binary);
+      SUBTRACT = lookup.findStatic(ExpressionOperations.class, "subtract", binary);
+      MULTIPLY = lookup.findStatic(ExpressionOperations.class, "multiply", binary);
+      DIVIDE = lookup.findStatic(ExpressionOperations.class, "divide", binary);
+      MODULUS = lookup.findStatic(ExpressionOperations.class, "modulus", binary);
+      NEGATE = lookup.findStatic(ExpressionOperations.class, "negate", unary);
+      NOT = lookup.findStatic(ExpressionOperations.class, "not", unary);
+      EQUAL = lookup.findStatic(ExpressionOperations.class, "equal", binary);
+      NOT_EQUAL = lookup.findStatic(ExpressionOperations.class, "notEqual", binary);
+      LESS_THAN = lookup.findStatic(ExpressionOperations.class, "lessThan", binary);
+      LESS_OR_EQUAL = lookup.findStatic(ExpressionOperations.class, "lessOrEqual", binary);
+      GREATER_THAN = lookup.findStatic(ExpressionOperations.class, "greaterThan", binary);
+      GREATER_OR_EQUAL = lookup.findStatic(ExpressionOperations.class, "greaterOrEqual", binary);
+      CONCAT = lookup.findStatic(ExpressionOperations.class, "concat", binary);
+      TO_BOOLEAN = lookup.findStatic(ExpressionOperations.class, "toBoolean",
+          MethodType.methodType(boolean.class, Object.class));
+      COERCE = lookup.findStatic(ExpressionOperations.class, "coerce",
+          MethodType.methodType(Object.class, Class.class, Object.class));
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private ExpressionOperations() {
+  }
+
+  static Object getBean(String beanName, BeanFactory beanFactory) {
+    return beanFactory.getBean(beanName);
+  }
+
+  static Object add(Object left, Object right) {
+    if (left instanceof String || right instanceof String) {
+      return concat(left, right);
+    }
+    return arithmetic('+', left, right);
+  }
+
+  static Object subtract(Object left, Object right) {
+    return arithmetic('-', left, right);
+  }
+
+  static Object multiply(Object left, Object right) {
+    return arithmetic('*', left, right);
+  }
+
+  static Object divide(Object left, Object right) {
+    return arithmetic('/', left, right);
+  }
+
+  static Object modulus(Object left, Object right) {
+    return arithmetic('%', left, right);
+  }
+
+  static Object negate(Object operand) {
+    Number number = toNumber('-', operand);
+    if (isFloatingPoint(number)) {
+      return -number.doubleValue();
+    }
+    if (isLong(number)) {
+      return -number.longValue();
+    }
+    return -number.intValue();
+  }
+
+  static Object not(Object operand) {
+    return !toBoolean(operand);
+  }
+
+  static Object equal(Object left, Object right) {
+    return isEqual(left, right);
+  }
+
+  static Object notEqual(Object left, Object right) {
+    return !isEqual(left, right);
+  }
+
+  static Object lessThan(Object left, Object right) {
+    return compare(left, right) < 0;
+  }
+
+  static Object lessOrEqual(Object left, Object right) {
+    return compare(left, right) <= 0;
+  }
+
+  static Object greaterThan(Object left, Object right) {
+    return compare(left, right) > 0;
+  }
+
+  static Object greaterOrEqual(Object left, Object right) {
+    return compare(left, right) >= 0;
+  }
+
+  static Object concat(Object left, Object right) {
+    return String.valueOf(left).concat(String.valueOf(right));
+  }
+
+  static boolean toBoolean(Object value) {
+    if (value instanceof Boolean) {
+      return (Boolean) value;
+    }
+    throw new IllegalArgumentException(
+        "Expected boolean value but got " + (value != null ? value.getClass().getName() : "null"));
+  }
+
+  /**
+   * Convert a numeric argument to the given parameter type, so that e.g. an int literal can be passed to a method
+   * expecting a long.
+   */
+  static Object coerce(Class<?> targetType, Object value) {
+    if (!(value instanceof Number)) {
+      return value;
+    }
+    Class<?> wrapperType = ClassUtils.resolvePrimitiveIfNecessary(targetType);
+    if (wrapperType.isInstance(value)) {
+      return value;
+    }
+    Number number = (Number) value;
+    if (wrapperType == Integer.class) {
+      return number.intValue();
+    } else if (wrapperType == Long.class) {
+      return number.longValue();
+    } else if (wrapperType == Double.class) {
+      return number.doubleValue();
+    } else if (wrapperType == Float.class) {
+      return number.floatValue();
+    } else if (wrapperType == Short.class) {
+      return number.shortValue();
+    } else if (wrapperType == Byte.class) {
+      return number.byteValue();
+    }
+    return value;
+  }
+
+  private static Object arithmetic(char operator, Object left, Object right) {
+    Number l = toNumber(operator, left);
+    Number r = toNumber(operator, right);
+    if (isFloatingPoint(l) || isFloatingPoint(r)) {
+      double a = l.doubleValue();
+      double b = r.doubleValue();
+      switch (operator) {
+        case '+':
+          return a + b;
+        case '-':
+          return a - b;
+        case '*':
+          return a * b;
+        case '/':
+          return a / b;
+        default:
+          return a % b;
+      }
+    }
+    if (isLong(l) || isLong(r)) {
+      long a = l.longValue();
+      long b = r.longValue();
+      switch (operator) {
+        case '+':
+          return a + b;
+        case '-':
+          return a - b;
+        case '*':
+          return a * b;
+        case '/':
+          return a / b;
+        default:
+          return a % b;
+      }
+    }
+    int a = l.intValue();
+    int b = r.intValue();
+    switch (operator) {
+      case '+':
+        return a + b;
+      case '-':
+        return a - b;
+      case '*':
+        return a * b;
+      case '/':
+        return a / b;
+      default:
+        return a % b;
+    }
+  }
+
+  private static boolean isEqual(Object left, Object right) {
+    if (left instanceof Number && right instanceof Number) {
+      return compareNumbers((Number) left, (Number) right) == 0;
+    }
+    return (left == null ? right == null : left.equals(right));
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static int compare(Object left, Object right) {
+    if (left instanceof Number && right instanceof Number) {
+      return compareNumbers((Number) left, (Number) right);
+    }
+    if (left instanceof Comparable && left.getClass().isInstance(right)) {
+      return ((Comparable) left).compareTo(right);
+    }
+    throw new IllegalArgumentException("Cannot compare " + describe(left) + " with " + describe(right));
+  }
+
+  private static int compareNumbers(Number left, Number right) {
+    if (isFloatingPoint(left) || isFloatingPoint(right)) {
+      return Double.compare(left.doubleValue(), right.doubleValue());
+    }
+    return Long.compare(left.longValue(), right.longValue());
+  }
+
+  private static Number toNumber(char operator, Object value) {
+    if (value instanceof Number) {
+      return (Number) value;
+    }
+    if (value instanceof Character) {
+      return (int) (Character) value;
+    }
+    throw new IllegalArgumentException("Operator '" + operator + "' not applicable to " + describe(value));
+  }
+
+  private static boolean isFloatingPoint(Number number) {
+    return (number instanceof Double || number instanceof Float || number instanceof BigDecimal);
+  }
+
+  private static boolean isLong(Number number) {
+    return (number instanceof Long || number instanceof BigInteger);
+  }
+
+  private static String describe(Object value) {
+    return (value != null ? "[" + value.getClass().getName() + "]" : "null");
+  }
+
+}
@@ -0,0 +1,461 @@
+package com.maomao2.spring.expression;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.maomao2.spring.beans.creation.BeanFactory;
+import com.maomao2.spring.exception.ExpressionException;
+import com.maomao2.spring.util.ClassUtils;
+
+/**
+ * Parser for {@code #{...}} expressions in bean definition values.
+ * <p>
+ * Supported syntax:
+ * <ul>
+ * <li>literals: {@code 42}, {@code 42L}, {@code 1.5}, {@code 'text'}, {@code true}, {@code false}, {@code null}</li>
+ * <li>bean references: {@code @dataSource} or simply {@code dataSource}</li>
+ * <li>type references for static access: {@code T(java.lang.Runtime)}, {@code java.lang} may be omitted</li>
+ * <li>property navigation and method calls: {@code pool.maxSize}, {@code T(Math).max(2, cores)}</li>
+ * <li>arithmetic {@code + - * / %}, comparison {@code == != < <= > >=}, logical {@code and or not && || !} and the
+ * conditional operator {@code cond ? a : b}</li>
+ * </ul>
+ * Text outside of {@code #{...}} is kept as literal; a value consisting of a single expression evaluates to the raw
+ * result, anything else to the concatenated String.
+ * <p>
+ * Expressions are compiled into a method handle tree rather than an AST, see {@link Expression}.
+ */
+public class ExpressionParser {
+
+  static final MethodType EXPRESSION_TYPE = MethodType.methodType(Object.class, BeanFactory.class);
+
+  private final ClassLoader classLoader;
+
+  /**
+   * Create a new ExpressionParser.
+   *
+   * @param classLoader the ClassLoader to resolve {@code T(...)} type references with
+   */
+  public ExpressionParser(ClassLoader classLoader) {
+    this.classLoader = classLoader;
+  }
+
+  /**
+   * Parse and compile the given text.
+   *
+   * @param text the text to parse, containing one or more {@code #{...}} expressions
+   * @return the compiled expression
+   * @throws ExpressionException if the text is not a valid expression
+   */
+  public Expression parseExpression(String text) throws ExpressionException {
+    List<MethodHandle> parts = new ArrayList<MethodHandle>(3);
+    int start = 0;
+    int prefixIndex = text.indexOf(Expression.EXPRESSION_PREFIX);
+    while (prefixIndex != -1) {
+      if (prefixIndex > start) {
+        parts.add(constant(text.substring(start, prefixIndex)));
+      }
+      int expressionStart = prefixIndex + Expression.EXPRESSION_PREFIX.length();
+      int suffixIndex = findSuffixIndex(text, expressionStart);
+      if (suffixIndex == -1) {
+        throw new ExpressionException(text, "No closing '}' for expression at position " + prefixIndex);
+      }
+      parts.add(new Compiler(text, expressionStart, suffixIndex).compile());
+      start = suffixIndex + Expression.EXPRESSION_SUFFIX.length();
+      prefixIndex = text.indexOf(Expression.EXPRESSION_PREFIX, start);
+    }
+    if (start < text.length() || parts.isEmpty()) {
+      parts.add(constant(text.substring(start)));
+    }
+
+    MethodHandle handle = parts.get(0);
+    for (int i = 1; i < parts.size(); i++) {
+      handle = combine(ExpressionOperations.CONCAT, handle, parts.get(i));
+    }
+    return new Expression(text, handle);
+  }
+
+  private static int findSuffixIndex(String text, int startIndex) {
+    char quote = 0;
+    for (int i = startIndex; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"') {
+        quote = c;
+      } else if (c == '}') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static MethodHandle constant(Object value) {
+    return MethodHandles.dropArguments(MethodHandles.constant(Object.class, value), 0, BeanFactory.class);
+  }
+
+  /**
+   * Apply the given binary operator to the results of the given operand handles.
+   */
+  static MethodHandle combine(MethodHandle operator, MethodHandle left, MethodHandle right) {
+    MethodHandle filtered = MethodHandles.filterArguments(operator, 0, left, right);
+    return MethodHandles.permuteArguments(filtered, EXPRESSION_TYPE, 0, 0);
+  }
+
+  /**
+   * Recursive descent compiler for the text of a single {@code #{...}} expression.
+   */
+  private class Compiler {
+
+    private final String text;
+
+    private final int end;
+
+    private int pos;
+
+    Compiler(String text, int start, int end) {
+      this.text = text;
+      this.pos = start;
+      this.end = end;
+    }
+
+    MethodHandle compile() {
+      MethodHandle handle = parseConditional();
+      skipWhitespace();
+      if (this.pos < this.end) {
+        throw error("Unexpected character '" + this.text.charAt(this.pos) + "'");
+      }
+      return handle;
+    }
+
+    private MethodHandle parseConditional() {
+      MethodHandle condition = parseOr();
+      if (accept("?")) {
+        MethodHandle whenTrue = parseConditional();
+        expect(":");
+        MethodHandle whenFalse = parseConditional();
+        return MethodHandles.guardWithTest(toBoolean(condition), whenTrue, whenFalse);
+      }
+      return condition;
+    }
+
+    private MethodHandle parseOr() {
+      MethodHandle left = parseAnd();
+      while (accept("||") || acceptKeyword("or")) {
+        MethodHandle right = toBooleanObject(parseAnd());
+        left = MethodHandles.guardWithTest(toBoolean(left), constant(Boolean.TRUE), right);
+      }
+      return left;
+    }
+
+    private MethodHandle parseAnd() {
+      MethodHandle left = parseEquality();
+      while (accept("&&") || acceptKeyword("and")) {
+        MethodHandle right = toBooleanObject(parseEquality());
+        left = MethodHandles.guardWithTest(toBoolean(left), right, constant(Boolean.FALSE));
+      }
+      return left;
+    }
+
+    private MethodHandle parseEquality() {
+      MethodHandle left = parseRelational();
+      while (true) {
+        if (accept("==")) {
+          left = combine(ExpressionOperations.EQUAL, left, parseRelational());
+        } else if (accept("!=")) {
+          left = combine(ExpressionOperations.NOT_EQUAL, left, parseRelational());
+        } else {
+          return left;
+        }
+      }
+    }
+
+    private MethodHandle parseRelational() {
+      MethodHandle left = parseAdditive();
+      if (accept("<=")) {
+        return combine(ExpressionOperations.LESS_OR_EQUAL, left, parseAdditive());
+      } else if (accept(">=")) {
+        return combine(ExpressionOperations.GREATER_OR_EQUAL, left, parseAdditive());
+      } else if (accept("<")) {
+        return combine(ExpressionOperations.LESS_THAN, left, parseAdditive());
+      } else if (accept(">")) {
+        return combine(ExpressionOperations.GREATER_THAN, left, parseAdditive());
+      }
+      return left;
+    }
+
+    private MethodHandle parseAdditive() {
+      MethodHandle left = parseMultiplicative();
+      while (true) {
+        if (accept("+")) {
+          left = combine(ExpressionOperations.ADD, left, parseMultiplicative());
+        } else if (accept("-")) {
+          left = combine(ExpressionOperations.SUBTRACT, left, parseMultiplicative());
+        } else {
+          return left;
+        }
+      }
+    }
+
+    private MethodHandle parseMultiplicative() {
+      MethodHandle left = parseUnary();
+      while (true) {
+        if (accept("*")) {
+          left = combine(ExpressionOperations.MULTIPLY, left, parseUnary());
+        } else if (accept("/")) {
+          left = combine(ExpressionOperations.DIVIDE, left, parseUnary());
+        } else if (accept("%")) {
+          left = combine(ExpressionOperations.MODULUS, left, parseUnary());
+        } else {
+          return left;
+        }
+      }
+    }
+
+    private MethodHandle parseUnary() {
+      if (accept("-")) {
+        return MethodHandles.filterReturnValue(parseUnary(), ExpressionOperations.NEGATE);
+      }
+      if ((!lookingAt("!=") && accept("!")) || acceptKeyword("not")) {
+        return MethodHandles.filterReturnValue(parseUnary(), ExpressionOperations.NOT);
+      }
+      return parsePostfix(parsePrimary());
+    }
+
+    private MethodHandle parsePostfix(MethodHandle target) {
+      MethodHandle handle = target;
+      while (accept(".")) {
+        String name = parseIdentifier();
+        if (accept("(")) {
+          List<MethodHandle> args = new ArrayList<MethodHandle>(4);
+          if (!accept(")")) {
+            do {
+              args.add(parseConditional());
+            } while (accept(","));
+            expect(")");
+          }
+          handle = methodCall(handle, name, args);
+        } else {
+          MemberAccessor accessor = new MemberAccessor(name, -1);
+          MethodHandle property = MethodHandles.insertArguments(
+              MemberAccessor.ACCESS.bindTo(accessor), 1, (Object) null);
+          handle = MethodHandles.filterReturnValue(handle, property);
+        }
+      }
+      return handle;
+    }
+
+    private MethodHandle methodCall(MethodHandle target, String name, List<MethodHandle> args) {
+      MethodHandle argsHandle;
+      if (args.isEmpty()) {
+        argsHandle = MethodHandles.dropArguments(
+            MethodHandles.constant(Object[].class, new Object[0]), 0, BeanFactory.class);
+      } else {
+        MethodHandle collector = MethodHandles.identity(Object[].class).asCollector(Object[].class, args.size());
+        MethodHandle collected = MethodHandles.filterArguments(
+            collector, 0, args.toArray(new MethodHandle[args.size()]));
+        argsHandle = MethodHandles.permuteArguments(
+            collected, MethodType.methodType(Object[].class, BeanFactory.class), new int[args.size()]);
+      }
+      MethodHandle access = MemberAccessor.ACCESS.bindTo(new MemberAccessor(name, args.size()));
+      MethodHandle filtered = MethodHandles.filterArguments(access, 0, target, argsHandle);
+      return MethodHandles.permuteArguments(filtered, EXPRESSION_TYPE, 0, 0);
+    }
+
+    private MethodHandle parsePrimary() {
+      skipWhitespace();
+      if (this.pos >= this.end) {
+        throw error("Unexpected end of expression");
+      }
+      char c = this.text.charAt(this.pos);
+      if (accept("(")) {
+        MethodHandle handle = parseConditional();
+        expect(")");
+        return handle;
+      }
+      if (c == '\'' || c == '"') {
+        return constant(parseString(c));
+      }
+      if (Character.isDigit(c)) {
+        return constant(parseNumber());
+      }
+      if (accept("@")) {
+        return beanReference(parseIdentifier());
+      }
+      if (Character.isJavaIdentifierStart(c)) {
+        String identifier = parseIdentifier();
+        if ("true".equals(identifier)) {
+          return constant(Boolean.TRUE);
+        } else if ("false".equals(identifier)) {
+          return constant(Boolean.FALSE);
+        } else if ("null".equals(identifier)) {
+          return constant(null);
+        } else if ("T".equals(identifier) && accept("(")) {
+          return constant(parseTypeReference());
+        }
+        return beanReference(identifier);
+      }
+      throw error("Unexpected character '" + c + "'");
+    }
+
+    private MethodHandle beanReference(String beanName) {
+      return MethodHandles.insertArguments(ExpressionOperations.GET_BEAN, 0, beanName);
+    }
+
+    private Class<?> parseTypeReference() {
+      skipWhitespace();
+      int start = this.pos;
+      while (this.pos < this.end && this.text.charAt(this.pos) != ')') {
+        this.pos++;
+      }
+      String typeName = this.text.substring(start, this.pos).trim();
+      expect(")");
+      try {
+        return ClassUtils.forName(typeName, ExpressionParser.this.classLoader);
+      } catch (ClassNotFoundException ex) {
+        if (typeName.indexOf('.') == -1) {
+          try {
+            return ClassUtils.forName("java.lang." + typeName, ExpressionParser.this.classLoader);
+          } catch (ClassNotFoundException ex2) {
+            // fall through
+          }
+        }
+        throw error("Type '" + typeName + "' not found");
+      }
+    }
+
+    private String parseString(char quote) {
+      StringBuilder sb = new StringBuilder();
+      this.pos++;
+      while (this.pos < this.end) {
+        char c = this.text.charAt(this.pos++);
+        if (c == quote) {
+          if (this.pos < this.end && this.text.charAt(this.pos) == quote) {
+            // doubled quote is an escaped quote
+            sb.append(quote);
+            this.pos++;
+          } else {
+            return sb.toString();
+          }
+        } else {
+          sb.append(c);
+        }
+      }
+      throw error("Unterminated string literal");
+    }
+
+    private Object parseNumber() {
+      int start = this.pos;
+      try {
+        return doParseNumber();
+      } catch (NumberFormatException ex) {
+        throw new ExpressionException(this.text, "Number literal '" + this.text.substring(start, this.pos) +
+            "' out of range at position " + start, ex);
+      }
+    }
+
+    private Object doParseNumber() {
+      int start = this.pos;
+      boolean floatingPoint = false;
+      while (this.pos < this.end && Character.isDigit(this.text.charAt(this.pos))) {
+        this.pos++;
+      }
+      if (this.pos + 1 < this.end && this.text.charAt(this.pos) == '.' &&
+          Character.isDigit(this.text.charAt(this.pos + 1))) {
+        floatingPoint = true;
+        this.pos++;
+        while (this.pos < this.end && Character.isDigit(this.text.charAt(this.pos))) {
+          this.pos++;
+        }
+      }
+      String number = this.text.substring(start, this.pos);
+      if (this.pos < this.end) {
+        char suffix = Character.toUpperCase(this.text.charAt(this.pos));
+        if (suffix == 'L' && !floatingPoint) {
+          this.pos++;
+          return Long.valueOf(number);
+        } else if (suffix == 'D') {
+          this.pos++;
+          return Double.valueOf(number);
+        } else if (suffix == 'F') {
+          this.pos++;
+          return Float.valueOf(number);
+        }
+      }
+      if (floatingPoint) {
+        return Double.valueOf(number);
+      }
+      long value = Long.parseLong(number);
+      return (value <= Integer.MAX_VALUE ? (Object) (int) value : (Object) value);
+    }
+
+    private String parseIdentifier() {
+      skipWhitespace();
+      int start = this.pos;
+      if (this.pos < this.end && Character.isJavaIdentifierStart(this.text.charAt(this.pos))) {
+        this.pos++;
+        while (this.pos < this.end && Character.isJavaIdentifierPart(this.text.charAt(this.pos))) {
+          this.pos++;
+        }
+      }
+      if (start == this.pos) {
+        throw error("Identifier expected");
+      }
+      return this.text.substring(start, this.pos);
+    }
+
+    private MethodHandle toBoolean(MethodHandle handle) {
+      return MethodHandles.filterReturnValue(handle, ExpressionOperations.TO_BOOLEAN);
+    }
+
+    private MethodHandle toBooleanObject(MethodHandle handle) {
+      return toBoolean(handle).asType(EXPRESSION_TYPE);
+    }
+
+    private boolean lookingAt(String token) {
+      skipWhitespace();
+      return this.text.startsWith(token, this.pos) && this.pos + token.length() <= this.end;
+    }
+
+    private boolean accept(String token) {
+      if (lookingAt(token)) {
+        this.pos += token.length();
+        return true;
+      }
+      return false;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+      if (!lookingAt(keyword)) {
+        return false;
+      }
+      int next = this.pos + keyword.length();
+      if (next < this.end && Character.isJavaIdentifierPart(this.text.charAt(next))) {
+        return false;
+      }
+      this.pos = next;
+      return true;
+    }
+
+    private void expect(String token) {
+      if (!accept(token)) {
+        throw error("'" + token + "' expected");
+      }
+    }
+
+    private void skipWhitespace() {
+      while (this.pos < this.end && Character.isWhitespace(this.text.charAt(this.pos))) {
+        this.pos++;
+      }
+    }
+
+    private ExpressionException error(String msg) {
+      return new ExpressionException(this.text, msg + " at position " + this.pos);
+    }
+  }
+
+}
@@ -0,0 +1,285 @@
+package com.maomao2.spring.expression;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.maomao2.spring.util.ClassUtils;
+import com.maomao2.spring.util.StringUtils;
+
+/**
+ * Property or method access at a single position of an expression, e.g. {@code pool.size} or {@code
+ * T(Runtime).getRuntime().availableProcessors()}.
+ * <p>
+ * The target member is looked up on first use and cached as a method handle together with the receiver class and the
+ * argument classes it was resolved for, so subsequent evaluations against the same types skip reflection entirely,
+ * and arguments of other types select their overload again. Up to {@link #CACHE_LIMIT} such combinations are kept,
+ * so a position that alternates between a few receiver or argument types does not resolve again on every
+ * evaluation. If the receiver
+ * is a {@link Class} (e.g. from {@code T(...)}), static members of that class are accessed.
+ */
+final class MemberAccessor {
+
+  static final MethodHandle ACCESS;
+
+  private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+  /**
+   * Maximum number of receiver and argument type combinations cached per position
+   */
+  static final int CACHE_LIMIT = 8;
+
+  private static final CacheEntry[] NO_ENTRIES = new CacheEntry[0];
+
+  /**
+   * Numeric wrapper types in order of widening conversion
+   */
+  private static final List<Class<?>> NUMERIC_RANKS = Arrays.<Class<?>>asList(
+      Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class);
+
+  static {
+    try {
+      ACCESS = MethodHandles.lookup().findVirtual(MemberAccessor.class, "access", ACCESSOR_TYPE);
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private final String name;
+
+  /**
+   * Number of arguments for a method call, or -1 for property access
+   */
+  private final int argumentCount;
+
+  /**
+   * Resolved members, most recently added first; replaced as a whole when an entry is added
+   */
+  private volatile CacheEntry[] cache = NO_ENTRIES;
+
+  MemberAccessor(String name, int argumentCount) {
+    this.name = name;
+    this.argumentCount = argumentCount;
+  }
+
+  Object access(Object target, Object[] args) throws Throwable {
+    if (target == null) {
+      throw new IllegalArgumentException(
+          (this.argumentCount < 0 ? "Property '" : "Method '") + this.name + "' cannot be accessed on null");
+    }
+    if (this.argumentCount < 0 && target instanceof Map) {
+      return ((Map<?, ?>) target).get(this.name);
+    }
+    boolean staticAccess = (target instanceof Class);
+    Class<?> targetClass = (staticAccess ? (Class<?>) target : target.getClass());
+    CacheEntry entry = getCacheEntry(targetClass, staticAccess, args);
+    if (entry == null) {
+      entry = new CacheEntry(targetClass, staticAccess, args, resolve(target, targetClass, staticAccess, args));
+      addCacheEntry(entry);
+    }
+    return (Object) entry.handle.invokeExact(target, args);
+  }
+
+  private CacheEntry getCacheEntry(Class<?> targetClass, boolean staticAccess, Object[] args) {
+    for (CacheEntry entry : this.cache) {
+      if (entry.matches(targetClass, staticAccess, args)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Add the given entry in front of the cache, dropping the oldest entry once {@link #CACHE_LIMIT} is reached. A
+   * concurrent addition may be lost, which only costs another lookup.
+   */
+  private void addCacheEntry(CacheEntry entry) {
+    CacheEntry[] entries = this.cache;
+    CacheEntry[] newEntries = new CacheEntry[Math.min(entries.length + 1, CACHE_LIMIT)];
+    newEntries[0] = entry;
+    System.arraycopy(entries, 0, newEntries, 1, newEntries.length - 1);
+    this.cache = newEntries;
+  }
+
+  private MethodHandle resolve(Object target, Class<?> targetClass, boolean staticAccess, Object[] args)
+      throws IllegalAccessException {
+    MethodHandle handle = null;
+    if (staticAccess) {
+      handle = (this.argumentCount < 0 ? findProperty(targetClass, true) : findMethod(targetClass, true, args));
+    }
+    if (handle == null) {
+      handle = (this.argumentCount < 0 ? findProperty(target.getClass(), false)
+          : findMethod(target.getClass(), false, args));
+    }
+    if (handle == null) {
+      throw new IllegalArgumentException((this.argumentCount < 0 ? "Property '" : "Method '") + this.name +
+          "' not found on " + (staticAccess ? "class " : "type ") + targetClass.getName());
+    }
+    return handle;
+  }
+
+  private MethodHandle findProperty(Class<?> clazz, boolean staticAccess) throws IllegalAccessException {
+    String suffix = StringUtils.capitalize(this.name);
+    for (Method method : clazz.getMethods()) {
+      if (method.getParameterTypes().length == 0 && Modifier.isStatic(method.getModifiers()) == staticAccess &&
+          method.getReturnType() != void.class &&
+          (method.getName().equals("get" + suffix) || method.getName().equals("is" + suffix))) {
+        Method publicMethod = getPublicMethod(method);
+        if (publicMethod != null) {
+          return adapt(LOOKUP.unreflect(publicMethod), staticAccess, new Class<?>[0]);
+        }
+      }
+    }
+    for (Field field : clazz.getFields()) {
+      if (field.getName().equals(this.name) && Modifier.isStatic(field.getModifiers()) == staticAccess &&
+          Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+        return adapt(LOOKUP.unreflectGetter(field), staticAccess, new Class<?>[0]);
+      }
+    }
+    return null;
+  }
+
+  private MethodHandle findMethod(Class<?> clazz, boolean staticAccess, Object[] args) throws IllegalAccessException {
+    Method candidate = null;
+    int candidateDistance = Integer.MAX_VALUE;
+    for (Method method : clazz.getMethods()) {
+      Class<?>[] paramTypes = method.getParameterTypes();
+      if (method.getName().equals(this.name) && paramTypes.length == this.argumentCount &&
+          Modifier.isStatic(method.getModifiers()) == staticAccess) {
+        int distance = getConversionDistance(paramTypes, args);
+        if (distance < candidateDistance) {
+          candidate = method;
+          candidateDistance = distance;
+        }
+      }
+    }
+    if (candidate == null) {
+      return null;
+    }
+    Method publicMethod = getPublicMethod(candidate);
+    if (publicMethod == null) {
+      return null;
+    }
+    return adapt(LOOKUP.unreflect(publicMethod), staticAccess, publicMethod.getParameterTypes());
+  }
+
+  /**
+   * Return how far the given arguments need to be widened to match the given parameter types: 0 if all arguments are
+   * directly assignable, {@code Integer.MAX_VALUE} if any argument would need a narrowing conversion or is not
+   * assignable at all.
+   */
+  private static int getConversionDistance(Class<?>[] paramTypes, Object[] args) {
+    int distance = 0;
+    for (int i = 0; i < paramTypes.length; i++) {
+      Object arg = args[i];
+      if (ClassUtils.isAssignableValue(paramTypes[i], arg)) {
+        continue;
+      }
+      int argRank = (arg != null ? NUMERIC_RANKS.indexOf(arg.getClass()) : -1);
+      int paramRank = NUMERIC_RANKS.indexOf(ClassUtils.resolvePrimitiveIfNecessary(paramTypes[i]));
+      if (argRank == -1 || paramRank < argRank) {
+        return Integer.MAX_VALUE;
+      }
+      distance += paramRank - argRank;
+    }
+    return distance;
+  }
+
+  private static boolean isNumeric(Class<?> type) {
+    return Number.class.isAssignableFrom(ClassUtils.resolvePrimitiveIfNecessary(type));
+  }
+
+  /**
+   * Adapt the given member handle to the generic accessor type {@code (Object,Object[])Object}.
+   */
+  private static MethodHandle adapt(MethodHandle handle, boolean staticAccess, Class<?>[] paramTypes) {
+    MethodHandle adapted = handle;
+    if (staticAccess) {
+      adapted = MethodHandles.dropArguments(adapted, 0, Object.class);
+    }
+    adapted = adapted.asType(MethodType.genericMethodType(paramTypes.length + 1));
+    for (int i = 0; i < paramTypes.length; i++) {
+      if (isNumeric(paramTypes[i])) {
+        MethodHandle coerce = MethodHandles.insertArguments(ExpressionOperations.COERCE, 0, paramTypes[i]);
+        adapted = MethodHandles.filterArguments(adapted, i + 1, coerce);
+      }
+    }
+    return adapted.asSpreader(Object[].class, paramTypes.length).asType(ACCESSOR_TYPE);
+  }
+
+  /**
+   * Return the given method if it is declared by a public class, or the same method as declared by a public
+   * superclass or interface; {@code null} if none is accessible.
+   */
+  private static Method getPublicMethod(Method method) {
+    if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+      return method;
+    }
+    for (Class<?> ifc : ClassUtils.getAllInterfacesForClassAsSet(method.getDeclaringClass())) {
+      if (Modifier.isPublic(ifc.getModifiers())) {
+        Method ifcMethod = ClassUtils.getMethodIfAvailable(ifc, method.getName(), method.getParameterTypes());
+        if (ifcMethod != null) {
+          return ifcMethod;
+        }
+      }
+    }
+    Class<?> superclass = method.getDeclaringClass().getSuperclass();
+    while (superclass != null) {
+      if (Modifier.isPublic(superclass.getModifiers())) {
+        Method superMethod = ClassUtils.getMethodIfAvailable(superclass, method.getName(),
+            method.getParameterTypes());
+        if (superMethod != null) {
+          return superMethod;
+        }
+      }
+      superclass = superclass.getSuperclass();
+    }
+    return null;
+  }
+
+  private static final class CacheEntry {
+
+    final Class<?> targetClass;
+
+    final boolean staticAccess;
+
+    /**
+     * Runtime classes of the arguments the overload was chosen for, {@code null} for {@code null} arguments; empty
+     * for property access
+     */
+    final Class<?>[] argumentClasses;
+
+    final MethodHandle handle;
+
+    CacheEntry(Class<?> targetClass, boolean staticAccess, Object[] args, MethodHandle handle) {
+      this.targetClass = targetClass;
+      this.staticAccess = staticAccess;
+      this.argumentClasses = new Class<?>[args != null ? args.length : 0];
+      for (int i = 0; i < this.argumentClasses.length; i++) {
+        this.argumentClasses[i] = (args[i] != null ? args[i].getClass() : null);
+      }
+      this.handle = handle;
+    }
+
+    boolean matches(Class<?> targetClass, boolean staticAccess, Object[] args) {
+      if (this.targetClass != targetClass || this.staticAccess != staticAccess) {
+        return false;
+      }
+      for (int i = 0; i < this.argumentClasses.length; i++) {
+        if (this.argumentClasses[i] != (args[i] != null ? args[i].getClass() : null)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+}
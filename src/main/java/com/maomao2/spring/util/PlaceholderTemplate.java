@@ -0,0 +1,168 @@
+package com.maomao2.spring.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pre-compiled form of a String value containing {@code ${...}} placeholders.
+ * <p>
+ * The value is scanned once and split into literal segments and placeholder segments, so resolving it against a
+ * {@link PropertySnapshot} is a simple concatenation without re-parsing the original text. A placeholder may declare a
+ * default value after a colon, e.g. {@code ${pool.size:8}}; the default may itself contain placeholders.
+ */
+public final class PlaceholderTemplate {
+
+  public static final String PLACEHOLDER_PREFIX = "${";
+
+  public static final String PLACEHOLDER_SUFFIX = "}";
+
+  public static final String VALUE_SEPARATOR = ":";
+
+  private static final String[] NO_KEYS = new String[0];
+
+  private static final PlaceholderTemplate[] NO_DEFAULTS = new PlaceholderTemplate[0];
+
+  private final String text;
+
+  /**
+   * Literal segments; always one more than the number of placeholders
+   */
+  private final String[] literals;
+
+  private final String[] keys;
+
+  /**
+   * Compiled default value per placeholder, {@code null} if none was specified
+   */
+  private final PlaceholderTemplate[] defaultValues;
+
+  private final int literalLength;
+
+  private PlaceholderTemplate(String text, String[] literals, String[] keys, PlaceholderTemplate[] defaultValues) {
+    this.text = text;
+    this.literals = literals;
+    this.keys = keys;
+    this.defaultValues = defaultValues;
+    int length = 0;
+    for (String literal : literals) {
+      length += literal.length();
+    }
+    this.literalLength = length;
+  }
+
+  /**
+   * Compile the given text into a template.
+   *
+   * @param text the raw value (may be {@code null})
+   * @return the compiled template (never {@code null})
+   */
+  public static PlaceholderTemplate compile(String text) {
+    if (text == null || !text.contains(PLACEHOLDER_PREFIX)) {
+      return new PlaceholderTemplate(text, new String[]{text}, NO_KEYS, NO_DEFAULTS);
+    }
+    List<String> literals = new ArrayList<String>(4);
+    List<String> keys = new ArrayList<String>(2);
+    List<PlaceholderTemplate> defaultValues = new ArrayList<PlaceholderTemplate>(2);
+
+    int literalStart = 0;
+    int startIndex = text.indexOf(PLACEHOLDER_PREFIX);
+    while (startIndex != -1) {
+      int endIndex = findPlaceholderEndIndex(text, startIndex);
+      if (endIndex == -1) {
+        break;
+      }
+      literals.add(text.substring(literalStart, startIndex));
+      String placeholder = text.substring(startIndex + PLACEHOLDER_PREFIX.length(), endIndex);
+      int separatorIndex = placeholder.indexOf(VALUE_SEPARATOR);
+      if (separatorIndex != -1) {
+        keys.add(placeholder.substring(0, separatorIndex).trim());
+        defaultValues.add(compile(placeholder.substring(separatorIndex + VALUE_SEPARATOR.length())));
+      } else {
+        keys.add(placeholder.trim());
+        defaultValues.add(null);
+      }
+      literalStart = endIndex + PLACEHOLDER_SUFFIX.length();
+      startIndex = text.indexOf(PLACEHOLDER_PREFIX, literalStart);
+    }
+    literals.add(text.substring(literalStart));
+
+    return new PlaceholderTemplate(text, StringUtils.toStringArray(literals), StringUtils.toStringArray(keys),
+        defaultValues.toArray(new PlaceholderTemplate[defaultValues.size()]));
+  }
+
+  private static int findPlaceholderEndIndex(String text, int startIndex) {
+    int index = startIndex + PLACEHOLDER_PREFIX.length();
+    int nestedPlaceholders = 0;
+    while (index < text.length()) {
+      if (StringUtils.substringMatch(text, index, PLACEHOLDER_SUFFIX)) {
+        if (nestedPlaceholders == 0) {
+          return index;
+        }
+        nestedPlaceholders--;
+        index += PLACEHOLDER_SUFFIX.length();
+      } else if (StringUtils.substringMatch(text, index, PLACEHOLDER_PREFIX)) {
+        nestedPlaceholders++;
+        index += PLACEHOLDER_PREFIX.length();
+      } else {
+        index++;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Return the original text this template was compiled from.
+   */
+  public String getText() {
+    return this.text;
+  }
+
+  /**
+   * Return whether the text contains at least one placeholder.
+   */
+  public boolean hasPlaceholders() {
+    return this.keys.length > 0;
+  }
+
+  /**
+   * Resolve this template against the given properties.
+   *
+   * @param properties the flattened properties to resolve placeholders with
+   * @return the resolved String
+   * @throws IllegalArgumentException if a placeholder without default value cannot be resolved
+   */
+  public String resolve(PropertySnapshot properties) {
+    if (this.keys.length == 0) {
+      return this.text;
+    }
+    if (this.keys.length == 1 && this.literalLength == 0) {
+      return resolvePlaceholder(0, properties);
+    }
+    StringBuilder sb = new StringBuilder(this.literalLength + 16 * this.keys.length);
+    for (int i = 0; i < this.keys.length; i++) {
+      sb.append(this.literals[i]);
+      sb.append(resolvePlaceholder(i, properties));
+    }
+    sb.append(this.literals[this.keys.length]);
+    return sb.toString();
+  }
+
+  private String resolvePlaceholder(int index, PropertySnapshot properties) {
+    String value = properties.getProperty(this.keys[index]);
+    if (value != null) {
+      return value;
+    }
+    PlaceholderTemplate defaultValue = this.defaultValues[index];
+    if (defaultValue != null) {
+      return defaultValue.resolve(properties);
+    }
+    throw new IllegalArgumentException(
+        "Could not resolve placeholder '" + this.keys[index] + "' in value \"" + this.text + "\"");
+  }
+
+  @Override
+  public String toString() {
+    return this.text;
+  }
+
+}
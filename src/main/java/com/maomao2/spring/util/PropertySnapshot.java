@@ -0,0 +1,173 @@
+package com.maomao2.spring.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Immutable, flattened view of a set of property sources, used to resolve {@code ${...}} placeholders.
+ * <p>
+ * All sources are merged into a single map when the snapshot is created, and placeholders inside property values are
+ * resolved at that point as well. Lookups against a snapshot are therefore plain map reads; the underlying sources are
+ * never consulted again.
+ *
+ * @see PlaceholderTemplate
+ */
+public final class PropertySnapshot {
+
+  /**
+   * Snapshot without any properties
+   */
+  public static final PropertySnapshot EMPTY = new PropertySnapshot(Collections.<String, String>emptyMap());
+
+  private final Map<String, String> properties;
+
+  /**
+   * Raw values still to be flattened; only set while the snapshot is being built
+   */
+  private Map<String, String> pending;
+
+  /**
+   * Keys currently being flattened, in resolution order
+   */
+  private Set<String> resolving;
+
+  /**
+   * Keys whose values come from outside the application, e.g. environment variables; only set while the snapshot is
+   * being built
+   */
+  private Set<String> externalKeys;
+
+  /**
+   * Create a new snapshot of the given properties, resolving placeholders between them.
+   *
+   * @param properties the raw properties, keyed by property name
+   * @throws IllegalStateException if property values refer to each other in a cycle
+   */
+  public PropertySnapshot(Map<String, String> properties) {
+    this(properties, Collections.<String>emptySet());
+  }
+
+  /**
+   * Create a new snapshot of the given properties, resolving placeholders between them. A cycle that runs through
+   * one of the given external keys is not an error: the placeholders in it are treated as unresolvable, like missing
+   * properties, since the application has no control over those values.
+   *
+   * @param properties the raw properties, keyed by property name
+   * @param externalKeys the keys whose values come from outside the application
+   * @throws IllegalStateException if property values refer to each other in a cycle
+   */
+  public PropertySnapshot(Map<String, String> properties, Set<String> externalKeys) {
+    this.properties = new HashMap<String, String>((int) (properties.size() / 0.75f) + 1);
+    this.pending = properties;
+    this.resolving = new LinkedHashSet<String>();
+    this.externalKeys = externalKeys;
+    for (String key : properties.keySet()) {
+      getProperty(key);
+    }
+    this.pending = null;
+    this.resolving = null;
+    this.externalKeys = null;
+  }
+
+  /**
+   * Create a snapshot of the given property files, the environment variables and the JVM system properties, in
+   * ascending order of precedence: system properties override environment variables, which override the given
+   * property sources. Later property sources override earlier ones.
+   *
+   * @param propertySources the property sources, typically loaded from property files
+   * @return the flattened snapshot
+   */
+  public static PropertySnapshot create(List<Properties> propertySources) {
+    Map<String, String> merged = new HashMap<String, String>(256);
+    for (Properties propertySource : propertySources) {
+      putAll(merged, propertySource);
+    }
+    Map<String, String> environment = System.getenv();
+    Properties systemProperties = System.getProperties();
+    Set<String> externalKeys = new HashSet<String>(environment.keySet());
+    externalKeys.addAll(systemProperties.stringPropertyNames());
+    merged.putAll(environment);
+    putAll(merged, systemProperties);
+    return new PropertySnapshot(merged, externalKeys);
+  }
+
+  private static void putAll(Map<String, String> target, Properties source) {
+    for (String key : source.stringPropertyNames()) {
+      target.put(key, source.getProperty(key));
+    }
+  }
+
+  /**
+   * Return the property value for the given key.
+   *
+   * @param key the property name
+   * @return the (already resolved) property value, or {@code null} if not present
+   */
+  public String getProperty(String key) {
+    String value = this.properties.get(key);
+    if (value != null || this.pending == null) {
+      return value;
+    }
+    return flatten(key);
+  }
+
+  /**
+   * Return whether the given property is present.
+   */
+  public boolean containsProperty(String key) {
+    return this.properties.containsKey(key);
+  }
+
+  /**
+   * Return the number of properties in this snapshot.
+   */
+  public int size() {
+    return this.properties.size();
+  }
+
+  private String flatten(String key) {
+    String rawValue = this.pending.get(key);
+    if (rawValue == null) {
+      return null;
+    }
+    if (!this.resolving.add(key)) {
+      if (isExternalCycle(key)) {
+        return null;
+      }
+      throw new IllegalStateException("Circular placeholder reference '" + key + "' in property definitions");
+    }
+    String value = rawValue;
+    try {
+      if (rawValue.contains(PlaceholderTemplate.PLACEHOLDER_PREFIX)) {
+        value = PlaceholderTemplate.compile(rawValue).resolve(this);
+      }
+    } catch (IllegalArgumentException ex) {
+      // Not resolvable within the given sources: keep the value as-is. Circular references are not caught here.
+    } finally {
+      this.resolving.remove(key);
+    }
+    this.properties.put(key, value);
+    return value;
+  }
+
+  /**
+   * Return whether the cycle closed by the given key runs through an external key.
+   */
+  private boolean isExternalCycle(String key) {
+    boolean inCycle = false;
+    for (String resolvingKey : this.resolving) {
+      inCycle |= resolvingKey.equals(key);
+      if (inCycle && this.externalKeys.contains(resolvingKey)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
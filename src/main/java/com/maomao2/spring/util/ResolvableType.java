@@ -0,0 +1,315 @@
+package com.maomao2.spring.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A resolved view on a {@link java.lang.reflect.Type}: the raw class plus the resolved generic type arguments, e.g.
+ * {@code Repository<Order>}.
+ * <p>
+ * Instances are immutable. The result of {@link #as(Class)}, i.e. the view of a type as one of its supertypes, is
+ * memoized per instance, and the types of classes are cached on the classes themselves, so repeated generic matching
+ * against the same bean classes does not go back to the reflection API. Type variables and wildcards that cannot be
+ * resolved are represented by {@link #NONE}, which matches any type.
+ */
+public final class ResolvableType {
+
+  private static final ResolvableType[] EMPTY_TYPES_ARRAY = new ResolvableType[0];
+
+  /**
+   * Unresolvable type, e.g. an unbound type variable
+   */
+  public static final ResolvableType NONE = new ResolvableType(null, EMPTY_TYPES_ARRAY, false);
+
+  /**
+   * Types of classes, attached to the classes themselves so that they don't keep class loaders from being collected
+   */
+  private static final ClassValue<ResolvableType> classCache = new ClassValue<ResolvableType>() {
+    @Override
+    protected ResolvableType computeValue(Class<?> type) {
+      return new ResolvableType(type, EMPTY_TYPES_ARRAY, false);
+    }
+  };
+
+  /**
+   * Parameter types of constructors, keyed by declaring class and then by constructor
+   */
+  private static final ClassValue<Map<Constructor<?>, ResolvableType[]>> constructorParameterCache =
+      new ClassValue<Map<Constructor<?>, ResolvableType[]>>() {
+        @Override
+        protected Map<Constructor<?>, ResolvableType[]> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<Constructor<?>, ResolvableType[]>(4);
+        }
+      };
+
+  private final Class<?> resolved;
+
+  private final ResolvableType[] generics;
+
+  /**
+   * Whether this type is the upper bound of a wildcard ({@code ? extends X}), and so matches subtypes as well
+   */
+  private final boolean upperBound;
+
+  private final int hash;
+
+  /**
+   * Memoized supertype views, keyed by supertype class
+   */
+  private volatile Map<Class<?>, ResolvableType> supertypeCache;
+
+  private ResolvableType(Class<?> resolved, ResolvableType[] generics, boolean upperBound) {
+    this.resolved = resolved;
+    this.generics = generics;
+    this.upperBound = upperBound;
+    this.hash = (resolved != null ? resolved.hashCode() : 0) * 31 + Arrays.hashCode(generics) +
+        (upperBound ? 1 : 0);
+  }
+
+  /**
+   * Return a ResolvableType for the given class, without generic type arguments of its own. Cached per class.
+   */
+  public static ResolvableType forClass(Class<?> clazz) {
+    return classCache.get(clazz);
+  }
+
+  /**
+   * Return a ResolvableType for the given field, resolving type variables of its declaring class as bound by the given
+   * implementation class, e.g. {@code T repository} declared in {@code BaseService<T>} and inherited by {@code
+   * OrderService extends BaseService<Order>}.
+   */
+  public static ResolvableType forField(Field field, Class<?> implementationClass) {
+    ResolvableType owner = forClass(implementationClass).as(field.getDeclaringClass());
+    return forType(field.getGenericType(), owner.getTypeVariableBindings());
+  }
+
+  /**
+   * Return a ResolvableType for the given constructor parameter. The types of all parameters of a constructor are
+   * resolved together and cached per constructor.
+   */
+  public static ResolvableType forConstructorParameter(Constructor<?> constructor, int parameterIndex) {
+    Map<Constructor<?>, ResolvableType[]> cache = constructorParameterCache.get(constructor.getDeclaringClass());
+    ResolvableType[] types = cache.get(constructor);
+    if (types == null) {
+      Class<?>[] rawTypes = constructor.getParameterTypes();
+      Type[] genericTypes = constructor.getGenericParameterTypes();
+      types = new ResolvableType[rawTypes.length];
+      for (int i = 0; i < rawTypes.length; i++) {
+        // Inner class constructors may report fewer generic than raw parameter types
+        Type parameterType = (genericTypes.length == rawTypes.length ? genericTypes[i] : rawTypes[i]);
+        types[i] = forType(parameterType, Collections.<TypeVariable<?>, ResolvableType>emptyMap());
+      }
+      cache.put(constructor, types);
+    }
+    return types[parameterIndex];
+  }
+
+  private static ResolvableType forType(Type type, Map<TypeVariable<?>, ResolvableType> bindings) {
+    if (type instanceof Class) {
+      return forClass((Class<?>) type);
+    }
+    if (type instanceof ParameterizedType) {
+      ParameterizedType parameterizedType = (ParameterizedType) type;
+      Type[] typeArguments = parameterizedType.getActualTypeArguments();
+      ResolvableType[] generics = new ResolvableType[typeArguments.length];
+      for (int i = 0; i < typeArguments.length; i++) {
+        generics[i] = forType(typeArguments[i], bindings);
+      }
+      return new ResolvableType((Class<?>) parameterizedType.getRawType(), generics, false);
+    }
+    if (type instanceof TypeVariable) {
+      ResolvableType bound = bindings.get(type);
+      return (bound != null ? bound : NONE);
+    }
+    if (type instanceof WildcardType) {
+      WildcardType wildcardType = (WildcardType) type;
+      Type[] upperBounds = wildcardType.getUpperBounds();
+      if (wildcardType.getLowerBounds().length > 0 || upperBounds.length == 0 || upperBounds[0] == Object.class) {
+        return NONE;
+      }
+      ResolvableType bound = forType(upperBounds[0], bindings);
+      return (bound.resolved != null ? new ResolvableType(bound.resolved, bound.generics, true) : NONE);
+    }
+    // Generic array types: not worth resolving for bean matching
+    return NONE;
+  }
+
+  /**
+   * Return the resolved raw class, or {@code null} if this type could not be resolved.
+   */
+  public Class<?> resolve() {
+    return this.resolved;
+  }
+
+  /**
+   * Return whether this type has resolved generic type arguments that are relevant for matching.
+   */
+  public boolean hasGenerics() {
+    for (ResolvableType generic : this.generics) {
+      if (generic.resolved != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return the generic type arguments of this type, or an empty array if it has none (or is used raw).
+   */
+  public ResolvableType[] getGenerics() {
+    return this.generics.clone();
+  }
+
+  /**
+   * Return this type as a view of the given supertype, with the type arguments of the supertype resolved through the
+   * type hierarchy; e.g. {@code OrderRepository.as(Repository.class)} returns {@code Repository<Order>}.
+   *
+   * @param type the supertype to view this type as
+   * @return the supertype view, or {@link #NONE} if the given class is not a supertype of this type
+   */
+  public ResolvableType as(Class<?> type) {
+    if (this.resolved == null) {
+      return NONE;
+    }
+    if (this.resolved == type) {
+      return this;
+    }
+    Map<Class<?>, ResolvableType> cache = this.supertypeCache;
+    if (cache == null) {
+      cache = new ConcurrentHashMap<Class<?>, ResolvableType>(4);
+      this.supertypeCache = cache;
+    }
+    ResolvableType result = cache.get(type);
+    if (result == null) {
+      result = doAs(type);
+      cache.put(type, result);
+    }
+    return result;
+  }
+
+  private ResolvableType doAs(Class<?> type) {
+    if (!type.isAssignableFrom(this.resolved)) {
+      return NONE;
+    }
+    Map<TypeVariable<?>, ResolvableType> bindings = getTypeVariableBindings();
+    for (Type ifc : this.resolved.getGenericInterfaces()) {
+      ResolvableType result = forType(ifc, bindings).as(type);
+      if (result != NONE) {
+        return result;
+      }
+    }
+    Type superclass = this.resolved.getGenericSuperclass();
+    if (superclass != null) {
+      return forType(superclass, bindings).as(type);
+    }
+    return NONE;
+  }
+
+  private Map<TypeVariable<?>, ResolvableType> getTypeVariableBindings() {
+    if (this.resolved == null || this.generics.length == 0) {
+      return Collections.emptyMap();
+    }
+    TypeVariable<?>[] variables = this.resolved.getTypeParameters();
+    if (variables.length != this.generics.length) {
+      return Collections.emptyMap();
+    }
+    Map<TypeVariable<?>, ResolvableType> bindings = new HashMap<TypeVariable<?>, ResolvableType>(variables.length);
+    for (int i = 0; i < variables.length; i++) {
+      bindings.put(variables[i], this.generics[i]);
+    }
+    return bindings;
+  }
+
+  /**
+   * Determine whether a value of the given type can be assigned to this type, taking generic type arguments into
+   * account. Unresolvable type arguments on either side match anything, as does a raw candidate type.
+   *
+   * @param other the candidate type
+   * @return whether the candidate type is assignable to this type
+   */
+  public boolean isAssignableFrom(ResolvableType other) {
+    if (this.resolved == null || other.resolved == null) {
+      return true;
+    }
+    if (!ClassUtils.isAssignable(this.resolved, other.resolved)) {
+      return false;
+    }
+    if (this.generics.length == 0) {
+      return true;
+    }
+    ResolvableType[] otherGenerics = other.as(this.resolved).generics;
+    if (otherGenerics.length != this.generics.length) {
+      // Raw candidate type
+      return true;
+    }
+    for (int i = 0; i < this.generics.length; i++) {
+      if (!this.generics[i].matchesTypeArgument(otherGenerics[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Type arguments are invariant unless declared as {@code ? extends X}.
+   */
+  private boolean matchesTypeArgument(ResolvableType other) {
+    if (this.upperBound) {
+      return isAssignableFrom(other);
+    }
+    if (this.resolved == null || other.resolved == null) {
+      return true;
+    }
+    if (this.resolved != other.resolved) {
+      return false;
+    }
+    return isAssignableFrom(other);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof ResolvableType)) {
+      return false;
+    }
+    ResolvableType otherType = (ResolvableType) other;
+    return (this.resolved == otherType.resolved && this.upperBound == otherType.upperBound &&
+        Arrays.equals(this.generics, otherType.generics));
+  }
+
+  @Override
+  public int hashCode() {
+    return this.hash;
+  }
+
+  @Override
+  public String toString() {
+    if (this.resolved == null) {
+      return "?";
+    }
+    StringBuilder sb = new StringBuilder(this.upperBound ? "? extends " : "").append(this.resolved.getName());
+    if (this.generics.length > 0) {
+      sb.append('<');
+      for (int i = 0; i < this.generics.length; i++) {
+        if (i > 0) {
+          sb.append(", ");
+        }
+        sb.append(this.generics[i]);
+      }
+      sb.append('>');
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,55 @@
+package com.maomao2.spring.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded pool of canonical String instances, so that equal strings repeated across many bean definitions (class names,
+ * scopes, property names, literal values) share one instance.
+ * <p>
+ * Unlike {@link String#intern()}, the pool belongs to its owner and is reclaimed with it, and it never holds more than
+ * the given number of strings: once it is full, further strings are returned as they are.
+ */
+public final class StringInterner {
+
+  private final ConcurrentMap<String, String> pool;
+
+  private final int maxSize;
+
+  /**
+   * Create a new interner holding at most the given number of strings.
+   */
+  public StringInterner(int maxSize) {
+    this.pool = new ConcurrentHashMap<String, String>(Math.min(maxSize, 256));
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Return the canonical instance of the given String.
+   *
+   * @param value the String to intern (may be {@code null})
+   * @return the pooled instance equal to the value, or the value itself if not pooled
+   */
+  public String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    String interned = this.pool.get(value);
+    if (interned != null) {
+      return interned;
+    }
+    if (this.pool.size() >= this.maxSize) {
+      return value;
+    }
+    interned = this.pool.putIfAbsent(value, value);
+    return (interned != null ? interned : value);
+  }
+
+  /**
+   * Return the number of pooled strings.
+   */
+  public int size() {
+    return this.pool.size();
+  }
+
+}
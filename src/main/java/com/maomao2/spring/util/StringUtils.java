@@ -16,7 +16,10 @@
 
 package com.maomao2.spring.util;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.StringTokenizer;
 
 /**
  * Miscellaneous {@link String} utility methods.
@@ -967,67 +970,62 @@ public abstract class StringUtils {
   // }
   // return result;
   // }
-  //
-  // /**
-  // * Tokenize the given {@code String} into a {@code String} array via a
-  // * {@link StringTokenizer}.
-  // * <p>Trims tokens and omits empty tokens.
-  // * <p>The given {@code delimiters} string can consist of any number of
-  // * delimiter characters. Each of those characters can be used to separate
-  // * tokens. A delimiter is always a single character; for multi-character
-  // * delimiters, consider using {@link #delimitedListToStringArray}.
-  // * @param str the {@code String} to tokenize
-  // * @param delimiters the delimiter characters, assembled as a {@code String}
-  // * (each of the characters is individually considered as a delimiter)
-  // * @return an array of the tokens
-  // * @see java.util.StringTokenizer
-  // * @see String#trim()
-  // * @see #delimitedListToStringArray
-  // */
-  // public static String[] tokenizeToStringArray(String str, String delimiters) {
-  // return tokenizeToStringArray(str, delimiters, true, true);
-  // }
-  //
-  // /**
-  // * Tokenize the given {@code String} into a {@code String} array via a
-  // * {@link StringTokenizer}.
-  // * <p>The given {@code delimiters} string can consist of any number of
-  // * delimiter characters. Each of those characters can be used to separate
-  // * tokens. A delimiter is always a single character; for multi-character
-  // * delimiters, consider using {@link #delimitedListToStringArray}.
-  // * @param str the {@code String} to tokenize
-  // * @param delimiters the delimiter characters, assembled as a {@code String}
-  // * (each of the characters is individually considered as a delimiter)
-  // * @param trimTokens trim the tokens via {@link String#trim()}
-  // * @param ignoreEmptyTokens omit empty tokens from the result array
-  // * (only applies to tokens that are empty after trimming; StringTokenizer
-  // * will not consider subsequent delimiters as token in the first place).
-  // * @return an array of the tokens ({@code null} if the input {@code String}
-  // * was {@code null})
-  // * @see java.util.StringTokenizer
-  // * @see String#trim()
-  // * @see #delimitedListToStringArray
-  // */
-  // public static String[] tokenizeToStringArray(
-  // String str, String delimiters, boolean trimTokens, boolean ignoreEmptyTokens) {
-  //
-  // if (str == null) {
-  // return null;
-  // }
-  // StringTokenizer st = new StringTokenizer(str, delimiters);
-  // List<String> tokens = new ArrayList<>();
-  // while (st.hasMoreTokens()) {
-  // String token = st.nextToken();
-  // if (trimTokens) {
-  // token = token.trim();
-  // }
-  // if (!ignoreEmptyTokens || token.length() > 0) {
-  // tokens.add(token);
-  // }
-  // }
-  // return toStringArray(tokens);
-  // }
-  //
+
+  /**
+   * Tokenize the given {@code String} into a {@code String} array via a {@link StringTokenizer}.
+   * <p>
+   * Trims tokens and omits empty tokens.
+   * <p>
+   * The given {@code delimiters} string can consist of any number of delimiter characters. Each of those characters
+   * can be used to separate tokens. A delimiter is always a single character.
+   *
+   * @param str the {@code String} to tokenize
+   * @param delimiters the delimiter characters, assembled as a {@code String} (each of the characters is individually
+   * considered as a delimiter)
+   * @return an array of the tokens
+   * @see java.util.StringTokenizer
+   * @see String#trim()
+   */
+  public static String[] tokenizeToStringArray(String str, String delimiters) {
+    return tokenizeToStringArray(str, delimiters, true, true);
+  }
+
+  /**
+   * Tokenize the given {@code String} into a {@code String} array via a {@link StringTokenizer}.
+   * <p>
+   * The given {@code delimiters} string can consist of any number of delimiter characters. Each of those characters
+   * can be used to separate tokens. A delimiter is always a single character.
+   *
+   * @param str the {@code String} to tokenize
+   * @param delimiters the delimiter characters, assembled as a {@code String} (each of the characters is individually
+   * considered as a delimiter)
+   * @param trimTokens trim the tokens via {@link String#trim()}
+   * @param ignoreEmptyTokens omit empty tokens from the result array (only applies to tokens that are empty after
+   * trimming; StringTokenizer will not consider subsequent delimiters as token in the first place).
+   * @return an array of the tokens ({@code null} if the input {@code String} was {@code null})
+   * @see java.util.StringTokenizer
+   * @see String#trim()
+   */
+  public static String[] tokenizeToStringArray(
+      String str, String delimiters, boolean trimTokens, boolean ignoreEmptyTokens) {
+
+    if (str == null) {
+      return null;
+    }
+    StringTokenizer st = new StringTokenizer(str, delimiters);
+    List<String> tokens = new ArrayList<String>();
+    while (st.hasMoreTokens()) {
+      String token = st.nextToken();
+      if (trimTokens) {
+        token = token.trim();
+      }
+      if (!ignoreEmptyTokens || token.length() > 0) {
+        tokens.add(token);
+      }
+    }
+    return toStringArray(tokens);
+  }
+
   // /**
   // * Take a {@code String} that is a delimited list and convert it into a
   // * {@code String} array.
@@ -1,8 +1,19 @@
 package com.maomao2.spring.beans.creation;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import com.maomao2.spring.context.ClassPathXMLApplicationContext;
+import com.maomao2.spring.exception.BeanIsAbstractException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import org.junit.Test;
 
 public class TestClassPathXMLApplicationContext {
@@ -49,6 +60,137 @@ public class TestClassPathXMLApplicationContext {
     assertEquals(person3.getPad().getPrice(),22,0.1);
   }
 
+  @Test
+  public void test_profileAndCondition() {
+    ClassPathXMLApplicationContext applicationContext = new ClassPathXMLApplicationContext("applicationContext.xml");
+
+    DefaultBeanFactory beanFactory = applicationContext.getBeanFactory();
+    assertFalse(beanFactory.containsBeanDefinition("devPad"));
+    assertFalse(beanFactory.containsBeanDefinition("prodPad"));
+    assertFalse(beanFactory.containsBeanDefinition("missingClassPad"));
+    assertFalse(beanFactory.containsBeanDefinition("missingPropertyPad"));
+    assertFalse(beanFactory.containsBeanDefinition("prodPropertyPad"));
+    assertTrue(beanFactory.containsBeanDefinition("defaultPad"));
+  }
+
+  @Test
+  public void test_profileAndCondition_activeProfile() {
+    System.setProperty("spring.profiles.active", "prod");
+    try {
+      ClassPathXMLApplicationContext applicationContext = new ClassPathXMLApplicationContext("applicationContext.xml");
+
+      DefaultBeanFactory beanFactory = applicationContext.getBeanFactory();
+      assertTrue(beanFactory.containsBeanDefinition("prodPad"));
+      assertTrue(beanFactory.containsBeanDefinition("prodPropertyPad"));
+      assertFalse(beanFactory.containsBeanDefinition("devPad"));
+      assertFalse(beanFactory.containsBeanDefinition("defaultPad"));
+    } finally {
+      System.clearProperty("spring.profiles.active");
+    }
+  }
+
+  @Test
+  public void test_parentBeanDefinition() {
+    ClassPathXMLApplicationContext applicationContext = new ClassPathXMLApplicationContext("applicationContext.xml");
+
+    Person person4 = applicationContext.getBean("person4", Person.class);
+    assertEquals("bajie", person4.getName());
+    assertEquals("earth", person4.getAddress());
+    assertEquals(12222222222L, person4.getPhone());
+  }
+
+  @Test
+  public void test_autowire() {
+    ClassPathXMLApplicationContext applicationContext = new ClassPathXMLApplicationContext("applicationContext.xml");
+
+    Pad p1 = applicationContext.getBean("pad1", Pad.class);
+    Person person5 = applicationContext.getBean("person5", Person.class);
+    assertSame(p1, person5.getPad());
+    Person person6 = applicationContext.getBean("person6", Person.class);
+    assertEquals("bailongma", person6.getName());
+    assertSame(p1, person6.getPad());
+    assertSame(p1, applicationContext.getBean(Pad.class));
+  }
+
+  @Test(expected = BeanIsAbstractException.class)
+  public void test_abstractBeanDefinition() {
+    ClassPathXMLApplicationContext applicationContext = new ClassPathXMLApplicationContext("applicationContext.xml");
+
+    applicationContext.getBean("personTemplate");
+  }
+
+  @Test
+  public void test_collectionElements() {
+    ClassPathXMLApplicationContext applicationContext = new ClassPathXMLApplicationContext("applicationContext.xml");
+
+    Pad p1 = applicationContext.getBean("pad1", Pad.class);
+    Pad p2 = applicationContext.getBean("pad2", Pad.class);
+    Catalog catalog = applicationContext.getBean("catalog", Catalog.class);
+    assertEquals(Arrays.asList(p1, p2), catalog.getPads());
+    assertSame(p1, catalog.getPads().get(0));
+    assertEquals(new LinkedHashSet<String>(Arrays.asList("tablet", "phone")), catalog.getTags());
+    assertEquals(2, catalog.getPadsByName().size());
+    assertSame(p1, catalog.getPadsByName().get("flagship"));
+    assertSame(p2, catalog.getPadsByName().get("budget"));
+    assertEquals(2, catalog.getSettings().size());
+    assertEquals("CNY", catalog.getSettings().getProperty("currency"));
+    assertEquals("earth", catalog.getSettings().getProperty("region"));
+    assertNull(catalog.getOwner());
+  }
+
+  public static class Catalog {
+
+    private List<Pad> pads;
+
+    private Set<String> tags;
+
+    private Map<String, Pad> padsByName;
+
+    private Properties settings;
+
+    private String owner = "nobody";
+
+    public List<Pad> getPads() {
+      return pads;
+    }
+
+    public void setPads(List<Pad> pads) {
+      this.pads = pads;
+    }
+
+    public Set<String> getTags() {
+      return tags;
+    }
+
+    public void setTags(Set<String> tags) {
+      this.tags = tags;
+    }
+
+    public Map<String, Pad> getPadsByName() {
+      return padsByName;
+    }
+
+    public void setPadsByName(Map<String, Pad> padsByName) {
+      this.padsByName = padsByName;
+    }
+
+    public Properties getSettings() {
+      return settings;
+    }
+
+    public void setSettings(Properties settings) {
+      this.settings = settings;
+    }
+
+    public String getOwner() {
+      return owner;
+    }
+
+    public void setOwner(String owner) {
+      this.owner = owner;
+    }
+  }
+
 
 
 
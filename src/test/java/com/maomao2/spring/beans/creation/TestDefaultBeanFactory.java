@@ -1,12 +1,53 @@
 package com.maomao2.spring.beans.creation;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.maomao2.spring.beans.definition.BeanDefinition;
 import com.maomao2.spring.beans.definition.ConstructorArgumentValues;
+import com.maomao2.spring.beans.definition.ManagedList;
+import com.maomao2.spring.beans.definition.MutablePropertyValues;
 import com.maomao2.spring.beans.definition.PropertyValue;
 import com.maomao2.spring.beans.definition.PropertyValues;
 import com.maomao2.spring.beans.definition.RootBeanDefinition;
+import com.maomao2.spring.beans.definition.RuntimeBeanProviderReference;
+import com.maomao2.spring.beans.definition.RuntimeBeanReference;
+import com.maomao2.spring.beans.definition.TypedStringValue;
+import com.maomao2.spring.beans.parsing.BeanDefinitionRecord;
+import com.maomao2.spring.beans.parsing.StreamingBeanDefinitionReader;
+import com.maomao2.spring.exception.BeanCreationException;
+import com.maomao2.spring.exception.ExpressionException;
+import com.maomao2.spring.expression.Expression;
+import com.maomao2.spring.expression.ExpressionParser;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.junit.Test;
 
 public class TestDefaultBeanFactory {
@@ -72,4 +113,1203 @@ public class TestDefaultBeanFactory {
     Pad pad = (Pad) beanFactory.getBean("pad");
     assertEquals(67.9,pad.getPrice(),0.1);
   }
+
+  @Test
+  public void testIocProperty_placeholder() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+
+    Properties properties = new Properties();
+    properties.setProperty("person.name", "wukong");
+    properties.setProperty("person.home", "huaguoshan");
+    properties.setProperty("person.address", "${person.home}, earth");
+    beanFactory.addPropertySource(properties);
+
+    BeanDefinition bd = new RootBeanDefinition("com.maomao2.spring.beans.creation.Person");
+    bd.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+    bd.getPropertyValues().addPropertyValue(new PropertyValue("name", new TypedStringValue("${person.name}")));
+    bd.getPropertyValues().addPropertyValue(new PropertyValue("address", new TypedStringValue("${person.address}")));
+    bd.getPropertyValues().addPropertyValue(new PropertyValue("phone", new TypedStringValue("${person.phone:110}")));
+    beanFactory.registerBeanDefinition("person", bd);
+
+    Person person = (Person) beanFactory.getBean("person");
+    assertEquals("wukong", person.getName());
+    assertEquals("huaguoshan, earth", person.getAddress());
+    assertEquals(110L, person.getPhone());
+    assertNotSame(person, beanFactory.getBean("person"));
+  }
+
+  @Test
+  public void testIocProperty_circularPlaceholder() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+
+    Properties properties = new Properties();
+    properties.setProperty("person.name", "${person.name}");
+    beanFactory.addPropertySource(properties);
+
+    BeanDefinition bd = new RootBeanDefinition("com.maomao2.spring.beans.creation.Person");
+    bd.getPropertyValues().addPropertyValue(new PropertyValue("name", new TypedStringValue("${person.name}")));
+    beanFactory.registerBeanDefinition("person", bd);
+
+    try {
+      beanFactory.getBean("person");
+      fail("Circular placeholder reference should not resolve to the raw value");
+    } catch (BeanCreationException ex) {
+      Throwable cause = ex;
+      while (cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      assertTrue(cause instanceof IllegalStateException);
+    }
+  }
+
+  @Test
+  public void testIocProperty_circularSystemProperty() {
+    // 环境变量或系统属性中的循环引用视为无法解析, 不影响其它占位符
+    System.setProperty("test.cycle.a", "${test.cycle.b}");
+    System.setProperty("test.cycle.b", "${test.cycle.a}");
+    try {
+      DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+      Properties properties = new Properties();
+      properties.setProperty("person.name", "wukong");
+      beanFactory.addPropertySource(properties);
+
+      BeanDefinition bd = new RootBeanDefinition("com.maomao2.spring.beans.creation.Person");
+      bd.getPropertyValues().addPropertyValue(new PropertyValue("name", new TypedStringValue("${person.name}")));
+      beanFactory.registerBeanDefinition("person", bd);
+
+      assertEquals("wukong", ((Person) beanFactory.getBean("person")).getName());
+      assertTrue(beanFactory.getPropertySnapshot().getProperty("test.cycle.a").startsWith("${"));
+    } finally {
+      System.clearProperty("test.cycle.a");
+      System.clearProperty("test.cycle.b");
+    }
+  }
+
+  @Test
+  public void testIocProperty_expression() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+
+    Properties properties = new Properties();
+    properties.setProperty("phone.factor", "2");
+    beanFactory.addPropertySource(properties);
+
+    beanFactory.registerBeanDefinition("pad", new RootBeanDefinition("com.maomao2.spring.beans.creation.Pad"));
+
+    BeanDefinition bd = new RootBeanDefinition("com.maomao2.spring.beans.creation.Person");
+    bd.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+    bd.getPropertyValues().addPropertyValue(new PropertyValue("name", new TypedStringValue("#{'wu' + 'kong'}")));
+    bd.getPropertyValues().addPropertyValue(new PropertyValue("address",
+        new TypedStringValue("#{pad.price > 20 ? 'rich' : 'poor'}, #{@pad.getPrice() - 2}")));
+    bd.getPropertyValues().addPropertyValue(new PropertyValue("phone",
+        new TypedStringValue("#{T(Runtime).getRuntime().availableProcessors() * ${phone.factor}}")));
+    beanFactory.registerBeanDefinition("person", bd);
+
+    for (int i = 0; i < 3; i++) {
+      Person person = (Person) beanFactory.getBean("person");
+      assertEquals("wukong", person.getName());
+      assertEquals("rich, 20.0", person.getAddress());
+      assertEquals(Runtime.getRuntime().availableProcessors() * 2, person.getPhone());
+    }
+  }
+
+  @Test
+  public void testExpressionOverloadPerArgumentType() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    beanFactory.registerBeanDefinition("numbers", new RootBeanDefinition(NumberSequence.class.getName()));
+    ExpressionParser parser = new ExpressionParser(getClass().getClassLoader());
+
+    Expression abs = parser.parseExpression("#{T(Math).abs(@numbers.next())}");
+    assertEquals(3, abs.getValue(beanFactory));
+    // The int overload chosen for the first call must not narrow a double argument
+    assertEquals(2.5, abs.getValue(beanFactory));
+    assertEquals(3, abs.getValue(beanFactory));
+    for (int i = 0; i < 4; i++) {
+      assertEquals(2.5, abs.getValue(beanFactory));
+      assertEquals(3, abs.getValue(beanFactory));
+    }
+
+    // 交替的接收者类型各自命中缓存的方法
+    beanFactory.registerBeanDefinition("texts", new RootBeanDefinition(TextSequence.class.getName()));
+    Expression length = parser.parseExpression("#{@texts.next().length()}");
+    for (int i = 0; i < 4; i++) {
+      assertEquals(3, length.getValue(beanFactory));
+      assertEquals(2, length.getValue(beanFactory));
+    }
+
+    try {
+      parser.parseExpression("#{99999999999999999999 + 1}");
+      fail("Out of range literal should not parse");
+    } catch (ExpressionException ex) {
+      assertTrue(ex.getCause() instanceof NumberFormatException);
+    }
+  }
+
+  @Test
+  public void testFreezeConfiguration() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+
+    RootBeanDefinition personBd = new RootBeanDefinition("com.maomao2.spring.beans.creation.Person");
+    ConstructorArgumentValues constructorArgumentValues = new ConstructorArgumentValues();
+    constructorArgumentValues.addIndexedArgumentValue(0,"zhangsan");
+    constructorArgumentValues.addIndexedArgumentValue(1,"huaguoshan");
+    constructorArgumentValues.addIndexedArgumentValue(2,12222222222L);
+    personBd.setConstructorArgumentValues(constructorArgumentValues);
+    beanFactory.registerBeanDefinition("person", personBd);
+
+    RootBeanDefinition padBd = new RootBeanDefinition("com.maomao2.spring.beans.creation.Pad");
+    MutablePropertyValues emptyPvs = padBd.getPropertyValues();
+    beanFactory.registerBeanDefinition("pad", padBd);
+    RootBeanDefinition otherPadBd = new RootBeanDefinition("com.maomao2.spring.beans.creation.Pad");
+    otherPadBd.getConstructorArgumentValues();
+    beanFactory.registerBeanDefinition("otherPad", otherPadBd);
+
+    assertFalse(constructorArgumentValues.isFrozen());
+    assertFalse(emptyPvs.isFrozen());
+    beanFactory.freezeConfiguration();
+
+    // 非空的构造参数被冻结为只读
+    assertSame(constructorArgumentValues, personBd.getConstructorArgumentValues());
+    assertTrue(constructorArgumentValues.isFrozen());
+    try {
+      constructorArgumentValues.addIndexedArgumentValue(3, "extra");
+      fail("Frozen constructor argument values must be read-only");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+    // 空的属性和构造参数换成所有定义共享的只读实例
+    assertNotSame(emptyPvs, padBd.getPropertyValues());
+    assertTrue(padBd.getPropertyValues().isFrozen());
+    assertSame(padBd.getPropertyValues(), otherPadBd.getPropertyValues());
+    assertSame(padBd.getConstructorArgumentValues(), otherPadBd.getConstructorArgumentValues());
+    assertSame(padBd.getPropertyValues(), personBd.getPropertyValues());
+    try {
+      padBd.getPropertyValues().addPropertyValue(new PropertyValue("price", 10));
+      fail("Shared empty property values must be read-only");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+    assertFalse(padBd.hasPropertyValues());
+    assertFalse(padBd.hasConstructorArgumentValues());
+    assertEquals(3, new RootBeanDefinition(personBd).getConstructorArgumentValues().getArgumentCount());
+    assertEquals(3, beanFactory.getBeanDefinitionNames().length);
+
+    Person person = (Person) beanFactory.getBean("person");
+    assertEquals("zhangsan", person.getName());
+    assertEquals(22, ((Pad) beanFactory.getBean("pad")).getPrice(), 0.1);
+  }
+
+  @Test
+  public void testFreezeConfigurationFootprint() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    StreamingBeanDefinitionReader reader = new StreamingBeanDefinitionReader(beanFactory);
+    // 每条记录都带着自己的类名和作用域字符串
+    reader.loadBeanDefinitions(IntStream.range(0, 100).mapToObj(i -> new BeanDefinitionRecord() {
+      public String getBeanName() {
+        return "tenantPad" + i;
+      }
+
+      public String getBeanClassName() {
+        return new String("com.maomao2.spring.beans.creation.Pad");
+      }
+
+      public String getScope() {
+        return new String(BeanDefinition.SCOPE_PROTOTYPE);
+      }
+    }));
+    beanFactory.freezeConfiguration();
+    assertTrue(beanFactory.isConfigurationFrozen());
+
+    // 重复的字符串由解析器共享, 空的属性和构造参数换成共享的只读实例
+    BeanDefinition first = beanFactory.getBeanDefinition("tenantPad0");
+    for (int i = 1; i < 100; i++) {
+      BeanDefinition bd = beanFactory.getBeanDefinition("tenantPad" + i);
+      assertSame(first.getBeanClassName(), bd.getBeanClassName());
+      assertSame(first.getScope(), bd.getScope());
+      assertSame(first.getPropertyValues(), bd.getPropertyValues());
+      assertSame(first.getConstructorArgumentValues(), bd.getConstructorArgumentValues());
+    }
+    assertTrue(first.getPropertyValues().isFrozen());
+    assertTrue(first.getConstructorArgumentValues().isFrozen());
+    try {
+      first.getPropertyValues().addPropertyValue(new PropertyValue("price", 10));
+      fail("Frozen property values must be read-only");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+    try {
+      first.getConstructorArgumentValues().addIndexedArgumentValue(0, "extra");
+      fail("Frozen constructor argument values must be read-only");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+    assertNotSame(beanFactory.getBean("tenantPad0"), beanFactory.getBean("tenantPad0"));
+  }
+
+  @Test
+  public void testDependsOnIsCopied() {
+    String[] dependsOn = {"pad"};
+    RootBeanDefinition bd = new RootBeanDefinition("com.maomao2.spring.beans.creation.Person");
+    bd.setDependsOn(dependsOn);
+    RootBeanDefinition copy = new RootBeanDefinition(bd);
+    dependsOn[0] = "otherPad";
+    assertEquals("pad", bd.getDependsOn()[0]);
+    assertNotSame(bd.getDependsOn(), copy.getDependsOn());
+    assertArrayEquals(bd.getDependsOn(), copy.getDependsOn());
+  }
+
+  @Test
+  public void testStreamingBeanDefinitionReader() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    StreamingBeanDefinitionReader reader = new StreamingBeanDefinitionReader(beanFactory);
+    reader.setBatchSize(3);
+    AtomicBoolean closed = new AtomicBoolean();
+
+    Stream<BeanDefinitionRecord> records = IntStream.range(0, 10).mapToObj(i -> new BeanDefinitionRecord() {
+      public String getBeanName() {
+        return "tenantPad" + i;
+      }
+
+      public String getBeanClassName() {
+        return "com.maomao2.spring.beans.creation.Pad";
+      }
+
+      public Map<String, ?> getPropertyValues() {
+        return Collections.singletonMap("price", String.valueOf(i));
+      }
+    });
+    int count = reader.loadBeanDefinitions(records.onClose(() -> closed.set(true)));
+
+    assertEquals(10, count);
+    assertTrue(closed.get());
+    assertEquals(10, beanFactory.getBeanDefinitionCount());
+    assertEquals("tenantPad0", beanFactory.getBeanDefinitionNames()[0]);
+    assertEquals("tenantPad9", beanFactory.getBeanDefinitionNames()[9]);
+    assertEquals(7, ((Pad) beanFactory.getBean("tenantPad7")).getPrice(), 0.1);
+
+    // 同一批次中重名的记录与逐个注册一样, 后者覆盖前者
+    int overridden = reader.loadBeanDefinitions(IntStream.of(1, 2, 3).mapToObj(i -> new BeanDefinitionRecord() {
+      public String getBeanName() {
+        return (i == 2 ? "otherPad" : "samePad");
+      }
+
+      public String getBeanClassName() {
+        return "com.maomao2.spring.beans.creation.Pad";
+      }
+
+      public Map<String, ?> getPropertyValues() {
+        return Collections.singletonMap("price", String.valueOf(i));
+      }
+    }).iterator());
+    assertEquals(2, overridden);
+    assertEquals(12, beanFactory.getBeanDefinitionCount());
+    assertEquals(3, ((Pad) beanFactory.getBean("samePad")).getPrice(), 0.1);
+  }
+
+  @Test
+  public void testRemoveBeanDefinition() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+
+    RootBeanDefinition padBd = new RootBeanDefinition(DisposablePad.class.getName());
+    padBd.setDestroyMethodName("close");
+    beanFactory.registerBeanDefinition("pad", padBd);
+    RootBeanDefinition personBd = new RootBeanDefinition("com.maomao2.spring.beans.creation.Person");
+    personBd.getPropertyValues().addPropertyValue(new PropertyValue("pad", new RuntimeBeanReference("pad")));
+    beanFactory.registerBeanDefinition("person", personBd);
+
+    Person person = (Person) beanFactory.getBean("person");
+    DisposablePad pad = (DisposablePad) person.getPad();
+
+    beanFactory.removeBeanDefinition("pad");
+
+    // 依赖它的单例和它自己的单例都被销毁
+    assertEquals(1, pad.closed.get());
+    assertNull(beanFactory.getSingleton("person"));
+    assertNull(beanFactory.getSingleton("pad"));
+    assertEquals(0, beanFactory.getDependentBeans("pad").length);
+    assertFalse(beanFactory.containsBeanDefinition("pad"));
+    assertEquals(1, beanFactory.getBeanDefinitionNames().length);
+  }
+
+  @Test
+  public void testResetChildBeanDefinitions() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    RootBeanDefinition basePadBd = new RootBeanDefinition(DisposablePad.class.getName());
+    basePadBd.setDestroyMethodName("close");
+    Map<String, BeanDefinition> batch = new LinkedHashMap<String, BeanDefinition>();
+    batch.put("basePad", basePadBd);
+    batch.put("childPad", new RootBeanDefinition("basePad", null));
+    batch.put("otherPad", new RootBeanDefinition(DisposablePad.class.getName()));
+    beanFactory.registerBeanDefinitions(batch);
+    DisposablePad childPad = (DisposablePad) beanFactory.getBean("childPad");
+    DisposablePad otherPad = (DisposablePad) beanFactory.getBean("otherPad");
+
+    // 重新注册父定义只会重置它的子定义
+    beanFactory.registerBeanDefinition("basePad", new RootBeanDefinition(basePadBd));
+    assertEquals(1, childPad.closed.get());
+    assertNotSame(childPad, beanFactory.getBean("childPad"));
+    assertSame(otherPad, beanFactory.getBean("otherPad"));
+
+    // 子定义移除后不再随父定义重置
+    DisposablePad rebuiltChildPad = (DisposablePad) beanFactory.getBean("childPad");
+    beanFactory.registerBeanDefinition("childPad", new RootBeanDefinition(DisposablePad.class.getName()));
+    assertEquals(1, rebuiltChildPad.closed.get());
+    DisposablePad standalonePad = (DisposablePad) beanFactory.getBean("childPad");
+    beanFactory.removeBeanDefinition("basePad");
+    assertSame(standalonePad, beanFactory.getBean("childPad"));
+    assertEquals(Arrays.asList("childPad", "otherPad"), Arrays.asList(beanFactory.getBeanDefinitionNames()));
+  }
+
+  @Test
+  public void testConcurrentRegistration() throws InterruptedException {
+    final DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int t = 0; t < 8; t++) {
+      final int thread = t;
+      executor.execute(() -> {
+        for (int i = 0; i < 500; i++) {
+          String beanName = "pad" + thread + "_" + i;
+          beanFactory.registerBeanDefinition(beanName, new RootBeanDefinition("com.maomao2.spring.beans.creation.Pad"));
+          beanFactory.getBeanDefinitionNames();
+          if (i % 2 == 0) {
+            beanFactory.removeBeanDefinition(beanName);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals(2000, beanFactory.getBeanDefinitionCount());
+    assertEquals(2000, beanFactory.getBeanDefinitionNames().length);
+  }
+
+  @Test
+  public void testConcurrentSingletonCreation() throws Exception {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    final CountDownLatch creatingA = new CountDownLatch(1);
+    final CountDownLatch releaseA = new CountDownLatch(1);
+    beanFactory.registerBeanDefinition("a", new RootBeanDefinition(Pad.class, () -> {
+      creatingA.countDown();
+      try {
+        releaseA.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      return new Pad();
+    }));
+    beanFactory.registerBeanDefinition("b", new RootBeanDefinition(Pad.class, Pad::new));
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      Future<Object> a = executor.submit(() -> beanFactory.getBean("a"));
+      assertTrue(creatingA.await(5, TimeUnit.SECONDS));
+      // 其它单例的创建不必等待 a, 而对 a 的请求等待同一次创建
+      Future<Object> otherA = executor.submit(() -> beanFactory.getBean("a"));
+      Object b = executor.submit(() -> beanFactory.getBean("b")).get(5, TimeUnit.SECONDS);
+      assertSame(b, beanFactory.getBean("b"));
+      assertFalse(a.isDone());
+      assertFalse(otherA.isDone());
+      releaseA.countDown();
+      assertSame(a.get(5, TimeUnit.SECONDS), otherA.get(5, TimeUnit.SECONDS));
+    } finally {
+      releaseA.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCircularSingletonCreationAcrossThreads() throws Exception {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    final CountDownLatch bothCreating = new CountDownLatch(2);
+    for (final String[] names : new String[][]{{"a", "b"}, {"b", "a"}}) {
+      final AtomicBoolean first = new AtomicBoolean(true);
+      beanFactory.registerBeanDefinition(names[0], new RootBeanDefinition(Pad.class, () -> {
+        if (first.getAndSet(false)) {
+          bothCreating.countDown();
+          try {
+            bothCreating.await();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+          beanFactory.getBean(names[1]);
+        }
+        return new Pad();
+      }));
+    }
+
+    // 两个线程互相等待对方持有的创建锁时, 至少一方失败, 而不是死锁
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Object> a = executor.submit(() -> beanFactory.getBean("a"));
+      Future<Object> b = executor.submit(() -> beanFactory.getBean("b"));
+      int failed = 0;
+      for (Future<Object> future : Arrays.asList(a, b)) {
+        try {
+          future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException ex) {
+          assertTrue(ex.getCause() instanceof BeanCreationException);
+          failed++;
+        }
+      }
+      assertTrue(failed >= 1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testAutowireByGenericType() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    beanFactory.registerBeanDefinition("userRepository", new RootBeanDefinition(UserRepository.class.getName()));
+    beanFactory.registerBeanDefinition("orderRepository", new RootBeanDefinition(OrderRepository.class.getName()));
+    RootBeanDefinition serviceBd = new RootBeanDefinition(OrderService.class.getName());
+    serviceBd.setAutowireMode(RootBeanDefinition.AUTOWIRE_BY_TYPE);
+    serviceBd.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+    beanFactory.registerBeanDefinition("orderService", serviceBd);
+
+    for (int i = 0; i < 2; i++) {
+      OrderService service = (OrderService) beanFactory.getBean("orderService");
+      assertSame(beanFactory.getBean("orderRepository"), service.repository);
+    }
+  }
+
+  @Test
+  public void testLazyInitProxy() throws Exception {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    RootBeanDefinition reportBd = new RootBeanDefinition(LazyReportService.class.getName());
+    reportBd.setLazyInit(true);
+    beanFactory.registerBeanDefinition("reportService", reportBd);
+    RootBeanDefinition clientBd = new RootBeanDefinition(ReportClient.class.getName());
+    clientBd.getPropertyValues()
+        .addPropertyValue(new PropertyValue("reportService", new RuntimeBeanReference("reportService")));
+    beanFactory.registerBeanDefinition("reportClient", clientBd);
+
+    int created = LazyReportService.instances.get();
+    beanFactory.preInstantiateSingletons();
+    ReportClient client = (ReportClient) beanFactory.getSingleton("reportClient");
+    assertNull(beanFactory.getSingleton("reportService"));
+    assertEquals(created, LazyReportService.instances.get());
+
+    assertEquals("report", client.reportService.generate());
+    assertEquals("report", client.reportService.generate());
+    assertEquals(created + 1, LazyReportService.instances.get());
+    // 基本类型参数和受检异常原样经过代理
+    assertEquals("report x2", client.reportService.generate(2));
+    try {
+      client.reportService.generate(0);
+      fail("Exception thrown by the target not propagated");
+    } catch (IOException ex) {
+      assertEquals("No pages", ex.getMessage());
+    }
+    assertSame(beanFactory.getSingleton("reportService"), beanFactory.getBean("reportService"));
+  }
+
+  @Test
+  public void testBeanProvider() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    RootBeanDefinition padBd = new RootBeanDefinition(Pad.class.getName());
+    padBd.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+    beanFactory.registerBeanDefinition("pad", padBd);
+    RootBeanDefinition holderBd = new RootBeanDefinition(ProviderHolder.class.getName());
+    holderBd.getPropertyValues()
+        .addPropertyValue(new PropertyValue("pads", new RuntimeBeanProviderReference("pad")));
+    holderBd.getPropertyValues()
+        .addPropertyValue(new PropertyValue("person", new RuntimeBeanProviderReference("person")));
+    beanFactory.registerBeanDefinition("holder", holderBd);
+
+    ProviderHolder holder = (ProviderHolder) beanFactory.getBean("holder");
+    assertSame(beanFactory.getBeanProvider("pad"), holder.pads);
+    assertNotSame(holder.pads.get(), holder.pads.get());
+    assertNull(holder.person.getIfAvailable());
+  }
+
+  @Test
+  public void testInstanceSupplier() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    final AtomicInteger processed = new AtomicInteger();
+    beanFactory.addBeanPostProcessor(new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        processed.incrementAndGet();
+        return bean;
+      }
+    });
+    beanFactory.registerBeanDefinition("suppliedPad", new RootBeanDefinition(SuppliedPad.class, SuppliedPad::new));
+
+    SuppliedPad pad = beanFactory.getBean(SuppliedPad.class);
+    assertSame(pad, beanFactory.getBean("suppliedPad"));
+    assertTrue(pad.initialized);
+    assertEquals(1, processed.get());
+  }
+
+  @Test
+  public void testFactoryMethod() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    RootBeanDefinition staticBd = new RootBeanDefinition(PadFactory.class.getName());
+    staticBd.setFactoryMethodName("createPad");
+    staticBd.getConstructorArgumentValues().addIndexedArgumentValue(0, "10");
+    staticBd.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+    beanFactory.registerBeanDefinition("cheapPad", staticBd);
+    beanFactory.registerBeanDefinition("padFactory", new RootBeanDefinition(PadFactory.class.getName()));
+    RootBeanDefinition instanceBd = new RootBeanDefinition((String) null);
+    instanceBd.setFactoryBeanName("padFactory");
+    instanceBd.setFactoryMethodName("newPad");
+    beanFactory.registerBeanDefinition("factoryPad", instanceBd);
+
+    assertEquals(Pad.class, beanFactory.getType("cheapPad"));
+    Pad cheapPad = (Pad) beanFactory.getBean("cheapPad");
+    assertEquals(10, cheapPad.getPrice(), 0);
+    assertNotSame(cheapPad, beanFactory.getBean("cheapPad"));
+    assertEquals(99, ((Pad) beanFactory.getBean("factoryPad")).getPrice(), 0);
+  }
+
+  @Test
+  public void testFactoryMethodFailure() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    RootBeanDefinition castBd = new RootBeanDefinition(PadFactory.class.getName());
+    castBd.setFactoryMethodName("castPad");
+    beanFactory.registerBeanDefinition("castPad", castBd);
+    RootBeanDefinition errorBd = new RootBeanDefinition(PadFactory.class.getName());
+    errorBd.setFactoryMethodName("errorPad");
+    beanFactory.registerBeanDefinition("errorPad", errorBd);
+
+    // 工厂方法自身抛出的 ClassCastException 只包装一次, 不被当作参数错误
+    try {
+      beanFactory.getBean("castPad");
+      fail("Factory method failure not reported");
+    } catch (BeanCreationException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().contains("threw exception"));
+      assertTrue(ex.getCause() instanceof ClassCastException);
+    }
+    // Error 原样抛出
+    try {
+      beanFactory.getBean("errorPad");
+      fail("Factory method error not propagated");
+    } catch (PadFactoryError err) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFactoryBean() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    beanFactory.registerBeanDefinition("pad", new RootBeanDefinition(PadFactoryBean.class.getName()));
+
+    // By-type lookups use the declared product type without creating the factory
+    assertEquals(Collections.singletonList("pad"), Arrays.asList(beanFactory.getBeanNamesForType(Pad.class)));
+    assertNull(beanFactory.getSingleton("pad"));
+
+    Pad pad = beanFactory.getBean(Pad.class);
+    assertSame(pad, beanFactory.getBean("pad"));
+    PadFactoryBean factory = (PadFactoryBean) beanFactory.getBean("&pad");
+    assertEquals(1, factory.created.get());
+    assertEquals(Pad.class, beanFactory.getType("pad"));
+    assertEquals(PadFactoryBean.class, beanFactory.getType("&pad"));
+  }
+
+  @Test
+  public void testBeanProviderOverFactoryBean() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    beanFactory.registerBeanDefinition("pad", new RootBeanDefinition(PadFactoryBean.class.getName()));
+    ObjectProvider<Object> provider = beanFactory.getBeanProvider("pad");
+    ObjectProvider<Object> factoryProvider = beanFactory.getBeanProvider("&pad");
+
+    // 第一次创建工厂，之后从单例缓存取到工厂时仍然返回它的产品
+    Pad pad = (Pad) provider.getObject();
+    assertSame(pad, provider.getObject());
+    assertSame(beanFactory.getBean("pad"), provider.getIfAvailable());
+    PadFactoryBean factory = (PadFactoryBean) factoryProvider.getObject();
+    assertSame(beanFactory.getBean("&pad"), factory);
+    assertEquals(1, factory.created.get());
+  }
+
+  @Test
+  public void testCollectionInjection() {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    beanFactory.registerBeanDefinition("first", new RootBeanDefinition(FirstHandler.class.getName()));
+    beanFactory.registerBeanDefinition("second", new RootBeanDefinition(SecondHandler.class.getName()));
+    RootBeanDefinition chainBd = new RootBeanDefinition(HandlerChain.class.getName());
+    chainBd.setAutowireMode(RootBeanDefinition.AUTOWIRE_BY_TYPE);
+    chainBd.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+    ManagedList<Object> reversed = new ManagedList<Object>(2);
+    reversed.add(new RuntimeBeanReference("second"));
+    reversed.add(new RuntimeBeanReference("first"));
+    chainBd.getPropertyValues().addPropertyValue(new PropertyValue("reversed", reversed));
+    beanFactory.registerBeanDefinition("chain", chainBd);
+
+    Object first = beanFactory.getBean("first");
+    Object second = beanFactory.getBean("second");
+    HandlerChain chain = (HandlerChain) beanFactory.getBean("chain");
+    assertEquals(Arrays.asList(first, second), chain.handlers);
+    assertEquals(Arrays.asList("first", "second"), new ArrayList<String>(chain.handlersByName.keySet()));
+    assertEquals(Arrays.asList(first, second), Arrays.asList(chain.handlerArray));
+    assertEquals(Arrays.asList(second, first), chain.reversed);
+
+    // Singleton candidates are resolved once and the same list is handed out again
+    HandlerChain other = (HandlerChain) beanFactory.getBean("chain");
+    assertSame(chain.handlers, other.handlers);
+    assertSame(beanFactory.getBeansOfType(Handler.class), beanFactory.getBeansOfType(Handler.class));
+  }
+
+  /**
+   * 注册给定的 scope, 并以该 scope 注册销毁方法为 close 的 DisposablePad bean
+   */
+  private static DefaultBeanFactory scopedPadFactory(String scopeName, Scope scope, String... beanNames) {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    beanFactory.registerScope(scopeName, scope);
+    for (String beanName : (beanNames.length > 0 ? beanNames : new String[]{"pad"})) {
+      RootBeanDefinition padBd = new RootBeanDefinition(DisposablePad.class.getName());
+      padBd.setScope(scopeName);
+      padBd.setDestroyMethodName("close");
+      beanFactory.registerBeanDefinition(beanName, padBd);
+    }
+    return beanFactory;
+  }
+
+  @Test
+  public void testThreadScope() throws Exception {
+    final ThreadScope threadScope = new ThreadScope();
+    DefaultBeanFactory beanFactory = scopedPadFactory(ThreadScope.SCOPE_THREAD, threadScope);
+
+    DisposablePad pad = (DisposablePad) beanFactory.getBean("pad");
+    assertSame(pad, beanFactory.getBean("pad"));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final DisposablePad[] otherPad = new DisposablePad[1];
+      executor.submit(threadScope.decorate(() -> otherPad[0] = (DisposablePad) beanFactory.getBean("pad"))).get();
+      assertNotSame(pad, otherPad[0]);
+      assertEquals(1, otherPad[0].closed.get());
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(0, pad.closed.get());
+    threadScope.clear();
+    assertEquals(1, pad.closed.get());
+    assertNotSame(pad, beanFactory.getBean("pad"));
+  }
+
+  @Test
+  public void testStripedScope() throws Exception {
+    StripedScope stripedScope = new StripedScope(3);
+    assertEquals(4, stripedScope.getStripeCount());
+    DefaultBeanFactory beanFactory = scopedPadFactory(StripedScope.SCOPE_STRIPED, stripedScope);
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      for (int i = 0; i < 64; i++) {
+        executor.submit(() -> beanFactory.getBean("pad")).get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertSame(beanFactory.getBean("pad"), beanFactory.getBean("pad"));
+    List<DisposablePad> stripes = stripedScope.getStripes("pad");
+    assertTrue(stripes.size() >= 1 && stripes.size() <= 4);
+    assertEquals(stripes.size(), new HashSet<Object>(stripes).size());
+
+    beanFactory.destroySingletons();
+    for (DisposablePad pad : stripes) {
+      assertEquals(1, pad.closed.get());
+    }
+    assertTrue(stripedScope.getStripes("pad").isEmpty());
+  }
+
+  @Test
+  public void testPooledScope() throws Exception {
+    PooledScope pooledScope = new PooledScope(1);
+    DefaultBeanFactory beanFactory = scopedPadFactory(PooledScope.SCOPE_POOLED, pooledScope);
+
+    DisposablePad first = (DisposablePad) beanFactory.getBean("pad");
+    DisposablePad second = (DisposablePad) beanFactory.getBean("pad");
+    assertNotSame(first, second);
+    pooledScope.release("pad", first);
+    pooledScope.release("pad", second);
+    assertEquals(1, second.closed.get());
+    assertSame(first, beanFactory.getBean("pad"));
+
+    // Invalid instances are destroyed on borrow
+    pooledScope.release("pad", first);
+    pooledScope.setValidator(pad -> ((DisposablePad) pad).closed.get() == 0 && pad != first);
+    DisposablePad third = (DisposablePad) beanFactory.getBean("pad");
+    assertNotSame(first, third);
+    assertEquals(1, first.closed.get());
+
+    // Instances that aren't borrowed, or released twice, are ignored
+    pooledScope.release("pad", second);
+    pooledScope.release("pad", new DisposablePad());
+    assertEquals(1, second.closed.get());
+
+    PooledScope.PoolMetrics metrics = pooledScope.getMetrics("pad");
+    assertEquals(3, metrics.getCreated());
+    assertEquals(4, metrics.getBorrowed());
+    assertEquals(3, metrics.getReturned());
+    assertEquals(2, metrics.getDestroyed());
+    assertEquals(0, metrics.getIdle());
+    assertEquals(1, metrics.getActive());
+
+    // Outstanding instances are destroyed with the scope
+    pooledScope.destroy();
+    assertEquals(1, third.closed.get());
+  }
+
+  @Test
+  public void testPooledScopeIdleEviction() throws Exception {
+    PooledScope pooledScope = new PooledScope();
+    pooledScope.setMaxIdleTime(1, TimeUnit.MILLISECONDS);
+    DefaultBeanFactory beanFactory = scopedPadFactory(PooledScope.SCOPE_POOLED, pooledScope);
+
+    DisposablePad pad = (DisposablePad) beanFactory.getBean("pad");
+    pooledScope.release("pad", pad);
+    Thread.sleep(10);
+    assertEquals(1, pooledScope.evictIdle());
+    assertEquals(1, pad.closed.get());
+    assertEquals(1, pooledScope.getMetrics("pad").getEvicted());
+
+    // A borrowed instance that is never released is no longer tracked once its lease has expired
+    pooledScope.setMaxLeaseTime(1, TimeUnit.MILLISECONDS);
+    DisposablePad leaked = (DisposablePad) beanFactory.getBean("pad");
+    Thread.sleep(10);
+    pooledScope.evictIdle();
+    assertEquals(1, pooledScope.getMetrics("pad").getAbandoned());
+    assertEquals(0, pooledScope.getMetrics("pad").getActive());
+    pooledScope.release("pad", leaked);
+    assertEquals(0, pooledScope.getMetrics("pad").getIdle());
+    assertEquals(0, leaked.closed.get());
+  }
+
+  @Test
+  public void testTtlScope() throws Exception {
+    TtlScope ttlScope = new TtlScope(1, TimeUnit.HOURS, 2);
+    ttlScope.setTimeToLive("pad", 20, TimeUnit.MILLISECONDS);
+    ttlScope.setDestructionExecutor(Runnable::run);
+    final AtomicLong time = new AtomicLong();
+    ttlScope.setClock(time::get);
+    final String[] tenant = {"a"};
+    ttlScope.setKeyResolver(() -> tenant[0]);
+    DefaultBeanFactory beanFactory = scopedPadFactory(TtlScope.SCOPE_TTL, ttlScope, "pad", "other");
+
+    DisposablePad pad = (DisposablePad) beanFactory.getBean("pad");
+    time.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    assertSame(pad, beanFactory.getBean("pad"));
+    tenant[0] = "b";
+    time.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    DisposablePad tenantBPad = (DisposablePad) beanFactory.getBean("pad");
+    assertNotSame(pad, tenantBPad);
+    tenant[0] = "a";
+    time.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    assertSame(pad, beanFactory.getBean("pad"));
+
+    // Expired instances are rebuilt on access and destroyed
+    time.addAndGet(TimeUnit.MILLISECONDS.toNanos(30));
+    DisposablePad rebuilt = (DisposablePad) beanFactory.getBean("pad");
+    assertNotSame(pad, rebuilt);
+    assertEquals(1, pad.closed.get());
+
+    // A third instance exceeds the capacity and evicts the least recently used one, tenant b's pad
+    time.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    DisposablePad other = (DisposablePad) beanFactory.getBean("other");
+    assertEquals(1, tenantBPad.closed.get());
+    assertEquals(0, rebuilt.closed.get());
+    assertEquals(0, other.closed.get());
+    assertSame(rebuilt, beanFactory.getBean("pad"));
+    assertSame(other, beanFactory.getBean("other"));
+  }
+
+  @Test
+  public void testTtlScopeLocksPerKey() throws Exception {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    TtlScope ttlScope = new TtlScope();
+    final ThreadLocal<String> tenant = new ThreadLocal<String>();
+    ttlScope.setKeyResolver(tenant::get);
+    beanFactory.registerScope(TtlScope.SCOPE_TTL, ttlScope);
+    final CountDownLatch creatingA = new CountDownLatch(1);
+    final CountDownLatch releaseA = new CountDownLatch(1);
+    RootBeanDefinition padBd = new RootBeanDefinition(Pad.class.getName());
+    padBd.setScope(TtlScope.SCOPE_TTL);
+    padBd.setInstanceSupplier(() -> {
+      if ("a".equals(tenant.get())) {
+        creatingA.countDown();
+        try {
+          releaseA.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return new Pad();
+    });
+    beanFactory.registerBeanDefinition("pad", padBd);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Object> tenantAPad = executor.submit(() -> {
+        tenant.set("a");
+        return beanFactory.getBean("pad");
+      });
+      assertTrue(creatingA.await(5, TimeUnit.SECONDS));
+      // Tenant b's instance is created while tenant a's creation is still blocked
+      Object tenantBPad = executor.submit(() -> {
+        tenant.set("b");
+        return beanFactory.getBean("pad");
+      }).get(5, TimeUnit.SECONDS);
+      assertFalse(tenantAPad.isDone());
+      releaseA.countDown();
+      assertNotSame(tenantBPad, tenantAPad.get(5, TimeUnit.SECONDS));
+    } finally {
+      releaseA.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testSoftScope() {
+    SoftScope softScope = new SoftScope();
+    DefaultBeanFactory beanFactory = scopedPadFactory(SoftScope.SCOPE_SOFT, softScope);
+
+    DisposablePad pad = (DisposablePad) beanFactory.getBean("pad");
+    assertSame(pad, beanFactory.getBean("pad"));
+    assertEquals(1, softScope.getMetrics("pad").getCreated());
+    assertEquals(0, softScope.getMetrics("pad").getRebuilt());
+
+    // A reclaimed instance is rebuilt on the next request, without being destroyed
+    softScope.reclaim("pad");
+    DisposablePad rebuilt = (DisposablePad) beanFactory.getBean("pad");
+    assertNotSame(pad, rebuilt);
+    assertSame(rebuilt, beanFactory.getBean("pad"));
+    assertEquals(0, pad.closed.get());
+    SoftScope.Metrics metrics = softScope.getMetrics("pad");
+    assertEquals(2, metrics.getCreated());
+    assertEquals(1, metrics.getReclaimed());
+    assertEquals(1, metrics.getRebuilt());
+
+    beanFactory.destroySingletons();
+    assertEquals(1, rebuilt.closed.get());
+    assertNotSame(rebuilt, beanFactory.getBean("pad"));
+  }
+
+  @Test
+  public void testRefreshScope() throws Exception {
+    RefreshScope refreshScope = new RefreshScope();
+    refreshScope.setGracePeriod(0, TimeUnit.MILLISECONDS);
+    DefaultBeanFactory beanFactory = scopedPadFactory(RefreshScope.SCOPE_REFRESH, refreshScope);
+
+    ObjectProvider<DisposablePad> handle = beanFactory.getBeanProvider("pad");
+    DisposablePad pad = handle.getObject();
+    assertSame(pad, beanFactory.getBean("pad"));
+
+    Object refreshed = refreshScope.refresh("pad").get(5, TimeUnit.SECONDS);
+    assertNotSame(pad, refreshed);
+    assertSame(refreshed, handle.getObject());
+    assertEquals(1, pad.closed.get());
+
+    beanFactory.destroySingletons();
+    assertEquals(1, ((DisposablePad) refreshed).closed.get());
+  }
+
+  @Test
+  public void testGetBeanAsync() throws Exception {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    List<Runnable> tasks = new ArrayList<Runnable>();
+    beanFactory.setAsyncExecutor(tasks::add);
+    beanFactory.registerBeanDefinition("pad", new RootBeanDefinition(Pad.class.getName()));
+    RootBeanDefinition prototypeBd = new RootBeanDefinition(Pad.class.getName());
+    prototypeBd.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+    beanFactory.registerBeanDefinition("prototypePad", prototypeBd);
+
+    CompletableFuture<Pad> first = beanFactory.getBeanAsync("pad", Pad.class);
+    CompletableFuture<Object> second = beanFactory.getBeanAsync("pad");
+    CompletableFuture<Object> prototype = beanFactory.getBeanAsync("prototypePad");
+    CompletableFuture<Object> otherPrototype = beanFactory.getBeanAsync("prototypePad");
+    assertEquals(3, tasks.size());
+    assertFalse(first.isDone());
+
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    assertSame(beanFactory.getBean("pad"), first.get());
+    assertSame(first.get(), second.get());
+    assertNotSame(prototype.get(), otherPrototype.get());
+    assertTrue(beanFactory.getBeanAsync("pad").isDone());
+    assertTrue(beanFactory.getBeanAsync("missing").isCompletedExceptionally());
+  }
+
+  @Test
+  public void testAsyncInitialization() throws Exception {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    beanFactory.registerBeanDefinition("cache", new RootBeanDefinition(WarmCache.class.getName()));
+    RootBeanDefinition clientBd = new RootBeanDefinition(CacheClient.class.getName());
+    clientBd.setInitMethodName("connect");
+    clientBd.getPropertyValues().addPropertyValue(new PropertyValue("cache", new RuntimeBeanReference("cache")));
+    beanFactory.registerBeanDefinition("client", clientBd);
+
+    beanFactory.preInstantiateSingletons();
+    WarmCache cache = beanFactory.getBean("cache", WarmCache.class);
+    CacheClient client = beanFactory.getBean("client", CacheClient.class);
+    assertSame(cache, client.getCache());
+    // The client's asynchronous init waits for the cache it depends on
+    assertFalse(client.connected.get());
+    CompletableFuture<Object> asyncClient = beanFactory.getBeanAsync("client");
+    CompletableFuture<Void> initialized = beanFactory.getSingletonsInitializationFuture();
+    assertFalse(initialized.isDone());
+
+    cache.warmed.complete(null);
+    initialized.get(5, TimeUnit.SECONDS);
+    assertTrue(client.connected.get());
+    assertSame(client, asyncClient.get(5, TimeUnit.SECONDS));
+    assertTrue(beanFactory.getInitializationFuture("client").isDone());
+  }
+
+  @Test
+  public void testGetBeanAsyncSharesFutureUntilInitialized() throws Exception {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    List<Runnable> tasks = new ArrayList<Runnable>();
+    beanFactory.setAsyncExecutor(tasks::add);
+    beanFactory.registerBeanDefinition("cache", new RootBeanDefinition(WarmCache.class.getName()));
+
+    CompletableFuture<Object> first = beanFactory.getBeanAsync("cache");
+    tasks.get(0).run();
+    // 单例已创建但异步初始化未完成时, 后来的请求仍共享同一个 future
+    assertFalse(first.isDone());
+    assertSame(first, beanFactory.getBeanAsync("cache"));
+    assertEquals(1, tasks.size());
+
+    WarmCache cache = beanFactory.getBean("cache", WarmCache.class);
+    cache.warmed.complete(null);
+    assertSame(cache, first.get(5, TimeUnit.SECONDS));
+    assertNotSame(first, beanFactory.getBeanAsync("cache"));
+    assertTrue(beanFactory.getBeanAsync("cache").isDone());
+  }
+
+  @Test
+  public void testGetBeanAsyncPrototypeInitialization() throws Exception {
+    DefaultBeanFactory beanFactory = new DefaultBeanFactory();
+    beanFactory.setAsyncExecutor(Runnable::run);
+    final List<Handshake> handshakes = new ArrayList<Handshake>();
+    RootBeanDefinition handshakeBd = new RootBeanDefinition(Handshake.class, () -> {
+      Handshake handshake = new Handshake();
+      handshakes.add(handshake);
+      return handshake;
+    });
+    handshakeBd.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+    handshakeBd.setInitMethodName("open");
+    beanFactory.registerBeanDefinition("handshake", handshakeBd);
+
+    // 每个请求等待自己创建的原型实例的异步初始化
+    CompletableFuture<Object> first = beanFactory.getBeanAsync("handshake");
+    CompletableFuture<Object> second = beanFactory.getBeanAsync("handshake");
+    assertEquals(2, handshakes.size());
+    assertFalse(first.isDone());
+    assertFalse(second.isDone());
+
+    handshakes.get(0).opened.complete(null);
+    assertSame(handshakes.get(0), first.get(5, TimeUnit.SECONDS));
+    assertFalse(second.isDone());
+
+    IllegalStateException failure = new IllegalStateException("refused");
+    handshakes.get(1).opened.completeExceptionally(failure);
+    try {
+      second.get(5, TimeUnit.SECONDS);
+      fail("Initialization failure not reported");
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof BeanCreationException);
+      assertSame(failure, ex.getCause().getCause());
+    }
+
+    // 同一类的实例复用已解析的初始化方法
+    RootBeanDefinition mbd = beanFactory.getMergedBeanDefinition("handshake");
+    assertSame(mbd.resolveInitMethod(Handshake.class), mbd.resolveInitMethod(Handshake.class));
+  }
+
+  public static class Handshake {
+
+    final CompletableFuture<Void> opened = new CompletableFuture<Void>();
+
+    public CompletionStage<Void> open() {
+      return this.opened;
+    }
+  }
+
+  public static class WarmCache implements AsyncInitializingBean {
+
+    final CompletableFuture<Void> warmed = new CompletableFuture<Void>();
+
+    @Override
+    public CompletionStage<?> afterPropertiesSetAsync() {
+      return this.warmed;
+    }
+  }
+
+  public static class CacheClient {
+
+    final AtomicBoolean connected = new AtomicBoolean();
+
+    private WarmCache cache;
+
+    public WarmCache getCache() {
+      return this.cache;
+    }
+
+    public void setCache(WarmCache cache) {
+      this.cache = cache;
+    }
+
+    public CompletionStage<Void> connect() {
+      this.connected.set(true);
+      return CompletableFuture.completedFuture(null);
+    }
+  }
+
+  public static class NumberSequence {
+
+    private int calls;
+
+    public Object next() {
+      return (this.calls++ % 2 == 0 ? (Object) (-3) : (Object) (-2.5));
+    }
+  }
+
+  public static class TextSequence {
+
+    private int calls;
+
+    public CharSequence next() {
+      return (this.calls++ % 2 == 0 ? "abc" : new StringBuilder("ab"));
+    }
+  }
+
+  public interface Repository<T> {
+  }
+
+  public static class OrderRepository implements Repository<Person> {
+  }
+
+  public static class UserRepository implements Repository<Pad> {
+  }
+
+  public static class BaseService<T> {
+
+    Repository<T> repository;
+  }
+
+  public static class OrderService extends BaseService<Person> {
+  }
+
+  public static class DisposablePad extends Pad {
+
+    final AtomicInteger closed = new AtomicInteger();
+
+    public void close() {
+      this.closed.incrementAndGet();
+    }
+  }
+
+  public interface ReportService {
+
+    String generate();
+
+    String generate(int pages) throws IOException;
+  }
+
+  public static class LazyReportService implements ReportService {
+
+    static final AtomicInteger instances = new AtomicInteger();
+
+    public LazyReportService() {
+      instances.incrementAndGet();
+    }
+
+    public String generate() {
+      return "report";
+    }
+
+    public String generate(int pages) throws IOException {
+      if (pages < 1) {
+        throw new IOException("No pages");
+      }
+      return "report x" + pages;
+    }
+  }
+
+  public static class ReportClient {
+
+    ReportService reportService;
+  }
+
+  public static class ProviderHolder {
+
+    Supplier<Pad> pads;
+
+    ObjectProvider<Person> person;
+  }
+
+  static class SuppliedPad implements InitializingBean {
+
+    boolean initialized;
+
+    public void afterPropertiesSet() {
+      this.initialized = true;
+    }
+  }
+
+  public static class PadFactory {
+
+    public static Pad createPad() {
+      return new Pad();
+    }
+
+    public static Pad createPad(double price) {
+      return new Pad(price);
+    }
+
+    public Pad newPad() {
+      return new Pad(99);
+    }
+
+    public static Pad castPad() {
+      Object price = "free";
+      return new Pad((Double) price);
+    }
+
+    public static Pad errorPad() {
+      throw new PadFactoryError();
+    }
+  }
+
+  static class PadFactoryError extends Error {
+  }
+
+  public interface Handler {
+  }
+
+  public static class FirstHandler implements Handler {
+  }
+
+  public static class SecondHandler implements Handler {
+  }
+
+  public static class HandlerChain {
+
+    List<Handler> handlers;
+
+    Map<String, Handler> handlersByName;
+
+    Handler[] handlerArray;
+
+    List<Handler> reversed;
+  }
+
+  public static class PadFactoryBean implements FactoryBean<Pad> {
+
+    final AtomicInteger created = new AtomicInteger();
+
+    public Pad getObject() {
+      this.created.incrementAndGet();
+      return new Pad(50);
+    }
+
+    public Class<?> getObjectType() {
+      return Pad.class;
+    }
+  }
 }